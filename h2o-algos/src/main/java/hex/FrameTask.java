@@ -91,6 +91,65 @@ public abstract class FrameTask<T extends FrameTask<T>> extends MRTask<T>{
   protected void processRow(long gid, double [] nums, int ncats, int [] cats, double [] response){throw new RuntimeException("should've been overriden!");}
   protected void processRow(long gid, double [] nums, int ncats, int [] cats, double [] response, NewChunk [] outputs){throw new RuntimeException("should've been overriden!");}
 
+  /** Rows per {@link Block} */
+  public static final int BLOCK_SIZE = 1024;
+
+  /**
+   * Up to {@link #BLOCK_SIZE} rows, decoded column by column into primitive
+   * arrays, so that subclasses can update their state with tight loops over
+   * one column at a time instead of a virtual call per row.
+   *
+   * Rows are in the order processRow would see them, including rows which
+   * processRow would not see (rows with NAs or without a valid response):
+   * those have _valid[i] == false, and are zeroed - nums and response 0, cats
+   * -1 - so that block-wide loops can run over them with zero weights.
+   */
+  public static final class Block {
+    public int _n;                  // Rows in this block
+    public final long    [] _gid;   // Global id of each row, as passed to processRow
+    public final boolean [] _valid; // Rows processRow would have seen
+    public final double[][] _nums;  // [numeric column][row], normalized
+    public final int   [][] _cats;  // [categorical column][row], index into the expanded beta vector; -1 for skipped levels
+    public final double[][] _resp;  // [response][row], normalized
+    Block(int nums, int cats, int responses) {
+      _gid = new long[BLOCK_SIZE];
+      _valid = new boolean[BLOCK_SIZE];
+      _nums = new double[nums][BLOCK_SIZE];
+      _cats = new int[cats][BLOCK_SIZE];
+      _resp = new double[responses][BLOCK_SIZE];
+    }
+    /** Number of valid rows */
+    public int nvalid() {
+      int n = 0;
+      for( int i = 0; i < _n; ++i ) if( _valid[i] ) ++n;
+      return n;
+    }
+  }
+
+  /** Override to return true to get rows in blocks via {@link #processBlock}
+   *  instead of one by one via processRow. */
+  protected boolean useBlocks() { return false; }
+
+  /** Process a block of rows; by default, row by row via processRow. */
+  protected void processBlock(Block b) { processBlock(b, null); }
+  protected void processBlock(Block b, NewChunk [] outputs) {
+    double [] nums = MemoryManager.malloc8d(_dinfo._nums);
+    int    [] cats = MemoryManager.malloc4(_dinfo._cats);
+    double [] response = _dinfo._responses == 0 ? null : MemoryManager.malloc8d(_dinfo._responses);
+    for(int i = 0; i < b._n; ++i) {
+      if(!b._valid[i]) continue;
+      int ncats = 0;
+      for(int j = 0; j < cats.length; ++j)
+        if(b._cats[j][i] >= 0) cats[ncats++] = b._cats[j][i];
+      for(int j = 0; j < nums.length; ++j) nums[j] = b._nums[j][i];
+      for(int j = 0; j < _dinfo._responses; ++j) response[j] = b._resp[j][i];
+      if (outputs != null && outputs.length > 0)
+        processRow(b._gid[i], nums, ncats, cats, response, outputs);
+      else
+        processRow(b._gid[i], nums, ncats, cats, response);
+    }
+  }
+
 
   public static class DataInfo extends Keyed {
     public int [] _activeCols;
@@ -608,6 +667,34 @@ public abstract class FrameTask<T extends FrameTask<T>> extends MRTask<T>{
       ArrayUtils.shuffleArray(shuf_map, new Random().nextLong());
     }
     long num_processed_rows = 0;
+    if (useBlocks()) {
+      Block b = new Block(_dinfo._nums, _dinfo._cats, _dinfo._responses);
+      int [] rows = new int[BLOCK_SIZE];
+      for(int rrr = 0; rrr < repeats; ++rrr) {
+        for(int rr = start; rr < end; ++rr){
+          final int r = shuf_map != null ? (int)shuf_map[rr-start] : rr;
+          final long lr = r + chunks[0].start();
+          if ((_dinfo._nfolds > 0 && (lr % _dinfo._nfolds) == _dinfo._foldId)
+            || (skip_rng != null && skip_rng.nextFloat() > fraction))continue;
+          ++num_processed_rows; //count rows with missing values even if they are skipped
+          b._gid[b._n] = offset + rrr*(end-start) + r;
+          rows[b._n++] = r;
+          if (b._n == BLOCK_SIZE) {
+            fillBlock(chunks, rows, b);
+            if (outputs != null && outputs.length > 0) processBlock(b, outputs);
+            else processBlock(b);
+            b._n = 0;
+          }
+        }
+      }
+      if (b._n > 0) {
+        fillBlock(chunks, rows, b);
+        if (outputs != null && outputs.length > 0) processBlock(b, outputs);
+        else processBlock(b);
+      }
+      chunkDone(num_processed_rows);
+      return;
+    }
     for(int rrr = 0; rrr < repeats; ++rrr) {
       OUTER:
       for(int rr = start; rr < end; ++rr){
@@ -655,4 +742,59 @@ public abstract class FrameTask<T extends FrameTask<T>> extends MRTask<T>{
     chunkDone(num_processed_rows);
   }
 
+  // Decode the given chunk rows into a block, one column at a time, with the
+  // same rules as the row-at-a-time loop in map.
+  private void fillBlock(Chunk [] chunks, int [] rows, Block b) {
+    final int n = b._n;
+    Arrays.fill(b._valid, 0, n, true);
+    if (skipMissing())
+      for(Chunk c:chunks)
+        for(int i = 0; i < n; ++i)
+          if (c.isNA0(rows[i])) b._valid[i] = false; // skip rows with NAs!
+    for(int j = 0; j < _dinfo._cats; ++j){
+      final Chunk c = chunks[j];
+      final int [] cats = b._cats[j];
+      final int off = _dinfo._catOffsets[j];
+      final int [] lvls = _dinfo._catLvls == null ? null : _dinfo._catLvls[j];
+      for(int i = 0; i < n; ++i){
+        final int r = rows[i];
+        if (c.isNA0(r)) { cats[i] = _dinfo._catOffsets[j+1]-1; continue; } //missing value turns into extra (last) factor
+        int l = (int) c.at80(r);
+        if (lvls != null) { // some levels are ignored?
+          l = Arrays.binarySearch(lvls, l);
+          cats[i] = l >= 0 ? l + off : -1;
+        } else if (_dinfo._useAllFactorLevels)
+          cats[i] = l + off;
+        else
+          cats[i] = l != 0 ? l + off - 1 : -1;
+      }
+    }
+    for(int j = 0; j < _dinfo._nums; ++j){
+      final Chunk c = chunks[_dinfo._cats+j];
+      final double [] nums = b._nums[j];
+      for(int i = 0; i < n; ++i) nums[i] = c.at0(rows[i]); //can be NA if skipMissing() == false
+      if (_dinfo._normMul != null) {
+        final double sub = _dinfo._normSub[j], mul = _dinfo._normMul[j];
+        for(int i = 0; i < n; ++i) nums[i] = (nums[i] - sub)*mul;
+      }
+    }
+    for(int j = 0; j < _dinfo._responses; ++j){
+      final Chunk c = chunks[chunks.length-_dinfo._responses + j];
+      final double [] resp = b._resp[j];
+      for(int i = 0; i < n; ++i) resp[i] = c.at0(rows[i]);
+      if (_dinfo._normRespMul != null) {
+        final double sub = _dinfo._normRespSub[j], mul = _dinfo._normRespMul[j];
+        for(int i = 0; i < n; ++i) resp[i] = (resp[i] - sub)*mul;
+      }
+      for(int i = 0; i < n; ++i)
+        if (Double.isNaN(resp[i])) b._valid[i] = false; // skip rows without a valid response (no supervised training possible)
+    }
+    // Zero out the rows processRow would not have seen
+    for(int i = 0; i < n; ++i){
+      if (b._valid[i]) continue;
+      for(int [] cats:b._cats) cats[i] = -1;
+      for(double [] nums:b._nums) nums[i] = 0;
+      for(double [] resp:b._resp) resp[i] = 0;
+    }
+  }
 }
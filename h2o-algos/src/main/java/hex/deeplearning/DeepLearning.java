@@ -96,6 +96,7 @@ public class DeepLearning extends SupervisedModelBuilder<DeepLearningModel,DeepL
             "_score_duty_cycle",
             "_variable_importances",
             "_fast_mode",
+            "_mini_batch_size",
             "_score_validation_sampling",
             "_ignore_const_cols",
             "_force_load_balance",
@@ -139,6 +140,7 @@ public class DeepLearning extends SupervisedModelBuilder<DeepLearningModel,DeepL
             "_single_node_mode",
             "_sparse",
             "_col_major",
+            "_mini_batch_size",
             // Allow modification of the regularization parameters after a checkpoint restart
             "_l1",
             "_l2",
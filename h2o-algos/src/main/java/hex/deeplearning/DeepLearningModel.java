@@ -435,6 +435,14 @@ public class DeepLearningModel extends SupervisedModel<DeepLearningModel,DeepLea
      */
     public int _max_categorical_features = Integer.MAX_VALUE;
 
+    /**
+     * Number of training rows per weight update. With 1, every row updates the
+     * weights on its own (Hogwild!); with more, the rows of a mini-batch are
+     * propagated through the network together as matrix-matrix products, and
+     * the weights are updated with their average gradient.
+     */
+    public int _mini_batch_size = 1;
+
     /**
      * Force reproducibility on small data (will be slow - only uses 1 thread)
      */
@@ -618,6 +626,13 @@ public class DeepLearningModel extends SupervisedModel<DeepLearningModel,DeepLea
       if (_autoencoder && _valid != null) dl.error("_validation_frame", "Cannot specify a validation dataset for auto-encoder.");
       if (_autoencoder && _activation == Activation.Maxout) dl.error("_activation", "Maxout activation is not supported for auto-encoder.");
       if (_max_categorical_features < 1) dl.error("_max_categorical_features", "max_categorical_features must be at least 1.");
+      if (_mini_batch_size < 1) dl.error("_mini_batch_size", "Mini-batch size must be at least 1.");
+      if (_mini_batch_size > 1) {
+        if (_activation == Activation.Maxout || _activation == Activation.MaxoutWithDropout)
+          dl.error("_mini_batch_size", "Mini-batch training is not supported for Maxout activation.");
+        if (_autoencoder) dl.error("_mini_batch_size", "Mini-batch training is not supported for auto-encoder.");
+        if (_sparse) dl.error("_mini_batch_size", "Mini-batch training is not supported with sparse data handling.");
+      }
 
       if (!_sparse && _col_major) {
         if (!_quiet_mode) dl.error("_col_major", "Cannot use column major storage for non-sparse data handling.");
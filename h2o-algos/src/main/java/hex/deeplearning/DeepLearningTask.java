@@ -17,6 +17,13 @@ public class DeepLearningTask extends FrameTask<DeepLearningTask> {
 
   transient Neurons[] _neurons;
 
+  // Mini-batch being gathered (only with mini_batch_size > 1)
+  transient int _bn;
+  transient long[] _bseeds;
+  transient double[] _bresp;
+  transient double[] _bnums;
+  transient int[] _bcats;
+
   int _chunk_node_count = 1;
 
   public DeepLearningTask(Key jobKey, hex.deeplearning.DeepLearningModel.DeepLearningModelInfo input, float fraction){this(jobKey, input,fraction,null);}
@@ -41,19 +48,60 @@ public class DeepLearningTask extends FrameTask<DeepLearningTask> {
   // and link them to shared weights
   @Override protected void chunkInit(){
     _neurons = makeNeuronsForTraining(_output);
+    if (useBlocks()) {
+      final int mb = _output.get_params()._mini_batch_size;
+      _bseeds = new long[mb];
+      _bresp = new double[mb];
+      _bnums = new double[_dinfo._nums];
+      _bcats = new int[_dinfo._cats];
+    }
+    _bn = 0;
   }
 
-  @Override public final void processRow(long seed, final double [] nums, final int numcats, final int [] cats, double [] responses){
+  private long seed(long seed) {
     if (model_info().get_params()._reproducible) {
       seed += model_info().get_processed_global(); //avoid periodicity
     } else {
       seed = new Random().nextLong();
     }
+    return seed;
+  }
+
+  @Override public final void processRow(long seed, final double [] nums, final int numcats, final int [] cats, double [] responses){
+    seed = seed(seed);
     ((Neurons.Input)_neurons[0]).setInput(seed, nums, numcats, cats);
     step(seed, _neurons, _output, _training, responses);
   }
 
+  // Mini-batch training: rows come in blocks, and are gathered into
+  // mini-batches, which are trained on as soon as they are full
+  @Override protected boolean useBlocks() { return _output.get_params()._mini_batch_size > 1; }
+
+  @Override protected void processBlock(Block b) {
+    final Neurons.Input input = (Neurons.Input)_neurons[0];
+    final int mb = _bseeds.length;
+    for (int i = 0; i < b._n; ++i) {
+      if (!b._valid[i]) continue;
+      int ncats = 0;
+      for (int j = 0; j < _bcats.length; ++j)
+        if (b._cats[j][i] >= 0) _bcats[ncats++] = b._cats[j][i];
+      for (int j = 0; j < _bnums.length; ++j) _bnums[j] = b._nums[j][i];
+      final long seed = seed(b._gid[i]);
+      input.setInputBatch(_bn, seed, _bnums, ncats, _bcats);
+      _bseeds[_bn] = seed;
+      _bresp[_bn] = b._resp[0][i];
+      if (++_bn == mb) {
+        stepBatch(_bn, _bseeds, _neurons, _output, _bresp);
+        _bn = 0;
+      }
+    }
+  }
+
   @Override protected void chunkDone(long n) {
+    if (_bn > 0) { // the rest of the chunk's rows
+      stepBatch(_bn, _bseeds, _neurons, _output, _bresp);
+      _bn = 0;
+    }
     if (_training) _output.add_processed_local(n);
   }
 
@@ -186,4 +234,25 @@ public class DeepLearningTask extends FrameTask<DeepLearningTask> {
     }
   }
 
+  /**
+   * Forward/backward propagation of the first n rows of a mini-batch, as step() does for one row
+   * assumption: layer 0 has _ba filled with the input values of the n rows
+   * @param seeds per-row seeds (for dropout)
+   * @param responses per-row targets
+   */
+  static void stepBatch(int n, long[] seeds, Neurons[] neurons, DeepLearningModel.DeepLearningModelInfo minfo, double[] responses) {
+    try {
+      for (int i=1; i<neurons.length; ++i)
+        neurons[i].fpropBatch(n, seeds);
+      ((Neurons.Output)neurons[neurons.length-1]).errorsBatch(n, responses);
+      for (int i=neurons.length-1; i>0; --i)
+        neurons[i].bpropBatch(n);
+    }
+    catch(RuntimeException ex) {
+      Log.warn(ex.getMessage());
+      minfo.set_unstable();
+      throw new RuntimeException("Canceling job due to numerical instability.");
+    }
+  }
+
 }
@@ -86,6 +86,15 @@ public abstract class Neurons {
 
   public DenseVector _avg_a;
 
+  /**
+   * Mini-batch state (only when training with mini_batch_size > 1): activations and
+   * errors (dE/dnet once back-propagated) of up to mini_batch_size rows, stored row
+   * after row ([row*units + unit]), and which units each row dropped out
+   */
+  transient float[] _ba, _be;
+  transient boolean[] _bdrop;
+  private transient float[] _bgrad; // Weight gradients of a few neurons at a time
+
   public static final int missing_int_value = Integer.MAX_VALUE; //encode missing label
   public static final Float missing_real_value = Float.NaN; //encode missing regression target
 
@@ -158,6 +167,15 @@ public abstract class Neurons {
               // not doing fast mode, but also don't have anything else to update (neither momentum nor ADADELTA history), and no L1/L2
               !params._adaptive_rate && !_minfo.has_momenta() && params._l1 == 0.0 && params._l2 == 0.0));
     }
+    if (training && params._mini_batch_size > 1) {
+      final int mb = params._mini_batch_size;
+      _ba = new float[mb * units];
+      if (!(this instanceof Input)) {
+        _be = new float[mb * units];
+        _bgrad = new float[GRAD_ROWS * _previous.units];
+        if (_dropout != null) _bdrop = new boolean[mb * units];
+      }
+    }
     sanityCheck(training);
   }
 
@@ -631,6 +649,141 @@ public abstract class Neurons {
     return (float)m;
   }
 
+
+  /**
+   * Mini-batch training: instead of propagating one row at a time through
+   * mat-vec products and updating the weights after each row, the rows of a
+   * mini-batch go through the layers together as matrix-matrix products over
+   * the same float arrays, and the weights are updated once per mini-batch
+   * with the average gradient.  Only for dense row-major weights and the
+   * Tanh, Rectifier, Softmax and Linear layers (see DeepLearningParameters.validate).
+   */
+
+  /** Neurons whose weight gradients are gathered together in {@link #bpropBatch} */
+  static final int GRAD_ROWS = 8;
+
+  /**
+   * Forward propagation of the first n rows of the mini-batch
+   * @param n number of rows
+   * @param seeds per-row seeds (for dropout)
+   */
+  void fpropBatch(final int n, final long[] seeds) {
+    final int cols = _previous.units;
+    gemm_nt(_ba, _previous._ba, _w.raw(), n, units, cols);
+    final float[] b = _b.raw();
+    for (int s = 0; s < n; s++)
+      for (int u = 0, o = s*units; u < units; u++, o++)
+        _ba[o] += b[u];
+    activateBatch(n);
+    if (_bdrop != null) {
+      for (int s = 0; s < n; s++) {
+        _dropout.fillBytes(seeds[s] + params._seed + 0xDA7A6000L + _index);
+        for (int u = 0, o = s*units; u < units; u++, o++) {
+          _bdrop[o] = !_dropout.unit_active(u);
+          if (_bdrop[o]) _ba[o] = 0;
+        }
+      }
+    }
+  }
+
+  /** Apply the activation function to the net input of the first n rows of {@link #_ba} */
+  protected void activateBatch(int n) {
+    throw new UnsupportedOperationException("Mini-batch training is not implemented for " + getClass().getSimpleName() + ".");
+  }
+
+  /** Turn the back-propagated errors dE/dy of the first n rows of {@link #_be} into dE/dnet */
+  protected void gradBatch(int n) {
+    throw new UnsupportedOperationException("Mini-batch training is not implemented for " + getClass().getSimpleName() + ".");
+  }
+
+  /**
+   * Back propagation of the first n rows of the mini-batch, whose {@link #_be} hold
+   * dE/dnet: propagates the errors to the previous layer, then updates the
+   * incoming weights and the biases with the average gradient of the n rows
+   */
+  void bpropBatch(final int n) {
+    final int cols = _previous.units;
+    final float[] w = _w.raw();
+    if (_previous._be != null) {
+      Arrays.fill(_previous._be, 0, n*cols, 0f);
+      gemm_nn(_previous._be, _be, w, n, units, cols);
+      _previous.gradBatch(n);
+    }
+    final float m = momentum();
+    final float r = _minfo.adaDelta() ? 0 : rate(_minfo.get_processed_total()) * (1f - m);
+    for (int row0 = 0; row0 < units; row0 += GRAD_ROWS) {
+      final int row1 = Math.min(units, row0 + GRAD_ROWS);
+      gemm_tn(_bgrad, _be, _previous._ba, n, units, cols, row0, row1);
+      for (int row = row0; row < row1; row++) {
+        float gb = 0;
+        for (int s = 0; s < n; s++) gb += _be[s*units + row];
+        update_batch((DenseRowMatrix)_w, row, _bgrad, (row - row0) * cols, gb, n, r, m);
+      }
+    }
+  }
+
+  /**
+   * Update the incoming weights and the bias of one neuron with the summed
+   * gradient of a mini-batch, as bprop_dense_row_dense does for one row
+   */
+  private void update_batch(final DenseRowMatrix _w, final int row, final float[] grads, final int goff,
+                            final float grad_bias, final int n, final float rate, final float momentum) {
+    final float rho = (float)params._rho;
+    final float eps = (float)params._epsilon;
+    final float l1 = (float)params._l1;
+    final float l2 = (float)params._l2;
+    final float max_w2 = params._max_w2;
+    final boolean have_momenta = _minfo.has_momenta();
+    final boolean have_ada = _minfo.adaDelta();
+    final boolean nesterov = params._nesterov_accelerated_gradient;
+    final boolean fast_mode = params._fast_mode;
+    final int cols = _w.cols();
+    final int idx = row * cols;
+    final float scale = 1f / n;
+    final float[] wr = _w.raw();
+
+    boolean any = grad_bias != 0;
+    for( int col = 0; col < cols && !any; col++ ) any = grads[goff + col] != 0;
+    if (_shortcut && !any) return;
+
+    float avg_grad2 = 0;
+    for( int col = 0; col < cols; col++ ) {
+      final float g = grads[goff + col];
+      if (fast_mode && g == 0) continue;
+      final int w = idx + col;
+      final float weight = wr[w];
+      final float grad = g * scale - Math.signum(weight) * l1 - weight * l2;
+
+      if (have_ada) {
+        assert(!have_momenta);
+        avg_grad2 += grad*grad;
+        float brate = computeAdaDeltaRateForWeight(grad, w, (DenseRowMatrix)_ada_dx_g, rho, eps);
+        wr[w] += brate * grad;
+      } else {
+        if (!nesterov) {
+          final float delta = rate * grad;
+          wr[w] += delta;
+          if( have_momenta ) {
+            wr[w] += momentum * _wm.raw()[w];
+            _wm.raw()[w] = delta;
+          }
+        } else {
+          float tmp = grad;
+          if( have_momenta ) {
+            _wm.raw()[w] *= momentum;
+            _wm.raw()[w] += tmp;
+            tmp = _wm.raw()[w];
+          }
+          wr[w] += rate * tmp;
+        }
+      }
+    }
+    if (max_w2 != Float.POSITIVE_INFINITY)
+      rescale_weights(_w, row, max_w2);
+    if (have_ada) avg_grad2 /= cols;
+    update_bias(_b, _bm, row, grad_bias * scale, avg_grad2, rate, momentum);
+  }
+
   /**
    * Input layer of the Neural Network
    * This layer is different from other layers as it has no incoming weights,
@@ -766,6 +919,15 @@ public abstract class Neurons {
       }
     }
 
+    /**
+     * Set the input values of one row of the mini-batch, as {@link #setInput(long, double[], int, int[])} does for one row
+     * @param s row of the mini-batch
+     */
+    public void setInputBatch(int s, long seed, final double[] nums, final int numcat, final int[] cats) {
+      setInput(seed, nums, numcat, cats);
+      System.arraycopy(_a.raw(), 0, _ba, s*units, units);
+    }
+
   }
 
   /**
@@ -798,6 +960,14 @@ public abstract class Neurons {
         bprop_sparse(r, m);
       }
     }
+    @Override protected void activateBatch(int n) {
+      for( int i = 0; i < n*units; i++ )
+        _ba[i] = 1f - 2f / (1f + (float)Math.exp(2*_ba[i]));
+    }
+    @Override protected void gradBatch(int n) {
+      for( int i = 0; i < n*units; i++ )
+        _be[i] = _bdrop != null && _bdrop[i] ? 0f : _be[i] * (1f - _ba[i] * _ba[i]);
+    }
   }
 
   /**
@@ -934,6 +1104,14 @@ public abstract class Neurons {
         bprop_sparse(r, m);
       }
     }
+    @Override protected void activateBatch(int n) {
+      for( int i = 0; i < n*units; i++ )
+        _ba[i] = Math.max(_ba[i], 0f);
+    }
+    @Override protected void gradBatch(int n) {
+      for( int i = 0; i < n*units; i++ )
+        if (!(_ba[i] > 0f)) _be[i] = 0f; // dropped units have _ba == 0
+    }
   }
 
   /**
@@ -961,6 +1139,11 @@ public abstract class Neurons {
     Output(int units) { super(units); }
     protected void fprop(long seed, boolean training) { throw new UnsupportedOperationException(); }
     protected void bprop() { throw new UnsupportedOperationException(); }
+    /**
+     * Set dE/dnet of the first n rows of the mini-batch from their targets
+     * @param responses targets, one per row
+     */
+    protected abstract void errorsBatch(int n, double[] responses);
   }
 
   /**
@@ -1015,6 +1198,39 @@ public abstract class Neurons {
         bprop(row, g, r, m);
       }
     }
+
+    @Override protected void activateBatch(int n) {
+      for( int s = 0; s < n; s++ ) {
+        final int off = s*units;
+        float max = Float.NEGATIVE_INFINITY;
+        for( int row = 0; row < units; row++ ) max = Math.max(max, _ba[off + row]);
+        float scale = 0f;
+        for( int row = 0; row < units; row++ ) {
+          _ba[off + row] = (float)Math.exp(_ba[off + row] - max);
+          scale += _ba[off + row];
+        }
+        for( int row = 0; row < units; row++ ) {
+          if (Float.isNaN(_ba[off + row])) {
+            _minfo.set_unstable();
+            throw new RuntimeException("Numerical instability, predicted NaN.");
+          }
+          _ba[off + row] /= scale;
+        }
+      }
+    }
+
+    @Override protected void errorsBatch(int n, double[] responses) {
+      final boolean ce = params._loss == DeepLearningModel.DeepLearningParameters.Loss.CrossEntropy;
+      for( int s = 0; s < n; s++ ) {
+        assert((double)(int)responses[s] == responses[s]);
+        final int target = (int)responses[s];
+        for( int row = 0, o = s*units; row < units; row++, o++ ) {
+          final float t = (row == target ? 1f : 0f);
+          final float y = _ba[o];
+          _be[o] = ce ? t - y : (t - y) * (1f - y) * y;
+        }
+      }
+    }
   }
 
   /**
@@ -1040,6 +1256,14 @@ public abstract class Neurons {
       float r = _minfo.adaDelta() ? 0 : rate(_minfo.get_processed_total()) * (1f - m);
       bprop(row, g, r, m);
     }
+
+    @Override protected void activateBatch(int n) { }
+
+    @Override protected void errorsBatch(int n, double[] responses) {
+      if (params._loss != DeepLearningModel.DeepLearningParameters.Loss.MeanSquare) throw new UnsupportedOperationException("Regression is only implemented for MeanSquare error.");
+      for( int s = 0; s < n; s++ )
+        _be[s] = (float)responses[s] - _ba[s]; //for MSE -dMSE/dy = target-y
+    }
   }
 
   /**
@@ -1104,6 +1328,85 @@ public abstract class Neurons {
     }
   }
 
+  /** Columns per cache block in the gemm kernels (floats of a row kept hot in L1) */
+  static final int GEMM_BLOCK = 256;
+
+  /**
+   * Mat-Mat multiply with the right side transposed, for forward propagation of a mini-batch:
+   * c = a * b', for a row-major m x k matrix a (one row per sample) and a row-major n x k matrix b (one
+   * row per neuron); c is m x n.  The k dimension is blocked so that a block of a row of b is loaded once
+   * for every four rows of a.
+   */
+  static void gemm_nt(final float[] c, final float[] a, final float[] b, final int m, final int n, final int k) {
+    Arrays.fill(c, 0, m*n, 0f);
+    for (int k0 = 0; k0 < k; k0 += GEMM_BLOCK) {
+      final int k1 = Math.min(k, k0 + GEMM_BLOCK);
+      for (int j = 0; j < n; j++) {
+        final int bj = j*k;
+        int i = 0;
+        for (; i + 4 <= m; i += 4) {
+          final int a0 = i*k, a1 = a0 + k, a2 = a1 + k, a3 = a2 + k;
+          float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+          for (int p = k0; p < k1; p++) {
+            final float bv = b[bj + p];
+            s0 += a[a0 + p] * bv;
+            s1 += a[a1 + p] * bv;
+            s2 += a[a2 + p] * bv;
+            s3 += a[a3 + p] * bv;
+          }
+          c[i*n + j] += s0;
+          c[(i+1)*n + j] += s1;
+          c[(i+2)*n + j] += s2;
+          c[(i+3)*n + j] += s3;
+        }
+        for (; i < m; i++) {
+          final int ai = i*k;
+          float s0 = 0;
+          for (int p = k0; p < k1; p++) s0 += a[ai + p] * b[bj + p];
+          c[i*n + j] += s0;
+        }
+      }
+    }
+  }
+
+  /**
+   * Mat-Mat multiply-add, for back propagation of the errors of a mini-batch:
+   * c += a * b, for a row-major m x n matrix a (one row per sample) and a row-major n x k matrix b;
+   * c is m x k.  Rows of a which are zero for a neuron are skipped.
+   */
+  static void gemm_nn(final float[] c, final float[] a, final float[] b, final int m, final int n, final int k) {
+    for (int k0 = 0; k0 < k; k0 += GEMM_BLOCK) {
+      final int k1 = Math.min(k, k0 + GEMM_BLOCK);
+      for (int i = 0; i < m; i++) {
+        final int ai = i*n, ci = i*k;
+        for (int j = 0; j < n; j++) {
+          final float g = a[ai + j];
+          if (g == 0f) continue;
+          final int bj = j*k;
+          for (int p = k0; p < k1; p++) c[ci + p] += g * b[bj + p];
+        }
+      }
+    }
+  }
+
+  /**
+   * Mat-Mat multiply with the left side transposed, for the weight gradients of a mini-batch:
+   * rows j0..j1 of a' * b, for a row-major m x n matrix a and a row-major m x k matrix b, into the first
+   * (j1-j0) rows of the row-major matrix c with k columns.  Each row of b is loaded once for all j1-j0 rows.
+   */
+  static void gemm_tn(final float[] c, final float[] a, final float[] b, final int m, final int n, final int k, final int j0, final int j1) {
+    Arrays.fill(c, 0, (j1-j0)*k, 0f);
+    for (int i = 0; i < m; i++) {
+      final int bi = i*k;
+      for (int j = j0; j < j1; j++) {
+        final float g = a[i*n + j];
+        if (g == 0f) continue;
+        final int cj = (j-j0)*k;
+        for (int p = 0; p < k; p++) c[cj + p] += g * b[bi + p];
+      }
+    }
+  }
+
   /**
    * Helper to do a generic gemv: res = a*x + y
    * @param res Dense result
@@ -1121,6 +1424,14 @@ public abstract class Neurons {
       gemv(res, (DenseRowMatrix) a, (SparseVector) x, y, row_bits); //try
     else if (a instanceof DenseColMatrix && x instanceof DenseVector)
       gemv(res, (DenseColMatrix) a, (DenseVector) x, y, row_bits); //try
+    else if (a instanceof SparseRowMatrix && x instanceof SparseVector)
+      gemv(res, (SparseRowMatrix) a, (SparseVector) x, y, row_bits);
+    else if (a instanceof SparseRowMatrix && x instanceof DenseVector)
+      gemv(res, (SparseRowMatrix) a, (DenseVector) x, y, row_bits);
+    else if (a instanceof SparseColMatrix && x instanceof SparseVector)
+      gemv(res, (SparseColMatrix) a, (SparseVector) x, y, row_bits);
+    else if (a instanceof SparseColMatrix && x instanceof DenseVector)
+      gemv(res, (SparseColMatrix) a, (DenseVector) x, y, row_bits);
     else throw new UnsupportedOperationException("gemv for matrix " + a.getClass().getSimpleName() + " and vector + " + x.getClass().getSimpleName() + " not yet implemented.");
   }
 
@@ -1193,41 +1504,86 @@ public abstract class Neurons {
   static void gemv(final DenseVector res, final SparseRowMatrix a, final SparseVector x, final DenseVector y, byte[] row_bits) {
     final int rows = y.size();
     assert(res.size() == rows);
+    final int[] xidx = x._indices;
+    final float[] xval = x._values;
+    final int xnnz = x.nnz();
     for(int r = 0; r<rows; r++) {
       res.set(r, 0);
       if( row_bits != null && (row_bits[r / 8] & (1 << (r % 8))) == 0) continue;
-      // iterate over all non-empty columns for this row
-      TreeMap<Integer, Float> row = a.row(r);
-      Set<Map.Entry<Integer,Float>> set = row.entrySet();
-
-      for (Map.Entry<Integer,Float> e : set) {
-        final float val = x.get(e.getKey());
-        if (val != 0f) res.add(r, e.getValue() * val); //TODO: iterate over both iterators and only add where there are matching indices
+      // merge the sorted indices of this row with those of x, only multiply where both are non-zero
+      final SparseLine row = a.row(r);
+      final int[] idx = row._idx;
+      final float[] val = row._val;
+      final int nnz = row._nnz;
+      float sum = 0;
+      for (int i = 0, j = 0; i < nnz && j < xnnz; ) {
+        if (idx[i] < xidx[j]) i++;
+        else if (idx[i] > xidx[j]) j++;
+        else sum += val[i++] * xval[j++];
       }
-      res.add(r, y.get(r));
+      res.set(r, sum + y.get(r));
     }
   }
 
-  static void gemv(final DenseVector res, final SparseColMatrix a, final SparseVector x, final DenseVector y, byte[] row_bits) {
+  static void gemv(final DenseVector res, final SparseRowMatrix a, final DenseVector x, final DenseVector y, byte[] row_bits) {
     final int rows = y.size();
     assert(res.size() == rows);
+    final float[] xd = x.raw();
     for(int r = 0; r<rows; r++) {
       res.set(r, 0);
+      if( row_bits != null && (row_bits[r / 8] & (1 << (r % 8))) == 0) continue;
+      final SparseLine row = a.row(r);
+      final int[] idx = row._idx;
+      final float[] val = row._val;
+      float sum = 0;
+      for (int i = 0; i < row._nnz; i++)
+        sum += val[i] * xd[idx[i]];
+      res.set(r, sum + y.get(r));
+    }
+  }
+
+  static void gemv(final DenseVector res, final SparseColMatrix a, final SparseVector x, final DenseVector y, byte[] row_bits) {
+    final int rows = y.size();
+    assert(res.size() == rows);
+    final float[] rd = res.raw();
+    Arrays.fill(rd, 0f);
+    // only the columns where x is non-zero contribute
+    final int end = x.nnz();
+    for (int it = 0; it < end; ++it) {
+      final float val = x._values[it];
+      if (val == 0f) continue;
+      axpy(rd, a.col(x._indices[it]), val, row_bits);
+    }
+    for(int r = 0; r<rows; r++) {
+      if( row_bits != null && (row_bits[r / 8] & (1 << (r % 8))) == 0) continue;
+      rd[r] += y.get(r);
     }
+  }
+
+  static void gemv(final DenseVector res, final SparseColMatrix a, final DenseVector x, final DenseVector y, byte[] row_bits) {
+    final int rows = y.size();
+    assert(res.size() == rows);
+    final float[] rd = res.raw();
+    Arrays.fill(rd, 0f);
     for(int c = 0; c<a.cols(); c++) {
-      TreeMap<Integer, Float> col = a.col(c);
       final float val = x.get(c);
       if (val == 0f) continue;
-      for (Map.Entry<Integer,Float> e : col.entrySet()) {
-        final int r = e.getKey();
-        if( row_bits != null && (row_bits[r / 8] & (1 << (r % 8))) == 0) continue;
-        // iterate over all non-empty columns for this row
-        res.add(r, e.getValue() * val);
-      }
+      axpy(rd, a.col(c), val, row_bits);
     }
     for(int r = 0; r<rows; r++) {
       if( row_bits != null && (row_bits[r / 8] & (1 << (r % 8))) == 0) continue;
-      res.add(r, y.get(r));
+      rd[r] += y.get(r);
+    }
+  }
+
+  // res += val * col, for the non-zero rows of a sparse column
+  private static void axpy(final float[] res, final SparseLine col, final float val, final byte[] row_bits) {
+    final int[] idx = col._idx;
+    final float[] v = col._val;
+    for (int i = 0; i < col._nnz; i++) {
+      final int r = idx[i];
+      if( row_bits != null && (row_bits[r / 8] & (1 << (r % 8))) == 0) continue;
+      res[r] += v[i] * val;
     }
   }
 
@@ -1397,15 +1753,103 @@ public abstract class Neurons {
   }
 
   /**
-   * Sparse row matrix implementation
+   * One row (or column) of a sparse matrix.  The non-zeros are kept in primitive
+   * index/value arrays sorted by index, so the gemv kernels can stream through
+   * them.  Entries set in increasing index order are appended in place; any
+   * other new entry goes into a small open-addressed hash table, which is merged
+   * into the sorted arrays when it fills up, or when the line is next iterated
+   * over (see {@link #compact}).  Not thread-safe for concurrent inserts.
+   */
+  static final class SparseLine {
+    int[] _idx = new int[0];    // Sorted indices of the non-zeros
+    float[] _val = new float[0];
+    int _nnz;
+    private int[] _hkeys;       // Open-addressed inserts, -1 for an empty slot
+    private float[] _hvals;
+    private int _hsize;
+
+    float get(int i) {
+      final int p = Arrays.binarySearch(_idx, 0, _nnz, i);
+      if (p >= 0) return _val[p];
+      if (_hsize == 0) return 0f;
+      final int s = slot(i);
+      return _hkeys[s] == i ? _hvals[s] : 0f;
+    }
+    void set(int i, float val) {
+      final int p = Arrays.binarySearch(_idx, 0, _nnz, i);
+      if (p >= 0) { _val[p] = val; return; }
+      if (_hsize > 0) {
+        final int s = slot(i);
+        if (_hkeys[s] == i) { _hvals[s] = val; return; }
+      }
+      if (_hsize == 0 && (_nnz == 0 || i > _idx[_nnz-1])) { append(i, val); return; }
+      if (_hkeys == null || 2*(_hsize+1) > _hkeys.length) compact();
+      final int s = slot(i);
+      _hkeys[s] = i;
+      _hvals[s] = val;
+      _hsize++;
+    }
+    void add(int i, float val) {
+      final int p = Arrays.binarySearch(_idx, 0, _nnz, i);
+      if (p >= 0) _val[p] += val;
+      else set(i, get(i) + val);
+    }
+    // Slot holding index i, or the empty slot where it goes (linear probing)
+    private int slot(int i) {
+      final int mask = _hkeys.length - 1;
+      final int h = i * 0x9E3779B9;
+      int s = (h ^ (h >>> 16)) & mask;
+      while (_hkeys[s] != i && _hkeys[s] != -1) s = (s + 1) & mask;
+      return s;
+    }
+    private void append(int i, float val) {
+      if (_nnz == _idx.length) {
+        final int len = Math.max(4, _nnz << 1);
+        _idx = Arrays.copyOf(_idx, len);
+        _val = Arrays.copyOf(_val, len);
+      }
+      _idx[_nnz] = i;
+      _val[_nnz++] = val;
+    }
+    /**
+     * Merge the hashed inserts into the sorted arrays, and size the hash table
+     * for the next round of inserts to the line length, so merging stays
+     * amortized O(1) per insert.
+     */
+    SparseLine compact() {
+      if (_hsize > 0) {
+        final int[] keys = new int[_hsize];
+        for (int s = 0, k = 0; s < _hkeys.length; s++)
+          if (_hkeys[s] != -1) keys[k++] = _hkeys[s];
+        Arrays.sort(keys);
+        final int n = _nnz + keys.length;
+        final int[] idx = new int[n];
+        final float[] val = new float[n];
+        for (int i = 0, j = 0, o = 0; o < n; o++) {
+          if (j == keys.length || (i < _nnz && _idx[i] < keys[j])) { idx[o] = _idx[i]; val[o] = _val[i++]; }
+          else { idx[o] = keys[j]; val[o] = _hvals[slot(keys[j++])]; }
+        }
+        _idx = idx; _val = val; _nnz = n;
+      }
+      final int cap = Math.max(16, Integer.highestOneBit(Math.max(1, _nnz)) << 1);
+      if (_hkeys == null || _hkeys.length != cap) { _hkeys = new int[cap]; _hvals = new float[cap]; }
+      Arrays.fill(_hkeys, -1);
+      _hsize = 0;
+      return this;
+    }
+    SparseLine sorted() { return _hsize == 0 ? this : compact(); }
+  }
+
+  /**
+   * Sparse row matrix implementation (CSR-like, see {@link SparseLine})
    */
   public final static class SparseRowMatrix implements Matrix {
-    private TreeMap<Integer, Float>[] _rows;
+    private SparseLine[] _rows;
     private int _cols;
     SparseRowMatrix(int rows, int cols) { this(null, rows, cols); }
     SparseRowMatrix(Matrix v, int rows, int cols) {
-      _rows = new TreeMap[rows];
-      for (int row=0;row<rows;++row) _rows[row] = new TreeMap<Integer, Float>();
+      _rows = new SparseLine[rows];
+      for (int row=0;row<rows;++row) _rows[row] = new SparseLine();
       _cols = cols;
       if (v!=null)
         for (int row=0;row<rows;++row)
@@ -1413,40 +1857,42 @@ public abstract class Neurons {
             if (v.get(row,col) != 0f)
               add(row,col, v.get(row,col));
     }
-    @Override public float get(int row, int col) { Float v = _rows[row].get(col); if (v == null) return 0f; else return v; }
-    @Override public void add(int row, int col, float val) { set(row,col,get(row,col)+val); }
-    @Override public void set(int row, int col, float val) { _rows[row].put(col, val); }
+    @Override public float get(int row, int col) { assert(row<rows() && col<_cols); return _rows[row].get(col); }
+    @Override public void add(int row, int col, float val) { assert(row<rows() && col<_cols); _rows[row].add(col, val); }
+    @Override public void set(int row, int col, float val) { assert(row<rows() && col<_cols); _rows[row].set(col, val); }
     @Override public int cols() { return _cols; }
     @Override public int rows() { return _rows.length; }
     @Override public long size() { return (long)_rows.length*(long)_cols; }
-    TreeMap<Integer, Float> row(int row) { return _rows[row]; }
+    /** Non-zeros of a row, sorted by column */
+    SparseLine row(int row) { return _rows[row].sorted(); }
     public float[] raw() { throw new UnsupportedOperationException("raw access to the data in a sparse matrix is not implemented."); }
   }
 
   /**
-   * Sparse column matrix implementation
+   * Sparse column matrix implementation (CSC-like, see {@link SparseLine})
    */
   static final class SparseColMatrix implements Matrix {
-    private TreeMap<Integer, Float>[] _cols;
+    private SparseLine[] _cols;
     private int _rows;
     SparseColMatrix(int rows, int cols) { this(null, rows, cols); }
     SparseColMatrix(Matrix v, int rows, int cols) {
       _rows = rows;
-      _cols = new TreeMap[cols];
-      for (int col=0;col<cols;++col) _cols[col] = new TreeMap<Integer, Float>();
+      _cols = new SparseLine[cols];
+      for (int col=0;col<cols;++col) _cols[col] = new SparseLine();
       if (v!=null)
         for (int row=0;row<rows;++row)
           for (int col=0;col<cols;++col)
             if (v.get(row,col) != 0f)
               add(row,col, v.get(row,col));
     }
-    @Override public float get(int row, int col) { Float v = _cols[col].get(row); if (v == null) return 0f; else return v; }
-    @Override public void add(int row, int col, float val) { set(row,col,get(row,col)+val); }
-    @Override public void set(int row, int col, float val) { _cols[col].put(row, val); }
+    @Override public float get(int row, int col) { assert(row<_rows && col<cols()); return _cols[col].get(row); }
+    @Override public void add(int row, int col, float val) { assert(row<_rows && col<cols()); _cols[col].add(row, val); }
+    @Override public void set(int row, int col, float val) { assert(row<_rows && col<cols()); _cols[col].set(row, val); }
     @Override public int cols() { return _cols.length; }
     @Override public int rows() { return _rows; }
     @Override public long size() { return (long)_rows*(long)_cols.length; }
-    TreeMap<Integer, Float> col(int col) { return _cols[col]; }
+    /** Non-zeros of a column, sorted by row */
+    SparseLine col(int col) { return _cols[col].sorted(); }
     public float[] raw() { throw new UnsupportedOperationException("raw access to the data in a sparse matrix is not implemented."); }
   }
 }
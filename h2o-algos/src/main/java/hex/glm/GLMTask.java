@@ -129,6 +129,7 @@ public abstract class GLMTask<T extends GLMTask<T>> extends FrameTask<T> {
       super.chunkInit();
       _z = MemoryManager.malloc8d(_grad.length);
     }
+    @Override protected boolean useBlocks(){ return false; } // Needs its own processRow
     @Override public void processRow(long gid, double[] nums, int ncats, int[] cats, double [] responses) {
       double w = (responses[0] - _ymu) * _gPrimeMu;
       for( int i = 0; i < ncats; ++i ) _z[cats[i]] += w;
@@ -240,6 +241,7 @@ public abstract class GLMTask<T extends GLMTask<T>> extends FrameTask<T> {
     final boolean _computeGradient;
     final boolean _computeGram;
     public static final int N_THRESHOLDS = 50;
+    transient double [] _bEta, _bW, _bWz, _bGrad; // Per-row temporaries of processBlock
 
     public GLMIterationTask(Key jobKey, DataInfo dinfo, GLMModel.GLMParameters glm, boolean computeGram, boolean validate, boolean computeGradient, double [] beta, double ymu, double reg, float [] thresholds, H2OCountedCompleter cmp) {
       super(jobKey, dinfo,glm,cmp);
@@ -318,6 +320,104 @@ public abstract class GLMTask<T extends GLMTask<T>> extends FrameTask<T> {
       }
 
     }
+    @Override protected boolean useBlocks(){ return true; }
+
+    // Same as processRow, for a block of rows: eta, x'y and the gradient are
+    // accumulated a column at a time, only the link math is done per row, and
+    // the Gram gets blocked rank-k updates.
+    @Override protected void processBlock(Block b){
+      final int n = b._n;
+      if(_bW == null){
+        _bEta = MemoryManager.malloc8d(BLOCK_SIZE);
+        _bW = MemoryManager.malloc8d(BLOCK_SIZE);
+        _bWz = MemoryManager.malloc8d(BLOCK_SIZE);
+        _bGrad = MemoryManager.malloc8d(BLOCK_SIZE);
+      }
+      final double [] eta = _bEta, w = _bW, wz = _bWz, grad = _bGrad;
+      final int numStart = _dinfo.numStart();
+      final boolean gaussian = _glm.family == Family.gaussian;
+      final boolean needEta = _beta != null && (!gaussian || _validate || _computeGradient);
+      if(needEta) {
+        Arrays.fill(eta, 0, n, _beta[_beta.length-1]); // intercept
+        for(int [] cats:b._cats)
+          for(int i = 0; i < n; ++i)
+            if(cats[i] >= 0) eta[i] += _beta[cats[i]];
+        for(int j = 0; j < b._nums.length; ++j) {
+          final double [] x = b._nums[j];
+          final double bj = _beta[numStart+j];
+          for(int i = 0; i < n; ++i) eta[i] += bj*x[i];
+        }
+      }
+      final double [] ys = b._resp[0];
+      for(int i = 0; i < n; ++i){
+        if(!b._valid[i]){ w[i] = wz[i] = grad[i] = 0; continue; }
+        ++_nobs;
+        final double y = ys[i];
+        assert ((_glm.family != Family.gamma) || y > 0) : "illegal response column, y must be > 0  for family=Gamma.";
+        assert ((_glm.family != Family.binomial) || (0 <= y && y <= 1)) : "illegal response column, y must be <0,1>  for family=Binomial. got " + y;
+        final double wi, mu, z;
+        double d = 1;
+        if(gaussian){
+          wi = 1;
+          z = y;
+          mu = needEta?eta[i]:0;
+        } else {
+          final double e;
+          if( _beta == null ) {
+            mu = _glm.mustart(y, _ymu);
+            e = _glm.link(mu);
+          } else {
+            e = eta[i];
+            mu = _glm.linkInv(e);
+          }
+          final double var = Math.max(1e-5, _glm.variance(mu)); // avoid numerical problems with 0 variance
+          d = _glm.linkDeriv(mu);
+          z = e + (y-mu)*d;
+          wi = 1.0/(var*d*d);
+        }
+        if(_validate) {
+          _val.add(y, mu);
+          if(_glm.family == Family.binomial) {
+            int yi = (int) y;
+            if (_ti[yi] == _newThresholds[yi].length)
+              sampleThresholds(yi);
+            _newThresholds[yi][_ti[yi]++] = (float) mu;
+          }
+        }
+        assert wi >= 0|| Double.isNaN(wi) : "invalid weight " + wi; // allow NaNs - can occur if line-search is needed!
+        w[i] = wi;
+        wz[i] = wi*z;
+        _yy += wz[i]*z;
+        grad[i] = _computeGradient?wi*d*(mu-y):0;
+      }
+      if(!_computeGradient && !_computeGram) return;
+      for(int [] cats:b._cats)
+        for(int i = 0; i < n; ++i){
+          final int ii = cats[i];
+          if(ii < 0) continue;
+          _xy[ii] += wz[i];
+          if(_computeGradient)_grad[ii] += grad[i];
+        }
+      for(int j = 0; j < b._nums.length; ++j){
+        final double [] x = b._nums[j];
+        double sxy = 0, sgrad = 0;
+        for(int i = 0; i < n; ++i){
+          sxy += wz[i]*x[i];
+          sgrad += grad[i]*x[i];
+        }
+        _xy[numStart+j] += sxy;
+        if(_computeGradient)_grad[numStart+j] += sgrad;
+      }
+      double swz = 0, sgrad = 0;
+      for(int i = 0; i < n; ++i){
+        swz += wz[i];
+        sgrad += grad[i];
+      }
+      _xy[numStart + _dinfo._nums] += swz;
+      if(_computeGradient)_grad[numStart + _dinfo._nums] += sgrad;
+      if(_computeGram)_gram.addBlock(b._nums, b._cats, w, n); // invalid rows have zero weight
+    }
+
     @Override protected void chunkInit(){
       if(_computeGram)_gram = new Gram(_dinfo.fullN(), _dinfo.largestCat(), _dinfo._nums, _dinfo._cats,true);
       _xy = MemoryManager.malloc8d(_dinfo.fullN()+1); // + 1 is for intercept
@@ -677,6 +677,71 @@ public final class Gram extends Iced<Gram> {
     final int intercept = _hasIntercept?1:0;
     final int denseRowStart = _fullN - _denseN - _diagN - intercept; // we keep dense numbers at the right bottom of the matrix, -1 is for intercept
     final int denseColStart = _fullN - _denseN - intercept;
+    // nums X nums
+    for(int i = 0; i < _denseN; ++i) if(x[i] != 0) {
+      final double [] mrow = _xx[i+denseRowStart];
+      final double d = w*x[i];
+      for(int j = 0; j <= i; ++j)if(x[j] != 0)
+        mrow[j+denseColStart] += d*x[j];
+    }
+    addRowSparse(x, catN, catIndexes, w);
+  }
+
+  /** Rows per panel, and columns per tile, of the blocked dense update */
+  static final int PANEL = 128, TILE = 32;
+  private transient double [][] _wx; // Weighted panel of the blocked update
+
+  /**
+   * Add a block of rows, given column-major: x[i][r] is dense column i of row
+   * r, cats[c][r] the index of categorical column c of row r (or -1 for none),
+   * for rows r < n.  Same as addRow on every row, except rows of zero weight
+   * are skipped.  The dense X dense part, O(denseN^2) per row, is done PANEL
+   * rows at a time as a rank-k update (a SYRK), tiled so that the columns of
+   * one tile stay in cache; the categorical and intercept parts go row by row.
+   */
+  public final void addBlock(final double[][] x, final int[][] cats, final double[] w, final int n) {
+    final int intercept = _hasIntercept?1:0;
+    final int denseRowStart = _fullN - _denseN - _diagN - intercept;
+    final int denseColStart = _fullN - _denseN - intercept;
+    if(_denseN > 0) {
+      if(_wx == null) _wx = new double[_denseN][PANEL];
+      final double [][] wx = _wx;
+      for(int r0 = 0; r0 < n; r0 += PANEL) {
+        final int k = Math.min(PANEL, n - r0);
+        for(int i = 0; i < _denseN; ++i) {
+          final double [] xi = x[i], wxi = wx[i];
+          for(int r = 0; r < k; ++r) wxi[r] = w[r0+r]*xi[r0+r];
+        }
+        for(int ib = 0; ib < _denseN; ib += TILE)
+          for(int jb = 0; jb <= ib; jb += TILE)
+            for(int i = ib; i < Math.min(ib+TILE, _denseN); ++i) {
+              final double [] mrow = _xx[i+denseRowStart], wxi = wx[i];
+              final int jmax = Math.min(jb+TILE, i+1);
+              for(int j = jb; j < jmax; ++j) {
+                final double [] xj = x[j];
+                double s = 0;
+                for(int r = 0; r < k; ++r) s += wxi[r]*xj[r0+r];
+                mrow[j+denseColStart] += s;
+              }
+            }
+      }
+    }
+    final double [] row = MemoryManager.malloc8d(_denseN);
+    final int [] catIndexes = MemoryManager.malloc4(cats.length);
+    for(int r = 0; r < n; ++r) {
+      if(w[r] == 0) continue;
+      for(int i = 0; i < _denseN; ++i) row[i] = x[i][r];
+      int catN = 0;
+      for(int [] c:cats) if(c[r] >= 0) catIndexes[catN++] = c[r];
+      addRowSparse(row, catN, catIndexes, w[r]);
+    }
+  }
+
+  // Everything in addRow but the dense X dense part
+  private void addRowSparse(final double[] x, final int catN, final int [] catIndexes, final double w) {
+    final int intercept = _hasIntercept?1:0;
+    final int denseRowStart = _fullN - _denseN - _diagN - intercept; // we keep dense numbers at the right bottom of the matrix, -1 is for intercept
+    final int denseColStart = _fullN - _denseN - intercept;
 
     assert _denseN + denseRowStart == _xx.length-intercept;
     final double [] interceptRow = _hasIntercept?_xx[_denseN + denseRowStart]:null;
@@ -684,8 +749,6 @@ public final class Gram extends Iced<Gram> {
     for(int i = 0; i < _denseN; ++i) if(x[i] != 0) {
       final double [] mrow = _xx[i+denseRowStart];
       final double d = w*x[i];
-      for(int j = 0; j <= i; ++j)if(x[j] != 0)
-        mrow[j+denseColStart] += d*x[j];
       if(_hasIntercept)
         interceptRow[i+denseColStart] += d; // intercept*x[i]
       // nums * cats
@@ -12,6 +12,7 @@ import water.util.Log;
 import water.util.RandomUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Random;
 
 /**
@@ -30,6 +31,10 @@ public class KMeans extends ModelBuilder<KMeansModel,KMeansModel.KMeansParameter
   // Number of reinitialization attempts for preventing empty clusters
   transient private int _reinit_attempts;
 
+  // Past this many clusters, the all-pairs center distances computed on the
+  // driver before each pruned Lloyds pass cost more than they save
+  static final int MAX_PRUNED_K = 10000;
+
   // Called from an http request
   public KMeans( KMeansModel.KMeansParameters parms ) { super("K-means",parms); init(false); }
 
@@ -51,6 +56,7 @@ public class KMeans extends ModelBuilder<KMeansModel,KMeansModel.KMeansParameter
     super.init(expensive);
     if( _parms._K < 2 || _parms._K > 9999999 ) error("_K", "K must be between 2 and 10 million");
     if( _parms._max_iters < 1 || _parms._max_iters > 999999) error("_max_iters", "must be between 1 and a million");
+    if( _parms._mini_batch_size < 0 ) error("_mini_batch_size", "must be non-negative");
     if( _train == null ) return; // Nothing more to check
     if( _train.numRows() < _parms._K ) error("_K","Cannot make " + _parms._K + " clusters out of " + _train.numRows() + " rows.");
 
@@ -75,6 +81,7 @@ public class KMeans extends ModelBuilder<KMeansModel,KMeansModel.KMeansParameter
     @Override protected void compute2() {
 
       KMeansModel model = null;
+      Vec bounds[] = null;      // Per-row assigned cluster & lower bound, when pruning
       try {
         init(true);
         _parms.lock_frames(KMeans.this); // Fetch & read-lock input frames
@@ -138,70 +145,86 @@ public class KMeans extends ModelBuilder<KMeansModel,KMeansModel.KMeansParameter
         }
         model._output._iters = 0;     // Reset iteration count
 
-        // ---
-        // Run the main KMeans Clustering loop
-        // Stop after enough iterations
-        LOOP:
-        for( ; model._output._iters < _parms._max_iters; model._output._iters++ ) {
-          if( !isRunning() ) return; // Stopped/cancelled
-          Lloyds task = new Lloyds(clusters,means,mults,_ncats, _parms._K).doAll(vecs);
-          // Pick the max categorical level for clusters' center
-          max_cats(task._cMeans,task._cats);
-
-          // Handle the case where some clusters go dry.  Rescue only 1 cluster
-          // per iteration ('cause we only tracked the 1 worst row)
-          boolean badrow=false;
-          for( int clu=0; clu<_parms._K; clu++ ) {
-            if (task._rows[clu] == 0) {
-              // If we see 2 or more bad rows, just re-run Lloyds to get the
-              // next-worst row.  We don't count this as an iteration, because
-              // we're not really adjusting the centers, we're trying to get
-              // some centers *at-all*.
-              if (badrow) {
-                Log.warn("KMeans: Re-running Lloyds to re-init another cluster");
-                model._output._iters--; // Do not count against iterations
-                if (_reinit_attempts++ < _parms._K) {
-                  continue LOOP;  // Rerun Lloyds, and assign points to centroids
-                } else {
-                  _reinit_attempts = 0;
-                  break; //give up and accept empty cluster
+        if( _parms._mini_batch_size > 0 ) {
+          if( !miniBatch(model, vecs, clusters, means, mults) ) return; // Stopped/cancelled
+        } else {
+          // Working columns for the pruned Lloyds passes, and the centers their
+          // bounds refer to
+          double bounded[][] = null;
+          if( _parms._accelerated && _parms._K <= MAX_PRUNED_K )
+            bounds = new Vec[]{vecs[0].makeCon(-1), vecs[0].makeZero()};
+
+          // ---
+          // Run the main KMeans Clustering loop
+          // Stop after enough iterations
+          LOOP:
+          for( ; model._output._iters < _parms._max_iters; model._output._iters++ ) {
+            if( !isRunning() ) return; // Stopped/cancelled
+            Lloyds task = new Lloyds(clusters,means,mults,_ncats, _parms._K);
+            if( bounds == null ) task.doAll(vecs);
+            else {
+              task.prune(bounded).doAll(ArrayUtils.join(vecs,bounds));
+              bounded = ArrayUtils.deepClone(clusters);
+              Log.info("KMeans: Skipped the distance scan for "+task._pruned+" of "+_train.numRows()+" rows");
+            }
+            // Pick the max categorical level for clusters' center
+            max_cats(task._cMeans,task._cats);
+
+            // Handle the case where some clusters go dry.  Rescue only 1 cluster
+            // per iteration ('cause we only tracked the 1 worst row)
+            boolean badrow=false;
+            for( int clu=0; clu<_parms._K; clu++ ) {
+              if (task._rows[clu] == 0) {
+                // If we see 2 or more bad rows, just re-run Lloyds to get the
+                // next-worst row.  We don't count this as an iteration, because
+                // we're not really adjusting the centers, we're trying to get
+                // some centers *at-all*.
+                if (badrow) {
+                  Log.warn("KMeans: Re-running Lloyds to re-init another cluster");
+                  model._output._iters--; // Do not count against iterations
+                  if (_reinit_attempts++ < _parms._K) {
+                    continue LOOP;  // Rerun Lloyds, and assign points to centroids
+                  } else {
+                    _reinit_attempts = 0;
+                    break; //give up and accept empty cluster
+                  }
                 }
+                long row = task._worst_row;
+                Log.warn("KMeans: Re-initializing cluster " + clu + " to row " + row);
+                data(clusters[clu] = task._cMeans[clu], vecs, row, means, mults);
+                task._rows[clu] = 1;
+                badrow = true;
               }
-              long row = task._worst_row;
-              Log.warn("KMeans: Re-initializing cluster " + clu + " to row " + row);
-              data(clusters[clu] = task._cMeans[clu], vecs, row, means, mults);
-              task._rows[clu] = 1;
-              badrow = true;
             }
-          }
 
-          // Fill in the model; denormalized centers
-          model._output._clusters = denormalize(task._cMeans, _ncats, means, mults);
-          model._output._rows = task._rows;
-          model._output._mses = task._cSqr;
-          double ssq = 0;       // sum squared error
-          for( int i=0; i<_parms._K; i++ ) {
-            ssq += model._output._mses[i]; // sum squared error all clusters
-            model._output._mses[i] /= task._rows[i]; // mse per-cluster
+            // Fill in the model; denormalized centers
+            model._output._clusters = denormalize(task._cMeans, _ncats, means, mults);
+            model._output._rows = task._rows;
+            model._output._mses = task._cSqr;
+            double ssq = 0;       // sum squared error
+            for( int i=0; i<_parms._K; i++ ) {
+              ssq += model._output._mses[i]; // sum squared error all clusters
+              model._output._mses[i] /= task._rows[i]; // mse per-cluster
+            }
+            model._output._mse = ssq/_train.numRows(); // mse total
+            model.update(_key); // Update model in K/V store
+            update(1);          // One unit of work
+
+            // Compute change in clusters centers
+            double sum=0;
+            for( int clu=0; clu<_parms._K; clu++ )
+              sum += distance(clusters[clu],task._cMeans[clu],_ncats);
+            sum /= N;             // Average change per feature
+            Log.info("KMeans: Change in cluster centers="+sum);
+            if( sum < 1e-6 ) break;  // Model appears to be stable
+            clusters = task._cMeans; // Update cluster centers
+
+            StringBuilder sb = new StringBuilder();
+            sb.append("KMeans: iter: ").append(model._output._iters).append(", MSE=").append(model._output._mse);
+            for( int i=0; i<_parms._K; i++ )
+              sb.append(", ").append(task._cSqr[i]).append("/").append(task._rows[i]);
+            Log.info(sb);
           }
-          model._output._mse = ssq/_train.numRows(); // mse total
-          model.update(_key); // Update model in K/V store
-          update(1);          // One unit of work
-
-          // Compute change in clusters centers
-          double sum=0;
-          for( int clu=0; clu<_parms._K; clu++ )
-            sum += distance(clusters[clu],task._cMeans[clu],_ncats);
-          sum /= N;             // Average change per feature
-          Log.info("KMeans: Change in cluster centers="+sum);
-          if( sum < 1e-6 ) break;  // Model appears to be stable
-          clusters = task._cMeans; // Update cluster centers
-
-          StringBuilder sb = new StringBuilder();
-          sb.append("KMeans: iter: ").append(model._output._iters).append(", MSE=").append(model._output._mse);
-          for( int i=0; i<_parms._K; i++ )
-            sb.append(", ").append(task._cSqr[i]).append("/").append(task._rows[i]);
-          Log.info(sb);
         }
 
       } catch( Throwable t ) {
@@ -209,6 +232,11 @@ public class KMeans extends ModelBuilder<KMeansModel,KMeansModel.KMeansParameter
         cancel2(t);
         throw t;
       } finally {
+        if( bounds != null ) {
+          Futures fs = new Futures();
+          for( Vec v : bounds ) v.remove(fs);
+          fs.blockForPending();
+        }
         if( model != null ) model.unlock(_key);
         _parms.unlock_frames(KMeans.this);
         done();                 // Job done!
@@ -217,6 +245,70 @@ public class KMeans extends ModelBuilder<KMeansModel,KMeansModel.KMeansParameter
     }
   }
 
+  // -------------------------------------------------------------------------
+  // Mini-batch KMeans (Sculley, "Web-scale k-means clustering", WWW 2010):
+  // each iteration assigns a sample of about mini_batch_size rows to the
+  // current centers and moves every center towards its sampled rows, with a
+  // per-center learning rate of 1/(rows it has been given so far).  Folding a
+  // whole batch in at once is the same as Sculley's row-at-a-time update
+  // against cached assignments.  A final full pass assigns every row, for the
+  // cluster sizes and variances.  Returns false if the job was stopped.
+  private boolean miniBatch(KMeansModel model, Vec[] vecs, double[][] clusters, double[] means, double[] mults) {
+    final int K = _parms._K, N = vecs.length;
+    final double rate = Math.min(1.0, (double)_parms._mini_batch_size / _train.numRows());
+    long[] counts = new long[K];            // Rows folded into each center so far
+    long[][][] cats = null;                 // Histogram of cat levels per center so far
+    double[] batch_mses = new double[_parms._max_iters], changes = new double[_parms._max_iters];
+    for( ; model._output._iters < _parms._max_iters; model._output._iters++ ) {
+      if( !isRunning() ) return false; // Stopped/cancelled
+      int iter = model._output._iters;
+      MiniBatch mb = new MiniBatch(clusters, means, mults, _ncats, K, rate, _parms._seed + iter*0x9E3779B97F4A7C15L).doAll(vecs);
+      if( cats == null ) cats = mb._cats;
+      else ArrayUtils.add(cats, mb._cats);
+      double[][] next = ArrayUtils.deepClone(clusters);
+      long sampled = 0;
+      for( int clu = 0; clu < K; clu++ ) {
+        long m = mb._rows[clu];
+        if( m == 0 ) continue;
+        sampled += m;
+        counts[clu] += m;
+        for( int col = _ncats; col < N; col++ )
+          next[clu][col] += (mb._sums[clu][col] - m*next[clu][col]) / counts[clu];
+        for( int col = 0; col < _ncats; col++ ) // Cats use max level seen so far
+          next[clu][col] = ArrayUtils.maxIndex(cats[clu][col]);
+      }
+      double sum = 0;
+      for( int clu = 0; clu < K; clu++ )
+        sum += distance(clusters[clu], next[clu], _ncats);
+      sum /= N;                 // Average change per feature
+      clusters = next;
+      batch_mses[iter] = sampled == 0 ? 0 : mb._sqr / sampled;
+      changes[iter] = sum;
+      model._output._clusters = denormalize(clusters, _ncats, means, mults);
+      model._output._batch_mses = Arrays.copyOf(batch_mses, iter+1);
+      model._output._center_changes = Arrays.copyOf(changes, iter+1);
+      model._output._mse = batch_mses[iter];
+      model.update(_key);       // Update model in K/V store
+      update(1);                // One unit of work
+      Log.info("KMeans: mini-batch iter: "+iter+", rows="+sampled+", MSE="+batch_mses[iter]+", change in cluster centers="+sum);
+      if( sampled > 0 && sum < 1e-6 ) { model._output._iters++; break; } // Model appears to be stable
+    }
+
+    // Final full pass: assign every row to the mini-batch centers
+    if( !isRunning() ) return false; // Stopped/cancelled
+    Lloyds task = new Lloyds(clusters, means, mults, _ncats, K).doAll(vecs);
+    model._output._rows = task._rows;
+    model._output._mses = task._cSqr;
+    double ssq = 0;             // sum squared error
+    for( int i = 0; i < K; i++ ) {
+      ssq += model._output._mses[i];
+      model._output._mses[i] = task._rows[i] == 0 ? 0 : model._output._mses[i] / task._rows[i];
+    }
+    model._output._mse = ssq/_train.numRows();
+    model.update(_key);
+    return true;
+  }
+
   // -------------------------------------------------------------------------
   // Initial sum-of-square-distance to nearest cluster
   private static class SumSqr extends MRTask<SumSqr> {
@@ -298,18 +390,101 @@ public class KMeans extends ModelBuilder<KMeansModel,KMeansModel.KMeansParameter
     }
   }
 
+  // ---------------------------------------
+  // A mini-batch pass: about rate*len rows from each chunk, found by skipping
+  // geometrically distributed gaps, are assigned to their nearest center.
+  // Sums, cat histograms and counts of the sampled rows per center.
+  private static class MiniBatch extends MRTask<MiniBatch> {
+    // IN
+    double[][] _clusters;
+    double[] _means, _mults;      // Normalization
+    final int _ncats, _K;
+    final double _rate;           // Odds to sample a row
+    final long _seed;
+
+    // OUT
+    double[][] _sums;           // Sum of sampled rows per cluster
+    long[/*K*/][/*ncats*/][] _cats; // Histogram of cat levels
+    long[] _rows;               // Sampled rows per cluster
+    double _sqr;                // Sum of squares of the sampled rows
+
+    MiniBatch( double[][] clusters, double[] means, double[] mults, int ncats, int K, double rate, long seed ) {
+      _clusters = clusters;
+      _means = means;
+      _mults = mults;
+      _ncats = ncats;
+      _K = K;
+      _rate = rate;
+      _seed = seed;
+    }
+
+    @Override public void map(Chunk[] cs) {
+      int N = cs.length;
+      _sums = new double[_K][N];
+      _rows = new long[_K];
+      _cats = new long[_K][_ncats][];
+      for( int clu=0; clu<_K; clu++ )
+        for( int col=0; col<_ncats; col++ )
+          _cats[clu][col] = new long[cs[col].vec().cardinality()];
+      Random rand = RandomUtils.getRNG(_seed + cs[0].start());
+      double[] values = new double[N];
+      ClusterDist cd = new ClusterDist();
+      for( long row = skip(rand); row < cs[0]._len; row += 1+skip(rand) ) {
+        data(values, cs, (int)row, _means, _mults);
+        closest(_clusters, values, _ncats, cd);
+        int clu = cd._cluster;
+        _sqr += cd._dist;
+        for( int col = 0; col < _ncats; col++ )
+          _cats[clu][col][(int)values[col]]++;
+        for( int col = _ncats; col < N; col++ )
+          _sums[clu][col] += values[col];
+        _rows[clu]++;
+      }
+      _clusters = null;
+      _means = _mults = null;
+    }
+
+    // Rows to skip before the next sampled one
+    private long skip( Random rand ) {
+      if( _rate >= 1 ) return 0;
+      return (long)Math.min(Integer.MAX_VALUE, Math.floor(Math.log(rand.nextDouble()) / Math.log1p(-_rate)));
+    }
+
+    @Override public void reduce(MiniBatch mr) {
+      ArrayUtils.add(_sums, mr._sums);
+      ArrayUtils.add(_cats, mr._cats);
+      ArrayUtils.add(_rows, mr._rows);
+      _sqr += mr._sqr;
+    }
+  }
+
   // ---------------------------------------
   // A Lloyd's pass:
   //   Find nearest cluster for every point;
   //   Compute new mean/center & variance & rows for each cluster;
   //   Compute distance between clusters
   //   Compute total sqr distance
+  //
+  // A pruned pass (Hamerly's algorithm) also takes two working columns: each
+  // row's cluster from the last pass (-1 if unknown), and a lower bound on
+  // the (Euclidean, not squared) distance to any other center.  After the
+  // centers move, the bound drops by the largest move of another center.  If
+  // the distance to the row's own center is still below both that bound and
+  // half the distance from its center to the nearest other center, no other
+  // center can be as close, and the scan over all K centers is skipped.  The
+  // distance to the own center is always computed exactly, for the variance.
+  // The categorical 0/1 terms are squared distances between scaled one-hot
+  // vectors, so the triangle inequality holds for them too; rows with
+  // unimputed NaNs are always scanned in full.
 
   private static class Lloyds extends MRTask<Lloyds> {
     // IN
     double[][] _clusters;
     double[] _means, _mults;      // Normalization
     final int _ncats, _K;
+    boolean _prune;             // Last 2 columns are the working bounds
+    double[] _drift;            // Distance each center moved since the bounds were set
+    double[] _half;             // Half the distance to the nearest other center
 
     // OUT
     double[][] _cMeans;         // Means for each cluster
@@ -318,6 +493,7 @@ public class KMeans extends ModelBuilder<KMeansModel,KMeansModel.KMeansParameter
     long[] _rows;               // Rows per cluster
     long _worst_row;            // Row with max err
     double _worst_err;          // Max-err-row's max-err
+    long _pruned;               // Rows which skipped the scan over all centers
 
     Lloyds( double[][] clusters, double[] means, double[] mults, int ncats, int K ) {
       _clusters = clusters;
@@ -327,8 +503,24 @@ public class KMeans extends ModelBuilder<KMeansModel,KMeansModel.KMeansParameter
       _K = K;
     }
 
+    /** Make this a pruned pass; {@code bounded} are the centers the working
+     *  bounds refer to, or null on the first pass. */
+    Lloyds prune( double[][] bounded ) {
+      _prune = true;
+      _drift = new double[_K];
+      _half = new double[_K];
+      for( int clu = 0; clu < _K; clu++ ) {
+        if( bounded != null ) _drift[clu] = Math.sqrt(distance(bounded[clu],_clusters[clu],_ncats));
+        double min = Double.MAX_VALUE;
+        for( int c2 = 0; c2 < _K; c2++ )
+          if( c2 != clu ) min = Math.min(min,distance(_clusters[clu],_clusters[c2],_ncats));
+        _half[clu] = 0.5*Math.sqrt(min);
+      }
+      return this;
+    }
+
     @Override public void map(Chunk[] cs) {
-      int N = cs.length;
+      int N = _prune ? cs.length-2 : cs.length;
       assert _clusters[0].length==N;
       _cMeans = new double[_K][N];
       _cSqr = new double[_K];
@@ -340,12 +532,35 @@ public class KMeans extends ModelBuilder<KMeansModel,KMeansModel.KMeansParameter
           _cats[clu][col] = new long[cs[col].vec().cardinality()];
       _worst_err = 0;
 
+      // The largest and second largest center moves, to lower the bounds
+      Chunk assigned = null, lower = null;
+      int maxDrift = 0;
+      double drift2 = 0;
+      if( _prune ) {
+        assigned = cs[N];
+        lower = cs[N+1];
+        for( int clu = 1; clu < _K; clu++ )
+          if( _drift[clu] > _drift[maxDrift] ) maxDrift = clu;
+        for( int clu = 0; clu < _K; clu++ )
+          if( clu != maxDrift ) drift2 = Math.max(drift2,_drift[clu]);
+      }
+
       // Find closest cluster for each row
       double[] values = new double[N];
       ClusterDist cd = new ClusterDist();
       for( int row = 0; row < cs[0]._len; row++ ) {
         data(values, cs, row, _means, _mults);
-        closest(_clusters, values, _ncats, cd);
+        if( !_prune ) closest(_clusters, values, _ncats, cd);
+        else if( !pruned(assigned, lower, row, values, cd, maxDrift, drift2) ) {
+          if( hasNaN(values) ) {
+            closest(_clusters, values, _ncats, cd);
+            assigned.set0(row, -1);
+          } else {
+            closest2(_clusters, values, _ncats, cd);
+            assigned.set0(row, cd._cluster);
+            lower.set0(row, Math.sqrt(cd._dist2));
+          }
+        }
         int clu = cd._cluster;
         assert clu != -1; // No broken rows
         _cSqr[clu] += cd._dist;
@@ -364,6 +579,24 @@ public class KMeans extends ModelBuilder<KMeansModel,KMeansModel.KMeansParameter
         if( _rows[clu] != 0 ) ArrayUtils.div(_cMeans[clu],_rows[clu]);
       _clusters = null;
       _means = _mults = null;
+      _drift = _half = null;
+    }
+
+    // True if the row provably keeps its cluster; fills in cd and lowers the
+    // row's bound
+    private boolean pruned( Chunk assigned, Chunk lower, int row, double[] values, ClusterDist cd, int maxDrift, double drift2 ) {
+      int clu = (int)assigned.at80(row);
+      if( clu < 0 ) return false;
+      double lo = lower.at0(row) - (clu == maxDrift ? drift2 : _drift[maxDrift]);
+      double sqr = distance(_clusters[clu], values, _ncats);
+      // Strictly closer, with slack for rounding, so ties still go to the
+      // lowest numbered center as in a full scan
+      if( !(Math.sqrt(sqr) < Math.max(lo, _half[clu]) * (1-1e-9)) ) return false;
+      lower.set0(row, lo);
+      cd._cluster = clu;
+      cd._dist = sqr;
+      _pruned++;
+      return true;
     }
 
     @Override public void reduce(Lloyds mr) {
@@ -378,13 +611,20 @@ public class KMeans extends ModelBuilder<KMeansModel,KMeansModel.KMeansParameter
       ArrayUtils.add(_cats, mr._cats);
       ArrayUtils.add(_cSqr, mr._cSqr);
       ArrayUtils.add(_rows, mr._rows);
+      _pruned += mr._pruned;
       // track global worst-row
       if( _worst_err < mr._worst_err) { _worst_err = mr._worst_err; _worst_row = mr._worst_row; }
     }
   }
 
-  // A pair result: nearest cluster, and the square distance
-  private static final class ClusterDist { int _cluster; double _dist;  }
+  // A pair result: nearest cluster, and the square distance; closest2 also
+  // fills in the square distance to the second nearest
+  private static final class ClusterDist { int _cluster; double _dist, _dist2;  }
+
+  private static boolean hasNaN(double[] point) {
+    for( double d : point ) if( Double.isNaN(d) ) return true;
+    return false;
+  }
 
   private static double minSqr(double[][] clusters, double[] point, int ncats, ClusterDist cd) {
     return closest(clusters, point, ncats, cd, clusters.length)._dist;
@@ -445,6 +685,26 @@ public class KMeans extends ModelBuilder<KMeansModel,KMeansModel.KMeansParameter
     return cd;                  // Return for flow-coding
   }
 
+  /** Nearest cluster as {@link #closest(double[][],double[],int,ClusterDist)},
+   *  plus the square-distance to the second nearest. */
+  private static ClusterDist closest2(double[][] clusters, double[] point, int ncats, ClusterDist cd) {
+    int min = -1;
+    double minSqr = Double.MAX_VALUE, minSqr2 = Double.MAX_VALUE;
+    for( int cluster = 0; cluster < clusters.length; cluster++ ) {
+      double sqr = distance(clusters[cluster],point,ncats);
+      if( sqr < minSqr ) {      // Record nearest cluster
+        min = cluster;
+        minSqr2 = minSqr;
+        minSqr = sqr;
+      } else if( sqr < minSqr2 )
+        minSqr2 = sqr;
+    }
+    cd._cluster = min;
+    cd._dist = minSqr;
+    cd._dist2 = minSqr2;
+    return cd;
+  }
+
   // For KMeansModel scoring; just the closest cluster
   static int closest(double[][] clusters, double[] point, int ncats) {
     int min = -1;
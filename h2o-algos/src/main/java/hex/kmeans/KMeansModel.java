@@ -14,6 +14,8 @@ public class KMeansModel extends Model<KMeansModel,KMeansModel.KMeansParameters,
     public boolean _normalize = true;     // Normalize columns
     public long _seed = System.nanoTime(); // RNG seed
     public KMeans.Initialization _init = KMeans.Initialization.Furthest;
+    public boolean _accelerated = true;   // Skip distance work that cannot change a row's cluster
+    public int _mini_batch_size = 0;      // Rows sampled per iteration; 0 for full Lloyds passes
   }
 
   public static class KMeansOutput extends Model.Output {
@@ -37,6 +39,12 @@ public class KMeansModel extends Model<KMeansModel,KMeansModel.KMeansParameters,
     // Sum squared distance between each point and its cluster center, divided by rows.
     public double _mse;           // Total MSE, variance
 
+    // Mini-batch convergence, one entry per iteration (null for full Lloyds
+    // passes): the MSE of the sampled rows against the centers before the
+    // update, and the average change of the centers per feature.
+    public double[/*iters*/] _batch_mses;
+    public double[/*iters*/] _center_changes;
+
     public KMeansOutput( KMeans b ) { super(b); }
 
     /** Override because base class implements ncols-1 for features with the
@@ -76,6 +76,7 @@ public class DeepLearningV2 extends ModelBuilderSchema<DeepLearning,DeepLearning
         "col_major",
         "average_activation",
         "sparsity_beta",
+        "mini_batch_size",
       };
     }
 
@@ -543,6 +544,9 @@ public class DeepLearningV2 extends ModelBuilderSchema<DeepLearning,DeepLearning
     @API(help = "Max. number of categorical features, enforced via hashing (Experimental)", level = API.Level.expert, direction=API.Direction.INOUT)
     public int max_categorical_features = Integer.MAX_VALUE;
 
+    @API(help = "Number of training rows per weight update; more than 1 propagates mini-batches of rows together as matrix-matrix products", level = API.Level.expert, direction=API.Direction.INOUT)
+    public int mini_batch_size = 1;
+
     @API(help = "Force reproducibility on small data (will be slow - only uses 1 thread)", level = API.Level.expert, direction=API.Direction.INOUT)
     public boolean reproducible = false;
 
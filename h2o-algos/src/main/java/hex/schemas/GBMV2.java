@@ -22,7 +22,9 @@ public class GBMV2 extends ModelBuilderSchema<GBM,GBMV2,GBMV2.GBMParametersV2> {
         "learn_rate",
         "loss",
         "variable_importance",
-        "seed"}; }
+        "seed",
+        "prebin",
+        "subtract_histograms"}; }
 
     // Input fields
     @API(help="Number of trees.  Grid Search, comma sep values:50,100,150,200")
@@ -49,6 +51,12 @@ public class GBMV2 extends ModelBuilderSchema<GBM,GBMV2,GBMV2.GBMParametersV2> {
     @API(help = "Compute variable importance", level = API.Level.critical)
     public boolean variable_importance;
 
+    @API(help = "Bin the predictor columns once per model, instead of on every tree level", level = API.Level.expert)
+    public boolean prebin;
+
+    @API(help = "Gather histograms only for the smaller child of each split, and subtract them from the parent's for the other; children keep the parent's bin boundaries", level = API.Level.expert)
+    public boolean subtract_histograms;
+
     @Override public GBMParametersV2 fillFromImpl(GBMParameters parms) {
       super.fillFromImpl(parms);
       loss = GBMParameters.Family.AUTO;
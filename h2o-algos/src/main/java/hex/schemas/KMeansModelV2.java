@@ -29,6 +29,12 @@ public class KMeansModelV2 extends ModelSchema<KMeansModel, KMeansModel.KMeansPa
     @API(help="Number of categorical columns trained on")
     public int ncats;
 
+    @API(help="Mini-batch MSE per iteration")
+    public double[/*iters*/] batch_mses;
+
+    @API(help="Mini-batch average change of the cluster centers per iteration")
+    public double[/*iters*/] center_changes;
+
     @Override public KMeansModel.KMeansOutput createImpl() {
       KMeansModel.KMeansOutput impl = new KMeansModel.KMeansOutput(null);
       PojoUtils.copyProperties(impl, this, PojoUtils.FieldNaming.DEST_HAS_UNDERSCORES);
@@ -17,7 +17,9 @@ public class KMeansV2 extends ModelBuilderSchema<KMeans,KMeansV2,KMeansV2.KMeans
             "max_iters",
             "normalize",
             "seed",
-            "init" }; }
+            "init",
+            "accelerated",
+            "mini_batch_size" }; }
 
     // Input fields
     @API(help = "Number of clusters", required = true)
@@ -35,6 +37,12 @@ public class KMeansV2 extends ModelBuilderSchema<KMeans,KMeansV2,KMeansV2.KMeans
     @API(help = "Initialization mode", values = { "None", "PlusPlus", "Furthest" }) // TODO: pull out of enum class. . .
     public KMeans.Initialization init;
 
+    @API(help = "Prune distance computations with triangle-inequality bounds; the clusters are the same", level = API.Level.expert)
+    public boolean accelerated = true;
+
+    @API(help = "Rows sampled per iteration for mini-batch KMeans; 0 runs full Lloyds passes", level = API.Level.expert)
+    public int mini_batch_size;
+
     @Override public KMeansParametersV2 fillFromImpl(KMeansParameters parms) {
       super.fillFromImpl(parms);
       this.init = KMeans.Initialization.Furthest;
@@ -0,0 +1,83 @@
+package hex.tree;
+
+import water.Futures;
+import water.Iced;
+import water.MRTask;
+import water.fvec.Chunk;
+import water.fvec.Frame;
+import water.fvec.NewChunk;
+import water.fvec.Vec;
+
+/** Pre-binned predictor columns.
+ *
+ *  <p>A one-time pass bins every predictor column with its top-level
+ *  {@link DHistogram} (the histograms every tree's root starts from), and
+ *  keeps the bin numbers as compact byte/short Vecs for the life of the
+ *  model build.  {@link ScoreBuildHistogram} then bins a row by a plain
+ *  integer load, whenever a leaf's histogram for a column still has the
+ *  top-level binning, or a coarsening of it by merged bin pairs.  That always
+ *  holds at the root, deeper down for int and enum columns whose range did
+ *  not shrink, and everywhere when sibling histograms are subtracted; once a
+ *  leaf's range shrinks its bins are re-derived from the raw data as before.
+ *
+ *  <p>The bin numbers are the exact ones {@link DHistogram#bin} would compute,
+ *  so models are unchanged.
+ */
+public class BinCache extends Iced {
+  final float _min[], _step[];  // Binning of each column; NaN for uncached columns
+  final char  _nbin[];
+  transient Frame _bins;        // Bin numbers, one Vec per predictor column
+
+  BinCache( Frame fr, int ncols, DHistogram hs[] ) {
+    _min  = new float[ncols];
+    _step = new float[ncols];
+    _nbin = new char [ncols];
+    for( int c=0; c<ncols; c++ ) {
+      _min [c] = hs[c] == null ? Float.NaN : hs[c]._min;
+      _step[c] = hs[c] == null ? Float.NaN : hs[c]._step;
+      _nbin[c] = hs[c] == null ? 0 : hs[c]._nbin;
+    }
+    Vec vecs[] = new Vec[ncols];
+    System.arraycopy(fr.vecs(),0,vecs,0,ncols);
+    _bins = new BinTask(hs).doAll(ncols,new Frame(vecs)).outputFrame(null,null);
+  }
+
+  /** Bin all the predictor columns of a training frame for the histograms of
+   *  the tree roots. */
+  public static BinCache make( Frame fr, int ncols, int nbins ) {
+    return new BinCache(fr,ncols,DHistogram.initialHist(fr,ncols,nbins,new DHistogram[ncols],false,false));
+  }
+
+  /** If histogram {@code h} is on the cached grid of column {@code col},
+   *  coarsened s times by merging bin pairs (see {@link DHistogram#make(DHistogram,boolean)}),
+   *  the cached bin numbers shifted right by s are valid for {@code h};
+   *  returns s, or -1 for any other grid. */
+  int shift( int col, DHistogram h ) {
+    if( h._min != _min[col] ) return -1;
+    for( int s=0, nbin=_nbin[col]; nbin>0 && s<16; s++, nbin=(nbin+1)>>1 ) {
+      if( h._nbin == nbin && h._step*(1<<s) == _step[col] ) return s;
+      if( nbin == 1 ) break;
+    }
+    return -1;
+  }
+
+  public Vec[] vecs() { return _bins.vecs(); }
+
+  public void delete() {
+    Futures fs = new Futures();
+    for( Vec v : _bins.vecs() ) v.remove(fs);
+    fs.blockForPending();
+  }
+
+  private static class BinTask extends MRTask<BinTask> {
+    final DHistogram _hs[];
+    BinTask( DHistogram hs[] ) { _hs = hs; }
+    @Override public void map( Chunk cs[], NewChunk ncs[] ) {
+      for( int c=0; c<cs.length; c++ ) {
+        DHistogram h = _hs[c];
+        for( int row=0; row<cs[c]._len; row++ )
+          ncs[c].addNum(h == null ? 0 : h.bin((float)cs[c].at0(row)),0);
+      }
+    }
+  }
+}
@@ -56,7 +56,7 @@ class CompressedTree extends Keyed {
       int rmask = (nodeType & 0xC0) >> 2;
       int skip = 0;
       switch(lmask) {
-      case 0:  skip = ab.get1();  break;
+      case 0:  skip = ab.get1U(); break;
       case 1:  skip = ab.get2();  break;
       case 2:  skip = ab.get3();  break;
       case 3:  skip = ab.get4();  break;
@@ -19,6 +19,7 @@ public class DBinomHistogram extends DHistogram<DBinomHistogram> {
   public DBinomHistogram( String name, final int nbins, byte isInt, float min, float maxEx, long nelems, boolean doGrpSplit ) {
     super(name,nbins,isInt,min,maxEx,nelems,doGrpSplit);
   }
+  DBinomHistogram( DBinomHistogram h, boolean coarsen ) { super(h,coarsen); }
   @Override boolean isBinom() { return true; }
 
   @Override public double mean(int b) {
@@ -49,6 +50,12 @@ public class DBinomHistogram extends DHistogram<DBinomHistogram> {
     water.util.ArrayUtils.add(_sums,dsh._sums);
   }
 
+  // Parent minus sibling; exact, since the sums are counts
+  @Override void sub0( DBinomHistogram parent, DBinomHistogram sib, int shift ) {
+    for( int b=0; b<parent._nbin; b++ ) _sums[b>>shift] += parent._sums[b];
+    for( int b=0; b<_nbin; b++ ) _sums[b] -= sib._sums[b];
+  }
+
   // Compute a "score" for a column; lower score "wins" (is a better split).
   // Score is the sum of the MSEs when the data is split at a single point.
   // mses[1] == MSE for splitting between bins  0  and 1.
@@ -99,6 +99,21 @@ public abstract class DHistogram<TDH extends DHistogram> extends Iced {
     _nbin = (char)xbins;
     // Do not allocate the big arrays here; wait for scoreCols to pick which cols will be used.
   }
+  // A histogram on the grid of h, or on h's grid with every pair of bins
+  // merged.  Halving the step is exact in float, so a value lands in bin b>>1
+  // here whenever it lands in bin b of h - and the histogram of a row subset
+  // of h can be subtracted from h.
+  DHistogram( DHistogram h, boolean coarsen ) {
+    _isInt = h._isInt;
+    _name = h._name;
+    _doGrpSplit = h._doGrpSplit;
+    _min = h._min;
+    _maxEx = h._maxEx;
+    _min2 =  Float.MAX_VALUE;
+    _maxIn= -Float.MAX_VALUE;
+    _step = coarsen ? h._step*0.5f : h._step;
+    _nbin = (char)(coarsen ? (h._nbin+1)>>1 : h._nbin);
+  }
   abstract boolean isBinom();
 
   // Interpolate d to find bin#
@@ -106,14 +121,14 @@ public abstract class DHistogram<TDH extends DHistogram> extends Iced {
     if( Float.isNaN(col_data) ) return 0; // Always NAs to bin 0
     if (Float.isInfinite(col_data)) // Put infinity to most left/right bin
       if (col_data<0) return 0;
-      else return _bins.length-1;
+      else return _nbin-1;
     // When the model is exposed to new test data, we could have data that is
     // out of range of any bin - however this binning call only happens during
     // model-building.
     assert _min <= col_data && col_data < _maxEx : "Coldata "+col_data+" out of range "+this;
     int idx1  = (int)((col_data-_min)*_step);
-    assert 0 <= idx1 && idx1 <= _bins.length;
-    if( idx1 == _bins.length) idx1--; // Roundoff error allows idx1 to hit upper bound, so truncate
+    assert 0 <= idx1 && idx1 <= _nbin;
+    if( idx1 == _nbin ) idx1--; // Roundoff error allows idx1 to hit upper bound, so truncate
     return idx1;
   }
   float binAt( int b ) { return _min+b/_step; }
@@ -163,6 +178,24 @@ public abstract class DHistogram<TDH extends DHistogram> extends Iced {
     add0(dsh);
   }
 
+  // Fill in this histogram as parent minus sib, where sib holds a subset of
+  // the parent's rows and this histogram holds the rest.  Both are on the
+  // parent's grid, or both on its grid coarsened once.  Counts are exact;
+  // the min/max are the parent's, which bound the true ones.
+  abstract void sub0( TDH parent, TDH sib, int shift );
+  final void subtract( TDH parent, TDH sib ) {
+    assert _bins == null && sib._bins != null && parent._bins != null;
+    assert _nbin == sib._nbin && _step == sib._step && _min == sib._min && _min == parent._min;
+    int shift = _step == parent._step ? 0 : 1;
+    assert _step*(1<<shift) == parent._step;
+    init();
+    for( int b=0; b<parent._nbin; b++ ) _bins[b>>shift] += parent._bins[b];
+    for( int b=0; b<_nbin; b++ ) _bins[b] -= sib._bins[b];
+    _min2  = parent._min2 ;
+    _maxIn = parent._maxIn;
+    sub0(parent,sib,shift);
+  }
+
   // Inclusive min & max
   public float find_min  () { return _min2 ; }
   public float find_maxIn() { return _maxIn; }
@@ -195,6 +228,13 @@ public abstract class DHistogram<TDH extends DHistogram> extends Iced {
     return hs;
   }
 
+  // A histogram on the grid of h, optionally coarsened; see the constructor
+  static public DHistogram make( DHistogram h, boolean coarsen ) {
+    return h.isBinom()
+      ? new DBinomHistogram((DBinomHistogram)h,coarsen)
+      : new  DRealHistogram((DRealHistogram )h,coarsen);
+  }
+
   static public DHistogram make( String name, final int nbins, byte isInt, float min, float maxEx, long nelems, boolean doGrpSplit, boolean isBinom ) {
     return isBinom
       ? new DBinomHistogram(name,nbins,isInt,min,maxEx,nelems,doGrpSplit)
@@ -16,6 +16,7 @@ public class DRealHistogram extends DHistogram<DRealHistogram> {
   public DRealHistogram( String name, final int nbins, byte isInt, float min, float maxEx, long nelems, boolean doGrpSplit ) {
     super(name,nbins,isInt,min,maxEx,nelems,doGrpSplit);
   }
+  DRealHistogram( DRealHistogram h, boolean coarsen ) { super(h,coarsen); }
   @Override boolean isBinom() { return false; }
 
   @Override public double mean(int b) {
@@ -46,6 +47,11 @@ public class DRealHistogram extends DHistogram<DRealHistogram> {
     AtomicUtils.DoubleArray.add(_sums,b,y);
     AtomicUtils.DoubleArray.add(_ssqs,b,yy);
   }
+  // Same, for a histogram private to one thread: no atomics
+  void incr2( int b, double y, double yy ) {
+    _sums[b] += y;
+    _ssqs[b] += yy;
+  }
 
   // Merge two equal histograms together.
   // Done in a F/J reduce, so no synchronization needed.
@@ -54,6 +60,19 @@ public class DRealHistogram extends DHistogram<DRealHistogram> {
     ArrayUtils.add(_ssqs,dsh._ssqs);
   }
 
+  // Parent minus sibling; empty bins get exact zeros rather than roundoff
+  @Override void sub0( DRealHistogram parent, DRealHistogram sib, int shift ) {
+    for( int b=0; b<parent._nbin; b++ ) {
+      _sums[b>>shift] += parent._sums[b];
+      _ssqs[b>>shift] += parent._ssqs[b];
+    }
+    for( int b=0; b<_nbin; b++ ) {
+      if( _bins[b] == 0 ) { _sums[b] = _ssqs[b] = 0; continue; }
+      _sums[b] -= sib._sums[b];
+      _ssqs[b] = Math.max(_ssqs[b]-sib._ssqs[b],0);
+    }
+  }
+
   // Compute a "score" for a column; lower score "wins" (is a better split).
   // Score is the sum of the MSEs when the data is split at a single point.
   // mses[1] == MSE for splitting between bins  0  and 1.
@@ -29,6 +29,7 @@ public class DTree extends Iced {
   final char _nclass;    // #classes, or 1 for regression trees
   final int _min_rows;   // Fewest allowed rows in any split
   final long _seed;      // RNG seed; drives sampling seeds if necessary
+  final boolean _subtract; // Derive the larger of two sibling histograms from the parent's
   private Node[] _ns;    // All the nodes in the tree.  Node 0 is the root.
   public int _len;       // Resizable array
   // Public stats about tree
@@ -36,8 +37,9 @@ public class DTree extends Iced {
   public int _depth;
 
   public DTree( String[] names, int ncols, char nbins, char nclass, int min_rows ) { this(names,ncols,nbins,nclass,min_rows,-1); }
-  public DTree( String[] names, int ncols, char nbins, char nclass, int min_rows, long seed ) {
-    _names = names; _ncols = ncols; _nbins=nbins; _nclass=nclass; _min_rows = min_rows; _ns = new Node[1]; _seed = seed; 
+  public DTree( String[] names, int ncols, char nbins, char nclass, int min_rows, long seed ) { this(names,ncols,nbins,nclass,min_rows,seed,false); }
+  public DTree( String[] names, int ncols, char nbins, char nclass, int min_rows, long seed, boolean subtract ) {
+    _names = names; _ncols = ncols; _nbins=nbins; _nclass=nclass; _min_rows = min_rows; _ns = new Node[1]; _seed = seed; _subtract = subtract;
   }
 
   public final Node root() { return _ns[0]; }
@@ -151,11 +153,31 @@ public class DTree extends Iced {
     // (for being constant data from a prior split), then that column will be
     // null in the returned array.
     public DHistogram[] split( int way, char nbins, int min_rows, DHistogram hs[], float splat ) {
+      return split(way,nbins,min_rows,hs,splat,false);
+    }
+    // With 'subtract', both children keep the parent's grid (halving the bin
+    // count by merging bin pairs, instead of re-binning the observed range),
+    // and track the same columns - so the parent's histograms minus either
+    // child's are exactly the other child's.
+    public DHistogram[] split( int way, char nbins, int min_rows, DHistogram hs[], float splat, boolean subtract ) {
       long n = way==0 ? _n0 : _n1;
       if( n < min_rows || n <= 1 ) return null; // Too few elements
       double se = way==0 ? _se0 : _se1;
       if( se <= 1e-30 ) return null; // No point in splitting a perfect prediction
 
+      if( subtract ) {
+        int cnt=0;
+        DHistogram nhists[] = new DHistogram[hs.length];
+        for( int j=0; j<hs.length; j++ ) {
+          DHistogram h = hs[j];
+          if( h == null ) continue;
+          if( h._bins != null && h.find_maxIn() == h.find_min() ) continue; // This column will not split again
+          nhists[j] = DHistogram.make(h,h.nbins()>>1 >= Math.max(nbins,2));
+          cnt++;
+        }
+        return cnt == 0 ? null : nhists;
+      }
+
       // Build a next-gen split point from the splitting bin
       int cnt=0;                  // Count of possible splits
       DHistogram nhists[] = new DHistogram[hs.length]; // A new histogram set
@@ -233,6 +255,11 @@ public class DTree extends Iced {
   // any split-decision.
   public static abstract class UndecidedNode extends Node {
     public transient DHistogram[] _hs;
+    // Set when this node's histograms are not gathered from the data, but are
+    // the parent's histograms (kept here until then) minus the sibling's.
+    public boolean _derived;
+    transient DHistogram[] _parentHs;
+    transient int _sibling;
     public final int _scoreCols[];      // A list of columns to score; could be null for all
     public UndecidedNode( DTree tree, int pid, DHistogram[] hs ) {
       super(tree,pid);
@@ -247,6 +274,17 @@ public class DTree extends Iced {
     // Make the parent of this Node use a -1 NID to prevent the split that this
     // node otherwise induces.  Happens if we find out too-late that we have a
     // perfect prediction here, and we want to turn into a leaf.
+    // Fill in this node's derived histograms from the parent's and the
+    // sibling's, once the sibling's have been gathered.
+    public void derive( DHistogram hs[], DHistogram sibHs[] ) {
+      assert _derived && _parentHs != null;
+      for( int j=0; j<hs.length; j++ )
+        if( hs[j] != null )
+          hs[j].subtract(_parentHs[j],sibHs[j]);
+      _parentHs = null;
+    }
+    public int sibling() { return _sibling; }
+
     public void do_not_split( ) {
       if( _pid == -1 ) return; // skip root
       DecidedNode dn = _tree.decided(_pid);
@@ -370,10 +408,19 @@ public class DTree extends Iced {
 
       for( int b=0; b<2; b++ ) { // For all split-points
         // Setup for children splits
-        DHistogram nhists[] = _split.split(b,nbins,min_rows,hs,_splat);
+        DHistogram nhists[] = _split.split(b,nbins,min_rows,hs,_splat,_tree._subtract);
         assert nhists==null || nhists.length==_tree._ncols;
         _nids[b] = nhists == null ? -1 : makeUndecidedNode(nhists)._nid;
       }
+      // Only the child with fewer rows gets histograms from the data; the
+      // other one is the difference.
+      if( _tree._subtract && _nids[0] != -1 && _nids[1] != -1 ) {
+        int small = _split._n0 <= _split._n1 ? 0 : 1;
+        UndecidedNode big = _tree.undecided(_nids[1-small]);
+        big._derived = true;
+        big._parentHs = hs;
+        big._sibling = _nids[small];
+      }
     }
 
     // Bin #.
@@ -538,99 +585,68 @@ public class DTree extends Iced {
     return new CompressedTree(ab.buf(),_nclass,_seed,tid,cls);
   }
 
-  private static final SB TO_JAVA_BENCH_FUNC = new SB().
-      nl().
-      p("  /**").nl().
-      p("   * Run a predict() benchmark with the generated model and some synthetic test data.").nl().
-      p("   *").nl().
-      p("   * @param iters number of iterations to run; each iteration predicts on every sample (i.e. row) in the test data").nl().
-      p("   * @param data test data to predict on").nl().
-      p("   * @param preds output predictions").nl().
-      p("   * @param ntrees number of trees").nl().
-      p("   */").nl().
-      p("  public void bench(int iters, double[][] data, float[] preds, int ntrees) {").nl().
-      p("    System.out.println(\"Iterations: \" + iters);").nl().
-      p("    System.out.println(\"Data rows : \" + data.length);").nl().
-      p("    System.out.println(\"Trees     : \" + ntrees + \"x\" + (preds.length-1));").nl().
-      nl().
-      p("    long startMillis;").nl().
-      p("    long endMillis;").nl().
-      p("    long deltaMillis;").nl().
-      p("    double deltaSeconds;").nl().
-      p("    double samplesPredicted;").nl().
-      p("    double samplesPredictedPerSecond;").nl().
-      p("    System.out.println(\"Starting timing phase of \"+iters+\" iterations...\");").nl().
-      nl().
-      p("    startMillis = System.currentTimeMillis();").nl().
-      p("    for (int i=0; i<iters; i++) {").nl().
-      p("      // Uncomment the nanoTime logic for per-iteration prediction times.").nl().
-      p("      // long startTime = System.nanoTime();").nl().
-      nl().
-      p("      for (double[] row : data) {").nl().
-      p("        predict(row, preds);").nl().
-      p("        // System.out.println(java.util.Arrays.toString(preds) + \" : \" + (DOMAINS[DOMAINS.length-1]!=null?(DOMAINS[DOMAINS.length-1][(int)preds[0]]+\"~\"+DOMAINS[DOMAINS.length-1][(int)row[row.length-1]]):(preds[0] + \" ~ \" + row[row.length-1])) );").nl().
-      p("      }").nl().
-      nl().
-      p("      // long ttime = System.nanoTime()-startTime;").nl().
-      p("      // System.out.println(i+\". iteration took \" + (ttime) + \"ns: scoring time per row: \" + ttime/data.length +\"ns, scoring time per row and tree: \" + ttime/data.length/ntrees + \"ns\");").nl().
-      nl().
-      p("      if ((i % 1000) == 0) {").nl().
-      p("        System.out.println(\"finished \"+i+\" iterations (of \"+iters+\")...\");").nl().
-      p("      }").nl().
-      p("    }").nl().
-      p("    endMillis = System.currentTimeMillis();").nl().
-      nl().
-      p("    deltaMillis = endMillis - startMillis;").nl().
-      p("    deltaSeconds = (double)deltaMillis / 1000.0;").nl().
-      p("    samplesPredicted = data.length * iters;").nl().
-      p("    samplesPredictedPerSecond = samplesPredicted / deltaSeconds;").nl().
-      p("    System.out.println(\"finished in \"+deltaSeconds+\" seconds.\");").nl().
-      p("    System.out.println(\"samplesPredicted: \" + samplesPredicted);").nl().
-      p("    System.out.println(\"samplesPredictedPerSecond: \" + samplesPredictedPerSecond);").nl().
-      p("  }").nl().
-  nl();
-
+  /** Java code for one tree: a class with a {@code static float
+   *  predict(double[] data)} method, the tree as one nested ternary
+   *  expression.  NAs go left, as in {@link CompressedTree#score}.
+   *
+   *  <p>Past MAX_NODES decision nodes, subtrees spill into methods of their
+   *  own, so no method grows past HotSpot's 8000-byte huge-method limit (and
+   *  stays interpreted); past SUBTREES_PER_CLASS those methods spill into
+   *  extra classes named {@code <className>_<n>}, keeping constant pools small.
+   */
   static class TreeJCodeGen extends TreeVisitor<RuntimeException> {
-    public static final int MAX_NODES = (1 << 12) / 4; // limit for a number decision nodes
-    final byte  _bits[]  = new byte [100];
-    final float _fs  []  = new float[100];
-    final SB    _sbs []  = new SB   [100];
-    final int   _nodesCnt[] = new int  [100];
-    SB _sb;
-    SB _csb;
-    SB _grpsplit;
-
-    int _subtrees = 0;
-    int _grpcnt = 0;
-
-    public TreeJCodeGen(SharedTreeModel tm, CompressedTree ct, SB sb) {
+    static final int MAX_NODES = 150;          // Decision nodes per method, about 30 bytecodes each
+    static final int SUBTREES_PER_CLASS = 100; // Subtree methods per class
+    private final String _className;
+    private final ArrayList<SB> _classes = new ArrayList<>(); // Bodies of the tree's classes
+    private byte  _bits[] = new byte [16]; // Per depth: 1 - test done, 2 - left leaf pending, 3 - left subtree done
+    private float _fs  [] = new float[16]; // Per depth: pending left leaf
+    private SB    _sbs [] = new SB   [16]; // Per depth: enclosing method's code, if a subtree starts here
+    private int   _subs[] = new int  [16]; // Per depth: index of the subtree starting here
+    private int   _nodesCnt[] = new int[16]; // Per depth: enclosing method's node count
+    private SB _sb;               // Code of the current method
+    private int _subtrees;        // Number of methods so far
+
+    TreeJCodeGen( SharedTreeModel tm, CompressedTree ct, String className ) {
       super(tm, ct);
-      _sb = sb;
-      _csb = new SB();
-      _grpsplit = new SB();
+      _className = className;
+    }
+
+    // Name of the class holding subtree method k
+    private String className( int k ) {
+      int p = k/SUBTREES_PER_CLASS;
+      return p==0 ? _className : _className+"_"+p;
     }
 
-    // code preamble
-    protected void preamble(SB sb, int subtree) throws RuntimeException {
-      String subt = subtree>0?String.valueOf(subtree):"";
-      sb.i().p("static final ").p(SharedTreeModel.PRED_TYPE).p(" predict").p(subt).p("(double[] data) {").nl().ii(1); // predict method for one tree
-      sb.i().p(SharedTreeModel.PRED_TYPE).p(" pred = ");
+    // Method k starts: "static final float predictK(double[] data) { float pred ="
+    private SB preamble( int k ) {
+      while( _classes.size() <= k/SUBTREES_PER_CLASS ) _classes.add(new SB().ii(1));
+      SB sb = new SB().ci(_classes.get(k/SUBTREES_PER_CLASS));
+      sb.i().p("static final ").p(SharedTreeModel.PRED_TYPE).p(" predict").p(k==0 ? "" : String.valueOf(k)).p("(double[] data) {").nl().ii(1);
+      sb.i().p(SharedTreeModel.PRED_TYPE).p(" pred =");
+      return sb;
     }
 
-    // close the code
-    protected void closure(SB sb) throws RuntimeException {
+    // Method k ends, and goes to its class
+    private void closure( SB sb, int k ) {
       sb.p(";").nl();
-      sb.i(1).p("return pred;").nl().di(1);
+      sb.i().p("return pred;").nl().di(1);
       sb.i().p("}").nl();
-      // sb.p(_grpsplit).di(1);
+      _classes.get(k/SUBTREES_PER_CLASS).p(sb);
     }
 
-    @Override protected void pre( int col, float fcmp, IcedBitSet gcmp, int equal ) {
-      if(equal == 2 || equal == 3 && gcmp != null) {
-        _grpsplit.i(1).p("// ").p(gcmp.toString()).nl();
-        _grpsplit.i(1).p("public static final byte[] GRPSPLIT").p(_grpcnt).p(" = new byte[] ").p(gcmp.toStrArray()).p(";").nl();
-      }
+    private void grow() {
+      if( _depth < _bits.length ) return;
+      int len = _bits.length<<1;
+      _bits = Arrays.copyOf(_bits,len);
+      _fs   = Arrays.copyOf(_fs  ,len);
+      _sbs  = Arrays.copyOf(_sbs ,len);
+      _subs = Arrays.copyOf(_subs,len);
+      _nodesCnt = Arrays.copyOf(_nodesCnt,len);
+    }
 
+    @Override protected void pre( int col, float fcmp, IcedBitSet gcmp, int equal ) {
+      grow();
       if( _depth > 0 ) {
         int b = _bits[_depth-1];
         assert b > 0 : Arrays.toString(_bits)+"\n"+_sb.toString();
@@ -639,32 +655,30 @@ public class DTree extends Iced {
         if( b==2         ) _sb.p(' ').pj(_fs[_depth-1]); // Dump the leaf containing float value
         if( b==2 || b==3 ) _sb.p('\n').i(_depth).p(":");
       }
-      if (_nodes>MAX_NODES) {
-        _sb.p("predict").p(_subtrees).p("(data)");
+      if( _nodes > MAX_NODES ) {  // Spill this subtree into a method of its own
+        int k = _subtrees++;
+        _sb.p(' ').p(className(k)).p(".predict").p(k).p("(data)");
         _nodesCnt[_depth] = _nodes;
         _sbs[_depth] = _sb;
-        _sb = new SB();
+        _subs[_depth] = k;
+        _sb = preamble(k);
         _nodes = 0;
-        preamble(_sb, _subtrees);
-        _subtrees++;
       }
       // All NAs are going always to the left
       _sb.p(" (Double.isNaN(data[").p(col).p("]) || ");
-      if(equal == 0 || equal == 1) {
+      if( equal == 0 || equal == 1 ) {
         String scmp = _tm.isFromSpeeDRF() ? "<= " : "< ";
-        _sb.p("(float) data[").p(col).p(" /* ").p(_tm._output._names[col]).p(" */").p("] ").p(equal == 1 ? "!= " : scmp).pj(fcmp); // then left and then right (left is !=)
+        _sb.p("(float) data[").p(col).p(" /* ").p(JCodeGen.toJavaComment(_tm._output._names[col])).p(" */").p("] ").p(equal == 1 ? "!= " : scmp).pj(fcmp); // then left and then right (left is !=)
       } else {
-        //_sb.p("!water.genmodel.GeneratedModel.grpContains(GRPSPLIT").p(_grpcnt).p(", ").p(gcmp._offset).p(", (int) data[").p(col).p(" /* ").p(_tm._names[col]).p(" */").p("])");
-        _grpcnt++;
-        throw H2O.unimpl();     // TODO: fold offset into IcedBitSet
+        throw H2O.unimpl();     // Group splits: not made by the tree builders
       }
       assert _bits[_depth]==0;
       _bits[_depth]=1;
     }
-    @Override protected void leaf( float pred  ) {
+    @Override protected void leaf( float pred ) {
       assert _depth==0 || _bits[_depth-1] > 0 : Arrays.toString(_bits); // it can be degenerated tree
-      if( _depth==0) { // it is de-generated tree
-        _sb.pj(pred);
+      if( _depth==0 ) {           // it is de-generated tree
+        _sb.p(' ').pj(pred);
       } else if( _bits[_depth-1] == 1 ) { // No prior leaf; just memorize this leaf
         _bits[_depth-1]=2; _fs[_depth-1]=pred;
       } else {          // Else==2 (prior leaf) or 3 (prior tree)
@@ -676,20 +690,25 @@ public class DTree extends Iced {
     @Override protected void post( int col, float fcmp, int equal ) {
       _sb.p(')');
       _bits[_depth]=0;
-      if (_sbs[_depth]!=null) {
-        closure(_sb);
-        _csb.p(_sb);
+      if( _sbs[_depth] != null ) { // Subtree method done
+        closure(_sb, _subs[_depth]);
         _sb = _sbs[_depth];
         _nodes = _nodesCnt[_depth];
         _sbs[_depth] = null;
       }
     }
-    public void generate() {
-      preamble(_sb, _subtrees++);   // TODO: Need to pass along group split BitSet
+
+    /** Append the tree's classes to sb */
+    SB generate( SB sb ) {
+      _sb = preamble(_subtrees++);
       visit();
-      closure(_sb);
-      _sb.p(_grpsplit).di(1);
-      _sb.p(_csb);
+      closure(_sb, 0);
+      for( int p=0; p<_classes.size(); p++ ) {
+        sb.i().p("class ").p(p==0 ? _className : _className+"_"+p).p(" {").nl();
+        sb.p(_classes.get(p));
+        sb.i().p("}").nl();
+      }
+      return sb;
     }
   }
 }
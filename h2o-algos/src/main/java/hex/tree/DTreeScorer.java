@@ -8,6 +8,7 @@ public abstract class DTreeScorer<T extends DTreeScorer<T>> extends MRTask<T> {
   protected final int _nclass;
   protected final Key[][] _treeKeys;
   protected transient CompressedTree[][] _trees;
+  protected transient FlatForest _forest; // Same trees, flattened for scoring
 
   public DTreeScorer(int ncols, int nclass, Key[][] treeKeys) {
     _ncols = ncols;
@@ -27,6 +28,7 @@ public abstract class DTreeScorer<T extends DTreeScorer<T>> extends MRTask<T> {
         if (treek[i]!=null)
           _trees[t][i] = DKV.get(treek[i]).get();
     }
+    _forest = new FlatForest(_trees);
   }
 
   protected final Chunk chk_oobt(Chunk chks[]) { return chks[_ncols+1+_nclass+_nclass+_nclass]; }
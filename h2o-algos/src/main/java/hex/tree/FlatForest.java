@@ -0,0 +1,217 @@
+package hex.tree;
+
+import java.util.Arrays;
+import water.AutoBuffer;
+import water.DKV;
+import water.H2O;
+import water.Key;
+
+/** Flat-array copy of a forest, for scoring.
+ *
+ *  <p>{@link CompressedTree} is compact to store and ship, but scoring it
+ *  decodes the node type, column and split value of every node on the path,
+ *  for every row.  Here every tree is decoded once into structure-of-arrays
+ *  node tables shared by the whole forest: column, float threshold, operator
+ *  and int children per node.  A child is a node index if non-negative, or
+ *  {@code ~leaf} for an index into the leaf values.  Group (categorical
+ *  bitset) splits keep their bits in one shared byte array.
+ *
+ *  <p>Scoring gives the same float sums as {@link CompressedTree#score}
+ *  added up tree after tree, including NaNs going left.  The block API walks
+ *  a whole block of rows through one tree before moving to the next, so each
+ *  tree's nodes stay in cache.
+ */
+public final class FlatForest {
+  static final int NO_TREE = Integer.MIN_VALUE; // Root of a missing (null) tree
+
+  private final int _ntrees, _nclass;
+  private final int _roots[];   // Root per tree and class, _roots[t*_nclass+c]
+
+  // Node tables
+  private int   _nodes;
+  private int   _col[];
+  private float _split[];
+  private byte  _op[];          // 0: <, 1: ==, 2: group
+  private int   _left[], _rite[];
+  private int   _grp[];         // Group of a group split; null if there are none
+
+  // Leaf predictions
+  private int   _nleaves;
+  private float _leaf[];
+
+  // Group splits: levels _grpLo..._grpLo+_grpLen-1, bits at _grpOff in _grpBits
+  private int   _ngrps;
+  private int   _grpLo[], _grpLen[], _grpOff[];
+  private byte  _grpBits[];
+
+  /** Decode the trees of a model; keys may contain nulls. */
+  public FlatForest( Key treeKeys[][] ) { this(fetch(treeKeys)); }
+
+  FlatForest( CompressedTree trees[][] ) {
+    _ntrees = trees.length;
+    _nclass = _ntrees == 0 ? 0 : trees[0].length;
+    _roots = new int[_ntrees*_nclass];
+    _col = new int[16]; _split = new float[16]; _op = new byte[16];
+    _left = new int[16]; _rite = new int[16];
+    _leaf = new float[16];
+    for( int t=0; t<_ntrees; t++ )
+      for( int c=0; c<_nclass; c++ )
+        _roots[t*_nclass+c] = trees[t][c] == null ? NO_TREE : decodeRoot(trees[t][c]._bits);
+  }
+
+  private static CompressedTree[][] fetch( Key treeKeys[][] ) {
+    CompressedTree trees[][] = new CompressedTree[treeKeys.length][];
+    for( int t=0; t<treeKeys.length; t++ ) {
+      trees[t] = new CompressedTree[treeKeys[t].length];
+      for( int c=0; c<trees[t].length; c++ )
+        if( treeKeys[t][c] != null )
+          trees[t][c] = DKV.get(treeKeys[t][c]).get();
+    }
+    return trees;
+  }
+
+  public int ntrees() { return _ntrees; }
+  /** Trees per boosting round: 1 for regression, else the number of classes */
+  public int nclasses() { return _nclass; }
+
+  // ------------------------------------------------------------------------
+  // Decoding, following the layout documented in CompressedTree
+
+  private int decodeRoot( byte bits[] ) {
+    AutoBuffer ab = new AutoBuffer(bits);
+    ab.get1();
+    if( ab.get2() == 65535 ) return leaf(ab.get4f()); // Tree stump
+    return decode(new AutoBuffer(bits),bits);
+  }
+
+  private int decode( AutoBuffer ab, byte bits[] ) {
+    int nodeType = ab.get1();
+    int col = ab.get2();
+    int equal = (nodeType&12) >> 2;
+    int nid = node();
+    _col[nid] = col;
+    _op[nid] = (byte)Math.min(equal,2);
+    if( equal == 0 || equal == 1 ) _split[nid] = ab.get4f();
+    else {
+      int off = (equal == 3) ? ab.get2() : 0; // Number of zero levels skipped
+      int sz  = (equal == 3) ? ab.get2() : 4; // Bytes of the bitset
+      group(nid,bits,ab.position(),sz,off);
+      ab.skip(sz);
+    }
+    int lmask =  nodeType & 0x33;
+    int rmask = (nodeType & 0xC0) >> 2;
+    switch( lmask ) {           // Left subtree size; not needed here
+    case 0:  ab.get1();  break;
+    case 1:  ab.get2();  break;
+    case 2:  ab.get3();  break;
+    case 3:  ab.get4();  break;
+    default: break;             // Left leaf
+    }
+    int left = (lmask&16)==16 ? leaf(ab.get4f()) : decode(ab,bits);
+    int rite = (rmask&16)==16 ? leaf(ab.get4f()) : decode(ab,bits);
+    _left[nid] = left;
+    _rite[nid] = rite;
+    return nid;
+  }
+
+  private int node() {
+    if( _nodes == _col.length ) {
+      int len = _nodes<<1;
+      _col   = Arrays.copyOf(_col  ,len);
+      _split = Arrays.copyOf(_split,len);
+      _op    = Arrays.copyOf(_op   ,len);
+      _left  = Arrays.copyOf(_left ,len);
+      _rite  = Arrays.copyOf(_rite ,len);
+      if( _grp != null ) _grp = Arrays.copyOf(_grp,len);
+    }
+    return _nodes++;
+  }
+
+  private int leaf( float pred ) {
+    if( _nleaves == _leaf.length ) _leaf = Arrays.copyOf(_leaf,_nleaves<<1);
+    _leaf[_nleaves] = pred;
+    return ~_nleaves++;
+  }
+
+  private void group( int nid, byte bits[], int pos, int sz, int off ) {
+    if( _grp == null ) {
+      _grp = new int[_col.length];
+      _grpLo = new int[4]; _grpLen = new int[4]; _grpOff = new int[4];
+      _grpBits = new byte[16];
+    }
+    if( _ngrps == _grpLo.length ) {
+      _grpLo  = Arrays.copyOf(_grpLo ,_ngrps<<1);
+      _grpLen = Arrays.copyOf(_grpLen,_ngrps<<1);
+      _grpOff = Arrays.copyOf(_grpOff,_ngrps<<1);
+    }
+    int boff = _ngrps == 0 ? 0 : _grpOff[_ngrps-1] + (_grpLen[_ngrps-1]>>3);
+    if( boff+sz > _grpBits.length ) _grpBits = Arrays.copyOf(_grpBits,Math.max(_grpBits.length<<1,boff+sz));
+    System.arraycopy(bits,pos,_grpBits,boff,sz);
+    _grpLo[_ngrps] = off;
+    _grpLen[_ngrps] = sz<<3;
+    _grpOff[_ngrps] = boff;
+    _grp[nid] = _ngrps++;
+  }
+
+  // ------------------------------------------------------------------------
+  // Scoring
+
+  // Child of node nid for value d: NaNs go left, as in CompressedTree.score
+  private int next( int nid, double d ) {
+    if( Double.isNaN(d) ) return _left[nid];
+    boolean rite;
+    switch( _op[nid] ) {
+    case 0:  rite = (float)d >= _split[nid];  break;
+    case 1:  rite = (float)d == _split[nid];  break;
+    case 2:  rite = contains(_grp[nid],(int)d);  break;
+    default: throw H2O.fail();
+    }
+    return rite ? _rite[nid] : _left[nid];
+  }
+
+  private boolean contains( int g, int level ) {
+    int idx = level - _grpLo[g];
+    if( idx < 0 || idx >= _grpLen[g] ) return false;
+    return (_grpBits[_grpOff[g] + (idx>>3)] & (1 << (idx&7))) != 0;
+  }
+
+  private float score( int root, double row[] ) {
+    int nid = root;
+    while( nid >= 0 ) nid = next(nid,row[_col[nid]]);
+    return _leaf[~nid];
+  }
+
+  /** Add the predictions of trees t0 (inclusive) to t1 (exclusive) for one
+   *  row into preds, at preds[0] for regression and at preds[c+1] for class
+   *  c, as {@link DTreeScorer#scoreTree} does. */
+  public void score( double row[], float preds[], int t0, int t1 ) {
+    for( int t=t0; t<t1; t++ )
+      for( int c=0; c<_nclass; c++ ) {
+        int root = _roots[t*_nclass+c];
+        if( root != NO_TREE )
+          preds[_nclass==1?0:c+1] += score(root,row);
+      }
+  }
+
+  /** Add the predictions of trees t0 (inclusive) to t1 (exclusive) for a
+   *  block of n rows into sums[c][row].  The rows are given by column,
+   *  cols[col][row]. */
+  public void score( double cols[][], int n, float sums[][], int t0, int t1 ) {
+    for( int t=t0; t<t1; t++ )
+      for( int c=0; c<_nclass; c++ ) {
+        int root = _roots[t*_nclass+c];
+        if( root == NO_TREE ) continue;
+        float out[] = sums[c];
+        if( root < 0 ) {        // Tree stump
+          float pred = _leaf[~root];
+          for( int i=0; i<n; i++ ) out[i] += pred;
+          continue;
+        }
+        for( int i=0; i<n; i++ ) {
+          int nid = root;
+          while( nid >= 0 ) nid = next(nid,cols[_col[nid]][i]);
+          out[i] += _leaf[~nid];
+        }
+      }
+  }
+}
@@ -1,10 +1,13 @@
 package hex.tree;
 
+import water.H2O;
 import water.MRTask;
 import water.H2O.H2OCountedCompleter;
 import water.fvec.Chunk;
 import water.util.AtomicUtils;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**  Score and Build Histogram
  * 
  * <p>Fuse 2 conceptual passes into one:
@@ -27,6 +30,14 @@ import water.util.AtomicUtils;
  *
  * <p>The other result is a prediction "score" for the whole dataset, based on
  * the previous passes' DHistograms.
+ *
+ * <p>The histograms are shared by all the F/J threads on a node and updated
+ * atomically.  With many cores and few leaves the atomic updates all land on
+ * the same few cache lines, so within a node-local memory budget ({@link
+ * #PRIVATE_BYTES}) each worker thread instead gets a private copy, updated
+ * with plain adds and folded into the shared histograms once all the local
+ * work is done - before they go over the wire.  Threads beyond the budget
+ * update the shared histograms as before.
  */
 public class ScoreBuildHistogram extends MRTask<ScoreBuildHistogram> {
   final int   _k;    // Which tree
@@ -37,8 +48,17 @@ public class ScoreBuildHistogram extends MRTask<ScoreBuildHistogram> {
   // Histograms for every tree, split & active column
   final DHistogram _hcs[/*tree-relative node-id*/][/*column*/];
   final boolean _subset;      // True if working a subset of cols
+  final BinCache _bc;         // Pre-binned columns, trailing the NIDs; or null
+  transient ThreadHists _th;  // Per-thread private histograms, or null
+
+  /** Node-local memory budget for thread-private copies of the histograms;
+   *  0 always updates the node-shared histograms atomically. */
+  public static long PRIVATE_BYTES = Runtime.getRuntime().maxMemory()>>5;
 
   public ScoreBuildHistogram(H2OCountedCompleter cc, int k, int ncols, int nbins, DTree tree, int leaf, DHistogram hcs[][], boolean subset) {
+    this(cc,k,ncols,nbins,tree,leaf,hcs,subset,null);
+  }
+  public ScoreBuildHistogram(H2OCountedCompleter cc, int k, int ncols, int nbins, DTree tree, int leaf, DHistogram hcs[][], boolean subset, BinCache bc) {
     super(cc);
     _k    = k;
     _ncols= ncols;
@@ -47,6 +67,7 @@ public class ScoreBuildHistogram extends MRTask<ScoreBuildHistogram> {
     _leaf = leaf;
     _hcs  = hcs;
     _subset = subset;
+    _bc = bc;
   }
 
   /** Marker for already decided row. */
@@ -66,6 +87,7 @@ public class ScoreBuildHistogram extends MRTask<ScoreBuildHistogram> {
     // Allocate local shared memory histograms
     for( int l=_leaf; l<_tree._len; l++ ) {
       DTree.UndecidedNode udn = _tree.undecided(l);
+      if( udn._derived ) continue; // Filled in by subtraction, after the pass
       DHistogram hs[] = _hcs[l-_leaf];
       int sCols[] = udn._scoreCols;
       if( sCols != null ) { // Sub-selecting just some columns?
@@ -77,10 +99,25 @@ public class ScoreBuildHistogram extends MRTask<ScoreBuildHistogram> {
             hs[j].init();
       }
     }
+    if( !_subset ) {            // Private copies for the all-columns hot loop
+      long bytes = 0;
+      for( DHistogram hs[] : _hcs )
+        if( hs != null )
+          for( DHistogram h : hs )
+            if( h != null && h._bins != null ) bytes += h.byteSize();
+      int nslots = (int)Math.min(H2O.NUMCPUS,bytes == 0 ? 0 : PRIVATE_BYTES/bytes);
+      if( nslots > 0 ) _th = new ThreadHists(_hcs,nslots);
+    }
+  }
+
+  // Fold the private histograms into the shared ones
+  @Override protected void closeLocal() {
+    if( _th != null ) _th.fold();
+    _th = null;
   }
 
   @Override public void map( Chunk[] chks ) {
-    assert chks.length==_ncols+4;
+    assert chks.length==_ncols+4+(_bc==null ? 0 : _ncols);
     final Chunk wrks = chks[_ncols+2];
     final Chunk nids = chks[_ncols+3];
 
@@ -194,18 +231,21 @@ public class ScoreBuildHistogram extends MRTask<ScoreBuildHistogram> {
 
   // For all columns, for all NIDs, for all ROWS...
   private void accum_all2(Chunk chks[], Chunk wrks, int nh[], int[] rows) {
-    final DHistogram hcs[][] = _hcs;
+    final DHistogram priv[][] = _th == null ? null : _th.get();
+    final DHistogram hcs[][] = priv == null ? _hcs : priv;
     // Local temp arrays, no atomic updates.
     int    bins[] = new int   [_nbins];
     double sums[] = new double[_nbins];
     double ssqs[] = new double[_nbins];
+    int    bidx[] = _bc == null ? null : new int[rows.length];
     // For All Columns
     for( int c=0; c<_ncols; c++) { // for all columns
       Chunk chk = chks[c];
+      Chunk bch = _bc == null ? null : chks[_ncols+4+c];
       // For All NIDs
       for( int n=0; n<hcs.length; n++ ) {
         final DRealHistogram rh = ((DRealHistogram)hcs[n][c]);
-        if( rh==null ) continue; // Ignore untracked columns in this split
+        if( rh==null || rh._bins==null ) continue; // Ignore untracked columns, and derived splits
         final int lo = n==0 ? 0 : nh[n-1];
         final int hi = nh[n];
         float min = rh._min2;
@@ -220,6 +260,30 @@ public class ScoreBuildHistogram extends MRTask<ScoreBuildHistogram> {
           ssqs = new double[rh._bins.length];
         }
 
+        final int shift = bch == null ? -1 : _bc.shift(c,rh);
+        if( shift >= 0 ) {
+          // Pre-binned: the bins are a plain gather, and only the rows in
+          // the lowest and highest non-empty bins are read to find min/max.
+          for( int xrow=lo; xrow<hi; xrow++ ) {
+            int row = rows[xrow];
+            int b = bidx[xrow] = (int)bch.at80(row)>>shift;
+            bins[b]++;
+            double resp = wrks.at0(row);
+            sums[b] += resp;
+            ssqs[b] += resp*resp;
+          }
+          float bmin = Float.MAX_VALUE, bmax = -Float.MAX_VALUE;
+          for( int b=0; b<rh._bins.length && bmin == Float.MAX_VALUE; b++ )
+            if( bins[b] != 0 )
+              for( int xrow=lo; xrow<hi; xrow++ )
+                if( bidx[xrow] == b ) bmin = minOf(bmin,(float)chk.at0(rows[xrow]));
+          for( int b=rh._bins.length-1; b>=0 && bmax == -Float.MAX_VALUE; b-- )
+            if( bins[b] != 0 )
+              for( int xrow=lo; xrow<hi; xrow++ )
+                if( bidx[xrow] == b ) bmax = maxOf(bmax,(float)chk.at0(rows[xrow]));
+          if( bmin < min ) min = bmin;
+          if( bmax > max ) max = bmax;
+        } else
         // Gather all the data for this set of rows, for 1 column and 1 split/NID
         // Gather min/max, sums and sum-squares.
         for( int xrow=lo; xrow<hi; xrow++ ) {
@@ -234,6 +298,15 @@ public class ScoreBuildHistogram extends MRTask<ScoreBuildHistogram> {
           ssqs[b] += resp*resp;
         }
 
+        if( priv != null ) {  // Private to this thread: plain adds
+          if( min < rh._min2  ) rh._min2  = min;
+          if( max > rh._maxIn ) rh._maxIn = max;
+          for( int b=0; b<rh._bins.length; b++ ) {
+            if( bins[b] != 0 ) { rh._bins[b] += bins[b]; bins[b]=0; }
+            if( ssqs[b] != 0 ) { rh.incr2(b,sums[b],ssqs[b]); sums[b]=ssqs[b]=0; }
+          }
+          continue;
+        }
         // Add all the data into the Histogram (atomically add)
         rh.setMin(min);       // Track actual lower/upper bound per-bin
         rh.setMax(max);
@@ -244,4 +317,50 @@ public class ScoreBuildHistogram extends MRTask<ScoreBuildHistogram> {
       }
     }
   }
+
+  // Up to nslots threads each get a private copy of all the histograms being
+  // gathered; any further threads get null, and use the shared histograms.
+  static final class ThreadHists {
+    final DHistogram _hcs[][];        // Node-shared
+    final DHistogram _copies[][][];   // Per slot, made on first use
+    final AtomicInteger _next = new AtomicInteger();
+    final ThreadLocal<Integer> _slot = new ThreadLocal<>();
+    ThreadHists( DHistogram hcs[][], int nslots ) { _hcs = hcs; _copies = new DHistogram[nslots][][]; }
+
+    DHistogram[][] get() {
+      Integer s = _slot.get();
+      if( s == null ) _slot.set(s = _next.getAndIncrement());
+      if( s >= _copies.length ) return null;
+      DHistogram copy[][] = _copies[s];
+      if( copy == null ) {      // Only this thread ever touches slot s
+        copy = new DHistogram[_hcs.length][];
+        for( int l=0; l<_hcs.length; l++ ) {
+          if( _hcs[l] == null ) continue;
+          copy[l] = new DHistogram[_hcs[l].length];
+          for( int c=0; c<_hcs[l].length; c++ ) {
+            DHistogram h = _hcs[l][c];
+            if( h == null || h._bins == null ) continue; // Untracked, or derived
+            (copy[l][c] = DHistogram.make(h,false)).init();
+          }
+        }
+        _copies[s] = copy;
+      }
+      return copy;
+    }
+
+    // All the local work is done: no more racing updates
+    void fold() {
+      for( DHistogram copy[][] : _copies )
+        if( copy != null )
+          for( int l=0; l<copy.length; l++ )
+            if( copy[l] != null )
+              for( int c=0; c<copy[l].length; c++ )
+                if( copy[l][c] != null )
+                  _hcs[l][c].add(copy[l][c]);
+    }
+  }
+
+  // Same min/max as the raw-data loop: NaNs never win, infinities do
+  private static float minOf( float min, float d ) { return d < min ? d : min; }
+  private static float maxOf( float max, float d ) { return d > max ? d : max; }
 }
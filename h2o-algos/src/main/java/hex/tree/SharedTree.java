@@ -27,6 +27,9 @@ public abstract class SharedTree<M extends SharedTreeModel<M,P,O>, P extends Sha
   // Initially predicted value (for zero trees)
   protected double _initialPrediction;
 
+  // Pre-binned predictor columns for the life of the build, or null
+  protected transient BinCache _binCache;
+
   /** Initialize the ModelBuilder, validating all arguments and preparing the
    *  training frame.  This call is expected to be overridden in the subclasses
    *  and each subclass will start with "super.init();".  This call is made
@@ -186,6 +189,8 @@ public abstract class SharedTree<M extends SharedTreeModel<M,P,O>, P extends Sha
       fr2.add(fr._names[_ncols+1+k],vecs[_ncols+1+k]);
       fr2.add(fr._names[_ncols+1+_nclass+k],vecs[_ncols+1+_nclass+k]);
       fr2.add(fr._names[_ncols+1+_nclass+_nclass+k],vecs[_ncols+1+_nclass+_nclass+k]);
+      if( _binCache != null ) // Pre-binned columns trail the NIDs
+        for( int c=0; c<_ncols; c++ ) fr2.add("Bins_"+fr._names[c],_binCache.vecs()[c]);
       // Start building one of the K trees in parallel
       H2O.submitTask(sb1ts[k] = new ScoreBuildOneTree(k,nbins,tree,leafs,hcs,fr2, subset, build_tree_one_node));
     }
@@ -230,7 +235,7 @@ public abstract class SharedTree<M extends SharedTreeModel<M,P,O>, P extends Sha
       // Pass 2: Build new summary DHistograms on the new child Nodes every row
       // got assigned into.  Collect counts, mean, variance, min, max per bin,
       // per column.
-      new ScoreBuildHistogram(this,_k,_ncols, _nbins,_tree, _leafs[_k],_hcs[_k],_subset).dfork(0,_fr2,_build_tree_one_node);
+      new ScoreBuildHistogram(this,_k,_ncols, _nbins,_tree, _leafs[_k],_hcs[_k],_subset,_binCache).dfork(0,_fr2,_build_tree_one_node);
     }
     @Override public void onCompletion(CountedCompleter caller) {
       ScoreBuildHistogram sbh = (ScoreBuildHistogram)caller;
@@ -238,6 +243,10 @@ public abstract class SharedTree<M extends SharedTreeModel<M,P,O>, P extends Sha
 
       final int leafk = _leafs[_k];
       int tmax = _tree.len();   // Number of total splits in tree K
+      for( int leaf=leafk; leaf<tmax; leaf++ ) { // Subtract out the derived histograms
+        DTree.UndecidedNode udn = _tree.undecided(leaf);
+        if( udn._derived ) udn.derive(sbh._hcs[leaf-leafk],sbh._hcs[udn.sibling()-leafk]);
+      }
       for( int leaf=leafk; leaf<tmax; leaf++ ) { // Visit all the new splits (leaves)
         DTree.UndecidedNode udn = _tree.undecided(leaf);
         //System.out.println((_nclass==1?"Regression":("Class "+_fr2.vecs()[_ncols].domain()[_k]))+",\n  Undecided node:"+udn);
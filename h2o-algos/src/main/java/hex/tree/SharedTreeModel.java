@@ -6,6 +6,9 @@ import hex.ConfusionMatrix2;
 import hex.SupervisedModel;
 import hex.VarImp;
 import water.*;
+import water.fvec.Chunk;
+import water.util.JCodeGen;
+import water.util.SB;
 
 public abstract class SharedTreeModel<M extends SharedTreeModel<M,P,O>, P extends SharedTreeModel.SharedTreeParameters, O extends SharedTreeModel.SharedTreeOutput> extends SupervisedModel<M,P,O> {
 
@@ -82,20 +85,63 @@ public abstract class SharedTreeModel<M extends SharedTreeModel<M,P,O>, P extend
 
   public SharedTreeModel(Key selfKey, P parms, O output) { super(selfKey,parms,output); }
 
+  // Flat-array copy of the trees for scoring; decoded on first use on each
+  // node, and again when trees are added
+  private transient volatile FlatForest _forest;
+  final FlatForest forest() {
+    FlatForest forest = _forest;
+    Key keys[][] = _output._treeKeys;
+    if( forest == null || forest.ntrees() != keys.length )
+      _forest = forest = new FlatForest(keys);
+    return forest;
+  }
+
   @Override protected float[] score0(double data[/*ncols*/], float preds[/*nclasses+1*/]) {
-    // Prefetch trees into the local cache if it is necessary
-    // Invoke scoring
     Arrays.fill(preds,0);
-    for( int tidx=0; tidx<_output._treeKeys.length; tidx++ )
-      score0(data, preds, tidx);
+    FlatForest forest = forest();
+    forest.score(data, preds, 0, forest.ntrees());
     return preds;
   }
   // Score per line per tree
   public void score0(double data[], float preds[], int treeIdx) {
-    Key[] keys = _output._treeKeys[treeIdx];
-    for( int c=0; c<keys.length; c++ )
-      if( keys[c] != null )
-        preds[keys.length==1?0:c+1] += DKV.get(keys[c]).<CompressedTree>get().score(data);
+    forest().score(data, preds, treeIdx, treeIdx+1);
+  }
+
+  /** Turn the summed tree predictions for a row into the model's prediction;
+   *  called by the block scoring, and by the subclasses' score0. */
+  protected float[] scoreFinish(double data[/*ncols*/], float preds[/*nclasses+1*/]) { return preds; }
+
+  // Rows per block in bulk scoring
+  static final int SCORE_BLOCK = 1024;
+
+  /** Bulk scoring: gathers a block of rows by column, walks all of them
+   *  through one tree at a time, then finishes each row. */
+  @Override protected void score0( Chunk chks[], int num_features ) {
+    FlatForest forest = forest();
+    int K = forest.nclasses();
+    if( K == 0 ) { super.score0(chks,num_features); return; } // No trees yet
+    int len = chks[0]._len;
+    int blk = Math.min(SCORE_BLOCK,len);
+    double cols[][] = new double[num_features][blk];
+    float sums[][] = new float[K][blk];
+    double data[] = new double[num_features];
+    float preds[] = new float[_output.nclasses()==1?1:_output.nclasses()+1];
+    for( int row0=0; row0<len; row0+=blk ) {
+      int n = Math.min(blk,len-row0);
+      for( int c=0; c<num_features; c++ )
+        for( int i=0; i<n; i++ )
+          cols[c][i] = chks[c].at0(row0+i);
+      for( float s[] : sums ) Arrays.fill(s,0);
+      forest.score(cols, n, sums, 0, forest.ntrees());
+      for( int i=0; i<n; i++ ) {
+        for( int c=0; c<num_features; c++ ) data[c] = cols[c][i];
+        Arrays.fill(preds,0);
+        for( int c=0; c<K; c++ ) preds[K==1?0:c+1] = sums[c][i];
+        float p[] = scoreFinish(data,preds);
+        for( int c=0; c<preds.length; c++ )
+          chks[num_features+c].set0(row0+i,p[c]);
+      }
+    }
   }
 
   // Numeric type used in generated code to hold predicted value between the
@@ -112,6 +158,55 @@ public abstract class SharedTreeModel<M extends SharedTreeModel<M,P,O>, P extend
         if( k != null ) k.remove(fs);
     return super.remove_impl(fs);
   }
+
+  // --------------------------------------------------------------------------
+  // Java code generation
+
+  // Trees per generated forest class.  Each tree costs its forest a call, and
+  // a class and a method reference in the constant pool.
+  static final int TREES_PER_FOREST = 200;
+
+  @Override protected SB toJavaInit( SB sb, SB fileCtx, String modelName ) {
+    super.toJavaInit(sb, fileCtx, modelName);
+    JCodeGen.toStaticVar(sb, "NTREES", _output._ntrees, "Number of trees in this model");
+    return sb;
+  }
+
+  /** Each tree becomes a class {@code <model>_Tree_<t>_class_<c>}, called
+   *  from forest classes of TREES_PER_FOREST trees.  Trees are summed in the
+   *  order {@link FlatForest} sums them, so the generated code predicts the
+   *  same floats as {@link #score0(double[], float[])}. */
+  @Override protected void toJavaPredictBody( SB body, SB fileCtx, String modelName ) {
+    Key keys[][] = _output._treeKeys;
+    int K = _output.nclasses();
+    SB forest = null, trees = new SB();
+    int nforests = 0, ntrees = 0;
+    body.i().p("java.util.Arrays.fill(preds,0f);").nl();
+    for( int t=0; t<keys.length; t++ )
+      for( int c=0; c<keys[t].length; c++ ) {
+        if( keys[t][c] == null ) continue; // Binomial models have no trees for the 2nd class
+        if( ntrees++ % TREES_PER_FOREST == 0 ) {
+          if( forest != null ) fileCtx.p(forest.p("  }").nl().p("}").nl());
+          String name = modelName+"_Forest_"+nforests++;
+          body.i().p(name).p(".score(data, preds);").nl();
+          forest = new SB().nl().p("// Trees from tree ").p(t).p(", class ").p(c).nl();
+          forest.p("class ").p(name).p(" {").nl().ii(1);
+          forest.i().p("static void score( double[] data, float[] preds ) {").nl().ii(1);
+        }
+        String tree = modelName+"_Tree_"+t+"_class_"+c;
+        forest.i().p("preds[").p(K==1 ? 0 : c+1).p("] += ").p(tree).p(".predict(data);").nl();
+        CompressedTree ct = DKV.get(keys[t][c]).get();
+        trees.nl().p("// Tree ").p(t).p(", predicting class ").p(c).nl();
+        new DTree.TreeJCodeGen(this, ct, tree).generate(trees);
+      }
+    if( forest != null ) fileCtx.p(forest.p("  }").nl().p("}").nl());
+    fileCtx.p(trees);
+    toJavaFinish(body);
+  }
+
+  /** Code turning the summed tree predictions in preds into the model's
+   *  prediction, as {@link #scoreFinish} does. */
+  protected void toJavaFinish( SB body ) { }
 }
 
 //  // --------------------------------------------------------------------------
@@ -481,188 +576,6 @@ public abstract class SharedTreeModel<M extends SharedTreeModel<M,P,O>, P extend
 //    // For GBM: learn_rate.  For DRF: mtries, sample_rate, seed.
 //    abstract protected void generateModelDescription(StringBuilder sb);
 //
-//    // Determine whether feature is licensed.
-//    private boolean isFeatureAllowed() {
-//      boolean featureAllowed = false;
-//      try {
-//        if (treeStats.numTrees <= 10) {
-//          featureAllowed = true;
-//        }
-//        else {
-//          if (getTreeModelType() == TreeModelType.GBM) {
-//            featureAllowed = H2O.licenseManager.isFeatureAllowed(LicenseManager.FEATURE_GBM_SCORING);
-//          }
-//          else if (getTreeModelType() == TreeModelType.DRF) {
-//            featureAllowed = H2O.licenseManager.isFeatureAllowed(LicenseManager.FEATURE_RF_SCORING);
-//          }
-//        }
-//      }
-//      catch (Exception xe) {}
-//
-//      return featureAllowed;
-//    }
-//
-//    public void toJavaHtml( StringBuilder sb ) {
-//      if( treeStats == null ) return; // No trees yet
-//      sb.append("<br /><br /><div class=\"pull-right\"><a href=\"#\" onclick=\'$(\"#javaModel\").toggleClass(\"hide\");\'" +
-//                "class=\'btn btn-inverse btn-mini\'>Java Model</a></div><br /><div class=\"hide\" id=\"javaModel\">");
-//
-//      boolean featureAllowed = isFeatureAllowed();
-//      if (! featureAllowed) {
-//        sb.append("<br/><div id=\'javaModelWarningBlock\' class=\"alert\" style=\"background:#eedd20;color:#636363;text-shadow:none;\">");
-//        sb.append("<b>You have requested a premium feature (> 10 trees) and your H<sub>2</sub>O software is unlicensed.</b><br/><br/>");
-//        sb.append("Please enter your email address below, and we will send you a trial license shortly.<br/>");
-//        sb.append("This will also temporarily enable downloading Java models.<br/>");
-//        sb.append("<form class=\'form-inline\'><input id=\"emailForJavaModel\" class=\"span5\" type=\"text\" placeholder=\"Email\"/> ");
-//        sb.append("<a href=\"#\" onclick=\'processJavaModelLicense();\' class=\'btn btn-inverse\'>Send</a></form></div>");
-//        sb.append("<div id=\"javaModelSource\" class=\"hide\">");
-//      }
-//      if( ntrees() * treeStats.meanLeaves > 5000 ) {
-//        String modelName = JCodeGen.toJavaId(_key.toString());
-//        sb.append("<pre style=\"overflow-y:scroll;\"><code class=\"language-java\">");
-//        sb.append("/* Java code is too large to display, download it directly.\n");
-//        sb.append("   To obtain the code please invoke in your terminal:\n");
-//        sb.append("     curl http:/").append(H2O.SELF.toString()).append("/h2o-model.jar > h2o-model.jar\n");
-//        sb.append("     curl http:/").append(H2O.SELF.toString()).append("/2/").append(this.getClass().getSimpleName()).append("View.java?_modelKey=").append(_key).append(" > ").append(modelName).append(".java\n");
-//        sb.append("     javac -cp h2o-model.jar -J-Xmx2g -J-XX:MaxPermSize=128m ").append(modelName).append(".java\n");
-//        if (GEN_BENCHMARK_CODE)
-//          sb.append("     java -cp h2o-model.jar:. -Xmx2g -XX:MaxPermSize=256m -XX:ReservedCodeCacheSize=256m ").append(modelName).append('\n');
-//        sb.append("*/");
-//        sb.append("</code></pre>");
-//      } else {
-//        sb.append("<pre style=\"overflow-y:scroll;\"><code class=\"language-java\">");
-//        DocGen.HTML.escape(sb, toJava());
-//        sb.append("</code></pre>");
-//      }
-//      if (!featureAllowed) sb.append("</div>"); // close license blog
-//      sb.append("</div>");
-//      sb.append("<script type=\"text/javascript\">$(document).ready(showOrHideJavaModel);</script>");
-//    }
-//
-//    @Override protected SB toJavaInit(SB sb, SB fileContextSB) {
-//      sb = super.toJavaInit(sb, fileContextSB);
-//
-//      String modelName = JCodeGen.toJavaId(_key.toString());
-//
-//      // Generate main method with benchmark
-//      if (GEN_BENCHMARK_CODE) {
-//        sb.i().p("/**").nl();
-//        sb.i().p(" * Sample program harness providing an example of how to call predict().").nl();
-//        sb.i().p(" */").nl();
-//        sb.i().p("public static void main(String[] args) throws Exception {").nl();
-//        sb.i(1).p("int iters = args.length > 0 ? Integer.valueOf(args[0]) : DEFAULT_ITERATIONS;").nl();
-//        sb.i(1).p(modelName).p(" model = new ").p(modelName).p("();").nl();
-//        sb.i(1).p("model.bench(iters, DataSample.DATA, new float[NCLASSES+1], NTREES);").nl();
-//        sb.i().p("}").nl();
-//        sb.di(1);
-//        sb.p(TO_JAVA_BENCH_FUNC);
-//      }
-//
-//      JCodeGen.toStaticVar(sb, "NTREES", ntrees(), "Number of trees in this model.");
-//      JCodeGen.toStaticVar(sb, "NTREES_INTERNAL", ntrees()*nclasses(), "Number of internal trees in this model (= NTREES*NCLASSES).");
-//      if (GEN_BENCHMARK_CODE) JCodeGen.toStaticVar(sb, "DEFAULT_ITERATIONS", 10000, "Default number of iterations.");
-//      // Generate a data in separated class since we do not want to influence size of constant pool of model class
-//      if (GEN_BENCHMARK_CODE) {
-//        if( _dataKey != null ) {
-//          Value dataval = DKV.get(_dataKey);
-//          if (dataval != null) {
-//            water.fvec.Frame frdata = dataval.get();
-//            water.fvec.Frame frsub = frdata.subframe(_names);
-//            JCodeGen.toClass(fileContextSB, "// Sample of data used by benchmark\nclass DataSample", "DATA", frsub, 10, "Sample test data.");
-//          }
-//        }
-//      }
-//      return sb;
-//    }
-//    // Convert Tree model to Java
-//    @Override protected void toJavaPredictBody( final SB bodySb, final SB classCtxSb, final SB fileCtxSb) {
-//      // AD-HOC maximal number of trees in forest - in fact constant pool size for Forest class (all UTF String + references to static classes).
-//      // TODO: in future this parameter can be a parameter for generator, as well as maxIters
-//      final int maxfsize = 4000;
-//      int fidx = 0; // forest index
-//      int treesInForest = 0;
-//      SB forest = new SB();
-//      // divide trees into small forests per 100 trees
-//      /* DEBUG line */ bodySb.i().p("// System.err.println(\"Row (gencode.predict): \" + java.util.Arrays.toString(data));").nl();
-//      bodySb.i().p("java.util.Arrays.fill(preds,0f);").nl();
-//      if (isFromSpeeDRF) {
-//        bodySb.i().p("// Call forest predicting class ").p(0).nl();
-//        bodySb.i().p("preds").p(" =").p(" Forest_").p(fidx).p("_class_").p(0).p(".predict(data, maxIters - " + fidx * maxfsize + ");").nl();
-//      }
-//      for( int c=0; c<nclasses(); c++ ) {
-//        toJavaForestBegin(bodySb, forest, c, fidx++, maxfsize);
-//        for( int i=0; i < treeKeys.length; i++ ) {
-//          CompressedTree cts[] = ctree(i);
-//          if( cts[c] == null ) continue;
-//          if (!isFromSpeeDRF) {
-//            forest.i().p("if (iters-- > 0) pred").p(" +=").p(" Tree_").p(i).p("_class_").p(c).p(".predict(data);").nl();
-//          } else {
-//            forest.i().p("pred[(int)").p(" Tree_").p(i).p("_class_").p(c).p(".predict(data) + 1] += 1;").nl();
-//          }
-//          // append representation of tree predictor
-//          toJavaTreePredictFct(fileCtxSb, cts[c], i, c);
-//          if (++treesInForest == maxfsize) {
-//            toJavaForestEnd(bodySb, forest, c, fidx);
-//            toJavaForestBegin(bodySb, forest, c, fidx++, maxfsize);
-//            treesInForest = 0;
-//          }
-//        }
-//        toJavaForestEnd(bodySb, forest, c, fidx);
-//        treesInForest = 0;
-//        fidx = 0;
-//      }
-//      fileCtxSb.p(forest);
-//      toJavaUnifyPreds(bodySb);
-//      toJavaFillPreds0(bodySb);
-//    }
-//
-//    private void toJavaForestBegin(SB predictBody, SB forest, int c, int fidx, int maxTreesInForest) {
-//      // ugly hack here
-//      if (!isFromSpeeDRF) {
-//        predictBody.i().p("// Call forest predicting class ").p(c).nl();
-//        predictBody.i().p("preds[").p(c + 1).p("] +=").p(" Forest_").p(fidx).p("_class_").p(c).p(".predict(data, maxIters - " + fidx * maxTreesInForest + ");").nl();
-//        forest.i().p("// Forest representing a subset of trees scoring class ").p(c).nl();
-//        forest.i().p("class Forest_").p(fidx).p("_class_").p(c).p(" {").nl().ii(1);
-//        forest.i().p("public static ").p(PRED_TYPE).p(" predict(double[] data, int maxIters) {").nl().ii(1);
-//        forest.i().p(PRED_TYPE).p(" pred  = 0;").nl();
-//        forest.i().p("int   iters = maxIters;").nl();
-//      } else {
-//        forest.i().p("// Forest representing a subset of trees scoring class ").p(c).nl();
-//        forest.i().p("class Forest_").p(fidx).p("_class_").p(c).p(" {").nl().ii(1);
-//        forest.i().p("public static ").p(PRED_TYPE).p("[] predict(double[] data, int maxIters) {").nl().ii(1);
-//        forest.i().p(PRED_TYPE).p("[] pred = new float["+(nclasses()+1)+"];").nl();
-//        forest.i().p("java.util.Arrays.fill(pred,0f);").nl();
-//        forest.i().p("int   iters = maxIters;").nl();
-//      }
-//    }
-//    private void toJavaForestEnd(SB predictBody, SB forest, int c, int fidx) {
-//      if (!isFromSpeeDRF) {
-//        forest.i().p("return pred;").nl();
-//        forest.i().p("}").di(1).nl(); // end of function
-//        forest.i().p("}").di(1).nl(); // end of forest classs
-//      } else {
-//        if (c ==0) {
-//          forest.i().p("float sum = 0;").nl();
-//          forest.i().p("for (int i=1; i <= " + nclasses() + "; i++) {").p("sum += pred[i];").p("}").nl();
-//          forest.i().p("for (int i=1; i <= " + nclasses() + "; i++) {").p("pred[i] /= sum;").p("}").nl();
-//        }
-//        forest.i().p("return pred;").nl();
-//        forest.i().p("}").di(1).nl(); // end of function
-//        forest.i().p("}").di(1).nl(); // end of forest classs
-//      }
-//    }
-//
-//    // Produce prediction code for one tree
-//    protected void toJavaTreePredictFct(final SB sb, final CompressedTree cts, int treeIdx, int classIdx) {
-//      // generate top-level class definition
-//      sb.nl();
-//      sb.i().p("// Tree predictor for ").p(treeIdx).p("-tree and ").p(classIdx).p("-class").nl();
-//      sb.i().p("class Tree_").p(treeIdx).p("_class_").p(classIdx).p(" {").nl().ii(1);
-//      new TreeJCodeGen(this,cts, sb).generate();
-//      sb.i().p("}").nl(); // close the class
-//    }
-//
-//    @Override protected String toJavaDefaultMaxIters() { return String.valueOf(this.N);  }
 //  }
 //
   //public Random rngForChunk( int cidx ) {
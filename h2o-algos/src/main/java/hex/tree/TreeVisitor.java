@@ -57,7 +57,7 @@ public abstract class TreeVisitor<T extends Exception> {
     int rmask = (nodeType & 0xC0) >> 2;
     int skip = 0;
     switch(lmask) {
-    case 0:  skip = _ts.get1();  break;
+    case 0:  skip = _ts.get1U(); break;
     case 1:  skip = _ts.get2();  break;
     case 2:  skip = _ts.get3();  break;
     case 3:  skip = _ts.get4();  break;
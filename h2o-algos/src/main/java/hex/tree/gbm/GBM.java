@@ -64,6 +64,20 @@ public class GBM extends SharedTree<GBMModel,GBMModel.GBMParameters,GBMModel.GBM
         Log.info("Reconstructing tree residuals stats from checkpointed model took " + t);
       }
 
+      // Bin the predictors once for all the trees
+      if( _parms._prebin ) {
+        Timer t = new Timer();
+        _binCache = BinCache.make(_train,_ncols,topLevelBins());
+        Log.info("Pre-binning the training frame took " + t);
+      }
+      try {
+        buildTrees();
+      } finally {
+        if( _binCache != null ) { _binCache.delete(); _binCache = null; }
+      }
+    }
+
+    private void buildTrees() {
       // Loop over the K trees
       for( int tid=0; tid<_parms._ntrees; tid++) {
         // During first iteration model contains 0 trees, then 1-tree, ...
@@ -164,6 +178,12 @@ public class GBM extends SharedTree<GBMModel,GBMModel.GBMParameters,GBMModel.GBM
       }
     }
 
+    // Adjust nbins for the top-levels
+    private int topLevelBins() {
+      final int top_level_extra_bins = 1<<10;
+      return Math.max(top_level_extra_bins,_parms._nbins);
+    }
+
     // --------------------------------------------------------------------------
     // Build the next k-trees, which is trying to correct the residual error from
     // the prior trees.  From ESL2, page 387.  Step 2b ii, iii.
@@ -177,9 +197,7 @@ public class GBM extends SharedTree<GBMModel,GBMModel.GBMParameters,GBMModel.GBM
       // leaf); all columns
       DHistogram hcs[][][] = new DHistogram[_nclass][1/*just root leaf*/][_ncols];
 
-      // Adjust nbins for the top-levels
-      final int top_level_extra_bins = 1<<10;
-      int nbins = Math.max(top_level_extra_bins,_parms._nbins);
+      int nbins = topLevelBins();
 
       for( int k=0; k<_nclass; k++ ) {
         // Initially setup as-if an empty-split had just happened
@@ -189,7 +207,7 @@ public class GBM extends SharedTree<GBMModel,GBMModel.GBMParameters,GBMModel.GBM
           // inverse of the first.  This is false for DRF (and true for GBM) -
           // DRF picks a random different set of columns for the 2nd tree.
           if( k==1 && _nclass==2 ) continue;
-          ktrees[k] = new DTree(_train._names,_ncols,(char)_parms._nbins,(char)_nclass,_parms._min_rows);
+          ktrees[k] = new DTree(_train._names,_ncols,(char)_parms._nbins,(char)_nclass,_parms._min_rows,-1,_parms._subtract_histograms);
           new GBMUndecidedNode(ktrees[k],-1,DHistogram.initialHist(_train,_ncols,nbins,hcs[k][0],false,false) ); // The "root" node
         }
       }
@@ -10,6 +10,7 @@ import water.api.ModelSchema;
 import water.fvec.Chunk;
 import water.fvec.Frame;
 import water.util.ArrayUtils;
+import water.util.SB;
 
 public class GBMModel extends SharedTreeModel<GBMModel,GBMModel.GBMParameters,GBMModel.GBMOutput> {
 
@@ -23,6 +24,8 @@ public class GBMModel extends SharedTreeModel<GBMModel,GBMModel.GBMParameters,GB
     public enum Family {  AUTO, bernoulli  }
     public Family _loss = Family.AUTO;
     public float _learn_rate=0.1f; // Learning rate from 0.0 to 1.0
+    public boolean _prebin = true; // Bin the predictors once per build, not on every tree level
+    public boolean _subtract_histograms = false; // Get the larger child's histograms as parent minus sibling
   }
 
   public static class GBMOutput extends SharedTreeModel.SharedTreeOutput {
@@ -48,7 +51,10 @@ public class GBMModel extends SharedTreeModel<GBMModel,GBMModel.GBMParameters,GB
   }
 
   @Override protected float[] score0(double data[/*ncols*/], float preds[/*nclasses+1*/]) {
-    float[] p = super.score0(data, preds);    // These are f_k(x) in Algorithm 10.4
+    return scoreFinish(data, super.score0(data, preds)); // These are f_k(x) in Algorithm 10.4
+  }
+
+  @Override protected float[] scoreFinish(double data[/*ncols*/], float p[/*nclasses+1*/]) {
     if( _parms._loss == GBMParameters.Family.bernoulli ) {
       double fx = p[1] + _output._initialPrediction;
       p[2] = 1.0f/(float)(1f+Math.exp(-fx));
@@ -73,9 +79,29 @@ public class GBMModel extends SharedTreeModel<GBMModel,GBMModel.GBMParameters,GB
       p[0] = water.util.ModelUtils.getPrediction(p, data);
     } else { // regression
       // Prediction starts from the mean response, and adds predicted residuals
-      preds[0] += _output._initialPrediction;
+      p[0] += _output._initialPrediction;
     }
     return p;
   }
 
+  // scoreFinish, in Java
+  @Override protected void toJavaFinish( SB body ) {
+    if( _parms._loss == GBMParameters.Family.bernoulli ) {
+      body.i().p("double fx = preds[1] + ").pj(_output._initialPrediction).p(";").nl();
+      body.i().p("preds[2] = 1.0f/(float)(1f+Math.exp(-fx));").nl();
+      body.i().p("preds[1] = 1f-preds[2];").nl();
+      body.i().p("preds[0] = getPrediction(preds, data);").nl();
+    } else if( _output.nclasses()>1 ) { // classification
+      body.i().p("float maxval=Float.NEGATIVE_INFINITY;").nl();
+      body.i().p("float dsum=0;").nl();
+      if( _output.nclasses()==2 ) body.i().p("preds[2] = - preds[1];").nl();
+      body.i().p("for( int k=1; k<preds.length; k++) maxval = Math.max(maxval,preds[k]);").nl();
+      body.i().p("for( int k=1; k<preds.length; k++) dsum+=(preds[k]=(float)Math.exp(preds[k]-maxval));").nl();
+      body.i().p("for( int k=0; k<preds.length; k++) preds[k] /= dsum;").nl();
+      body.i().p("preds[0] = getPrediction(preds, data);").nl();
+    } else { // regression
+      body.i().p("preds[0] += ").pj(_output._initialPrediction).p(";").nl();
+    }
+  }
+
 }
@@ -12,24 +12,29 @@ public class ResidualsCollector extends DTreeScorer<ResidualsCollector> {
     super(ncols, nclass, treeKeys);
   }
 
+  // Rows per block; each block is walked through one tree at a time
+  static final int BLOCK = 1024;
+
   @Override public void map(Chunk[] chks) {
-    double[] data = new double[_ncols];
-    float [] preds = new float[_nclass+1];
     int ntrees = ntrees();
     Chunk cys   = chk_resp(chks);
-    for( int tidx=0; tidx<ntrees; tidx++) { // tree
-      for (int row=0; row<cys._len; row++) {
+    int len = cys._len, blk = Math.min(BLOCK, len);
+    double[][] cols = new double[_ncols][blk];
+    float [][] preds = new float[_forest.nclasses()][blk];
+    for (int row0=0; row0<len; row0+=blk) {
+      int n = Math.min(blk, len-row0);
+      for (int i=0;i<_ncols;i++)
+        for (int r=0;r<n;r++) cols[i][r] = chks[i].at0(row0+r);
+      for( int tidx=0; tidx<ntrees; tidx++) { // tree
         // Make a prediction
-        for (int i=0;i<_ncols;i++) data[i] = chks[i].at0(row);
-        Arrays.fill(preds, 0);
-        score0(data, preds, _trees[tidx]);
-        if (_nclass==1) preds[1]=preds[0]; // regression shortcut
+        for (float[] p : preds) Arrays.fill(p, 0);
+        _forest.score(cols, n, preds, tidx, tidx+1);
         // Write tree predictions
-        for (int c=0;c<_nclass;c++) { // over all class
-          if (preds[1+c] != 0) {
-            Chunk ctree = chk_tree(chks, c);
-            ctree.set0(row, (float)(ctree.at0(row) + preds[1+c]));
-          }
+        for (int c=0;c<preds.length;c++) { // over all class
+          Chunk ctree = chk_tree(chks, c);
+          for (int r=0;r<n;r++)
+            if (preds[c][r] != 0)
+              ctree.set0(row0+r, (float)(ctree.at0(row0+r) + preds[c][r]));
         }
       }
     }
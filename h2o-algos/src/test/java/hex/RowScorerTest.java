@@ -0,0 +1,115 @@
+package hex;
+
+import hex.tree.gbm.GBM;
+import hex.tree.gbm.GBMModel;
+import org.junit.*;
+import water.TestUtil;
+import water.fvec.Frame;
+
+import static org.junit.Assert.*;
+
+public class RowScorerTest extends TestUtil {
+  @BeforeClass public static void stall() { stall_till_cloudsize(1); }
+
+  private static GBMModel gbm( Frame fr, String resp, boolean classification ) {
+    GBMModel.GBMParameters parms = new GBMModel.GBMParameters();
+    parms._train = fr._key;
+    parms._response_column = resp;
+    parms._toEnum = classification;
+    parms._ntrees = 5;
+    parms._max_depth = 3;
+    GBM job = new GBM(parms);
+    try {
+      return job.trainModel().get();
+    } finally {
+      job.remove();
+    }
+  }
+
+  // Row r of the frame, in the scorer's layout
+  private static double[] row( RowScorer rs, Frame fr, int r ) {
+    double row[] = new double[rs.names().length];
+    for( int c=0; c<row.length; c++ ) row[c] = fr.vec(rs.names()[c]).at(r);
+    return row;
+  }
+
+  // Row scoring gives the predictions of Frame scoring
+  private static void check( Model m, Frame fr ) {
+    Frame preds = m.score(fr);
+    try {
+      RowScorer rs = RowScorer.get(m);
+      assertSame(rs, RowScorer.get(m));
+      assertEquals(preds.numCols(), rs.npreds());
+      double rows[][] = new double[(int)fr.numRows()][];
+      for( int r=0; r<rows.length; r++ ) {
+        float p[] = rs.score(rows[r] = row(rs,fr,r));
+        for( int c=0; c<p.length; c++ )
+          assertEquals(preds.vecs()[c].at(r), p[c], 1e-5);
+      }
+      float batch[][] = rs.score(rows);
+      for( int r=0; r<rows.length; r++ )
+        for( int c=0; c<batch[r].length; c++ )
+          assertEquals(preds.vecs()[c].at(r), batch[r][c], 1e-5);
+      assertEquals(rows.length+1, rs.calls());
+      assertTrue(rs.latency(0.5) > 0);
+      assertTrue(rs.latency(0.5) <= rs.latency(0.99));
+    } finally {
+      preds.delete();
+    }
+  }
+
+  @Test public void testGBM() {
+    Frame fr = null;
+    GBMModel m = null;
+    try {
+      fr = parse_test_file("smalldata/iris/iris_wheader.csv");
+      m = gbm(fr, "class", true);
+      check(m, fr);
+      m.delete();
+      m = gbm(fr, "sepal_len", false);   // With a categorical feature
+      check(m, fr);
+    } finally {
+      if( m  != null ) m.delete();
+      if( fr != null ) fr.remove();
+    }
+  }
+
+  // Rows in another layout: columns in reverse order, a categorical with its
+  // levels reversed plus one the model has not seen
+  @Test public void testLayout() {
+    Frame fr = null;
+    GBMModel m = null;
+    try {
+      fr = parse_test_file("smalldata/iris/iris_wheader.csv");
+      m = gbm(fr, "sepal_len", false);
+      RowScorer own = new RowScorer(m);
+      String names[] = new String[own.names().length];
+      String domains[][] = new String[names.length][];
+      for( int c=0; c<names.length; c++ ) names[c] = own.names()[names.length-1-c];
+      int cls = -1;
+      for( int c=0; c<names.length; c++ ) if( names[c].equals("class") ) cls = c;
+      String dom[] = fr.vec("class").domain();
+      domains[cls] = new String[dom.length+1];
+      for( int l=0; l<dom.length; l++ ) domains[cls][l] = dom[dom.length-1-l];
+      domains[cls][dom.length] = "Iris-unseen";
+      RowScorer rs = new RowScorer(m, names, domains);
+      assertEquals(0, rs.code(cls, dom[dom.length-1]), 0);
+      assertEquals(5.5, rs.code(cls==0 ? 1 : 0, "5.5"), 0);
+      assertTrue(Double.isNaN(rs.code(cls, "Iris-other")));
+      for( int r=0; r<fr.numRows(); r++ ) {
+        double row[] = row(rs,fr,r);
+        row[cls] = dom.length-1-row[cls];
+        float exp = own.score(row(own,fr,r))[0];
+        assertEquals(exp, rs.score(row)[0], 0);
+      }
+      // The unseen level scores as a missing value
+      double row[] = row(rs,fr,0), na[] = row.clone();
+      row[cls] = dom.length;
+      na[cls] = Double.NaN;
+      assertEquals(rs.score(na)[0], rs.score(row)[0], 0);
+    } finally {
+      if( m  != null ) m.delete();
+      if( fr != null ) fr.remove();
+    }
+  }
+}
@@ -0,0 +1,181 @@
+package hex.deeplearning;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import water.Key;
+import water.TestUtil;
+import water.fvec.Frame;
+import water.fvec.NFSFileVec;
+import water.fvec.Vec;
+import water.parser.ParseDataset2;
+import water.util.Log;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static hex.deeplearning.DeepLearningModel.DeepLearningParameters;
+
+public class DeepLearningMiniBatchTest extends TestUtil {
+  @BeforeClass() public static void setup() { stall_till_cloudsize(1); }
+
+  private static float[] random(Random rng, int len) {
+    float[] a = new float[len];
+    for (int i = 0; i < len; ++i) a[i] = rng.nextFloat() < 0.2f ? 0 : rng.nextFloat() - 0.5f;
+    return a;
+  }
+
+  // The blocked kernels agree with the textbook loops, including the tails of
+  // the 4-row and k-blocking.
+  @Test public void testGemm() {
+    Random rng = new Random(0xB47C4);
+    final int m = 7, n = 5, k = 2*Neurons.GEMM_BLOCK + 13;
+    float[] a = random(rng, m*k), w = random(rng, n*k), g = random(rng, m*n);
+
+    float[] c = new float[m*n];
+    Neurons.gemm_nt(c, a, w, m, n, k);
+    for (int i = 0; i < m; ++i)
+      for (int j = 0; j < n; ++j) {
+        float s = 0;
+        for (int p = 0; p < k; ++p) s += a[i*k+p] * w[j*k+p];
+        Assert.assertEquals(s, c[i*n+j], 1e-4);
+      }
+
+    float[] e = random(rng, m*k), e0 = e.clone();
+    Neurons.gemm_nn(e, g, w, m, n, k);
+    for (int i = 0; i < m; ++i)
+      for (int p = 0; p < k; ++p) {
+        float s = e0[i*k+p];
+        for (int j = 0; j < n; ++j) s += g[i*n+j] * w[j*k+p];
+        Assert.assertEquals(s, e[i*k+p], 1e-4);
+      }
+
+    float[] d = new float[3*k];
+    Neurons.gemm_tn(d, g, a, m, n, k, 1, 4);
+    for (int j = 1; j < 4; ++j)
+      for (int p = 0; p < k; ++p) {
+        float s = 0;
+        for (int i = 0; i < m; ++i) s += g[i*n+j] * a[i*k+p];
+        Assert.assertEquals(s, d[(j-1)*k+p], 1e-4);
+      }
+  }
+
+  private static DeepLearningModel train(Frame fr, int resp, boolean classification, int[] hidden,
+                                         DeepLearningParameters.Activation act, double epochs, int mini_batch) {
+    DeepLearningParameters p = new DeepLearningParameters();
+    p._destination_key = Key.make();
+    p._train = fr._key;
+    p._response_column = fr._names[resp];
+    p._toEnum = classification;
+    p._hidden = hidden;
+    p._activation = act;
+    if (act == DeepLearningParameters.Activation.TanhWithDropout || act == DeepLearningParameters.Activation.RectifierWithDropout) {
+      p._hidden_dropout_ratios = new double[hidden.length];
+      Arrays.fill(p._hidden_dropout_ratios, 0.1);
+    }
+    p._epochs = epochs;
+    p._seed = 0xDECAF;
+    p._train_samples_per_iteration = -1;
+    p._score_training_samples = 0;
+    p._classification_stop = -1;
+    p._regression_stop = -1;
+    p._mini_batch_size = mini_batch;
+    p._quiet_mode = true;
+    DeepLearning dl = new DeepLearning(p);
+    try {
+      return dl.trainModel().get();
+    } finally {
+      dl.remove();
+    }
+  }
+
+  // Mini-batch training learns prostate about as well as row-by-row training.
+  @Test public void testProstate() {
+    Frame fr = null;
+    try {
+      NFSFileVec nfs = NFSFileVec.make(find_test_file("smalldata/logreg/prostate.csv"));
+      fr = ParseDataset2.parse(Key.make(), nfs._key);
+      for (DeepLearningParameters.Activation act : new DeepLearningParameters.Activation[]{
+              DeepLearningParameters.Activation.Tanh,
+              DeepLearningParameters.Activation.RectifierWithDropout}) {
+        for (int resp : new int[]{1 /*CAPSULE*/, 2 /*AGE*/}) {
+          final boolean classification = resp == 1;
+          double[] err = new double[2];
+          int[] batches = new int[]{1, 16};
+          for (int b = 0; b < batches.length; ++b) {
+            DeepLearningModel model = train(fr, resp, classification, new int[]{20, 20}, act, 20, batches[b]);
+            try {
+              err[b] = model.error();
+              Assert.assertTrue(model.model_info().get_processed_total() >= 20 * fr.numRows());
+              Assert.assertFalse(model.model_info().unstable());
+            } finally {
+              model.delete_best_model();
+              model.delete();
+            }
+          }
+          Log.info("Prostate " + act + (classification ? " classification" : " regression")
+                  + " training error, per-row: " + err[0] + ", mini-batch: " + err[1]);
+          if (classification) Assert.assertTrue(err[1] < 0.35);
+          Assert.assertTrue(err[1] < 1.5 * err[0] + 0.05);
+        }
+      }
+    } finally {
+      if (fr != null) fr.delete();
+    }
+  }
+
+  // Training throughput, per-row vs. mini-batches, on prostate and on a
+  // synthetic MNIST-like frame (784 numeric pixels, 10 classes).
+  // -Ddl.bench.rows sets the rows of the MNIST-like frame.
+  @Test @Ignore public void benchMiniBatch() {
+    Frame prostate = null, mnist = null;
+    try {
+      NFSFileVec nfs = NFSFileVec.make(find_test_file("smalldata/logreg/prostate.csv"));
+      prostate = ParseDataset2.parse(Key.make(), nfs._key);
+      mnist = mnistLike(Integer.getInteger("dl.bench.rows", 10000), 0xD161);
+      bench("prostate", prostate, 1, new int[]{200, 200}, 10);
+      bench("mnist-like", mnist, mnist.numCols()-1, new int[]{512, 512}, 1);
+    } finally {
+      if (prostate != null) prostate.delete();
+      if (mnist != null) mnist.delete();
+    }
+  }
+
+  private static void bench(String name, Frame fr, int resp, int[] hidden, double epochs) {
+    for (int mb : new int[]{1, 8, 32, 128}) {
+      long t0 = System.currentTimeMillis();
+      DeepLearningModel model = train(fr, resp, true, hidden, DeepLearningParameters.Activation.Tanh, epochs, mb);
+      long ms = System.currentTimeMillis() - t0;
+      Log.info("DL bench " + name + " hidden " + hidden[0] + "x" + hidden.length + ", mini_batch_size " + mb + ": "
+              + ms + " ms, " + (long)(epochs * fr.numRows() * 1000. / Math.max(1, ms)) + " rows/s, training error " + model.error());
+      model.delete_best_model();
+      model.delete();
+    }
+  }
+
+  // Blobs of bright pixels, one per class, plus noise
+  private static Frame mnistLike(int rows, long seed) {
+    final int pixels = 784, classes = 10;
+    Random rng = new Random(seed);
+    double[][] cols = new double[pixels+1][rows];
+    for (int r = 0; r < rows; ++r) {
+      int label = rng.nextInt(classes);
+      for (int c = 0; c < pixels; ++c) {
+        boolean on = (c / (pixels / classes)) == label ? rng.nextFloat() < 0.6 : rng.nextFloat() < 0.1;
+        cols[c][r] = on ? 1 + rng.nextInt(255) : 0;
+      }
+      cols[pixels][r] = label;
+    }
+    Vec[] vecs = new Vec[pixels+1];
+    String[] names = new String[pixels+1];
+    Key[] keys = Vec.VectorGroup.VG_LEN1.addVecs(vecs.length);
+    for (int c = 0; c <= pixels; ++c) {
+      vecs[c] = Vec.makeVec(cols[c], keys[c]);
+      names[c] = c < pixels ? "C" + c : "label";
+    }
+    Frame fr = new Frame(Key.make(), names, vecs);
+    water.DKV.put(fr);
+    return fr;
+  }
+}
@@ -244,4 +244,57 @@ public class NeuronsTest extends water.TestUtil {
     assert(srm.get(1,3)==-1.2f);
     assert(srm.get(0,0)==0f);
   }
+
+  // Sparse matrices filled in random order, with repeated and cancelling
+  // updates, hold the same values as a dense one, and all gemv kernels agree.
+  @Test
+  public void sparseGemvTest() {
+    final int rows = 37, cols = 211;
+    Random rng = new Random(0xC5C);
+    DenseRowMatrix dra = new DenseRowMatrix(rows, cols);
+    SparseRowMatrix sra = new SparseRowMatrix(rows, cols);
+    SparseColMatrix sca = new SparseColMatrix(rows, cols);
+    for (int i=0;i<2000;++i) {
+      int row = rng.nextInt(rows), col = rng.nextInt(cols);
+      float val = rng.nextFloat() - 0.5f;
+      if (rng.nextBoolean()) {
+        dra.set(row, col, val); sra.set(row, col, val); sca.set(row, col, val);
+      } else {
+        dra.add(row, col, val); sra.add(row, col, val); sca.add(row, col, val);
+      }
+    }
+    for (int row=0;row<rows;++row)
+      for (int col=0;col<cols;++col) {
+        Assert.assertEquals(dra.get(row, col), sra.get(row, col), 0);
+        Assert.assertEquals(dra.get(row, col), sca.get(row, col), 0);
+      }
+    for (int row=0;row<rows;++row) {
+      SparseLine r = sra.row(row);
+      for (int i=1;i<r._nnz;++i) Assert.assertTrue(r._idx[i-1] < r._idx[i]);
+    }
+    DenseColMatrix dca = new DenseColMatrix(dra, rows, cols);
+
+    float[] x = new float[cols];
+    for (int col=0;col<cols;++col)
+      if (rng.nextFloat() < 0.1f) x[col] = rng.nextFloat();
+    float[] y = new float[rows];
+    for (int row=0;row<rows;++row) y[row] = rng.nextFloat();
+    byte[] bits = new byte[(rows+7)/8];
+    rng.nextBytes(bits);
+    DenseVector dx = new DenseVector(x);
+    SparseVector sx = new SparseVector(x);
+    DenseVector dy = new DenseVector(y);
+
+    float[] ref = new float[rows];
+    gemv_naive(ref, dra.raw(), x, y, bits);
+    for (Matrix a : new Matrix[]{dra, dca, sra, sca})
+      for (Vector v : new Vector[]{dx, sx}) {
+        DenseVector res = new DenseVector(rows);
+        gemv(res, a, v, dy, bits);
+        for (int row=0;row<rows;++row) {
+          if ((bits[row / 8] & (1 << (row % 8))) == 0) continue;
+          Assert.assertEquals(a.getClass().getSimpleName() + " * " + v.getClass().getSimpleName(), ref[row], res.get(row), 1e-5);
+        }
+      }
+  }
 }
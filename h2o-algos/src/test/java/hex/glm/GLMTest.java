@@ -448,4 +448,93 @@ public class GLMTest  extends TestUtil {
       Scope.exit();
     }
   }
+  // Row-at-a-time version of the same task, to check processBlock against
+  static class RowIterationTask extends GLMTask.GLMIterationTask {
+    RowIterationTask(FrameTask.DataInfo dinfo, GLMParameters params, double [] beta, double ymu) {
+      super(null, dinfo, params, true, true, true, beta, ymu, 1, null, null);
+    }
+    @Override protected boolean useBlocks(){ return false; }
+  }
+  // Block version that fails if FrameTask ever falls back to processRow
+  static class BlockIterationTask extends GLMTask.GLMIterationTask {
+    BlockIterationTask(FrameTask.DataInfo dinfo, GLMParameters params, double [] beta, double ymu) {
+      super(null, dinfo, params, true, true, true, beta, ymu, 1, null, null);
+    }
+    @Override public void processRow(long gid, double[] nums, int ncats, int[] cats, double [] responses) {
+      throw new AssertionError("processRow called in block mode");
+    }
+  }
+
+  // The block-at-a-time GLMIterationTask gives the same Gram, x'y, gradient
+  // and validation as the row-at-a-time one; cars has an enum column (after
+  // the conversion) and rows with NAs.
+  @Test public void testIterationTaskBlocks() {
+    Frame fr = null;
+    Vec cyl = null;             // Master of the enum view, which replaces it
+    FrameTask.DataInfo dinfo = null;
+    try {
+      fr = parse_test_file(Key.make("cars_blocks"), "smalldata/junit/cars.csv");
+      fr.remove("name").remove();
+      cyl = fr.replace(fr.find("cylinders"),fr.vec("cylinders").toEnum());
+      fr.add("power (hp)",fr.remove("power (hp)")); // Response goes last
+      dinfo = new FrameTask.DataInfo(Key.make(), fr, fr, 1, false, FrameTask.DataInfo.TransformType.STANDARDIZE, FrameTask.DataInfo.TransformType.NONE);
+      DKV.put(dinfo._key, dinfo);
+      GLMParameters params = new GLMParameters(Family.poisson);
+      double [] beta = new double[dinfo.fullN()+1];
+      for(int i = 0; i < beta.length; ++i) beta[i] = 0.01*(i%5) - 0.02;
+      beta[beta.length-1] = 4.5;
+      GLMTask.GLMIterationTask blk = new BlockIterationTask(dinfo, params, beta, 100).doAll(dinfo._adaptedFrame);
+      GLMTask.GLMIterationTask row = new RowIterationTask(dinfo, params, beta, 100).doAll(dinfo._adaptedFrame);
+      assertTrue(blk._nobs > 0 && blk._nobs < fr.numRows()); // Some rows skipped for NAs
+      assertEquals(row._nobs, blk._nobs);
+      assertEquals(row._yy, blk._yy, 1e-8*Math.abs(row._yy));
+      for(int i = 0; i < row._xy.length; ++i) {
+        assertEquals(row._xy[i], blk._xy[i], 1e-8 * (1 + Math.abs(row._xy[i])));
+        assertEquals(row._grad[i], blk._grad[i], 1e-8 * (1 + Math.abs(row._grad[i])));
+      }
+      for(int i = 0; i < row._gram._xx.length; ++i)
+        for(int j = 0; j < row._gram._xx[i].length; ++j)
+          assertEquals(row._gram._xx[i][j], blk._gram._xx[i][j], 1e-8 * (1 + Math.abs(row._gram._xx[i][j])));
+      for(int i = 0; i < row._gram._diag.length; ++i)
+        assertEquals(row._gram._diag[i], blk._gram._diag[i], 1e-8 * (1 + Math.abs(row._gram._diag[i])));
+      assertEquals(row._val.residualDeviance(), blk._val.residualDeviance(), 1e-8*row._val.residualDeviance());
+    } finally {
+      if( dinfo != null ) DKV.remove(dinfo._key);
+      if( fr != null ) fr.delete();
+      if( cyl != null ) cyl.remove();
+    }
+  }
+  // Blocked (tiled rank-k) Gram updates match row-by-row ones, with a
+  // diagonal categorical, a sparse one, and enough dense columns for several
+  // tiles and rows for several panels.
+  @Test public void testGramBlocked() {
+    final int ndense = 70, nrows = 300;
+    final int [] catOffsets = new int[]{0,10,15};
+    java.util.Random rnd = new java.util.Random(42);
+    double [][] x = new double[ndense][nrows];
+    int [][] cats = new int[2][nrows];
+    double [] w = new double[nrows];
+    for(int r = 0; r < nrows; ++r) {
+      for(int i = 0; i < ndense; ++i) x[i][r] = rnd.nextInt(5) == 0 ? 0 : rnd.nextGaussian();
+      for(int c = 0; c < 2; ++c)
+        cats[c][r] = rnd.nextInt(4) == 0 ? -1 : catOffsets[c] + rnd.nextInt(catOffsets[c+1]-catOffsets[c]);
+      w[r] = rnd.nextInt(10) == 0 ? 0 : rnd.nextDouble();
+    }
+    Gram rows = new Gram(15+ndense, 10, ndense, 2, true);
+    Gram blk = new Gram(15+ndense, 10, ndense, 2, true);
+    double [] row = new double[ndense];
+    int [] ci = new int[2];
+    for(int r = 0; r < nrows; ++r) {
+      for(int i = 0; i < ndense; ++i) row[i] = x[i][r];
+      int catN = 0;
+      for(int c = 0; c < 2; ++c) if(cats[c][r] >= 0) ci[catN++] = cats[c][r];
+      rows.addRow(row, catN, ci, w[r]);
+    }
+    blk.addBlock(x, cats, w, nrows);
+    for(int i = 0; i < rows._xx.length; ++i)
+      for(int j = 0; j < rows._xx[i].length; ++j)
+        assertEquals(rows._xx[i][j], blk._xx[i][j], 1e-10 * (1 + Math.abs(rows._xx[i][j])));
+    for(int i = 0; i < rows._diag.length; ++i)
+      assertEquals(rows._diag[i], blk._diag[i], 1e-10 * (1 + Math.abs(rows._diag[i])));
+  }
 }
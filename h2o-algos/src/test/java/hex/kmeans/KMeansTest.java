@@ -10,6 +10,7 @@ import water.fvec.Frame;
 import water.fvec.NFSFileVec;
 
 import java.io.File;
+import java.util.Random;
 
 public class KMeansTest extends TestUtil {
   @BeforeClass() public static void setup() { stall_till_cloudsize(1); }
@@ -170,6 +171,93 @@ public class KMeansTest extends TestUtil {
     }
   }
 
+  // Pruned Lloyds passes must end in exactly the same clusters
+  @Test public void testAccelerated() {
+    Frame iris = null, blobs = null;
+    try {
+      iris = parse_test_file("smalldata/iris/iris_wheader.csv"); // Includes a categorical column
+      blobs = blobs(20000, 40, 0xB10B5);
+      checkAccelerated(iris, 10, KMeans.Initialization.None);
+      checkAccelerated(iris, 3, KMeans.Initialization.Furthest);
+      checkAccelerated(blobs, 100, KMeans.Initialization.None);
+      checkAccelerated(blobs, 40, KMeans.Initialization.PlusPlus);
+    } finally {
+      if( iris  != null ) iris .remove();
+      if( blobs != null ) blobs.remove();
+    }
+  }
+
+  // Gaussian blobs around random centers in 4 dimensions
+  private static Frame blobs( int nrows, int ncenters, long seed ) {
+    Random rng = new Random(seed);
+    double[][] centers = new double[ncenters][4], rows = new double[nrows][];
+    for( double[] c : centers )
+      for( int i=0; i<c.length; i++ ) c[i] = rng.nextDouble()*100;
+    for( int r=0; r<rows.length; r++ ) {
+      double[] c = centers[rng.nextInt(centers.length)];
+      rows[r] = new double[c.length];
+      for( int i=0; i<c.length; i++ ) rows[r][i] = c[i] + rng.nextGaussian()*5;
+    }
+    return frame(rows);
+  }
+
+  // Mini-batches get close to the full Lloyds MSE, and report their progress
+  @Test public void testMiniBatch() {
+    Frame fr = null;
+    KMeansModel kmm[] = new KMeansModel[2];
+    try {
+      fr = blobs(50000, 20, 0x5C011E7);
+      for( int i=0; i<2; i++ ) {
+        KMeansModel.KMeansParameters parms = new KMeansModel.KMeansParameters();
+        parms._train = fr._key;
+        parms._K = 20;
+        parms._max_iters = 100;
+        parms._init = KMeans.Initialization.PlusPlus;
+        parms._seed = 42;
+        parms._mini_batch_size = i==1 ? 1000 : 0;
+        KMeans job = new KMeans(parms);
+        try { kmm[i] = job.trainModel().get(); }
+        finally { job.remove(); }
+      }
+      KMeansModel.KMeansOutput full = kmm[0]._output, mini = kmm[1]._output;
+      Assert.assertNull(full._batch_mses);
+      Assert.assertEquals(mini._iters, mini._batch_mses.length);
+      Assert.assertEquals(mini._iters, mini._center_changes.length);
+      Assert.assertTrue(mini._center_changes[mini._iters-1] < mini._center_changes[0]);
+      long rows = 0;
+      for( long r : mini._rows ) rows += r;
+      Assert.assertEquals(fr.numRows(), rows);
+      Assert.assertTrue("mini-batch MSE "+mini._mse+" vs. full "+full._mse, mini._mse < 1.2*full._mse);
+    } finally {
+      for( KMeansModel m : kmm ) if( m != null ) m.delete();
+      if( fr != null ) fr.remove();
+    }
+  }
+
+  private static void checkAccelerated( Frame fr, int K, KMeans.Initialization init ) {
+    KMeansModel kmm[] = new KMeansModel[2];
+    try {
+      for( int i=0; i<2; i++ ) {
+        KMeansModel.KMeansParameters parms = new KMeansModel.KMeansParameters();
+        parms._train = fr._key;
+        parms._K = K;
+        parms._max_iters = 50;
+        parms._init = init;
+        parms._seed = 1234;
+        parms._accelerated = i==1;
+        KMeans job = new KMeans(parms);
+        try { kmm[i] = job.trainModel().get(); }
+        finally { job.remove(); }
+      }
+      Assert.assertEquals(kmm[0]._output._iters, kmm[1]._output._iters);
+      Assert.assertArrayEquals(kmm[0]._output._rows, kmm[1]._output._rows);
+      for( int clu=0; clu<K; clu++ )
+        Assert.assertArrayEquals(kmm[0]._output._clusters[clu], kmm[1]._output._clusters[clu], 0);
+    } finally {
+      for( KMeansModel m : kmm ) if( m != null ) m.delete();
+    }
+  }
+
   // Negative test - expect to throw IllegalArgumentException
   @Test (expected = IllegalArgumentException.class) public void testTooManyK() {
     Frame fr = frame(ard(d(1,0),d(0,0),d(1,0),d(2,0),d(0,0),d(0,0)));
@@ -0,0 +1,179 @@
+package hex.tree;
+
+import hex.tree.gbm.GBM;
+import hex.tree.gbm.GBMModel;
+import org.junit.*;
+import water.AutoBuffer;
+import water.DKV;
+import water.Key;
+import water.TestUtil;
+import water.fvec.Frame;
+import water.fvec.Vec;
+import water.util.Log;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FlatForestTest extends TestUtil {
+  @BeforeClass public static void stall() { stall_till_cloudsize(1); }
+
+  private static final int BLOCK = SharedTreeModel.SCORE_BLOCK;
+
+  private static GBMModel gbm( Frame fr, String resp, boolean classification, int ntrees, int depth ) {
+    GBMModel.GBMParameters parms = new GBMModel.GBMParameters();
+    parms._train = fr._key;
+    parms._response_column = resp;
+    parms._toEnum = classification;
+    parms._ntrees = ntrees;
+    parms._max_depth = depth;
+    parms._min_rows = 1;
+    parms._learn_rate = .2f;
+    GBM job = new GBM(parms);
+    try {
+      return job.trainModel().get();
+    } finally {
+      job.remove();
+    }
+  }
+
+  private static CompressedTree[][] trees( GBMModel m ) {
+    Key keys[][] = m._output._treeKeys;
+    CompressedTree cts[][] = new CompressedTree[keys.length][];
+    for( int t=0; t<keys.length; t++ ) {
+      cts[t] = new CompressedTree[keys[t].length];
+      for( int c=0; c<keys[t].length; c++ )
+        if( keys[t][c] != null ) cts[t][c] = DKV.get(keys[t][c]).get();
+    }
+    return cts;
+  }
+
+  // Rows of the training frame, minus the response, with some NaNs mixed in
+  private static double[][] rows( Frame fr, int ncols, long seed ) {
+    Random rng = new Random(seed);
+    Vec vecs[] = fr.vecs();
+    double rows[][] = new double[(int)fr.numRows()][ncols];
+    for( int r=0; r<rows.length; r++ )
+      for( int c=0; c<ncols; c++ )
+        rows[r][c] = rng.nextInt(20) == 0 ? Double.NaN : vecs[c].at(r);
+    return rows;
+  }
+
+  // Flat scoring, a row or a block at a time, gives exactly the sums of the
+  // compressed trees
+  private static void check( GBMModel m, Frame fr, int ncols ) {
+    CompressedTree cts[][] = trees(m);
+    FlatForest forest = ((SharedTreeModel)m).forest();
+    assertEquals(cts.length, forest.ntrees());
+    double rows[][] = rows(fr, ncols, 0xF1A7);
+    int K = forest.nclasses(), npreds = K==1 ? 1 : K+1;
+    double cols[][] = new double[ncols][rows.length];
+    for( int r=0; r<rows.length; r++ )
+      for( int c=0; c<ncols; c++ ) cols[c][r] = rows[r][c];
+    float sums[][] = new float[K][rows.length];
+    forest.score(cols, rows.length, sums, 0, forest.ntrees());
+    for( int r=0; r<rows.length; r++ ) {
+      float exp[] = new float[npreds], act[] = new float[npreds];
+      for( CompressedTree ts[] : cts ) DTreeScorer.scoreTree(rows[r], exp, ts);
+      forest.score(rows[r], act, 0, forest.ntrees());
+      assertArrayEquals(exp, act, 0);
+      for( int c=0; c<K; c++ ) assertEquals(exp[K==1?0:c+1], sums[c][r], 0);
+    }
+  }
+
+  @Test public void testGBMTrees() {
+    Frame fr = null, iris = null;
+    GBMModel m = null;
+    try {
+      fr = parse_test_file("./smalldata/logreg/prostate.csv");
+      fr.remove("ID").remove();
+      // Regression; PSA moved last so the predictors are the leading columns
+      fr.add("PSA", fr.remove("PSA"));
+      DKV.put(fr);
+      m = gbm(fr, "PSA", false, 10, 5);
+      check(m, fr, fr.numCols()-1);
+      m.delete();
+      // Binomial
+      fr.add("CAPSULE", fr.remove("CAPSULE"));
+      DKV.put(fr);
+      m = gbm(fr, "CAPSULE", true, 10, 5);
+      check(m, fr, fr.numCols()-1);
+      m.delete();
+      // Multinomial, with a stump-heavy small forest
+      iris = parse_test_file("smalldata/iris/iris_wheader.csv");
+      m = gbm(iris, "class", true, 5, 2);
+      check(m, iris, iris.numCols()-1);
+    } finally {
+      if( m    != null ) m.delete();
+      if( fr   != null ) fr.remove();
+      if( iris != null ) iris.remove();
+    }
+  }
+
+  // Group splits, in the small inline-bitset layout: levels 1 and 9 go right
+  @Test public void testGroupSplit() {
+    AutoBuffer ab = new AutoBuffer(15);
+    ab.put1(8 | 48 | (48<<2));  // Group split, left leaf, right leaf
+    ab.put2((char)0);
+    ab.put1(0x02).put1(0x02).put1(0).put1(0);
+    ab.put4f(-1f).put4f(1f);
+    FlatForest forest = new FlatForest(new CompressedTree[][]{{new CompressedTree(ab.buf(),1,0,0,0)}});
+    for( int level=0; level<40; level++ ) {
+      float preds[] = new float[1];
+      forest.score(new double[]{level}, preds, 0, 1);
+      assertEquals(level==1 || level==9 ? 1f : -1f, preds[0], 0);
+    }
+    float preds[] = new float[1];
+    forest.score(new double[]{Double.NaN}, preds, 0, 1);
+    assertEquals(-1f, preds[0], 0);
+  }
+
+  // Row-at-a-time compressed tree decoding vs. flat blocks, on prostate
+  // replicated to -Dtree.bench.rows rows
+  @Test @Ignore public void benchScoring() {
+    Frame fr = null;
+    GBMModel m = null;
+    try {
+      fr = parse_test_file("./smalldata/logreg/prostate.csv");
+      fr.remove("ID").remove();
+      fr.add("PSA", fr.remove("PSA"));
+      DKV.put(fr);
+      m = gbm(fr, "PSA", false, 50, 6);
+      int ncols = fr.numCols()-1;
+      double base[][] = rows(fr, ncols, 1);
+      double rows[][] = new double[Integer.getInteger("tree.bench.rows", 100000)][];
+      for( int r=0; r<rows.length; r++ ) rows[r] = base[r%base.length];
+      double cols[][] = new double[ncols][BLOCK];
+      float sums[][] = new float[1][BLOCK];
+      CompressedTree cts[][] = trees(m);
+      FlatForest forest = ((SharedTreeModel)m).forest();
+      for( int iter=0; iter<3; iter++ ) {
+        long t0 = System.nanoTime();
+        float preds[] = new float[1];
+        double sum0 = 0;
+        for( double row[] : rows ) {
+          Arrays.fill(preds, 0);
+          for( CompressedTree ts[] : cts ) DTreeScorer.scoreTree(row, preds, ts);
+          sum0 += preds[0];
+        }
+        long t1 = System.nanoTime();
+        double sum1 = 0;
+        for( int r0=0; r0<rows.length; r0+=BLOCK ) {
+          int n = Math.min(BLOCK, rows.length-r0);
+          for( int c=0; c<ncols; c++ )
+            for( int i=0; i<n; i++ ) cols[c][i] = rows[r0+i][c];
+          Arrays.fill(sums[0], 0);
+          forest.score(cols, n, sums, 0, forest.ntrees());
+          for( int i=0; i<n; i++ ) sum1 += sums[0][i];
+        }
+        long t2 = System.nanoTime();
+        assertEquals(sum0, sum1, 0);
+        Log.info("FlatForest bench: "+rows.length+" rows, 50 trees: compressed "+(t1-t0)/1000000+" ms, flat blocks "+(t2-t1)/1000000+" ms");
+      }
+    } finally {
+      if( m  != null ) m.delete();
+      if( fr != null ) fr.remove();
+    }
+  }
+}
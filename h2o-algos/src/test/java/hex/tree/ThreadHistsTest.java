@@ -0,0 +1,112 @@
+package hex.tree;
+
+import org.junit.*;
+import water.TestUtil;
+import water.util.AtomicUtils;
+import water.util.Log;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ThreadHistsTest extends TestUtil {
+  @BeforeClass public static void stall() { stall_till_cloudsize(1); }
+
+  private static DHistogram[][] hists( int nleaves, int ncols, int nbins ) {
+    DHistogram hcs[][] = new DHistogram[nleaves][ncols];
+    for( int l=0; l<nleaves; l++ )
+      for( int c=0; c<ncols; c++ )
+        (hcs[l][c] = DHistogram.make("C"+c,nbins,(byte)0,0f,1f,1000,false,false)).init();
+    return hcs;
+  }
+
+  // The first nslots threads get their own copies, the rest share; folding
+  // gives the same counts as all threads updating the shared histograms.
+  @Test public void testFold() throws InterruptedException {
+    final DHistogram hcs[][] = hists(2,3,16);
+    final ScoreBuildHistogram.ThreadHists th = new ScoreBuildHistogram.ThreadHists(hcs,2);
+    final DHistogram got[][][] = new DHistogram[4][][], again[][][] = new DHistogram[4][][];
+    Thread ts[] = new Thread[4];
+    for( int t=0; t<ts.length; t++ ) {
+      final int tt = t;
+      ts[t] = new Thread() {
+        @Override public void run() {
+          DHistogram priv[][] = got[tt] = th.get();
+          again[tt] = th.get();
+          DHistogram hs[][] = priv == null ? hcs : priv;
+          for( int l=0; l<hs.length; l++ )
+            for( int c=0; c<hs[l].length; c++ )
+              for( int i=0; i<100; i++ )
+                hs[l][c].incr((float)((i*7%100)/100.0),1.0);
+        }
+      };
+      ts[t].start();
+      ts[t].join();             // One after another: slots go in arrival order
+    }
+    for( int t=0; t<ts.length; t++ ) assertSame(got[t],again[t]);
+    assertNotNull(got[0]);
+    assertNotNull(got[1]);
+    assertNotSame(got[0],got[1]);
+    assertNull(got[2]);
+    assertNull(got[3]);
+    th.fold();
+    for( DHistogram hs[] : hcs )
+      for( DHistogram h : hs ) {
+        long n = 0;
+        for( int b=0; b<h.nbins(); b++ ) n += h.bins(b);
+        assertEquals(400,n);
+        assertEquals(0f,h.find_min(),0);
+        assertEquals(.99f,h.find_maxIn(),1e-6);
+        assertEquals(1.0,h.mean(0),0);
+      }
+  }
+
+  // Shared (atomic) vs thread-private histogram updates, at 1, 2, 4, ... threads.
+  // Each "chunk" gathers its rows into local arrays first, then adds them in
+  // once per bin, as ScoreBuildHistogram.accum_all2 does.
+  // -Dhist.bench.rows sets the rows per thread.
+  @Test @Ignore public void benchThreadHists() throws InterruptedException {
+    final int rows = Integer.getInteger("hist.bench.rows",20000000);
+    final int nleaves = 4, ncols = 10, nbins = 64, chunk = 1000;
+    for( int nthreads=1; nthreads<=Runtime.getRuntime().availableProcessors(); nthreads<<=1 ) {
+      for( int priv=0; priv<2; priv++ ) {
+        final DHistogram hcs[][] = hists(nleaves,ncols,nbins);
+        final ScoreBuildHistogram.ThreadHists th = priv==1 ? new ScoreBuildHistogram.ThreadHists(hcs,nthreads) : null;
+        Thread ts[] = new Thread[nthreads];
+        long t0 = System.nanoTime();
+        for( int t=0; t<nthreads; t++ ) {
+          final long seed = t;
+          ts[t] = new Thread() {
+            @Override public void run() {
+              Random rng = new Random(seed);
+              DHistogram mine[][] = th == null ? null : th.get();
+              DHistogram hs[][] = mine == null ? hcs : mine;
+              int bins[] = new int[nbins];
+              double sums[] = new double[nbins], ssqs[] = new double[nbins];
+              for( int r=0; r<rows; r+=chunk )
+                for( int l=0; l<nleaves; l++ )
+                  for( int c=0; c<ncols; c++ ) {
+                    DRealHistogram rh = (DRealHistogram)hs[l][c];
+                    for( int i=0; i<chunk/nleaves; i++ ) {
+                      int b = rng.nextInt(nbins);
+                      double y = rng.nextDouble();
+                      bins[b]++; sums[b] += y; ssqs[b] += y*y;
+                    }
+                    for( int b=0; b<nbins; b++ ) {
+                      if( mine != null ) { rh._bins[b] += bins[b]; rh.incr2(b,sums[b],ssqs[b]); }
+                      else { AtomicUtils.IntArray.add(rh._bins,b,bins[b]); rh.incr1(b,sums[b],ssqs[b]); }
+                      bins[b] = 0; sums[b] = ssqs[b] = 0;
+                    }
+                  }
+            }
+          };
+          ts[t].start();
+        }
+        for( Thread t : ts ) t.join();
+        if( th != null ) th.fold();
+        long ms = (System.nanoTime()-t0)/1000000;
+        Log.info("ThreadHists bench: "+nthreads+" threads, "+(priv==1 ? "private" : "shared ")+": "+ms+" ms");
+      }
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package hex.tree;
+
+import hex.Model;
+import hex.RowScorer;
+import hex.tree.gbm.GBM;
+import hex.tree.gbm.GBMModel;
+import org.junit.*;
+import water.DKV;
+import water.Key;
+import water.TestUtil;
+import water.fvec.Frame;
+import water.util.JCodeGen;
+import water.util.Log;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.FileWriter;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TreeJCodeGenTest extends TestUtil {
+  @BeforeClass public static void stall() { stall_till_cloudsize(1); }
+
+  private static GBMModel gbm( Frame fr, String resp, boolean classification, int ntrees, int depth ) {
+    GBMModel.GBMParameters parms = new GBMModel.GBMParameters();
+    parms._train = fr._key;
+    parms._response_column = resp;
+    parms._toEnum = classification;
+    parms._ntrees = ntrees;
+    parms._max_depth = depth;
+    parms._min_rows = 1;
+    parms._learn_rate = .2f;
+    GBM job = new GBM(parms);
+    try {
+      return job.trainModel().get();
+    } finally {
+      job.remove();
+    }
+  }
+
+  // The model's generated code, compiled into dir and loaded
+  private static Object compile( Model m, String java, File dir ) throws Exception {
+    JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+    Assume.assumeNotNull(javac);  // Needs a JDK, not just a JRE
+    String name = JCodeGen.toJavaId(m._key.toString());
+    File src = new File(dir, name+".java");
+    try( FileWriter w = new FileWriter(src) ) { w.write(java); }
+    assertEquals(0, javac.run(null, null, null, "-d", dir.getPath(), src.getPath()));
+    return new URLClassLoader(new URL[]{dir.toURI().toURL()}).loadClass(name).newInstance();
+  }
+
+  private static void delete( File f ) {
+    File fs[] = f.listFiles();
+    if( fs != null ) for( File x : fs ) delete(x);
+    f.delete();
+  }
+
+  // Rows of the frame in the model's feature order, with some NaNs mixed in
+  private static double[][] rows( RowScorer rs, Frame fr, long seed ) {
+    Random rng = new Random(seed);
+    double rows[][] = new double[(int)fr.numRows()][rs.names().length];
+    for( int r=0; r<rows.length; r++ )
+      for( int c=0; c<rows[r].length; c++ )
+        rows[r][c] = rng.nextInt(20) == 0 ? Double.NaN : fr.vec(rs.names()[c]).at(r);
+    return rows;
+  }
+
+  // The generated code predicts exactly what the model does
+  private static String check( Model m, Frame fr ) throws Exception {
+    File dir = Files.createTempDirectory("pojo").toFile();
+    try {
+      String java = m.toJava();
+      Object pojo = compile(m, java, dir);
+      Method predict = pojo.getClass().getMethod("predict", double[].class, float[].class);
+      assertArrayEquals(m._output._names, (String[])pojo.getClass().getField("NAMES").get(null));
+      RowScorer rs = new RowScorer(m);
+      for( double row[] : rows(rs, fr, 0xC0DE) ) {
+        float exp[] = rs.score(row);
+        float act[] = (float[])predict.invoke(pojo, row, new float[exp.length]);
+        assertArrayEquals(Arrays.toString(row), exp, act, 0);
+      }
+      return java;
+    } finally {
+      delete(dir);
+    }
+  }
+
+  @Test public void testGBM() throws Exception {
+    Frame fr = null, iris = null;
+    GBMModel m = null;
+    try {
+      fr = parse_test_file("./smalldata/logreg/prostate.csv");
+      fr.remove("ID").remove();
+      DKV.put(fr);
+      // Regression, with trees deep enough to spill into subtree methods
+      m = gbm(fr, "PSA", false, 5, 10);
+      assertTrue(check(m, fr).contains(".predict1(data)"));
+      m.delete();
+      // Binomial
+      m = gbm(fr, "CAPSULE", true, 10, 5);
+      check(m, fr);
+      m.delete();
+      // Multinomial, with more trees than one forest class holds
+      iris = parse_test_file("smalldata/iris/iris_wheader.csv");
+      m = gbm(iris, "class", true, SharedTreeModel.TREES_PER_FOREST/3+1, 2);
+      assertTrue(check(m, iris).contains("_Forest_1.score(data, preds);"));
+    } finally {
+      if( m    != null ) m.delete();
+      if( fr   != null ) fr.remove();
+      if( iris != null ) iris.remove();
+    }
+  }
+
+  // Generated code vs. compressed tree scoring, on prostate replicated to
+  // -Dtree.bench.rows rows
+  @Test @Ignore public void benchPOJO() throws Exception {
+    Frame fr = null;
+    GBMModel m = null;
+    File dir = Files.createTempDirectory("pojo").toFile();
+    try {
+      fr = parse_test_file("./smalldata/logreg/prostate.csv");
+      fr.remove("ID").remove();
+      DKV.put(fr);
+      m = gbm(fr, "PSA", false, 50, 6);
+      RowScorer rs = new RowScorer(m);
+      double base[][] = rows(rs, fr, 1);
+      double rows[][] = new double[Integer.getInteger("tree.bench.rows", 100000)][];
+      for( int r=0; r<rows.length; r++ ) rows[r] = base[r%base.length];
+      Key keys[][] = m._output._treeKeys;
+      CompressedTree cts[][] = new CompressedTree[keys.length][1];
+      for( int t=0; t<keys.length; t++ ) cts[t][0] = DKV.get(keys[t][0]).get();
+      Object pojo = compile(m, m.toJava(), dir);
+      Method predict = pojo.getClass().getMethod("predict", double[].class, float[].class);
+      float init = (float)m._output._initialPrediction;
+      for( int iter=0; iter<5; iter++ ) {
+        long t0 = System.nanoTime();
+        float preds[] = new float[1];
+        double sum0 = 0;
+        for( double row[] : rows ) {
+          Arrays.fill(preds, 0);
+          for( CompressedTree ts[] : cts ) DTreeScorer.scoreTree(row, preds, ts);
+          sum0 += preds[0] + init;
+        }
+        long t1 = System.nanoTime();
+        double sum1 = 0;
+        for( double row[] : rows )
+          sum1 += ((float[])predict.invoke(pojo, row, preds))[0];
+        long t2 = System.nanoTime();
+        assertEquals(sum0, sum1, 1e-6*Math.abs(sum0));
+        Log.info("POJO bench: "+rows.length+" rows, 50 trees: compressed "+(t1-t0)/1000000+" ms, generated code "+(t2-t1)/1000000+" ms");
+      }
+    } finally {
+      delete(dir);
+      if( m  != null ) m.delete();
+      if( fr != null ) fr.remove();
+    }
+  }
+}
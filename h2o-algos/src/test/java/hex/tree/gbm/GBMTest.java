@@ -8,6 +8,7 @@ import water.fvec.Frame;
 import water.fvec.Chunk;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class GBMTest extends TestUtil {
 
@@ -61,6 +62,68 @@ public class GBMTest extends TestUtil {
     }
   }
 
+  // Pre-binned columns must give exactly the same trees as binning raw data
+  @Test public void testPrebinSameModel() {
+    Frame fr = null;
+    try {
+      fr = prostate();
+      assertEquals(prostateMSE(fr,false,false),prostateMSE(fr,true,false),0);
+    } finally {
+      if( fr != null ) fr.remove();
+    }
+  }
+
+  // Subtracted sibling histograms keep the parent's bin boundaries, so the
+  // model differs from the re-binned one, but must not be much worse; and the
+  // pre-binned columns still bin exactly on the coarsened grids.
+  @Test public void testSubtractHistograms() {
+    Frame fr = null;
+    try {
+      fr = prostate();
+      double mse = prostateMSE(fr,true,false);
+      double sub = prostateMSE(fr,true,true);
+      assertEquals(sub,prostateMSE(fr,false,true),0);
+      assertTrue("MSE "+sub+" vs "+mse, sub < 1.25*mse);
+    } finally {
+      if( fr != null ) fr.remove();
+    }
+  }
+
+  private Frame prostate() {
+    Frame fr = parse_test_file("./smalldata/logreg/prostate.csv");
+    fr.remove("ID").remove();
+    water.DKV.put(fr);
+    return fr;
+  }
+
+  // Training MSE of a small regression GBM on PSA
+  private double prostateMSE( Frame fr, boolean prebin, boolean subtract ) {
+    GBMModel.GBMParameters parms = new GBMModel.GBMParameters();
+    parms._train = fr._key;
+    parms._response_column = "PSA";
+    parms._toEnum = false;
+    parms._ntrees = 4;
+    parms._max_depth = 4;
+    parms._min_rows = 1;
+    parms._nbins = 50;
+    parms._learn_rate = .2f;
+    parms._prebin = prebin;
+    parms._subtract_histograms = subtract;
+    GBMModel gbm = null;
+    Frame pred = null;
+    GBM job = null;
+    try {
+      job = new GBM(parms);
+      gbm = job.trainModel().get();
+      pred = gbm.score(fr);
+      return new CompErr().doAll(job.response(),pred.vecs()[0])._sum/pred.numRows();
+    } finally {
+      if( job  != null ) job.remove();
+      if( pred != null ) pred.remove();
+      if( gbm  != null ) gbm.delete();
+    }
+  }
+
   private static class CompErr extends MRTask<CompErr> {
     double _sum;
     @Override public void map( Chunk resp, Chunk pred ) {
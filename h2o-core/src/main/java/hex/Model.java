@@ -4,7 +4,9 @@ import water.*;
 import water.api.ModelSchema;
 import water.fvec.*;
 import water.util.ArrayUtils;
+import water.util.JCodeGen;
 import water.util.Log;
+import water.util.SB;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
@@ -347,16 +349,7 @@ public abstract class Model<M extends Model<M,P,O>, P extends Model.Parameters,
       names[i] = _output.classNames()[i-1];
     final int num_features = _output.nfeatures();
     new MRTask() {
-      @Override public void map( Chunk chks[] ) {
-        double tmp [] = new double[num_features];
-        float preds[] = new float [_output.nclasses()==1?1:_output.nclasses()+1];
-        int len = chks[0]._len;
-        for( int row=0; row<len; row++ ) {
-          float p[] = score0(chks,row,tmp,preds);
-          for( int c=0; c<preds.length; c++ )
-            chks[num_features+c].set0(row,p[c]);
-        }
-      }
+      @Override public void map( Chunk chks[] ) { score0(chks,num_features); }
     }.doAll(ArrayUtils.join(adaptFrm.vecs(),newVecs));
 
     // Return just the output columns
@@ -575,15 +568,34 @@ public abstract class Model<M extends Model<M,P,O>, P extends Model.Parameters,
    *  subclass scoring logic. */
   abstract protected float[] score0( Chunk chks[], int row_in_chunk, double[] tmp, float[] preds );
 
+  /** Bulk scoring API for a whole chunk: the first num_features Chunks are
+   *  the adapted data, and each row's predictions go into the Chunks after
+   *  them.  Default method scores a row at a time; models which can score a
+   *  block of rows at once more cheaply override it. */
+  protected void score0( Chunk chks[], int num_features ) {
+    double tmp [] = new double[num_features];
+    float preds[] = new float [_output.nclasses()==1?1:_output.nclasses()+1];
+    int len = chks[0]._len;
+    for( int row=0; row<len; row++ ) {
+      float p[] = score0(chks,row,tmp,preds);
+      for( int c=0; c<preds.length; c++ )
+        chks[num_features+c].set0(row,p[c]);
+    }
+  }
+
   /** Subclasses implement the scoring logic.  The data is pre-loaded into a
    *  re-used temp array, in the order the model expects.  The predictions are
    *  loaded into the re-used temp array, which is also returned.  */
   protected abstract float[] score0(double data[/*ncols*/], float preds[/*nclasses+1*/]);
+  /** Score one row of adapted data, in the model's column order, with the
+   *  same post-processing as bulk scoring; used by {@link RowScorer}. */
+  float[] scoreRow( double data[], float preds[] ) { return score0(data,preds); }
   // Version where the user has just ponied-up an array of data to be scored.
   // Data must be in proper order.  Handy for JUnit tests.
   public double score(double [] data){ return ArrayUtils.maxIndex(score0(data, new float[_output.nclasses()]));  }
 
   @Override protected Futures remove_impl( Futures fs ) {
+    RowScorer.forget(_key,fs);
     for( Key k : _output._model_metrics )
       k.remove(fs);
     return fs;
@@ -593,4 +605,63 @@ public abstract class Model<M extends Model<M,P,O>, P extends Model.Parameters,
     return _parms.checksum() *
             _output.checksum();
   }
+
+  // ==========================================================================
+  // Java code generation
+
+  /** Java source of a standalone predictor for this model (a POJO), with no
+   *  H2O dependencies: a public class named after the model key, with a
+   *  {@code predict(double[] data, float[] preds)} method scoring a row as
+   *  {@link #score(Frame)} does - features in the model's column order,
+   *  categoricals as level indices. */
+  public String toJava() { return toJava(new SB()).toString(); }
+
+  public SB toJava( SB sb ) {
+    String modelName = JCodeGen.toJavaId(_key.toString());
+    SB fileCtx = new SB();      // Top-level classes following the model class
+    sb.p("// Standalone predictor for H2O model ").p(JCodeGen.toJavaComment(_key.toString())).nl();
+    sb.p("//   javac ").p(modelName).p(".java").nl().nl();
+    sb.p("public class ").p(modelName).p(" {").nl().ii(1);
+    toJavaInit(sb, fileCtx, modelName);
+    sb.nl();
+    sb.i().p("// Predict one row: data holds the features in NAMES order, categoricals").nl();
+    sb.i().p("// as level indices into DOMAINS and NaN for missing values.  preds gets").nl();
+    sb.i().p("// the prediction: for classification the label, then the class").nl();
+    sb.i().p("// probabilities; for regression the value.").nl();
+    sb.i().p("public float[] predict( double[] data, float[] preds ) {").nl().ii(1);
+    toJavaPredictBody(sb, fileCtx, modelName);
+    toJavaPredictEnd(sb);
+    sb.i().p("return preds;").nl();
+    sb.di(1).i().p("}").nl();
+    sb.di(1).p("}").nl();
+    return sb.p(fileCtx);
+  }
+
+  /** Constants of the generated class: sizes, column names and domains.
+   *  Large arrays go to holder classes in fileCtx. */
+  protected SB toJavaInit( SB sb, SB fileCtx, String modelName ) {
+    JCodeGen.toStaticVar(sb, "NFEATURES", _output.nfeatures(), "Number of features, the length of a row");
+    JCodeGen.toStaticVar(sb, "NCLASSES", _output.nclasses(), "Number of classes; 1 for regression");
+    sb.i().p("// Column names: the features, then the response").nl();
+    sb.i().p("public static final String[] NAMES = ").p(modelName).p("_Names.VALUES;").nl();
+    JCodeGen.toClass(fileCtx, modelName+"_Names", _output._names);
+    sb.i().p("// Levels of categorical columns, null for numeric columns").nl();
+    sb.i().p("public static final String[][] DOMAINS = new String[][] {").nl();
+    for( int c=0; c<_output._domains.length; c++ ) {
+      String dom[] = _output._domains[c];
+      sb.i(1).p(dom == null ? "null" : modelName+"_Domain_"+c+".VALUES").p(c < _output._domains.length-1 ? "," : "").nl();
+      if( dom != null ) JCodeGen.toClass(fileCtx, modelName+"_Domain_"+c, dom);
+    }
+    sb.i().p("};").nl();
+    return sb;
+  }
+
+  /** Body of the generated predict method, filling preds from data; helper
+   *  classes go to fileCtx.  Models which cannot generate code throw. */
+  protected void toJavaPredictBody( SB body, SB fileCtx, String modelName ) {
+    throw H2O.unimpl();
+  }
+
+  /** Code run on the predict body's preds, for all models of a kind */
+  protected void toJavaPredictEnd( SB body ) { }
 }
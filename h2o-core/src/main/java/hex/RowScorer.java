@@ -0,0 +1,193 @@
+package hex;
+
+import water.Futures;
+import water.Key;
+import water.MRTask;
+import water.nbhm.NonBlockingHashMap;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Low-latency scoring of single rows and small batches of rows.
+ *
+ *  <p>{@link Model#score(water.fvec.Frame)} adapts a whole Frame, which means
+ *  new Vecs, DKV keys and an MRTask - fine for bulk scoring, but far too slow
+ *  for a real-time request of a few rows.  A RowScorer does the adaption work once:
+ *  the column mapping from the caller's layout to the model's, and the
+ *  enum-level mapping from {@link Model#getDomainMapping} for each
+ *  categorical column.  Scoring then reuses per-thread scratch arrays, so
+ *  a row is scored without touching the DKV or allocating.
+ *
+ *  <p>Each RowScorer also keeps the latencies of its most recent calls, for
+ *  p50/p99 reporting.
+ */
+public class RowScorer {
+  /** Calls whose latency is kept; a power of 2 */
+  static final int WINDOW = 4096;
+
+  public final Model _model;
+  private final String _names[];        // Caller's column layout
+  private final String _domains[][];
+  private final int _npreds;
+  private final int _cols[];            // Per model feature: caller column, or -1 if missing
+  private final int _enums[][][];       // Per model feature: packed level mapping, or null if none needed
+  private final HashMap<String,Integer> _levels[]; // Per caller column: level to code, or null if numeric
+  private final double _missing;        // Value of missing columns
+
+  private final ThreadLocal<Scratch> _scratch = new ThreadLocal<Scratch>() {
+    @Override protected Scratch initialValue() { return new Scratch(); }
+  };
+  private final class Scratch {
+    final double _data [] = new double[_cols.length];
+    final float  _preds[] = new float [_npreds];
+  }
+
+  // Latencies in nanoseconds of the last WINDOW calls, as a ring
+  private final long _lat[] = new long[WINDOW];
+  private final AtomicLong _calls = new AtomicLong();
+
+  /** Score rows laid out as the model's own features: same names, order and
+   *  domains. */
+  public RowScorer( Model m ) { this(m, features(m), featureDomains(m)); }
+
+  /** Score rows laid out as the given columns, holding enum codes into the
+   *  given domains.  Model columns not among them are scored as missing, and
+   *  levels the model has not seen as NA. */
+  public RowScorer( Model m, String names[], String domains[][] ) {
+    _model = m;
+    _names = names;
+    _domains = domains;
+    _npreds = m._output.nclasses()==1 ? 1 : m._output.nclasses()+1;
+    int nfeatures = features(m).length;
+    _cols = new int[nfeatures];
+    _enums = new int[nfeatures][][];
+    _missing = m.missingColumnsType();
+    HashMap<String,Integer> cols = new HashMap<>();
+    for( int i=0; i<names.length; i++ ) cols.put(names[i],i);
+    for( int c=0; c<nfeatures; c++ ) {
+      String name = m._output._names[c];
+      Integer i = cols.get(name);
+      _cols[c] = i == null ? -1 : i;
+      if( i == null ) continue;
+      String ms[] = m._output._domains[c]; // Model enum
+      String ds[] = domains[i];            // Data  enum
+      if( ms == ds ) continue;             // Domains trivially equal
+      if( ms == null )
+        throw new IllegalArgumentException("Incompatible column: '" + name + "', expected (trained on) numeric, was passed a categorical");
+      if( ds == null )
+        throw new IllegalArgumentException("Incompatible column: '" + name + "', expected (trained on) categorical, was passed a numeric");
+      if( !Arrays.equals(ms,ds) )
+        _enums[c] = Model.getDomainMapping(name, ms, ds, false);
+    }
+    _levels = new HashMap[names.length];
+    for( int i=0; i<names.length; i++ )
+      if( domains[i] != null ) {
+        _levels[i] = new HashMap<>((int)(domains[i].length/0.75f)+1);
+        for( int l=0; l<domains[i].length; l++ ) _levels[i].put(domains[i][l],l);
+      }
+  }
+
+  private static String[] features( Model m ) {
+    return Arrays.copyOf(m._output._names, m._output.nfeatures());
+  }
+  private static String[][] featureDomains( Model m ) {
+    return Arrays.copyOf(m._output._domains, m._output.nfeatures());
+  }
+
+  // One scorer per model for rows in the model's own layout, shared by all
+  // requests for the model
+  private static final NonBlockingHashMap<Key,RowScorer> SCORERS = new NonBlockingHashMap<>();
+
+  /** The shared scorer for rows in the model's own layout; built on first
+   *  use, and again if the model changes. */
+  public static RowScorer get( Model m ) {
+    RowScorer rs = SCORERS.get(m._key);
+    if( rs == null || rs._model != m )
+      SCORERS.put(m._key, rs = new RowScorer(m));
+    return rs;
+  }
+
+  /** Drop the shared scorer of a removed model, on every node. */
+  static Futures forget( Key key, Futures fs ) {
+    fs.add(new ForgetTask(key).dfork((Key[])null,false));
+    return fs;
+  }
+  private static class ForgetTask extends MRTask<ForgetTask> {
+    final Key _key;
+    ForgetTask( Key key ) { _key = key; }
+    @Override protected void setupLocal() { SCORERS.remove(_key); }
+  }
+
+  /** Input column names */
+  public String[] names() { return _names; }
+  /** Input column domains; null for numeric columns */
+  public String[][] domains() { return _domains; }
+  /** Length of a prediction: 1 for regression, else the label plus the class
+   *  probabilities */
+  public int npreds() { return _npreds; }
+
+  /** The code of a value given as text in input column col: the level index
+   *  for a categorical column (NaN for an unknown level), else the number. */
+  public double code( int col, String s ) {
+    if( _levels[col] == null ) return Double.parseDouble(s);
+    Integer l = _levels[col].get(s);
+    return l == null ? Double.NaN : l;
+  }
+
+  /** Score one row.  The result is this thread's scratch array, overwritten
+   *  by the next call on the same thread. */
+  public float[] score( double row[] ) {
+    long t0 = System.nanoTime();
+    float preds[] = score(row, _scratch.get());
+    record(System.nanoTime()-t0);
+    return preds;
+  }
+
+  /** Score a batch of rows, into fresh prediction arrays. */
+  public float[][] score( double rows[][] ) {
+    long t0 = System.nanoTime();
+    Scratch s = _scratch.get();
+    float preds[][] = new float[rows.length][];
+    for( int r=0; r<rows.length; r++ )
+      preds[r] = score(rows[r], s).clone();
+    record(System.nanoTime()-t0);
+    return preds;
+  }
+
+  private float[] score( double row[], Scratch s ) {
+    if( row.length != _names.length )
+      throw new IllegalArgumentException("Expected rows of " + _names.length + " values, found " + row.length);
+    double data[] = s._data;
+    for( int c=0; c<_cols.length; c++ ) {
+      int i = _cols[c];
+      double d = i == -1 ? _missing : row[i];
+      int map[][] = _enums[c];
+      if( map != null && !Double.isNaN(d) ) { // Enum mapping, as in TransfVec
+        int x = Arrays.binarySearch(map[0], (int)d);
+        d = x < 0 ? Double.NaN : map[1][x];
+      }
+      data[c] = d;
+    }
+    Arrays.fill(s._preds, 0);
+    return _model.scoreRow(data, s._preds);
+  }
+
+  private void record( long nanos ) {
+    _lat[(int)(_calls.getAndIncrement() & (WINDOW-1))] = nanos;
+  }
+
+  /** Number of scoring calls so far */
+  public long calls() { return _calls.get(); }
+
+  /** Quantile q of the latencies of the most recent calls, in milliseconds;
+   *  NaN before the first call. */
+  public double latency( double q ) {
+    int n = (int)Math.min(_calls.get(), WINDOW);
+    if( n == 0 ) return Double.NaN;
+    long lat[] = Arrays.copyOf(_lat, n);
+    Arrays.sort(lat);
+    int i = (int)Math.ceil(q*n)-1;
+    return lat[Math.max(0, Math.min(n-1, i))] / 1e6;
+  }
+}
@@ -4,9 +4,11 @@ import water.Key;
 import water.fvec.Chunk;
 import water.fvec.Frame;
 import water.fvec.Vec;
+import water.util.JCodeGen;
 import water.util.Log;
 import water.util.ModelUtils;
 import water.util.MRUtils;
+import water.util.SB;
 
 /** Supervised Model
  *  There is a response column used in training.
@@ -182,7 +184,14 @@ public abstract class SupervisedModel<M extends Model<M,P,O>, P extends Supervis
     assert chks.length>=_output._names.length; // Last chunk is for the response
     for( int i=0; i<_output._names.length-1; i++ ) // Do not include last value since it can contains a response
       tmp[i] = chks[i].at0(row_in_chunk);
-    float[] scored = score0(tmp,preds);
+    return correctProbabilities(score0(tmp,preds),tmp);
+  }
+
+  @Override float[] scoreRow( double data[], float preds[] ) {
+    return correctProbabilities(score0(data,preds),data);
+  }
+
+  private float[] correctProbabilities( float scored[], double tmp[] ) {
     // Correct probabilities obtained from training on oversampled data back to original distribution
     // C.f. http://gking.harvard.edu/files/0s.pdf Eq.(27)
     if( _output.isClassifier() && _output._priorClassDist != null && _output._modelClassDist != null) {
@@ -204,5 +213,31 @@ public abstract class SupervisedModel<M extends Model<M,P,O>, P extends Supervis
     return scored;
   }
 
+  private boolean correctsProbabilities() {
+    return _output.isClassifier() && _output._priorClassDist != null && _output._modelClassDist != null;
+  }
+
+  @Override protected SB toJavaInit( SB sb, SB fileCtx, String modelName ) {
+    super.toJavaInit(sb, fileCtx, modelName);
+    if( correctsProbabilities() ) {
+      sb.i().p("// Original over training class fractions, to correct probabilities").nl();
+      sb.i().p("static final double[] CLASS_RATIOS = {");
+      for( int c=0; c<_output.nclasses(); c++ )
+        sb.p(c==0 ? "" : ",").pj((double)_output._priorClassDist[c] / (double)_output._modelClassDist[c]);
+      sb.p("};").nl();
+    }
+    if( _output.isClassifier() ) JCodeGen.toGetPrediction(sb.nl());
+    return sb;
+  }
+
+  // correctProbabilities, in Java
+  @Override protected void toJavaPredictEnd( SB body ) {
+    if( !correctsProbabilities() ) return;
+    body.i().p("double probsum=0;").nl();
+    body.i().p("for( int c=1; c<preds.length; c++ ) probsum += (preds[c] *= CLASS_RATIOS[c-1]);").nl();
+    body.i().p("for( int c=1; c<preds.length; c++ ) preds[c] /= probsum;").nl();
+    body.i().p("preds[0] = getPrediction(preds, data);").nl();
+  }
+
 }
 
@@ -1494,7 +1494,7 @@ public final class AutoBuffer {
     putJSONStr(name).put1(':');
     return putJSONA4f(a);
   }
-  AutoBuffer putJSONAA4f(String name, float[][] a) {
+  public AutoBuffer putJSONAA4f(String name, float[][] a) {
     putJSONStr(name).put1(':');
     if( a == null ) return putJNULL();
     put1('[');
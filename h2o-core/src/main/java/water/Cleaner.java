@@ -2,8 +2,10 @@ package water;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
 import water.fvec.Chunk;
 import water.persist.Persist;
+import water.persist.SpillCodec;
 import water.util.Log;
 
 /** Store Cleaner: User-Mode Swap-To-Disk */
@@ -33,6 +35,55 @@ class Cleaner extends Thread {
 
   // Desired cache level. Set by the MemoryManager asynchronously.
   static volatile long DESIRED;
+
+  // Eviction policy: orders Values for eviction by an effective access time.
+  // Values with older effective times are written out and freed first.
+  static abstract class Policy {
+    final String _name;
+    // Value gets served from memory, and ones which had to reload from disk.
+    // Hits are on the hottest path in H2O, so are counted racily: a lost
+    // update now and then is fine for a ratio.
+    long _hits;
+    final AtomicLong _misses = new AtomicLong();
+    Policy( String name ) { _name = name; }
+    abstract long age( Value val );
+    @Override public String toString() {
+      long hits = _hits, misses = _misses.get();
+      return "policy="+_name+" hits="+hits+" misses="+misses+" hit%="+(hits+misses == 0 ? 100 : (int)(100*hits/(hits+misses)));
+    }
+  }
+
+  // Plain least-recently-used: the effective time is the last access time.
+  static final Policy LRU = new Policy("lru") {
+      @Override long age( Value val ) { return val._lastAccessedTime; }
+    };
+
+  // Cost-aware: Values which must be written to ice before they can be freed
+  // (e.g. parsed Chunks, models) look younger than Values which can simply be
+  // dropped and re-read (file-backed ByteVec Chunks, or anything already on
+  // disk).  Values touched often since the last Cleaner pass (e.g. by every
+  // MRTask pass of an iterative algorithm) look younger still.
+  static final Policy COST = new Policy("cost") {
+      static final long WRITE_PENALTY = 5000; // msec: Value needs an ice write
+      static final long FREQ_BONUS    = 1000; // msec per doubling of access count
+      @Override long age( Value val ) {
+        long t = val._lastAccessedTime;
+        if( !val.isPersisted() ) t += WRITE_PENALTY;
+        t += FREQ_BONUS*Math.min(10,32-Integer.numberOfLeadingZeros(val._accessCount));
+        return t;
+      }
+    };
+
+  static Policy policy( String name ) {
+    if( name == null || LRU._name.equalsIgnoreCase(name) ) return LRU;
+    if( COST._name.equalsIgnoreCase(name) ) return COST;
+    throw new IllegalArgumentException("Unknown cleaner policy '"+name+"', expected one of lru, cost");
+  }
+
+  // The active policy
+  static volatile Policy POLICY = LRU;
+  static void hit() { POLICY._hits++; }
+  static void miss() { POLICY._misses.incrementAndGet(); }
   // Histogram used by the Cleaner
   private final Histo _myHisto;
 
@@ -41,6 +92,7 @@ class Cleaner extends Thread {
     setDaemon(true);
     setPriority(MAX_PRIORITY-2);
     _dirty = Long.MAX_VALUE;  // Set to clean-store
+    POLICY = policy(H2O.ARGS.cleaner_policy);
     _myHisto = new Histo();   // Build/allocate a first histogram
     _myHisto.compute(0);      // Compute lousy histogram; find eldest
     H = _myHisto;             // Force to be the most recent
@@ -105,6 +157,7 @@ class Cleaner extends Thread {
       // For faster K/V store walking get the NBHM raw backing array,
       // and walk it directly.
       Object[] kvs = H2O.STORE.raw_array();
+      final Policy policy = POLICY;
 
       // Start the walk at slot 2, because slots 0,1 hold meta-data
       for( int i=2; i<kvs.length; i += 2 ) {
@@ -117,13 +170,15 @@ class Cleaner extends Thread {
         byte[] m = val.rawMem();
         Object p = val.rawPOJO();
         if( m == null && p == null ) continue; // Nothing to throw out
+        long touched = policy.age(val);
+        val._accessCount >>= 1; // Decay access frequency once per pass
 
         if( val.isLockable() ) continue; // we do not want to throw out Lockables.
         boolean isChunk = p instanceof Chunk;
+        if( isChunk && ((Chunk)p).isOffHeap() ) continue; // Not on the heap; capped by the MemoryManager
 
         // Ignore things younger than the required age.  In particular, do
         // not spill-to-disk all dirty things we find.
-        long touched = val._lastAccessedTime;
         if( touched > clean_to_age ) { // Too recently touched?
           // But can toss out a byte-array if already deserialized & on disk
           // (no need for both forms).  Note no savings for Chunks, for which m==p._mem
@@ -131,7 +186,7 @@ class Cleaner extends Thread {
             val.freeMem();      // Toss serialized form, since can rebuild from POJO
             freed += val._max;
           }
-          dirty_store(touched); // But may write it out later
+          dirty_store(val._lastAccessedTime); // But may write it out later
           continue;             // Too young
         }
 
@@ -169,7 +224,7 @@ class Cleaner extends Thread {
       h = _myHisto.histo(true); // Force a new histogram
       MemoryManager.set_goals("postclean",false);
       // No logging if under memory pressure: can deadlock the cleaner thread
-      String s2 = h+" cleaned="+(cleaned>>20)+"M, freed="+(freed>>20)+"M, DESIRED="+(DESIRED>>20)+"M";
+      String s2 = h+" cleaned="+(cleaned>>20)+"M, freed="+(freed>>20)+"M, DESIRED="+(DESIRED>>20)+"M, "+SpillCodec.stats()+", "+policy+", offheap="+(MemoryManager.offHeapUsed()>>20)+"M";
       if( MemoryManager.canAlloc() ) Log.debug(s2);
       else                           System.err.println(s2);
     }
@@ -228,6 +283,7 @@ class Cleaner extends Thread {
       long total = 0;  // Total K/V in local node
       long oldest = Long.MAX_VALUE; // K/V with the longest time since being touched
       Value vold = null;
+      final Policy policy = POLICY;
       // Start the walk at slot 2, because slots 0,1 hold meta-data
       for( int i=2; i<kvs.length; i += 2 ) {
         // In the raw backing array, Keys and Values alternate in slots
@@ -245,12 +301,13 @@ class Cleaner extends Thread {
         if( len == 0 ) continue;
         cached += len; // Accumulate total amount of cached keys
 
-        if( val._lastAccessedTime < oldest ) { // Found an older Value?
+        long age = policy.age(val);
+        if( age < oldest ) { // Found an older Value?
           vold = val; // Record oldest Value seen
-          oldest = val._lastAccessedTime;
+          oldest = age;
         }
         // Compute histogram bucket
-        int idx = (int)((val._lastAccessedTime - eldest)/_hStep);
+        int idx = (int)((age - eldest)/_hStep);
         if( idx < 0 ) idx = 0;
         else if( idx >= _hs.length ) idx = _hs.length-1;
         _hs[idx] += len;      // Bump histogram bucket
@@ -78,6 +78,27 @@ final public class H2O {
             "          Maximum number of threads in the low priority batch-work queue.\n" +
             "          (The default is 99.)\n" +
             "\n" +
+            "    -spill_codec <none|lz4>\n" +
+            "          Compression used when swapping data to the ice_root directory.\n" +
+            "          (The default is lz4.)\n" +
+            "\n" +
+            "    -ice_mmap\n" +
+            "          Reload swapped-out data by memory-mapping ice files instead of\n" +
+            "          reading them onto the Java heap.\n" +
+            "\n" +
+            "    -off_heap\n" +
+            "          Hold compressed numeric data in direct memory outside the Java\n" +
+            "          heap, to shorten garbage collection pauses on large heaps.\n" +
+            "\n" +
+            "    -sketch_pctiles\n" +
+            "          Compute column summary percentiles from a one-pass quantile\n" +
+            "          sketch with a known error bound, instead of a fixed histogram.\n" +
+            "\n" +
+            "    -cleaner_policy <lru|cost>\n" +
+            "          Order in which cached data is swapped to disk: least recently\n" +
+            "          used, or weighted by the cost to reload and access frequency.\n" +
+            "          (The default is lru.)\n" +
+            "\n" +
             "    -md5skip\n" +
             "          Skip comparing MD5 of jar path while joining cloud.\n" +
             "\n" +
@@ -158,6 +179,21 @@ final public class H2O {
     /** -nthreads=nthreads; Max number of F/J threads in the low-priority batch queue */
     public int nthreads=Math.max(99,10*NUMCPUS);
 
+    /** -spill_codec=spill_codec; Codec for swap-to-disk ice files, one of none, lz4.  Default is lz4. */
+    public String spill_codec;
+
+    /** -ice_mmap, -ice_mmap=true; Reload swapped-out raw Chunks by memory-mapping their ice files */
+    public boolean ice_mmap = false;
+
+    /** -off_heap, -off_heap=true; Hold compressed Chunk payloads in direct memory instead of the Java heap */
+    public boolean off_heap = false;
+
+    /** -sketch_pctiles, -sketch_pctiles=true; Rollup percentiles from a QuantileSketch instead of the histogram */
+    public boolean sketch_pctiles = false;
+
+    /** -cleaner_policy=cleaner_policy; Swap-to-disk eviction policy, one of lru, cost.  Default is lru. */
+    public String cleaner_policy;
+
     //-----------------------------------------------------------------------------------
     // HDFS & AWS
     //-----------------------------------------------------------------------------------
@@ -296,6 +332,23 @@ final public class H2O {
         i = s.incrementAndCheck(i, args);
         ARGS.nthreads = s.parseInt(args[i]);
       }
+      else if (s.matches("spill_codec")) {
+        i = s.incrementAndCheck(i, args);
+        ARGS.spill_codec = args[i];
+      }
+      else if (s.matches("ice_mmap")) {
+        ARGS.ice_mmap = true;
+      }
+      else if (s.matches("off_heap")) {
+        ARGS.off_heap = true;
+      }
+      else if (s.matches("sketch_pctiles")) {
+        ARGS.sketch_pctiles = true;
+      }
+      else if (s.matches("cleaner_policy")) {
+        i = s.incrementAndCheck(i, args);
+        ARGS.cleaner_policy = args[i];
+      }
       else if (s.matches("hdfs")) {
         i = s.incrementAndCheck(i, args);
         ARGS.hdfs = args[i];
@@ -924,6 +977,7 @@ final public class H2O {
     // If the K/V mapping is changing, let the store cleaner just overwrite.
     // If the K/V mapping is new, let the store cleaner just create
     if( old != null && val == null ) old.removePersist(); // Remove the old guy
+    if( old != null ) old.releaseOffHeap(val); // Old guy's off-heap payload is no longer cached
     if( val != null ) {
       Cleaner.dirty_store(); // Start storing the new guy
       if( old==null ) Scope.track(key); // New Key - start tracking
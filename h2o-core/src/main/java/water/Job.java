@@ -271,9 +271,9 @@ public class Job<T extends Keyed> extends Keyed {
   /** Report new work done for this job */
   public final void update(final long newworked) { new ProgressUpdate(newworked).fork(_progressKey); }
 
-  /** Report new work done for a given job key */
+  /** Report new work done for a given job key, if any */
   public static void update(final long newworked, Key jobkey) {
-    jobkey.<Job>get().update(newworked);
+    if( jobkey != null ) jobkey.<Job>get().update(newworked);
   }
 
   /**
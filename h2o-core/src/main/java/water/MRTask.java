@@ -282,6 +282,19 @@ public abstract class MRTask<T extends MRTask<T>> extends DTask<T> implements Fo
   // Special mode to run once-per-node
   public T doAllNodes() { return doAll((Key[])null); }
 
+  /** Invokes map(Key) on the home node of each of the keys, asynchronously;
+   *  getResult() waits for it.  With run_local, only on this node, for the
+   *  keys homed here.  */
+  public final T dfork( Key keys[], boolean run_local ) {
+    _priority = nextThrPriority(); // As for Frames: blocking on this is safe
+    _keys = keys;
+    _nxx = selfidx(); _nhi = (short)H2O.CLOUD.size(); // Do Whole Cloud
+    _run_local = run_local;
+    setupLocal0();              // Local setup
+    H2O.submitTask(this);       // Begin normal execution on a FJ thread
+    return self();
+  }
+
   // Special mode doing 1 map per key.  No frame
   public T doAll( Key... keys ) {
     _keys = keys;
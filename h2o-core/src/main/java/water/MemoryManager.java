@@ -1,6 +1,8 @@
 package water;
 
 import java.lang.management.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicLong;
 import javax.management.Notification;
@@ -68,6 +70,32 @@ abstract public class MemoryManager {
   // before & after amounts and diff them.
   static final AtomicLong MEM_ALLOC = new AtomicLong();
 
+  // Direct (off-heap) memory held by Chunk payloads in the K/V store, with
+  // -off_heap.  Not part of the heap cache accounting above.  Capped below
+  // the JVM default direct-memory limit (which is MEM_MAX) to leave room for
+  // NIO buffers; past the cap, Chunks simply stay on the heap.
+  static final AtomicLong MEM_OFFHEAP = new AtomicLong();
+  static final long OFFHEAP_MAX = MEM_MAX - (MEM_MAX>>3);
+
+  /** Allocate a native-order direct buffer for an off-heap Chunk payload, or
+   *  return null if the off-heap budget is exhausted.  Must be paired with
+   *  exactly one {@link #freeOffHeap}. */
+  public static ByteBuffer mallocOffHeap( int len ) {
+    if( MEM_OFFHEAP.addAndGet(len) > OFFHEAP_MAX ) { MEM_OFFHEAP.addAndGet(-len); return null; }
+    try {
+      return ByteBuffer.allocateDirect(len).order(ByteOrder.nativeOrder());
+    } catch( OutOfMemoryError e ) { // Direct memory limit set below OFFHEAP_MAX
+      MEM_OFFHEAP.addAndGet(-len);
+      return null;
+    }
+  }
+  /** Release the accounting for an off-heap Chunk payload.  The native memory
+   *  itself is returned when the buffer becomes unreachable, so in-flight
+   *  readers of a removed Chunk remain safe. */
+  public static void freeOffHeap( int len ) { MEM_OFFHEAP.addAndGet(-len); }
+  /** Direct memory currently held by off-heap Chunks */
+  public static long offHeapUsed() { return MEM_OFFHEAP.get(); }
+
   static void setMemGood() {
     if( CAN_ALLOC ) return;
     synchronized(_lock) { CAN_ALLOC = true; _lock.notifyAll(); }
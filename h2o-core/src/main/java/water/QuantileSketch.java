@@ -0,0 +1,171 @@
+package water;
+
+import water.fvec.Chunk;
+import water.fvec.Vec;
+
+import java.util.Arrays;
+
+/**
+ * A mergeable, single-pass quantile sketch (KLL style).
+ *
+ * Values are appended to level 0; when a level outgrows its capacity it is
+ * sorted and every other value (from a coin-flipped offset) is promoted to
+ * the next level with twice the weight.  Higher levels get geometrically
+ * larger capacities, so the sketch holds O(k) values no matter how many it
+ * has seen.  Two sketches merge by concatenating levels and compacting.
+ *
+ * A compaction at level h moves any rank by 0 or +/-2^h, each with even odds,
+ * so the rank error of a quantile is a sum of independent zero-mean terms;
+ * {@link #rankError} is its Hoeffding bound at 99% confidence, as a fraction
+ * of the row count.  It shrinks roughly as 1/k.  Until the first compaction
+ * the sketch is exact, and quantiles interpolate like R's type 7.
+ */
+public final class QuantileSketch extends Iced {
+  public static final int DEFAULT_K = 1024;
+  final int _k;                 // Capacity of the top level
+  double[][] _levels;           // Values at level h have weight 2^h
+  int[] _sizes;                 // Values held per level
+  long _n;                      // Values seen
+  double _var;                  // Sum of the squared weights of all compactions
+  long _coin;                   // xorshift state for the compaction offsets
+  int _cap0;                    // capacity(0), cached for add; set by grow
+
+  public QuantileSketch() { this(DEFAULT_K,0); }
+  /** A sketch holding about 3k values; sketches to be merged should use
+   *  different seeds, so their compactions flip independent coins. */
+  public QuantileSketch( int k, long seed ) {
+    if( k < 8 ) throw new IllegalArgumentException("Sketch size must be at least 8, got "+k);
+    _k = k;
+    _levels = new double[][]{new double[k]};
+    _sizes = new int[1];
+    _cap0 = capacity(0);
+    _coin = (seed+1)*0x9E3779B97F4A7C15L | 1;
+  }
+
+  /** Number of non-NA values seen */
+  public long count() { return _n; }
+  /** Bound on the rank error of a quantile, as a fraction of {@link #count},
+   *  which holds with 99% probability: sqrt(2 ln(2/0.01) sum(4^h)) / n */
+  public double rankError() { return _n == 0 ? 0 : 3.255*Math.sqrt(_var)/_n; }
+  /** True if no values have been compacted away, so quantiles are exact */
+  public boolean isExact() { return _var == 0; }
+
+  /** Add a value; NaNs are ignored */
+  public void add( double d ) {
+    if( Double.isNaN(d) ) return;
+    if( _sizes[0] >= _cap0 ) while( compact() ) ;
+    _levels[0][_sizes[0]++] = d;
+    _n++;
+  }
+  /** Add all the non-NA values of a Chunk */
+  public QuantileSketch add( Chunk c ) {
+    for( int i=0; i<c._len; i++ ) add(c.at0(i));
+    return this;
+  }
+
+  /** Merge another sketch into this one */
+  public QuantileSketch merge( QuantileSketch qs ) {
+    if( qs == null || qs._n == 0 ) return this;
+    for( int h=0; h<qs._sizes.length; h++ ) {
+      if( h == _sizes.length ) grow();
+      double[] lvl = _levels[h];
+      if( _sizes[h]+qs._sizes[h] > lvl.length )
+        _levels[h] = lvl = Arrays.copyOf(lvl,_sizes[h]+qs._sizes[h]);
+      System.arraycopy(qs._levels[h],0,lvl,_sizes[h],qs._sizes[h]);
+      _sizes[h] += qs._sizes[h];
+    }
+    _n += qs._n;
+    _var += qs._var;
+    while( compact() ) ;
+    return this;
+  }
+
+  // Capacity of level h: k at the top, shrinking by 2/3 per level below
+  private int capacity( int h ) {
+    return Math.max(8,(int)Math.ceil(_k*Math.pow(2.0/3.0,_sizes.length-1-h)));
+  }
+  private void grow() {
+    int H = _sizes.length;
+    _levels = Arrays.copyOf(_levels,H+1);
+    _sizes  = Arrays.copyOf(_sizes ,H+1);
+    _levels[H] = new double[_k];
+    _cap0 = capacity(0);
+  }
+
+  // Compact the lowest full level; false if no level is full
+  private boolean compact() {
+    for( int h=0; h<_sizes.length; h++ ) {
+      if( _sizes[h] < capacity(h) ) continue;
+      if( h == _sizes.length-1 ) grow();
+      double[] lvl = _levels[h];
+      int sz = _sizes[h];
+      Arrays.sort(lvl,0,sz);
+      int odd = sz&1;           // An odd value out stays behind
+      _coin ^= _coin<<13; _coin ^= _coin>>>7; _coin ^= _coin<<17;
+      int off = (int)(_coin&1);
+      int npromo = (sz-odd)>>1;
+      double[] up = _levels[h+1];
+      if( _sizes[h+1]+npromo > up.length )
+        _levels[h+1] = up = Arrays.copyOf(up,Math.max(up.length<<1,_sizes[h+1]+npromo));
+      for( int i=odd+off; i<sz; i+=2 ) up[_sizes[h+1]++] = lvl[i];
+      _sizes[h] = odd;          // lvl[0] is the odd value out, if any
+      _var += Math.scalb(1.0,2*h);
+      return true;
+    }
+    return false;
+  }
+
+  /** The quantile at probability p in [0,1]; NaN if the sketch is empty */
+  public double quantile( double p ) { return quantiles(new double[]{p})[0]; }
+  /** The quantiles at the given probabilities */
+  public double[] quantiles( double[] ps ) {
+    double[] res = new double[ps.length];
+    if( _n == 0 ) { Arrays.fill(res,Double.NaN); return res; }
+    // Gather all values with their weights, sorted by value
+    int tot = 0;
+    for( int sz : _sizes ) tot += sz;
+    double[] vals = new double[tot];
+    int[] lvl = new int[tot];
+    for( int h=0, j=0; h<_sizes.length; h++ )
+      for( int i=0; i<_sizes[h]; i++, j++ ) { vals[j] = _levels[h][i]; lvl[j] = h; }
+    Integer[] ord = new Integer[tot];
+    for( int i=0; i<tot; i++ ) ord[i] = i;
+    final double[] fvals = vals;
+    Arrays.sort(ord,new java.util.Comparator<Integer>() {
+        @Override public int compare( Integer a, Integer b ) { return Double.compare(fvals[a],fvals[b]); }
+      });
+    // Each value sits at the middle of the ranks it stands for
+    double[] center = new double[tot], sorted = new double[tot];
+    long cum = 0;
+    for( int i=0; i<tot; i++ ) {
+      long w = 1L<<lvl[ord[i]];
+      sorted[i] = vals[ord[i]];
+      center[i] = cum + (w-1)/2.0;
+      cum += w;
+    }
+    for( int q=0; q<ps.length; q++ ) {
+      double r = (cum-1)*ps[q];
+      int i = Arrays.binarySearch(center,r);
+      if( i >= 0 ) { res[q] = sorted[i]; continue; }
+      i = -i-1;                 // First center above r
+      if( i == 0 ) res[q] = sorted[0];
+      else if( i == tot ) res[q] = sorted[tot-1];
+      else {
+        double f = (r-center[i-1])/(center[i]-center[i-1]);
+        res[q] = sorted[i-1] + f*(sorted[i]-sorted[i-1]);
+      }
+    }
+    return res;
+  }
+
+  /** Sketch a whole Vec in one pass */
+  public static QuantileSketch sketch( Vec vec, int k ) { return new SketchTask(k).doAll(vec)._qs; }
+
+  public static class SketchTask extends MRTask<SketchTask> {
+    final int _k;
+    public QuantileSketch _qs;
+    public SketchTask( int k ) { _k = k; }
+    @Override public void map( Chunk c ) { _qs = new QuantileSketch(_k,c.start()).add(c); }
+    @Override public void reduce( SketchTask t ) { _qs = _qs == null ? t._qs : _qs.merge(t._qs); }
+  }
+}
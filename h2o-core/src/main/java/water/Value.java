@@ -1,6 +1,7 @@
 package water;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicInteger;
 import jsr166y.ForkJoinPool;
 import water.fvec.*;
@@ -115,7 +116,8 @@ public final class Value extends Iced implements ForkJoinPool.ManagedBlocker {
     Freezable pojo = _pojo;     // Read once!
     if( pojo != null )          // Has the POJO, make raw bytes
       // Chunks have custom serializer here that skips all steps; just the chunk itself
-      if( pojo instanceof Chunk ) return (_mem = ((Chunk)pojo).getBytes());
+      // Off-heap and mapped Chunks hand out a heap copy, which is not cached
+      if( pojo instanceof Chunk ) return ((Chunk)pojo).isHeapless() ? ((Chunk)pojo).getBytes() : (_mem = ((Chunk)pojo).getBytes());
       else return (_mem = pojo.write(new AutoBuffer()).buf());
     if( _max == 0 ) return (_mem = new byte[0]);
     return (_mem = loadPersist());
@@ -130,10 +132,16 @@ public final class Value extends Iced implements ForkJoinPool.ManagedBlocker {
   public final <T extends Iced> T get() {
     touch();
     Iced pojo = (Iced)_pojo;    // Read once!
-    if( pojo != null ) return (T)pojo;
+    if( pojo != null ) { Cleaner.hit(); return (T)pojo; }
+    if( _mem == null ) Cleaner.miss(); // Reload from ice
+    else Cleaner.hit();         // Rebuild from the in-memory bytes
+    if( (pojo = loadMapped()) != null ) return (T)(_pojo = pojo);
     pojo = TypeMap.newInstance(_type);
     pojo.read(new AutoBuffer(memOrLoad()));
-    return (T)(_pojo = pojo);
+    boolean off = offHeap(pojo); // Before publishing: readers must not see the move
+    _pojo = pojo;
+    if( off ) _mem = null;      // Payload moved off-heap; POJO is the only copy
+    return (T)pojo;
   }
   /** The FAST path get-POJO as a {@link Freezable} - final method for speed.
    *  Will (re)build the POJO from the _mem array.  Never returns NULL.  This
@@ -150,16 +158,25 @@ public final class Value extends Iced implements ForkJoinPool.ManagedBlocker {
   public final <T extends Freezable> T getFreezable() {
     touch();
     Freezable pojo = _pojo;     // Read once!
-    if( pojo != null ) return (T)pojo;
+    if( pojo != null ) { Cleaner.hit(); return (T)pojo; }
+    if( _mem == null ) Cleaner.miss(); // Reload from ice
+    else Cleaner.hit();         // Rebuild from the in-memory bytes
+    if( (pojo = loadMapped()) != null ) return (T)(_pojo = pojo);
     pojo = TypeMap.newFreezable(_type);
     pojo.read(new AutoBuffer(memOrLoad()));
-    return (T)(_pojo = pojo);
+    boolean off = offHeap(pojo); // Before publishing: readers must not see the move
+    _pojo = pojo;
+    if( off ) _mem = null;      // Payload moved off-heap; POJO is the only copy
+    return (T)pojo;
   }
 
   // ---
   // Time of last access to this value.
   transient long _lastAccessedTime = System.currentTimeMillis();
-  private void touch() {_lastAccessedTime = System.currentTimeMillis();}
+  // Racy count of accesses, decayed by every Cleaner pass; used by the
+  // cost-aware eviction policy.
+  transient int _accessCount;
+  private void touch() {_lastAccessedTime = System.currentTimeMillis(); _accessCount++;}
 
   // ---
   // Backend persistence info.  3 bits are reserved for 8 different flavors of
@@ -224,6 +241,38 @@ public final class Value extends Iced implements ForkJoinPool.ManagedBlocker {
     }
   }
 
+  /** With {@code -off_heap}, move a freshly loaded Chunk POJO's payload into
+   *  direct memory.  The POJO must not yet be visible to other threads.
+   *  @return True if the POJO is an off-heap Chunk */
+  private static boolean offHeap( Freezable pojo ) {
+    return H2O.ARGS.off_heap && pojo instanceof Chunk && ((Chunk)pojo).moveOffHeap();
+  }
+
+  /** Release the off-heap accounting of a Value leaving the K/V store, unless
+   *  the replacing Value still reads the same payload (an in-place write). */
+  void releaseOffHeap( Value nu ) {
+    Freezable pojo = _pojo;
+    if( !(pojo instanceof Chunk) || !((Chunk)pojo).isOffHeap() ) return;
+    Freezable np = nu == null ? null : nu._pojo;
+    if( np instanceof Chunk && ((Chunk)np).sharesOffHeap((Chunk)pojo) ) return;
+    ((Chunk)pojo).releaseOffHeap();
+  }
+
+  /** Reload a swapped-out Chunk by memory-mapping its ice file, so the payload
+   *  is read in place and never copied onto the heap (nor counted against the
+   *  {@link MemoryManager}).  Returns null if mapping does not apply, and the
+   *  caller falls back to the normal load. */
+  private Chunk loadMapped() {
+    if( !H2O.ARGS.ice_mmap || _mem != null || !isPersisted() || !onICE() || !isMappableChunk() )
+      return null;
+    try {
+      ByteBuffer bb = Persist.I[backend()].map(this);
+      return bb == null ? null : ((Chunk)TypeMap.newFreezable(_type)).readMapped(bb);
+    } catch( IOException ioe ) {
+      throw Log.throwErr(ioe);
+    }
+  }
+
   String nameOfPersist() { return nameOfPersist(backend()); }
   /** One of ICE, HDFS, S3, NFS or TCP, according to where this Value is persisted.
    *  @return Short String of the persitance name */
@@ -252,6 +301,9 @@ public final class Value extends Iced implements ForkJoinPool.ManagedBlocker {
   /** Check if the Value's POJO is a subtype of given type integer.  Does not require the POJO.
    *  @return True if the Value's POJO is a subtype. */
   public static boolean isSubclassOf(int type, Class clz) { return clz.isAssignableFrom(TypeMap.theFreezable(type).getClass()); }
+  /** Check if the Value's POJO is a subtype of given class.  Does not require the POJO.
+   *  @return True if the Value's POJO is a subtype. */
+  public boolean isSubclassOf(Class clz) { return _type != TypeMap.PRIM_B && isSubclassOf(_type,clz); }
 
   /** Check if the Value's POJO is a {@link Key} subtype.  Does not require the POJO.
    *  @return True if the Value's POJO is a {@link Key} subtype. */
@@ -274,6 +326,14 @@ public final class Value extends Iced implements ForkJoinPool.ManagedBlocker {
   /** Check if the Value's POJO is a {@link Job} subtype.  Does not require the POJO.
    *  @return True if the Value's POJO is a {@link Job} subtype. */
   public boolean isJob()      { return _type != TypeMap.PRIM_B && TypeMap.theFreezable(_type) instanceof Job; }
+  /** Check if the Value's POJO is a {@link Chunk} which can read its payload
+   *  in place from a memory-mapped ice file.  Does not require the POJO.
+   *  @return True if the Value's POJO is a mappable {@link Chunk}. */
+  public boolean isMappableChunk() {
+    if( _type == TypeMap.PRIM_B ) return false;
+    Freezable f = TypeMap.theFreezable(_type);
+    return f instanceof Chunk && ((Chunk)f).isMappable();
+  }
 
 
   // --------------------------------------------------------------------------
@@ -307,6 +367,10 @@ public final class Value extends Iced implements ForkJoinPool.ManagedBlocker {
     _type = (short)pojo.frozenType();
     _mem = (pojo instanceof Chunk)?((Chunk)pojo).getBytes():pojo.write(new AutoBuffer()).buf();
     _max = _mem.length;
+    // The caller's Chunk may already be shared (e.g. the cached POJO put back
+    // after an in-place write), so it is never moved here; a Chunk which is
+    // already off-heap just needs no heap copy.
+    if( pojo instanceof Chunk && ((Chunk)pojo).isOffHeap() ) _mem = null;
     assert _max < MAX : "Value size=0x"+Integer.toHexString(_max);
     // For the ICE backend, assume new values are not-yet-written.
     // For HDFS & NFS backends, assume we from global data and preserve the
@@ -16,7 +16,7 @@ public class ParseV2 extends Schema<Parse,ParseV2> {
   @API(help="Source keys",required=true)
   Key[] srcs;
 
-  @API(help="Parser Type", values = {"AUTO", "ARFF", "XLS", "XLSX", "CSV", "SVMLight"})
+  @API(help="Parser Type", values = {"AUTO", "ARFF", "XLS", "XLSX", "CSV", "SVMLight", "PARQUET"})
   ParserType pType;
 
   @API(help="separator")
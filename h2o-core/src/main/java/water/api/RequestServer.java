@@ -1,9 +1,13 @@
 package water.api;
 
+import hex.Model;
 import water.AutoBuffer;
+import water.DKV;
 import water.H2O;
 import water.Iced;
+import water.Key;
 import water.NanoHTTPD;
+import water.Value;
 import water.api.DownloadDataHandler.DownloadData;
 import water.fvec.Frame;
 import water.nbhm.NonBlockingHashMap;
@@ -166,6 +170,10 @@ public class RequestServer extends NanoHTTPD {
       "Return the scoring metrics for the specified Frame with the specified Model.  If the Frame has already been scored with the Model then cached results will be returned; otherwise predictions for all rows in the Frame will be generated and the metrics will be returned.");
     register("/3/Predictions/models/(?<model>.*)/frames/(?<frame>.*)"     ,"POST"  ,ModelMetricsHandler.class, "predict", new String[] {"model", "frame"},
       "Score (generate predictions) for the specified Frame with the specified Model.  Both the Frame of predictions and the metrics will be returned.");
+    register("/3/Predictions/models/(?<model>.*)/rows"                    ,"POST"  ,ScoreRowsHandler.class, "score", new String[] {"model"},
+      "Score a few rows, given as JSON or binary, with the specified Model, without creating any Frames.  Also returns the recent p50/p99 scoring latencies of the Model.");
+    register("/3/Predictions/models/(?<model>.*)/rows"                    ,"GET"   ,ScoreRowsHandler.class, "score", new String[] {"model"},
+      "Return the recent p50/p99 row scoring latencies of the specified Model; rows given as parameters are scored as well.");
 
     register("/1/WaterMeterCpuTicks/(?<nodeidx>.*)"                         ,"GET"   ,WaterMeterCpuTicksHandler.class, "fetch", new String[] {"nodeidx"},
       "Return a CPU usage snapshot of all cores of all nodes in the H2O cluster.");
@@ -476,8 +484,14 @@ public class RequestServer extends NanoHTTPD {
     switch( type ) {
     case json:   return new Response(http_code, MIME_JSON, new String(s.writeJSON(new AutoBuffer()).buf()));
     case xml:  //return new Response(http_code, MIME_XML , new String(S.writeXML (new AutoBuffer()).buf()));
-    case java:
       throw H2O.unimpl();
+    case java: {              // Generated code for a model, e.g. /3/Models.java/<key>
+      Key key = s instanceof ModelsBase ? ((ModelsBase)s).key : null;
+      Value v = key == null ? null : DKV.get(key);
+      if( v == null || !v.isModel() ) // Anything else, e.g. errors, as JSON
+        return new Response(http_code, MIME_JSON, new String(s.writeJSON(new AutoBuffer()).buf()));
+      return new Response(http_code, MIME_PLAINTEXT, ((Model)v.get()).toJava());
+    }
     case html: {
       RString html = new RString(_htmlTemplate);
       html.replace("CONTENTS", s.writeHTML(new water.util.DocGen.HTML()).toString());
@@ -25,7 +25,8 @@ enum RequestType {
   static RequestType requestType(String url) {
     int i = url.indexOf('.');
     if(  i == -1 ) return html; // Default for no extension
-    String s = url.substring(i+1);
+    int j = url.indexOf('/',i);  // The type may come mid-URL, as in "/GBM.html/crunk"
+    String s = j == -1 ? url.substring(i+1) : url.substring(i+1,j);
     // valueOf(s) throws IAE if there is no match.
     for( RequestType t : _values )
       if( s.equals(t.name()) ) return t;
@@ -0,0 +1,177 @@
+package water.api;
+
+import hex.Model;
+import hex.RowScorer;
+import water.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/** Real-time scoring of a few rows: no Frames, DKV keys or MRTasks, just the
+ *  model's shared {@link RowScorer}. */
+class ScoreRowsHandler extends Handler<ScoreRowsHandler.ScoreRows, ScoreRowsV3> {
+  @Override protected int min_ver() { return 3; }
+  @Override protected int max_ver() { return Integer.MAX_VALUE; }
+
+  public static final class ScoreRows extends Iced {
+    // Input
+    Key model;
+    String rows;                // JSON rows
+    String rows_b64;            // Binary rows
+
+    // Output
+    String[] columns;
+    String[] prediction_names;
+    float[][] predictions;
+    long calls;
+    double latency_p50_ms, latency_p99_ms;
+  }
+
+  /** Score the given rows, if any, and report the model's recent scoring
+   *  latencies. */
+  @SuppressWarnings("unused") // called through reflection by RequestServer
+  public ScoreRowsV3 score(int version, ScoreRows s) {
+    Value v = DKV.get(s.model);
+    if( v == null ) throw new IllegalArgumentException("Model key not found: " + s.model);
+    if( !v.isModel() ) throw new IllegalArgumentException("Expected a Model for key: " + s.model);
+    Model m = v.get();
+    RowScorer rs = RowScorer.get(m);
+    if( s.rows != null && s.rows_b64 != null )
+      throw new IllegalArgumentException("Give either rows or rows_b64, not both");
+    double rows[][] = s.rows != null ? parseJSON(rs, s.rows) : s.rows_b64 != null ? parseBinary(rs, s.rows_b64) : null;
+    if( rows != null ) s.predictions = rs.score(rows);
+    s.columns = rs.names();
+    String classes[] = m._output.classNames();
+    s.prediction_names = new String[rs.npreds()];
+    s.prediction_names[0] = "predict";
+    for( int i=1; i<s.prediction_names.length; i++ ) s.prediction_names[i] = classes[i-1];
+    s.calls = rs.calls();
+    s.latency_p50_ms = rs.latency(0.50);
+    s.latency_p99_ms = rs.latency(0.99);
+    return schema(version).fillFromImpl(s);
+  }
+
+  // Rows as a JSON array of arrays, one value per column: numbers, strings
+  // (categorical levels, or numbers as text) and nulls for missing values.
+  static double[][] parseJSON( RowScorer rs, String s ) {
+    final int ncols = rs.names().length;
+    ArrayList<double[]> rows = new ArrayList<>();
+    int x = expect(s,skip(s,0),'[');
+    if( peek(s,x) != ']' ) {
+      while( true ) {
+        x = expect(s,x,'[');
+        double row[] = new double[ncols];
+        int c = 0;
+        if( peek(s,x) != ']' ) {
+          while( true ) {
+            if( c == ncols ) throw new IllegalArgumentException("Row " + rows.size() + " has more than " + ncols + " values");
+            if( peek(s,x) == '"' ) {      // String
+              StringBuilder sb = new StringBuilder();
+              x = string(s,x+1,sb);
+              row[c] = rs.code(c,sb.toString());
+            } else {                      // Number, null or NaN
+              int e = x;
+              while( e < s.length() && ",] \t\r\n".indexOf(s.charAt(e)) == -1 ) e++;
+              String tok = s.substring(x,e);
+              row[c] = tok.equals("null") || tok.equals("NaN") ? Double.NaN : rs.code(c,tok);
+              x = skip(s,e);
+            }
+            c++;
+            if( peek(s,x) != ',' ) break;
+            x = skip(s,x+1);
+          }
+        }
+        x = expect(s,x,']');
+        if( c != ncols ) throw new IllegalArgumentException("Row " + rows.size() + " has " + c + " values, expected " + ncols);
+        rows.add(row);
+        if( peek(s,x) != ',' ) break;
+        x = skip(s,x+1);
+      }
+    }
+    x = expect(s,x,']');
+    if( x != s.length() ) throw new IllegalArgumentException("Unexpected text after the rows: " + s.substring(x));
+    return rows.toArray(new double[rows.size()][]);
+  }
+
+  // The body of a JSON string starting at x, with its escapes decoded, into
+  // sb; returns the offset past the closing quote
+  private static int string( String s, int x, StringBuilder sb ) {
+    for( ; x < s.length() && s.charAt(x) != '"'; x++ ) {
+      char ch = s.charAt(x);
+      if( ch != '\\' ) { sb.append(ch); continue; }
+      switch( peek(s,++x) ) {
+      case '"': case '\\': case '/': sb.append(s.charAt(x)); break;
+      case 'b': sb.append('\b'); break;
+      case 'f': sb.append('\f'); break;
+      case 'n': sb.append('\n'); break;
+      case 'r': sb.append('\r'); break;
+      case 't': sb.append('\t'); break;
+      case 'u': {
+        int u = 0;
+        for( int i=1; i<=4; i++ ) {
+          char h = peek(s,x+i);
+          int d = h < 128 ? Character.digit(h,16) : -1;
+          if( d < 0 ) throw new IllegalArgumentException("Bad \\u escape at offset " + (x-1) + " of the rows");
+          u = (u<<4)|d;
+        }
+        sb.append((char)u);     // Surrogate pairs come as two escapes
+        x += 4;
+        break;
+      }
+      default:
+        throw new IllegalArgumentException("Bad escape at offset " + (x-1) + " of the rows");
+      }
+    }
+    return expect(s,x,'"');
+  }
+
+  private static int skip( String s, int x ) {
+    while( x < s.length() && Character.isWhitespace(s.charAt(x)) ) x++;
+    return x;
+  }
+  private static char peek( String s, int x ) { return x < s.length() ? s.charAt(x) : 0; }
+  private static int expect( String s, int x, char c ) {
+    if( peek(s,x) != c )
+      throw new IllegalArgumentException("Expected '" + c + "' at offset " + x + " of the rows, but found " + (x < s.length() ? "'" + s.charAt(x) + "'" : "the end"));
+    return skip(s,x+1);
+  }
+
+  // Rows as base64 of little-endian doubles, row after row, one per column:
+  // enum codes for categoricals and NaN for missing values.
+  static double[][] parseBinary( RowScorer rs, String b64 ) {
+    final int ncols = rs.names().length;
+    byte bytes[] = base64(b64);
+    if( ncols == 0 || bytes.length % (8*ncols) != 0 )
+      throw new IllegalArgumentException("Binary rows of " + bytes.length + " bytes are not a whole number of rows of " + ncols + " doubles");
+    ByteBuffer bb = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    double rows[][] = new double[bytes.length/(8*ncols)][ncols];
+    for( double row[] : rows )
+      for( int c=0; c<ncols; c++ ) row[c] = bb.getDouble();
+    return rows;
+  }
+
+  // Standard or URL-safe base64, padding optional
+  static byte[] base64( String s ) {
+    byte out[] = new byte[s.length()*3/4+1];
+    int n = 0, bits = 0, nbits = 0;
+    for( int i=0; i<s.length(); i++ ) {
+      char ch = s.charAt(i);
+      int v;
+      if( ch >= 'A' && ch <= 'Z' ) v = ch-'A';
+      else if( ch >= 'a' && ch <= 'z' ) v = ch-'a'+26;
+      else if( ch >= '0' && ch <= '9' ) v = ch-'0'+52;
+      else if( ch == '+' || ch == '-' || ch == ' ' ) v = 62; // A '+' sent unescaped is form-decoded to ' '
+      else if( ch == '/' || ch == '_' ) v = 63;
+      else if( ch == '=' || ch == '\n' || ch == '\r' ) continue;
+      else throw new IllegalArgumentException("Bad base64 character '" + ch + "' at offset " + i);
+      bits = (bits<<6) | v;
+      nbits += 6;
+      if( nbits >= 8 ) out[n++] = (byte)(bits >> (nbits -= 8));
+    }
+    return Arrays.copyOf(out,n);
+  }
+
+  @Override protected ScoreRowsV3 schema(int version) { return new ScoreRowsV3(); }
+}
@@ -0,0 +1,40 @@
+package water.api;
+
+import water.Key;
+import water.api.ScoreRowsHandler.ScoreRows;
+
+public class ScoreRowsV3 extends Schema<ScoreRows, ScoreRowsV3> {
+
+  // Input fields
+  @API(help="Key of the Model to score with", required=true) Key model;
+  @API(help="Rows to score, as a JSON array of arrays with one value per model feature, in the model's column order: numbers, strings for categorical levels, and null for missing values") String rows;
+  @API(help="Rows to score, as base64 of little-endian doubles, one per model feature and row, in the model's column order: level indices for categoricals, and NaN for missing values") String rows_b64;
+
+  // Output fields
+  @API(help="Columns of a row, in order", direction=API.Direction.OUTPUT) String[] columns;
+  @API(help="Names of the prediction values: predict, then the class probabilities", direction=API.Direction.OUTPUT) String[] prediction_names;
+  @API(help="Predictions, one array per row", direction=API.Direction.OUTPUT) float[][] predictions;
+  @API(help="Number of row scoring requests for this model so far", direction=API.Direction.OUTPUT) long calls;
+  @API(help="Median latency of recent scoring requests for this model, in ms", direction=API.Direction.OUTPUT) double latency_p50_ms;
+  @API(help="99th percentile latency of recent scoring requests for this model, in ms", direction=API.Direction.OUTPUT) double latency_p99_ms;
+
+  @Override public ScoreRows createImpl() { return new ScoreRows(); }
+
+  @Override public ScoreRows fillImpl(ScoreRows s) {
+    s.model = model;
+    s.rows = rows;
+    s.rows_b64 = rows_b64;
+    return s;
+  }
+
+  @Override public ScoreRowsV3 fillFromImpl(ScoreRows s) {
+    model = s.model;            // The rows are not echoed back
+    columns = s.columns;
+    prediction_names = s.prediction_names;
+    predictions = s.predictions;
+    calls = s.calls;
+    latency_p50_ms = s.latency_p50_ms;
+    latency_p99_ms = s.latency_p99_ms;
+    return this;
+  }
+}
@@ -0,0 +1,172 @@
+package water.fvec;
+
+import water.*;
+import water.persist.Persist;
+
+import java.io.*;
+
+/** Save a Frame in its compressed, in-memory form, and load it back without
+ *  parsing.
+ *
+ *  <p>A saved Frame is a directory holding a {@code frame.bin} file with the
+ *  column names, types, domains and rollups plus the chunk layout (espc), and
+ *  a {@code chunk-NNNNN.bin} file per chunk index holding that chunk of every
+ *  column: the class name and the payload bytes of each {@link Chunk}, as
+ *  held in the K/V store.  Saving writes each chunk file on the chunk's home
+ *  node; loading reads each chunk file on the home node of the new chunks and
+ *  puts the bytes as-is, so nothing is re-encoded and the rollups need not be
+ *  recomputed.  A dir of hdfs:// or s3n:// goes through HDFS, anything else
+ *  is a directory all nodes can reach, e.g. over NFS.
+ */
+public class BinaryFrame {
+  static final int MAGIC = 0x48324F46; // "H2OF"
+  static final int VERSION = 1;
+
+  static String metaPath( String dir ) { return path(dir, "frame.bin"); }
+  static String chunkPath( String dir, int cidx ) { return path(dir, String.format("chunk-%05d.bin", cidx)); }
+  private static String path( String dir, String name ) { return dir + (dir.endsWith("/") ? "" : "/") + name; }
+
+  /** Write the Frame into dir: the chunks in parallel, each from its home
+   *  node, then the Frame's metadata. */
+  public static void save( Frame fr, String dir ) {
+    Vec vecs[] = fr.vecs();
+    // Rollups go with the Frame; compute any missing ones in parallel
+    Futures fs = new Futures();
+    for( Vec v : vecs ) v.startRollupStats(fs);
+    fs.blockForPending();
+
+    Vec v0 = fr.anyVec();
+    int nchunks = v0 == null ? 0 : v0.nChunks();
+    Key cks[] = new Key[nchunks];
+    for( int i=0; i<nchunks; i++ ) cks[i] = v0.chunkKey(i);
+    if( nchunks > 0 ) new SaveChunks(fr, dir).doAll(cks);
+
+    long espc[] = new long[nchunks+1];
+    for( int i=0; i<nchunks; i++ ) espc[i] = v0.chunk2StartElem(i);
+    espc[nchunks] = v0 == null ? 0 : v0.length();
+    AutoBuffer ab = new AutoBuffer().put4(MAGIC).put4(VERSION);
+    ab.putAStr(fr.names()).putA8(espc);
+    for( Vec v : vecs ) {
+      ab.put1(v._type).putAStr(v.domain());
+      RollupStats.get(v).write(ab);
+    }
+    String path = metaPath(dir);
+    try( OutputStream os = Persist.create(path) ) {
+      os.write(ab.buf());
+    } catch( IOException e ) {
+      throw new RuntimeException("Failed writing " + path, e);
+    }
+  }
+
+  // Writes the chunk files, each on the home node of the chunk's first column
+  private static class SaveChunks extends MRTask<SaveChunks> {
+    final Frame _frame;
+    final String _dir;
+    SaveChunks( Frame fr, String dir ) { _frame = fr; _dir = dir; }
+
+    @Override public void map( Key k ) {
+      int cidx = FileVec.chunkIdx(k);
+      String path = chunkPath(_dir, cidx);
+      try( DataOutputStream dos = new DataOutputStream(Persist.create(path)) ) {
+        for( Vec v : _frame.vecs() ) {
+          Chunk c = v.chunkForChunkIdx(cidx);
+          // Wrapped Vecs compute their chunks from another Vec's; save the
+          // values they present
+          if( v instanceof WrappedVec ) c = c.inflate_impl(new NewChunk(c)).compress();
+          byte mem[] = c.getBytes();
+          dos.writeUTF(c.getClass().getName());
+          dos.writeInt(mem.length);
+          dos.write(mem);
+        }
+      } catch( IOException e ) {
+        throw new RuntimeException("Failed writing " + path, e);
+      }
+    }
+  }
+
+  /** Load a Frame saved by {@link #save} from dir into key, reading the chunks
+   *  in parallel on their new home nodes. */
+  public static Frame load( Key key, String dir ) {
+    String path = metaPath(dir);
+    AutoBuffer ab;
+    try( InputStream is = Persist.open(path) ) {
+      ab = new AutoBuffer(readAll(is));
+    } catch( IOException e ) {
+      throw new RuntimeException("Failed reading " + path, e);
+    }
+    if( ab.get4() != MAGIC ) throw new IllegalArgumentException(path + " is not a saved Frame");
+    int version = ab.get4();
+    if( version != VERSION ) throw new IllegalArgumentException(path + " has unsupported version " + version);
+    String names[] = ab.getAStr();
+    long espc[] = ab.getA8();
+    Key keys[] = new Vec.VectorGroup().addVecs(names.length);
+    Vec vecs[] = new Vec[names.length];
+    RollupStats rss[] = new RollupStats[names.length];
+    for( int c=0; c<names.length; c++ ) {
+      byte type = (byte)ab.get1();
+      vecs[c] = new Vec(keys[c], espc, ab.getAStr(), type);
+      rss[c] = RollupStats.makeLoaded(ab);
+    }
+
+    int nchunks = espc.length-1;
+    if( names.length > 0 && nchunks > 0 ) {
+      Key cks[] = new Key[nchunks];
+      for( int i=0; i<nchunks; i++ ) cks[i] = Vec.chunkKey(keys[0], i);
+      new LoadChunks(keys, espc, dir).doAll(cks);
+    }
+    Futures fs = new Futures();
+    for( int c=0; c<vecs.length; c++ ) {
+      DKV.put(vecs[c], fs);
+      DKV.put(vecs[c].rollupStatsKey(), rss[c], fs);
+    }
+    Frame fr = new Frame(key, names, vecs);
+    DKV.put(fr, fs);
+    fs.blockForPending();
+    return fr;
+  }
+
+  // Reads the chunk files, each on the home node of its new chunks, and puts
+  // the chunk bytes unchanged
+  private static class LoadChunks extends MRTask<LoadChunks> {
+    final Key _vecKeys[];
+    final long _espc[];
+    final String _dir;
+    LoadChunks( Key vecKeys[], long espc[], String dir ) { _vecKeys = vecKeys; _espc = espc; _dir = dir; }
+
+    @Override public void map( Key k ) {
+      int cidx = FileVec.chunkIdx(k);
+      String path = chunkPath(_dir, cidx);
+      try( DataInputStream dis = new DataInputStream(Persist.open(path)) ) {
+        for( Key vk : _vecKeys ) {
+          int type = chunkType(dis.readUTF(), path);
+          byte mem[] = MemoryManager.malloc1(dis.readInt());
+          dis.readFully(mem);
+          Key ck = Vec.chunkKey(vk, cidx);
+          Value val = new Value(ck, mem.length, mem, (short)type, Value.ICE);
+          DKV.put(ck, val, _fs);
+        }
+      } catch( IOException e ) {
+        throw new RuntimeException("Failed reading " + path, e);
+      }
+      Chunk c = DKV.get(k).get();
+      if( c._len != _espc[cidx+1]-_espc[cidx] )
+        throw new RuntimeException(path + " holds " + c._len + " rows, expected " + (_espc[cidx+1]-_espc[cidx]));
+    }
+  }
+
+  // This cloud's type id for a saved Chunk class
+  private static int chunkType( String className, String path ) throws IOException {
+    try {
+      if( Chunk.class.isAssignableFrom(Class.forName(className)) && !className.equals(NewChunk.class.getName()) )
+        return TypeMap.onIce(className);
+    } catch( ClassNotFoundException ignore ) { }
+    throw new IOException(path + " holds an unknown chunk type " + className);
+  }
+
+  private static byte[] readAll( InputStream is ) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    byte b[] = new byte[1<<16];
+    for( int n; (n = is.read(b)) != -1; ) bos.write(b, 0, n);
+    return bos.toByteArray();
+  }
+}
@@ -5,6 +5,7 @@ import java.io.InputStream;
 
 import water.Key;
 import water.Job;
+import water.MemoryManager;
 
 /**
  * A vector of plain Bytes.
@@ -26,6 +27,20 @@ public class ByteVec extends Vec {
    *  @return array of initial bytes */
   public byte[] getFirstBytes() { return chunkForChunkIdx(0)._mem; }
 
+  /** Get the bytes from lo to hi, which may span several chunks.
+   *  @return a copy of bytes [lo,hi) */
+  public byte[] getBytes( long lo, long hi ) {
+    byte bs[] = MemoryManager.malloc1((int)(hi-lo));
+    for( long p=lo; p<hi; ) {
+      Chunk c = chunkForRow(p);
+      int off = (int)(p-c.start());
+      int n = (int)Math.min(hi-p, c._len-off);
+      System.arraycopy(c.getBytes(), off, bs, (int)(p-lo), n);
+      p += n;
+    }
+    return bs;
+  }
+
   /** Open a stream view over the underlying data  */
   public InputStream openStream(final Key job_key) {
     return new InputStream() {
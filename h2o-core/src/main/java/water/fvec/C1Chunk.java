@@ -1,6 +1,7 @@
 package water.fvec;
 
 import water.*;
+import water.util.UnsafeUtils;
 
 /**
  * The empty-compression function, if all elements fit directly on UNSIGNED bytes.
@@ -9,39 +10,41 @@ import water.*;
 public class C1Chunk extends Chunk {
   static protected final int _OFF = 0;
   static protected final long _NA = 0xFF;
-  C1Chunk(byte[] bs) { _mem=bs; _start = -1; set_len(_mem.length); }
+  C1Chunk(byte[] bs) { setMem(bs); _start = -1; set_len(_mem.length); }
+  private int get( int i ) { return 0xFF&UnsafeUtils.get1(_base,_boff+i+_OFF); }
   @Override protected final long at8_impl( int i ) {
-    long res = 0xFF&_mem[i+_OFF];
+    long res = get(i);
     if( res == _NA ) throw new IllegalArgumentException("at8 but value is missing");
     return res;
   }
   @Override protected final double atd_impl( int i ) {
-    long res = 0xFF&_mem[i+_OFF];
+    long res = get(i);
     return (res == _NA)?Double.NaN:res;
   }
-  @Override protected final boolean isNA_impl( int i ) { return (0xFF&_mem[i+_OFF]) == _NA; }
+  @Override protected final boolean isNA_impl( int i ) { return get(i) == _NA; }
   @Override boolean set_impl(int i, long l) {
     if( !(0 <= l && l < 255) ) return false;
-    _mem[i+_OFF] = (byte)l;
+    UnsafeUtils.set1(_base,_boff+i+_OFF,(byte)l);
     return true;
   }
   @Override boolean set_impl(int i, double d) { return false; }
   @Override boolean set_impl(int i, float f ) { return false; }
-  @Override boolean setNA_impl(int idx) { _mem[idx+_OFF] = (byte)_NA; return true; }
+  @Override boolean setNA_impl(int idx) { UnsafeUtils.set1(_base,_boff+idx+_OFF,(byte)_NA); return true; }
   @Override NewChunk inflate_impl(NewChunk nc) {
     nc.set_sparseLen(0);
     nc.set_len(0);
     final int len = _len;
     for( int i=0; i<len; i++ ) {
-      int res = 0xFF&_mem[i+_OFF];
+      int res = get(i);
       if( res == _NA ) nc.addNA();
       else             nc.addNum(res,0);
     }
     return nc;
   }
-  @Override final public AutoBuffer write_impl(AutoBuffer bb) { return bb.putA1(_mem,_mem.length); }
+  @Override int rawShift() { return 0; }
+  @Override final public AutoBuffer write_impl(AutoBuffer bb) { byte[] mem = getBytes(); return bb.putA1(mem,mem.length); }
   @Override final public C1Chunk read_impl(AutoBuffer bb) {
-    _mem = bb.bufClose();
+    setMem(bb.bufClose());
     _start = -1;
     set_len(_mem.length);
     return this;
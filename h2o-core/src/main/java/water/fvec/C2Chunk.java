@@ -9,20 +9,20 @@ import water.util.UnsafeUtils;
 public class C2Chunk extends Chunk {
   static protected final long _NA = Short.MIN_VALUE;
   static protected final int _OFF=0;
-  C2Chunk( byte[] bs ) { _mem=bs; _start = -1; set_len(_mem.length>>1); }
+  C2Chunk( byte[] bs ) { setMem(bs); _start = -1; set_len(_mem.length>>1); }
   @Override protected final long at8_impl( int i ) {
-    int res = UnsafeUtils.get2(_mem,(i<<1)+_OFF);
+    int res = UnsafeUtils.get2(_base,_boff+(i<<1)+_OFF);
     if( res == _NA ) throw new IllegalArgumentException("at8 but value is missing");
     return res;
   }
   @Override protected final double atd_impl( int i ) {
-    int res = UnsafeUtils.get2(_mem,(i<<1)+_OFF);
+    int res = UnsafeUtils.get2(_base,_boff+(i<<1)+_OFF);
     return res == _NA?Double.NaN:res;
   }
-  @Override protected final boolean isNA_impl( int i ) { return UnsafeUtils.get2(_mem,(i<<1)+_OFF) == _NA; }
+  @Override protected final boolean isNA_impl( int i ) { return UnsafeUtils.get2(_base,_boff+(i<<1)+_OFF) == _NA; }
   @Override boolean set_impl(int idx, long l) {
     if( !(Short.MIN_VALUE < l && l <= Short.MAX_VALUE) ) return false;
-    UnsafeUtils.set2(_mem,(idx<<1)+_OFF,(short)l);
+    UnsafeUtils.set2(_base,_boff+(idx<<1)+_OFF,(short)l);
     return true;
   }
   @Override boolean set_impl(int idx, double d) {
@@ -31,21 +31,22 @@ public class C2Chunk extends Chunk {
     return l == d && set_impl(idx, l);
   }
   @Override boolean set_impl(int i, float f ) { return set_impl(i,(double)f); }
-  @Override boolean setNA_impl(int idx) { UnsafeUtils.set2(_mem,(idx<<1)+_OFF,(short)_NA); return true; }
+  @Override boolean setNA_impl(int idx) { UnsafeUtils.set2(_base,_boff+(idx<<1)+_OFF,(short)_NA); return true; }
   @Override NewChunk inflate_impl(NewChunk nc) {
     nc.set_sparseLen(0);
     nc.set_len(0);
     final int len = _len;
     for( int i=0; i<len; i++ ) {
-      int res = UnsafeUtils.get2(_mem,(i<<1)+_OFF);
+      int res = UnsafeUtils.get2(_base,_boff+(i<<1)+_OFF);
       if( res == _NA ) nc.addNA();
       else             nc.addNum(res,0);
     }
     return nc;
   }
-  @Override public AutoBuffer write_impl(AutoBuffer bb) { return bb.putA1(_mem,_mem.length); }
+  @Override int rawShift() { return 1; }
+  @Override public AutoBuffer write_impl(AutoBuffer bb) { byte[] mem = getBytes(); return bb.putA1(mem,mem.length); }
   @Override public C2Chunk read_impl(AutoBuffer bb) {
-    _mem = bb.bufClose();
+    setMem(bb.bufClose());
     _start = -1;
     set_len(_mem.length>>1);
     assert _mem.length == _len <<1;
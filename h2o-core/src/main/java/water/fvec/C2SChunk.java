@@ -11,27 +11,27 @@ public class C2SChunk extends Chunk {
   private double _scale;
   public double scale() { return _scale; }
   private int _bias;
-  C2SChunk( byte[] bs, int bias, double scale ) { _mem=bs; _start = -1; set_len((_mem.length-_OFF)>>1);
+  C2SChunk( byte[] bs, int bias, double scale ) { setMem(bs); _start = -1; set_len((_mem.length-_OFF)>>1);
     _bias = bias; _scale = scale;
     UnsafeUtils.set8d(_mem, 0, scale);
     UnsafeUtils.set4 (_mem,8,bias );
   }
   @Override protected final long at8_impl( int i ) {
-    long res = UnsafeUtils.get2(_mem,(i<<1)+_OFF);
+    long res = UnsafeUtils.get2(_base,_boff+(i<<1)+_OFF);
     if( res == C2Chunk._NA ) throw new IllegalArgumentException("at8 but value is missing");
     return (long)((res + _bias)*_scale);
   }
   @Override protected final double atd_impl( int i ) {
-    long res = UnsafeUtils.get2(_mem,(i<<1)+_OFF);
+    long res = UnsafeUtils.get2(_base,_boff+(i<<1)+_OFF);
     return (res == C2Chunk._NA)?Double.NaN:(res + _bias)*_scale;
   }
-  @Override protected final boolean isNA_impl( int i ) { return UnsafeUtils.get2(_mem,(i<<1)+_OFF) == C2Chunk._NA; }
+  @Override protected final boolean isNA_impl( int i ) { return UnsafeUtils.get2(_base,_boff+(i<<1)+_OFF) == C2Chunk._NA; }
   @Override boolean set_impl(int idx, long l) {
     long res = (long)(l/_scale)-_bias; // Compressed value
     double d = (res+_bias)*_scale;     // Reverse it
     if( (long)d != l ) return false;   // Does not reverse cleanly?
     if( !(Short.MIN_VALUE < res && res <= Short.MAX_VALUE) ) return false; // Out-o-range for a short array
-    UnsafeUtils.set2(_mem,(idx<<1)+_OFF,(short)res);
+    UnsafeUtils.set2(_base,_boff+(idx<<1)+_OFF,(short)res);
     return true;
   }
   @Override boolean set_impl(int i, double d) {
@@ -39,11 +39,11 @@ public class C2SChunk extends Chunk {
     if( s == C2Chunk._NA ) return false;
     double d2 = (s+_bias)*_scale;
     if( d!=d2 ) return false;
-    UnsafeUtils.set2(_mem,(i<<1)+_OFF,s);
+    UnsafeUtils.set2(_base,_boff+(i<<1)+_OFF,s);
     return true;
   }
   @Override boolean set_impl(int i, float f ) { return false; }
-  @Override boolean setNA_impl(int idx) { UnsafeUtils.set2(_mem,(idx<<1)+_OFF,(short)C2Chunk._NA); return true; }
+  @Override boolean setNA_impl(int idx) { UnsafeUtils.set2(_base,_boff+(idx<<1)+_OFF,(short)C2Chunk._NA); return true; }
   @Override NewChunk inflate_impl(NewChunk nc) {
     double dx = Math.log10(_scale);
     assert water.util.PrettyPrint.fitsIntoInt(dx);
@@ -51,7 +51,7 @@ public class C2SChunk extends Chunk {
     nc.set_len(0);
     final int len = _len;
     for( int i=0; i<len; i++ ) {
-      int res = UnsafeUtils.get2(_mem,(i<<1)+_OFF);
+      int res = UnsafeUtils.get2(_base,_boff+(i<<1)+_OFF);
       if( res == C2Chunk._NA ) nc.addNA();
       else nc.addNum((long)(res+_bias),(int)dx);
     }
@@ -67,10 +67,11 @@ public class C2SChunk extends Chunk {
 //    //if( _scale==0.01 ) return "%7.2f";
 //    //return hasFloat() ? "% 10.4e" : super.pformat0();
 //  }
+  @Override boolean offHeapable() { return true; }
   @Override public byte precision() { return (byte)Math.max(-Math.log10(_scale),0); }
-  @Override public AutoBuffer write_impl(AutoBuffer bb) { return bb.putA1(_mem,_mem.length); }
+  @Override public AutoBuffer write_impl(AutoBuffer bb) { byte[] mem = getBytes(); return bb.putA1(mem,mem.length); }
   @Override public C2SChunk read_impl(AutoBuffer bb) {
-    _mem = bb.bufClose();
+    setMem(bb.bufClose());
     _start = -1;
     set_len((_mem.length-_OFF)>>1);
     _scale= UnsafeUtils.get8d(_mem,0);
@@ -8,39 +8,40 @@ import water.util.UnsafeUtils;
  */
 public class C4Chunk extends Chunk {
   static protected final long _NA = Integer.MIN_VALUE;
-  C4Chunk( byte[] bs ) { _mem=bs; _start = -1; set_len(_mem.length>>2); }
+  C4Chunk( byte[] bs ) { setMem(bs); _start = -1; set_len(_mem.length>>2); }
   @Override protected final long at8_impl( int i ) {
-    long res = UnsafeUtils.get4(_mem,i<<2);
+    long res = UnsafeUtils.get4(_base,_boff+(i<<2));
     if( res == _NA ) throw new IllegalArgumentException("at8 but value is missing");
     return res;
   }
   @Override protected final double atd_impl( int i ) {
-    long res = UnsafeUtils.get4(_mem, i << 2);
+    long res = UnsafeUtils.get4(_base,_boff+(i<<2));
     return res == _NA?Double.NaN:res;
   }
-  @Override protected final boolean isNA_impl( int i ) { return UnsafeUtils.get4(_mem,i<<2) == _NA; }
+  @Override protected final boolean isNA_impl( int i ) { return UnsafeUtils.get4(_base,_boff+(i<<2)) == _NA; }
   @Override boolean set_impl(int idx, long l) {
     if( !(Integer.MIN_VALUE < l && l <= Integer.MAX_VALUE) ) return false;
-    UnsafeUtils.set4(_mem,idx<<2,(int)l);
+    UnsafeUtils.set4(_base,_boff+(idx<<2),(int)l);
     return true;
   }
   @Override boolean set_impl(int i, double d) { return false; }
   @Override boolean set_impl(int i, float f ) { return false; }
-  @Override boolean setNA_impl(int idx) { UnsafeUtils.set4(_mem,(idx<<2),(int)_NA); return true; }
+  @Override boolean setNA_impl(int idx) { UnsafeUtils.set4(_base,_boff+(idx<<2),(int)_NA); return true; }
   @Override NewChunk inflate_impl(NewChunk nc) {
     nc.set_sparseLen(0);
     nc.set_len(0);
     final int len = _len;
     for( int i=0; i<len; i++ ) {
-      int res = UnsafeUtils.get4(_mem,(i<<2));
+      int res = UnsafeUtils.get4(_base,_boff+(i<<2));
       if( res == _NA ) nc.addNA();
       else             nc.addNum(res,0);
     }
     return nc;
   }
-  @Override public AutoBuffer write_impl(AutoBuffer bb) { return bb.putA1(_mem,_mem.length); }
+  @Override int rawShift() { return 2; }
+  @Override public AutoBuffer write_impl(AutoBuffer bb) { byte[] mem = getBytes(); return bb.putA1(mem,mem.length); }
   @Override public C4Chunk read_impl(AutoBuffer bb) {
-    _mem = bb.bufClose();
+    setMem(bb.bufClose());
     _start = -1;
     set_len(_mem.length>>2);
     assert _mem.length == _len <<2;
@@ -7,38 +7,39 @@ import water.util.UnsafeUtils;
  * The empty-compression function, where data is in 'double's.
  */
 public class C8DChunk extends Chunk {
-  C8DChunk( byte[] bs ) { _mem=bs; _start = -1; set_len(_mem.length>>3); }
+  C8DChunk( byte[] bs ) { setMem(bs); _start = -1; set_len(_mem.length>>3); }
   @Override protected final long   at8_impl( int i ) {
-    double res = UnsafeUtils.get8d(_mem, i << 3);
+    double res = UnsafeUtils.get8d(_base,_boff+(i<<3));
     if( Double.isNaN(res) ) throw new IllegalArgumentException("at8 but value is missing");
     return (long)res;
   }
-  @Override protected final double   atd_impl( int i ) { return              UnsafeUtils.get8d(_mem,i<<3) ; }
-  @Override protected final boolean isNA_impl( int i ) { return Double.isNaN(UnsafeUtils.get8d(_mem,i<<3)); }
+  @Override protected final double   atd_impl( int i ) { return              UnsafeUtils.get8d(_base,_boff+(i<<3)) ; }
+  @Override protected final boolean isNA_impl( int i ) { return Double.isNaN(UnsafeUtils.get8d(_base,_boff+(i<<3))); }
   @Override boolean set_impl(int idx, long l) { return false; }
   @Override boolean set_impl(int i, double d) {
-    UnsafeUtils.set8d(_mem,i<<3,d);
+    UnsafeUtils.set8d(_base,_boff+(i<<3),d);
     return true;
   }
   @Override boolean set_impl(int i, float f ) {
-    UnsafeUtils.set8d(_mem,i<<3,f);
+    UnsafeUtils.set8d(_base,_boff+(i<<3),f);
     return true;
   }
-  @Override boolean setNA_impl(int idx) { UnsafeUtils.set8d(_mem,(idx<<3),Double.NaN); return true; }
+  @Override boolean setNA_impl(int idx) { UnsafeUtils.set8d(_base,_boff+(idx<<3),Double.NaN); return true; }
   @Override NewChunk inflate_impl(NewChunk nc) {
     //nothing to inflate - just copy
     nc.alloc_doubles(_len);
     for( int i=0; i< _len; i++ )
-      nc.doubles()[i] = UnsafeUtils.get8d(_mem,(i<<3));
+      nc.doubles()[i] = UnsafeUtils.get8d(_base,_boff+(i<<3));
     nc.set_sparseLen(nc.set_len(_len));
     return nc;
   }
   // 3.3333333e33
 //  public int pformat_len0() { return 22; }
 //  public String pformat0() { return "% 21.15e"; }
-  @Override public AutoBuffer write_impl(AutoBuffer bb) {return bb.putA1(_mem,_mem.length);}
+  @Override int rawShift() { return 3; }
+  @Override public AutoBuffer write_impl(AutoBuffer bb) { byte[] mem = getBytes(); return bb.putA1(mem,mem.length); }
   @Override public C8DChunk read_impl(AutoBuffer bb) {
-    _mem = bb.bufClose();
+    setMem(bb.bufClose());
     _start = -1;
     set_len(_mem.length>>3);
     assert _mem.length == _len <<3;
@@ -0,0 +1,331 @@
+package water.fvec;
+
+import water.*;
+import water.parser.ValueString;
+import water.persist.Persist;
+import water.util.PrettyPrint;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/** Chunk-parallel CSV export of a Frame.
+ *
+ *  <p>Rows are formatted a chunk at a time, on the chunk's home node, into
+ *  byte buffers; numbers are formatted without allocating.  A reader takes
+ *  the chunks in order while the next window of chunks is being formatted,
+ *  so only two windows are ever held.  Output goes to a {@link Stream}, e.g.
+ *  for an HTTP download, or to one part file per node with {@link
+ *  #exportParts}, on local disk or HDFS.
+ */
+public class CSVExport {
+  // Column kinds, fixed before formatting
+  static final byte NUM=0, INT=1, ENUM=2, UUID=3, STR=4;
+
+  // Chunks per formatting task: enough to keep the cloud busy, few enough to
+  // bound the reader's memory
+  static int window() { return Math.max(2, Math.min(64, H2O.CLOUD.size()*H2O.NUMCPUS)); }
+
+  static byte[] kinds( Frame fr ) {
+    Vec vecs[] = fr.vecs();
+    byte kinds[] = new byte[vecs.length];
+    for( int c=0; c<vecs.length; c++ )
+      kinds[c] = vecs[c].isEnum() ? ENUM : vecs[c].isUUID() ? UUID : vecs[c].isString() ? STR : vecs[c].isInt() ? INT : NUM;
+    return kinds;
+  }
+
+  static byte[] header( Frame fr ) {
+    Buf b = new Buf(fr.numCols()*16);
+    for( int c=0; c<fr.numCols(); c++ ) {
+      if( c > 0 ) b.put(',');
+      b.putQuoted(fr._names[c].getBytes(StandardCharsets.UTF_8));
+    }
+    return b.put('\n').toArray();
+  }
+
+  /** The CSV text of some of a Frame's chunks, in order: formatted by a
+   *  {@link FormatChunks} task per window of chunks, the next window while
+   *  the reader consumes this one. */
+  public static class Stream extends InputStream {
+    private final Frame _fr;
+    private final byte _kinds[];
+    private final boolean _hex_string, _local;
+    private final int _cidxs[];   // Chunks to stream, in order
+    private final int _window;    // Chunks per task
+    private int _next;            // First chunk of the next task, as an index into _cidxs
+    private FormatChunks _ahead;  // Formatting the next window
+    private byte _bufs[][];       // Formatted window being read
+    private int _b;               // Next buffer in _bufs
+    private byte _cur[];          // Buffer being read
+    private int _pos;
+
+    /** All the Frame's rows, formatted across the cloud */
+    public Stream( Frame fr, boolean headers, boolean hex_string ) {
+      this(fr, kinds(fr), allChunks(fr), headers, hex_string, false);
+    }
+
+    Stream( Frame fr, byte kinds[], int cidxs[], boolean headers, boolean hex_string, boolean local ) {
+      _fr = fr;
+      _kinds = kinds;
+      _cidxs = cidxs;
+      _hex_string = hex_string;
+      _local = local;
+      _window = window();
+      _cur = headers ? header(fr) : null;
+      _ahead = fork();
+    }
+
+    private static int[] allChunks( Frame fr ) {
+      int cidxs[] = new int[fr.anyVec().nChunks()];
+      for( int i=0; i<cidxs.length; i++ ) cidxs[i] = i;
+      return cidxs;
+    }
+
+    // Start formatting the next window of chunks, if any
+    private FormatChunks fork() {
+      if( _next == _cidxs.length ) return null;
+      Vec v0 = _fr.anyVec();
+      Key keys[] = new Key[Math.min(_window, _cidxs.length-_next)];
+      for( int i=0; i<keys.length; i++ ) keys[i] = v0.chunkKey(_cidxs[_next++]);
+      return new FormatChunks(_fr, _kinds, _hex_string).dfork(keys, _local);
+    }
+
+    // Make _cur a buffer with bytes left to read; false at the end
+    private boolean fill() {
+      while( _cur == null || _pos == _cur.length ) {
+        if( _bufs == null || _b == _bufs.length ) {
+          if( _ahead == null ) return false;
+          _bufs = _ahead.getResult()._bufs;
+          _b = 0;
+          _ahead = fork();        // Prefetch while this window is read
+        }
+        _cur = _bufs[_b];
+        _bufs[_b++] = null;
+        _pos = 0;
+      }
+      return true;
+    }
+
+    @Override public int available() throws IOException { return fill() ? _cur.length-_pos : 0; }
+
+    @Override public int read() throws IOException { return fill() ? _cur[_pos++] & 0xFF : -1; }
+
+    @Override public int read( byte[] b, int off, int len ) throws IOException {
+      if( !fill() ) return -1;
+      int n = Math.min(len, _cur.length-_pos);
+      System.arraycopy(_cur, _pos, b, off, n);
+      _pos += n;
+      return n;
+    }
+
+    /** Write all the rest, buffer by buffer */
+    public void writeTo( OutputStream os ) throws IOException {
+      while( fill() ) {
+        os.write(_cur, _pos, _cur.length-_pos);
+        _pos = _cur.length;
+      }
+    }
+
+    @Override public void close() throws IOException {
+      super.close();
+      _cur = null;
+      _bufs = null;
+    }
+  }
+
+  /** Formats the chunks of the given keys (chunk keys of the Frame's first
+   *  Vec), each on its home node, into _bufs in key order. */
+  static class FormatChunks extends MRTask<FormatChunks> {
+    final Frame _frame;
+    final byte _kinds[];
+    final boolean _hex_string;
+    byte _bufs[][];
+    transient byte _levels[][][]; // Quoted levels of categorical columns, per node
+
+    FormatChunks( Frame fr, byte kinds[], boolean hex_string ) { _frame = fr; _kinds = kinds; _hex_string = hex_string; }
+
+    @Override protected void setupLocal() {
+      Vec vecs[] = _frame.vecs();
+      _levels = new byte[vecs.length][][];
+      for( int c=0; c<vecs.length; c++ )
+        if( _kinds[c] == ENUM ) {
+          String dom[] = vecs[c].domain();
+          _levels[c] = new byte[dom.length][];
+          for( int l=0; l<dom.length; l++ )
+            _levels[c][l] = new Buf(dom[l].length()+2).putQuoted(dom[l].getBytes(StandardCharsets.UTF_8)).toArray();
+        }
+    }
+
+    @Override public void map( Key k ) {
+      int cidx = FileVec.chunkIdx(k);
+      Vec vecs[] = _frame.vecs();
+      Chunk cs[] = new Chunk[vecs.length];
+      for( int c=0; c<vecs.length; c++ ) cs[c] = vecs[c].chunkForChunkIdx(cidx);
+      _bufs = new byte[_keys.length][];
+      for( int i=0; i<_keys.length; i++ )
+        if( _keys[i].equals(k) ) _bufs[i] = format(cs);
+    }
+
+    @Override public void reduce( FormatChunks fc ) {
+      if( _bufs == null ) _bufs = fc._bufs;
+      else if( fc._bufs != null )
+        for( int i=0; i<_bufs.length; i++ )
+          if( _bufs[i] == null ) _bufs[i] = fc._bufs[i];
+    }
+
+    private byte[] format( Chunk cs[] ) {
+      int len = cs.length == 0 ? 0 : cs[0]._len;
+      Buf b = new Buf(len*(cs.length*8+1));
+      ValueString vstr = new ValueString();
+      for( int r=0; r<len; r++ ) {
+        for( int c=0; c<cs.length; c++ ) {
+          if( c > 0 ) b.put(',');
+          Chunk ch = cs[c];
+          if( ch.isNA0(r) ) continue;
+          switch( _kinds[c] ) {
+          case INT:  b.putLong(ch.at80(r)); break;
+          case ENUM: b.put(_levels[c][(int)ch.at80(r)]); break;
+          case UUID: b.putAscii(PrettyPrint.UUID(ch.at16l0(r), ch.at16h0(r))); break;
+          case STR: {
+            ValueString s = ch.atStr0(vstr, r);
+            b.putQuoted(s.get_buf(), s.get_off(), s.get_length());
+            break;
+          }
+          default:
+            // R 3.1 reads numbers with too many digits as factors, so
+            // hex_string gives a way to write exact doubles it reads back.
+            // See https://bugs.r-project.org/bugzilla/show_bug.cgi?id=15751
+            if( _hex_string ) b.putAscii(Double.toHexString(ch.at0(r)));
+            else b.putDouble(ch.at0(r));
+          }
+        }
+        b.put('\n');
+      }
+      return b.toArray();
+    }
+  }
+
+  /** Write the Frame as CSV into dir, one part file per node holding chunks:
+   *  part-NNNNN.csv, for node NNNNN, holding its chunks' rows in order (and
+   *  the header, if asked for).  A dir of hdfs:// or s3n:// goes through HDFS,
+   *  anything else is a local directory on each node.
+   *  @return the paths of the part files written */
+  public static String[] exportParts( Frame fr, String dir, boolean headers, boolean hex_string ) {
+    String paths[] = new WriteParts(fr, kinds(fr), dir, headers, hex_string).doAllNodes()._paths;
+    ArrayList<String> res = new ArrayList<>();
+    for( String p : paths ) if( p != null ) res.add(p);
+    return res.toArray(new String[res.size()]);
+  }
+
+  private static class WriteParts extends MRTask<WriteParts> {
+    final Frame _frame;
+    final byte _kinds[];
+    final String _dir;
+    final boolean _headers, _hex_string;
+    String _paths[];            // Per node
+
+    WriteParts( Frame fr, byte kinds[], String dir, boolean headers, boolean hex_string ) {
+      _frame = fr; _kinds = kinds; _dir = dir; _headers = headers; _hex_string = hex_string;
+    }
+
+    @Override protected void setupLocal() {
+      _paths = new String[H2O.CLOUD.size()];
+      Vec v0 = _frame.anyVec();
+      int n = 0, cidxs[] = new int[v0.nChunks()];
+      for( int i=0; i<cidxs.length; i++ )
+        if( v0.chunkKey(i).home() ) cidxs[n++] = i;
+      if( n == 0 ) return;
+      String path = _dir + (_dir.endsWith("/") ? "" : "/") + String.format("part-%05d.csv", H2O.SELF.index());
+      Stream s = new Stream(_frame, _kinds, Arrays.copyOf(cidxs,n), _headers, _hex_string, true);
+      try( OutputStream os = Persist.create(path) ) {
+        s.writeTo(os);
+      } catch( IOException e ) {
+        throw new RuntimeException("Failed writing " + path, e);
+      }
+      _paths[H2O.SELF.index()] = path;
+    }
+
+    @Override public void reduce( WriteParts wp ) {
+      if( _paths == null ) _paths = wp._paths;
+      else if( wp._paths != null )
+        for( int i=0; i<_paths.length; i++ )
+          if( _paths[i] == null ) _paths[i] = wp._paths[i];
+    }
+  }
+
+  /** Growable byte buffer, with allocation-free number formatting */
+  static final class Buf {
+    private byte _buf[];
+    private int _len;
+    Buf( int cap ) { _buf = new byte[Math.max(cap,16)]; }
+
+    private void grow( int n ) {
+      if( _len+n > _buf.length )
+        _buf = Arrays.copyOf(_buf, Math.max(_buf.length<<1, _len+n));
+    }
+    Buf put( char c ) { grow(1); _buf[_len++] = (byte)c; return this; }
+    Buf put( byte bs[] ) { grow(bs.length); System.arraycopy(bs,0,_buf,_len,bs.length); _len += bs.length; return this; }
+    Buf putAscii( String s ) {
+      grow(s.length());
+      for( int i=0; i<s.length(); i++ ) _buf[_len++] = (byte)s.charAt(i);
+      return this;
+    }
+    Buf putQuoted( byte bs[] ) { return putQuoted(bs, 0, bs.length); }
+    // In double quotes, with quotes inside doubled
+    Buf putQuoted( byte bs[], int off, int len ) {
+      grow(2*len+2);
+      _buf[_len++] = '"';
+      for( int i=off; i<off+len; i++ ) {
+        if( bs[i] == '"' ) _buf[_len++] = '"';
+        _buf[_len++] = bs[i];
+      }
+      _buf[_len++] = '"';
+      return this;
+    }
+
+    Buf putLong( long l ) {
+      if( l == Long.MIN_VALUE ) return putAscii(Long.toString(l));
+      if( l < 0 ) { put('-'); l = -l; }
+      int n = 1;
+      for( long x=l; x >= 10; x /= 10 ) n++;
+      grow(n);
+      for( int i=_len+n-1; i >= _len; i-- ) { _buf[i] = (byte)('0'+l%10); l /= 10; }
+      _len += n;
+      return this;
+    }
+
+    // Largest power of 10 scaling a fraction in putDouble
+    private static final int MAX_FRAC_DIGITS = 9;
+
+    /** Same text as Double.toString for plain decimals of up to
+     *  MAX_FRAC_DIGITS fraction digits between 1e-3 and 1e7 - the range
+     *  where Double.toString writes no exponent - which covers most data.
+     *  Others go through Double.toString. */
+    Buf putDouble( double d ) {
+      if( d == 0 ) return putAscii(1/d < 0 ? "-0.0" : "0.0");
+      double a = Math.abs(d);
+      if( a >= 1e-3 && a < 1e7 ) {
+        long scale = 10;
+        for( int k=1; k<=MAX_FRAC_DIGITS; k++, scale *= 10 ) {
+          long m = Math.round(a*scale);
+          if( m > (1L<<53) ) break;   // No longer exact as a double
+          // Both exact, so the division rounds like parsing the digits does:
+          // the text reads back as d.  The first k that works is the shortest.
+          if( (double)m/scale == a ) {
+            if( d < 0 ) put('-');
+            putLong(m/scale).put('.');
+            long f = m%scale;
+            grow(k);
+            for( int i=_len+k-1; i >= _len; i-- ) { _buf[i] = (byte)('0'+f%10); f /= 10; }
+            _len += k;
+            return this;
+          }
+        }
+      }
+      return putAscii(Double.toString(d));
+    }
+
+    byte[] toArray() { return _len == _buf.length ? _buf : Arrays.copyOf(_buf,_len); }
+  }
+}
@@ -1,7 +1,10 @@
 package water.fvec;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
 import water.*;
 import water.parser.ValueString;
+import water.util.UnsafeUtils;
 
 /** A compression scheme, over a chunk of data - a single array of bytes.
  *  Chunks are mapped many-to-1 to a {@link Vec}.  The <em>actual</em> vector
@@ -146,8 +149,107 @@ public abstract class Chunk extends Iced implements Cloneable {
   byte[] _mem;
   /** Short-cut to the embedded big-data memory.  Generally not useful for
    *  public consumption, since the data remains compressed and holding on to a
-   *  pointer to this array defeats the user-mode spill-to-disk. */
-  public byte[] getBytes() { return _mem; }
+   *  pointer to this array defeats the user-mode spill-to-disk.  Chunks read
+   *  from a memory-mapped ice file return a fresh on-heap copy. */
+  public byte[] getBytes() {
+    if( _mem != null || _buf == null ) return _mem;
+    byte[] mem = MemoryManager.malloc1(_buf.capacity());
+    ((ByteBuffer)_buf.duplicate().clear()).get(mem);
+    return mem;
+  }
+
+  /** Memory-mapped view of the payload, for Chunks reloaded straight from an
+   *  ice file, or the direct buffer holding an off-heap payload; null for
+   *  on-heap Chunks.  Holds the mapping or buffer alive. */
+  transient ByteBuffer _buf;
+  /** Non-null for off-heap Chunks; shared with clones of this Chunk, and set
+   *  false once the payload's {@link MemoryManager} accounting is released. */
+  private transient AtomicBoolean _offHeap;
+  /** Base object and offset used by the raw fixed-width Chunks to read their
+   *  payload through {@link UnsafeUtils}: {@code _mem} and the byte[] base
+   *  offset when on-heap, or null and the absolute address of {@code _buf}. */
+  transient Object _base;
+  transient long _boff;
+
+  /** Set the on-heap payload.  Not a publically visible API. */
+  final byte[] setMem( byte[] mem ) {
+    _buf = null;
+    _base = mem;
+    _boff = UnsafeUtils.BYTE_BASE;
+    return _mem = mem;
+  }
+
+  /** log2 of the element width for Chunks whose payload is a bare array of
+   *  fixed-width elements (no header), or -1.  Such Chunks read via {@code
+   *  _base}/{@code _boff} and can work directly from a mapped ice file. */
+  int rawShift() { return -1; }
+
+  /** True if this Chunk flavor can read its payload in place from a
+   *  memory-mapped ice file. */
+  public final boolean isMappable() { return rawShift() >= 0; }
+
+  /** Deserializer for a memory-mapped ice file holding exactly the payload
+   *  bytes; the counterpart of {@link #read_impl} that does not copy the
+   *  payload onto the heap.  Writes to the Chunk land in the (private,
+   *  copy-on-write) mapping and never reach the file.
+   *  @return this Chunk, reading from the mapping */
+  public final Chunk readMapped( ByteBuffer buf ) {
+    assert isMappable() && buf.isDirect();
+    _mem = null;
+    _buf = buf;
+    _base = null;
+    _boff = UnsafeUtils.address(buf);
+    _start = -1;
+    set_len(buf.capacity()>>rawShift());
+    assert _len<<rawShift() == buf.capacity();
+    return this;
+  }
+
+  /** True for Chunk flavors which read and write their payload only through
+   *  {@code _base}/{@code _boff}, so the payload may live outside the heap.
+   *  All mappable Chunks, plus the scale/bias Chunks whose small header is
+   *  decoded into fields when read. */
+  boolean offHeapable() { return isMappable(); }
+
+  /** True if the payload lives in direct memory (see {@link #moveOffHeap}) */
+  public final boolean isOffHeap() { return _offHeap != null; }
+
+  /** True if the payload is read from a direct or memory-mapped buffer, not
+   *  an on-heap array; {@link #getBytes} then returns a fresh heap copy. */
+  public final boolean isHeapless() { return _mem == null && _buf != null; }
+
+  /** Move the payload of a new, not yet shared, Chunk into direct memory, out
+   *  of reach of the garbage collector.  The element accessors are unchanged
+   *  and allocation-free.  Must not be called on a Chunk which other threads
+   *  may be reading.  Not a publically visible API.
+   *  @return true if the payload is now off-heap */
+  public final boolean moveOffHeap() {
+    if( _offHeap != null ) return true;
+    byte[] mem = _mem;
+    if( mem == null || !offHeapable() ) return false;
+    ByteBuffer buf = MemoryManager.mallocOffHeap(mem.length);
+    if( buf == null ) return false; // Over the off-heap budget; stay on heap
+    buf.put(mem);
+    _mem = null;
+    _buf = buf;
+    _base = null;
+    _boff = UnsafeUtils.address(buf);
+    _offHeap = new AtomicBoolean(true);
+    return true;
+  }
+
+  /** Release the {@link MemoryManager} accounting for an off-heap payload,
+   *  once; called when the K/V store drops this Chunk.  The direct memory is
+   *  reclaimed when the last reader lets go of the Chunk. */
+  public final void releaseOffHeap() {
+    AtomicBoolean off = _offHeap;
+    if( off != null && off.compareAndSet(true,false) )
+      MemoryManager.freeOffHeap(_buf.capacity());
+  }
+
+  /** True if both Chunks read the same off-heap payload (e.g. a Chunk and the
+   *  clone made for writing into it). */
+  public final boolean sharesOffHeap( Chunk c ) { return _offHeap != null && _offHeap == c._offHeap; }
 
   /** Used by a ParseExceptionTest to break the Chunk invariants and trigger an
    *  NPE.  Not intended for public use. */
@@ -1,7 +1,6 @@
 package water.fvec;
 
 import water.*;
-import water.util.UnsafeUtils;
 
 abstract class FileVec extends ByteVec {
   long _len;                    // File length
@@ -43,8 +42,6 @@ abstract class FileVec extends ByteVec {
    *  direct conversion.
    *  @return The file offset corresponding to this Chunk index */
   public static long chunkOffset ( Key ckey ) { return (long)chunkIdx(ckey)<<LOG_CHK; }
-  // Reverse: convert a chunk-key into a cidx
-  static int chunkIdx(Key ckey) { assert ckey._kb[0]==Key.CHK; return UnsafeUtils.get4(ckey._kb, 1 + 1 + 4); }
 
   // Convert a chunk# into a chunk - does lazy-chunk creation. As chunks are
   // asked-for the first time, we make the Key and an empty backing DVec.
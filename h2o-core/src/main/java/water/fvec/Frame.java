@@ -3,9 +3,7 @@ package water.fvec;
 import water.*;
 import water.util.ArrayUtils;
 import water.util.Log;
-import water.util.PrettyPrint;
 
-import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -864,82 +862,6 @@ public class Frame extends Lockable {
    *  is compatible with R 3.1's recent change to read.csv()'s behavior.
    *  @return An InputStream containing this Frame as a CSV */
   public InputStream toCSV(boolean headers, boolean hex_string) {
-    return new CSVStream(headers, hex_string);
-  }
-
-  private class CSVStream extends InputStream {
-    private final boolean _hex_string;
-    byte[] _line;
-    int _position;
-    long _row;
-
-    CSVStream(boolean headers, boolean hex_string) {
-      _hex_string = hex_string;
-      StringBuilder sb = new StringBuilder();
-      Vec vs[] = vecs();
-      if( headers ) {
-        sb.append('"').append(_names[0]).append('"');
-        for(int i = 1; i < vs.length; i++)
-          sb.append(',').append('"').append(_names[i]).append('"');
-        sb.append('\n');
-      }
-      _line = sb.toString().getBytes();
-    }
-
-    @Override public int available() throws IOException {
-      if(_position == _line.length) {
-        if(_row == numRows())
-          return 0;
-        StringBuilder sb = new StringBuilder();
-        Vec vs[] = vecs();
-        for( int i = 0; i < vs.length; i++ ) {
-          if(i > 0) sb.append(',');
-          if(!vs[i].isNA(_row)) {
-            if( vs[i].isEnum() ) sb.append('"').append(vs[i].factor(vs[i].at8(_row))).append('"');
-            else if( vs[i].isUUID() ) sb.append(PrettyPrint.UUID(vs[i].at16l(_row), vs[i].at16h(_row)));
-            else if( vs[i].isInt() ) sb.append(vs[i].at8(_row));
-            else {
-              double d = vs[i].at(_row);
-              // R 3.1 unfortunately changed the behavior of read.csv().
-              // (Really type.convert()).
-              //
-              // Numeric values with too much precision now trigger a type conversion in R 3.1 into a factor.
-              //
-              // See these discussions:
-              //   https://bugs.r-project.org/bugzilla/show_bug.cgi?id=15751
-              //   https://stat.ethz.ch/pipermail/r-devel/2014-April/068778.html
-              //   http://stackoverflow.com/questions/23072988/preserve-old-pre-3-1-0-type-convert-behavior
-              String s = _hex_string ? Double.toHexString(d) : Double.toString(d);
-              sb.append(s);
-            }
-          }
-        }
-        sb.append('\n');
-        _line = sb.toString().getBytes();
-        _position = 0;
-        _row++;
-      }
-      return _line.length - _position;
-    }
-
-    @Override public void close() throws IOException {
-      super.close();
-      _line = null;
-    }
-
-    @Override public int read() throws IOException {
-      return available() == 0 ? -1 : _line[_position++];
-    }
-
-    @Override public int read(byte[] b, int off, int len) throws IOException {
-      int n = available();
-      if(n > 0) {
-        n = Math.min(n, len);
-        System.arraycopy(_line, _position, b, off, n);
-        _position += n;
-      }
-      return n;
-    }
+    return new CSVExport.Stream(this, headers, hex_string);
   }
-
 }
@@ -46,6 +46,8 @@ class RollupStats extends Iced {
   volatile long[] _bins;
   // Approximate data value closest to the Xth percentile
   double[] _pctiles;
+  // Rank error bound of _pctiles when they come from a QuantileSketch, else NaN
+  double _pctileErr = Double.NaN;
 
   public boolean hasStats(){return _naCnt >= 0;}
   public boolean hasHisto(){return _bins != null;}
@@ -60,6 +62,8 @@ class RollupStats extends Iced {
   private RollupStats( int mode ) { _naCnt = mode; }
   private static RollupStats makeComputing(Key rskey) { return new RollupStats(-1); }
   static RollupStats makeMutating (Key rskey) { return new RollupStats(-2); }
+  // Rollups saved by a previous cloud, read back with the Iced serializer
+  static RollupStats makeLoaded(AutoBuffer ab) { return (RollupStats)new RollupStats(0).read(ab); }
 
   private RollupStats map( Chunk c ) {
     _checksum = 0;
@@ -219,9 +223,12 @@ class RollupStats extends Iced {
   private static class Histo extends MRTask<Histo> {
     final double _base, _stride; // Inputs
     final int _nbins;            // Inputs
+    final boolean _sketch;       // Also sketch the quantiles
     long[] _bins;                // Outputs
-    Histo( H2OCountedCompleter cmp, RollupStats rs, int nbins ) { super(cmp);_base = rs.h_base(); _stride = rs.h_stride(nbins); _nbins = nbins; }
+    QuantileSketch _qs;
+    Histo( H2OCountedCompleter cmp, RollupStats rs, int nbins ) { super(cmp);_base = rs.h_base(); _stride = rs.h_stride(nbins); _nbins = nbins; _sketch = H2O.ARGS.sketch_pctiles; }
     @Override public void map( Chunk c ) {
+      if( _sketch ) _qs = new QuantileSketch(QuantileSketch.DEFAULT_K,c.start()).add(c);
       _bins = new long[_nbins];
       for( int i=c.nextNZ(-1); i< c._len; i=c.nextNZ(i) ) {
         double d = c.at0(i);
@@ -234,7 +241,10 @@ class RollupStats extends Iced {
     }
     private int idx( double d ) { int idx = (int)((d-_base)/_stride); return Math.min(idx,_bins.length-1); }
 
-    @Override public void reduce( Histo h ) { ArrayUtils.add(_bins,h._bins); }
+    @Override public void reduce( Histo h ) {
+      ArrayUtils.add(_bins,h._bins);
+      _qs = _qs == null ? h._qs : _qs.merge(h._qs);
+    }
     // Just toooo common to report always.  Drowning in multi-megabyte log file writes.
     @Override public boolean logVerbose() { return false; }
   }
@@ -280,6 +290,11 @@ class RollupStats extends Iced {
         @Override
         public void callback(Histo histo) {
           _rs._bins = histo._bins;
+          if( histo._qs != null ) { // Percentiles from the sketch, with an error bound
+            _rs._pctiles = histo._qs.quantiles(Vec.PERCENTILES);
+            _rs._pctileErr = histo._qs.rankError();
+            return;
+          }
           // Compute percentiles from histogram
           _rs._pctiles = new double[Vec.PERCENTILES.length];
           int j=0;                    // Histogram bin number
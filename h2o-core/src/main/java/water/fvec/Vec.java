@@ -314,7 +314,7 @@ public class Vec extends Keyed {
     new MRTask(){
       @Override public void map(Chunk c){
         Chunk c2 = (Chunk)c.clone();
-        c2._mem = c2._mem.clone();
+        c2.setMem(c.getBytes().clone());
         DKV.put(v.chunkKey(c.cidx()),c2,_fs);
       }
     }.doAll(this);
@@ -531,6 +531,9 @@ public class Vec extends Keyed {
    *  overview of the data.  The specific percentiles are take from {@link #PERCENTILES}. 
    *  @return A set of percentiles */
   public double[] pctiles() { return RollupStats.get(this, true)._pctiles;   }
+  /** Rank error bound (as a fraction of the rows, at 99% confidence) of
+   *  {@link #pctiles} when H2O runs with -sketch_pctiles; NaN otherwise. */
+  public double pctilesRankError() { return RollupStats.get(this, true)._pctileErr; }
 
 
   /** Compute the roll-up stats as-needed */
@@ -624,6 +627,14 @@ public class Vec extends Keyed {
     return Key.make(bits);
   }
 
+  /** Get a chunk-index from a Chunk Key, without loading the Chunk.
+   *  Basically the key-to-index map.
+   *  @return the chunk-index of the Chunk Key */
+  public static int chunkIdx( Key chk_key ) {
+    assert chk_key._kb[0]==Key.CHK;
+    return UnsafeUtils.get4(chk_key._kb, 6); // chunk#
+  }
+
   /** Get a Chunk Key from a chunk-index.  Basically the index-to-key map.
    *  @return Chunk Key from a chunk-index */
   public Key chunkKey(int cidx ) { return chunkKey(_key,cidx); }
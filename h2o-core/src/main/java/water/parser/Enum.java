@@ -1,22 +1,27 @@
 package water.parser;
 
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 import water.AutoBuffer;
 import water.H2O;
 import water.Iced;
-import water.nbhm.NonBlockingHashMap;
+import water.MemoryManager;
 import water.util.DocGen.HTML;
 
 /** Class for tracking enum columns.
- *  
- *  Basically a wrapper around non blocking hash map.
- *  In the first pass, we just collect set of unique strings per column
- *  (if there are less than MAX_ENUM_SIZE unique elements).
- *  
- *  After pass1, the keys are sorted and indexed alphabetically.
- *  In the second pass, map is used only for lookup and never updated.
- *  
+ *
+ *  A concurrent dictionary from level bytes to ids 1, 2, 3... in order of
+ *  first appearance.  We collect the set of unique strings per column (if
+ *  there are less than MAX_ENUM_SIZE unique elements) while parsing; after
+ *  the parse the levels are sorted into the column's domain.
+ *
+ *  Level bytes are stored back-to-back in one arena, and looked up through an
+ *  open-addressing table of 64-bit hashes and ids, all primitive arrays.
+ *  Lookups of known levels are lock-free and allocate nothing; the rare
+ *  insert of a new level locks the Enum.  An insert fills in the level's
+ *  bytes and id before publishing its hash, so a reader seeing the hash
+ *  sees the rest.
+ *
  *  Enum objects are shared among threads on the local nodes!
  *
  * @author tomasnykodym
@@ -24,91 +29,165 @@ import water.util.DocGen.HTML;
  */
 public final class Enum extends Iced {
   public static final int MAX_ENUM_SIZE = 65000;
-  AtomicInteger _id = new AtomicInteger();
-  int _maxId = -1;
-  volatile NonBlockingHashMap<ValueString, Integer> _map;
-  boolean maxEnumExceeded = false;
+  volatile boolean maxEnumExceeded = false;
 
-  Enum() { _map = new NonBlockingHashMap<>(); }
+  // Level bytes of id i are _arena[_offs[i-1] .. _offs[i]).  Grown by
+  // copying, under the lock; readers see a copy holding every published id.
+  private transient volatile byte[] _arena;
+  private transient volatile int[] _offs;
+  private transient volatile int _n;      // Ids published so far
 
-  private Enum(int id, NonBlockingHashMap<ValueString,Integer>map) {
-    _id = new AtomicInteger(id);
-    _map = map;
+  // Slots of 64-bit hashes (0 for empty) and the matching ids
+  private static final class Table {
+    final AtomicLongArray _hashes;
+    final int[] _ids;
+    Table( int cap ) { _hashes = new AtomicLongArray(cap); _ids = new int[cap]; }
   }
-  Enum deepCopy() {
-    return new Enum(_id.get(), _map==null ? null : (NonBlockingHashMap<ValueString,Integer>)_map.clone());
+  private transient volatile Table _table;
+
+  Enum() {
+    _arena = MemoryManager.malloc1(256);
+    _offs = MemoryManager.malloc4(16);
+    _table = new Table(16);
   }
-  /** Add key to this map (treated as hash set in this case). */
+
+  // 64-bit hash of the bytes; never 0, the empty-slot marker
+  private static long hash( byte[] buf, int off, int len ) {
+    long h = 0x9E3779B97F4A7C15L ^ len;
+    for( int i=off; i<off+len; i++ )
+      h = (h ^ (buf[i]&0xFF)) * 0x100000001B3L;
+    h ^= h >>> 29;  h *= 0xBF58476D1CE4E5B9L;  h ^= h >>> 32;
+    return h == 0 ? 1 : h;
+  }
+
+  // The id of the level in the table, or 0
+  private int find( Table t, long h, byte[] buf, int off, int len ) {
+    int mask = t._ids.length-1;
+    for( int s = (int)h & mask; ; s = (s+1) & mask ) {
+      long h2 = t._hashes.get(s);
+      if( h2 == 0 ) return 0;
+      if( h2 == h ) {           // Published, so the id and bytes are set
+        int id = t._ids[s];
+        int[] offs = _offs;
+        byte[] arena = _arena;
+        int o = offs[id-1];
+        if( offs[id]-o == len && equals(arena, o, buf, off, len) ) return id;
+      }
+    }
+  }
+  private static boolean equals( byte[] a, int aoff, byte[] b, int boff, int len ) {
+    for( int i=0; i<len; i++ )
+      if( a[aoff+i] != b[boff+i] ) return false;
+    return true;
+  }
+
+  /** Add key to this map (treated as hash set in this case).
+   *  @return the key's id, 1 for the first key */
   int addKey(ValueString str) {
-    // _map is shared and be cast to null (if enum is killed) -> grab local copy
-    NonBlockingHashMap<ValueString, Integer> m = _map;
-    if( m == null ) return Integer.MAX_VALUE;     // Nuked already
-    Integer res = m.get(str);
-    if( res != null ) return res; // Recorded already
-    assert str.get_length() < 65535; // Length limit so 65535 can be used as a sentinel
-    int newVal = _id.incrementAndGet();
-    res = m.putIfAbsent(new ValueString(str), newVal);
-    if( res != null ) return res;
-    if( m.size() > MAX_ENUM_SIZE ) maxEnumExceeded = true;
-    return newVal;
+    byte[] buf = str.get_buf();
+    int off = str.get_off(), len = str.get_length();
+    long h = hash(buf, off, len);
+    int id = find(_table, h, buf, off, len);
+    return id != 0 ? id : insert(h, buf, off, len);
   }
-  final boolean containsKey(ValueString key){ return _map.containsKey(key); }
-  @Override public String toString() {
-    return "{"+_map+" }";
+
+  private synchronized int insert( long h, byte[] buf, int off, int len ) {
+    int id = find(_table, h, buf, off, len);
+    if( id != 0 ) return id;    // Lost the race to another inserter
+    assert len < 65535;         // Length limit, as for ValueStrings
+    id = _n+1;
+    // Level bytes first...
+    int[] offs = _offs;
+    if( id+1 > offs.length ) _offs = offs = Arrays.copyOf(offs, offs.length<<1);
+    byte[] arena = _arena;
+    int o = offs[id-1];
+    if( o+len > arena.length ) _arena = arena = Arrays.copyOf(arena, Math.max(arena.length<<1, o+len));
+    System.arraycopy(buf, off, arena, o, len);
+    offs[id] = o+len;
+    // ...then the slot, keeping the table at most half full
+    Table t = _table;
+    if( 2*(id+1) > t._ids.length ) _table = t = grow(t);
+    put(t, h, id);
+    _n = id;
+    if( id > MAX_ENUM_SIZE ) maxEnumExceeded = true;
+    return id;
   }
 
-  int getTokenId( ValueString str ) { return _map.get(str); }
-  
-  void merge(Enum other){
-    if( this == other ) return;
-    if( isMapFull() ) return;
-    if( !other.isMapFull() ) {   // do the merge
-      Map<ValueString, Integer> myMap = _map;
-      Map<ValueString, Integer> otMap = other._map;
-      if( myMap == otMap ) return;
-      for( ValueString str : otMap.keySet() )
-        myMap.put(str, 1);
-      if( myMap.size() <= MAX_ENUM_SIZE ) return;
+  // Publish the hash last: readers seeing it see the id
+  private static void put( Table t, long h, int id ) {
+    int mask = t._ids.length-1;
+    int s = (int)h & mask;
+    while( t._hashes.get(s) != 0 ) s = (s+1) & mask;
+    t._ids[s] = id;
+    t._hashes.set(s, h);
+  }
+
+  private static Table grow( Table t ) {
+    Table t2 = new Table(t._ids.length<<1);
+    for( int s=0; s<t._ids.length; s++ ) {
+      long h = t._hashes.get(s);
+      if( h != 0 ) put(t2, h, t._ids[s]);
     }
-    maxEnumExceeded = true; // too many values, enum should be killed!
+    return t2;
+  }
+
+  final boolean containsKey(ValueString key){ return getTokenId(key) != 0; }
+  @Override public String toString() {
+    return "{"+Arrays.toString(levels())+" }";
+  }
+
+  /** @return the key's id, or 0 if not present */
+  int getTokenId( ValueString str ) {
+    byte[] buf = str.get_buf();
+    int off = str.get_off(), len = str.get_length();
+    return find(_table, hash(buf, off, len), buf, off, len);
   }
-  int maxId() { return _maxId == -1 ? _id.get() : _maxId; }
-  int size() { return _map.size(); }
+
+  int maxId() { return _n; }
+  int size() { return _n; }
   boolean isMapFull() { return maxEnumExceeded; }
 
+  /** The levels, by id: level i has id i+1.  Views onto the arena. */
+  ValueString[] levels() {
+    int n = _n;                 // Read before the arrays; they hold n ids
+    int[] offs = _offs;
+    byte[] arena = _arena;
+    ValueString vs[] = new ValueString[n];
+    for( int i=0; i<n; i++ )
+      vs[i] = new ValueString(arena, offs[i], offs[i+1]-offs[i]);
+    return vs;
+  }
+
   // assuming single threaded
+  /** The levels, alpha sorted to be nice, as compact copies */
   ValueString [] computeColumnDomain() {
-    ValueString vs[] = _map.keySet().toArray(new ValueString[_map.size()]);
-    Arrays.sort(vs);            // Alpha sort to be nice
+    ValueString vs[] = levels();
+    Arrays.sort(vs);
     for( int j = 0; j < vs.length; ++j )
-      _map.put(vs[j], j);       // Renumber in the map
+      vs[j] = new ValueString(vs[j]);
     return vs;
   }
 
-  // Since this is a *concurrent* hashtable, writing it whilst its being
-  // updated is tricky.  If the table is NOT being updated, then all is written
-  // as expected.  If the table IS being updated we only promise to write the
-  // Keys that existed at the time the table write began.  If elements are
-  // being deleted, they may be written anyways.  If the Values are changing, a
-  // random Value is written.
+  // Since this is a *concurrent* dictionary, writing it whilst it is being
+  // updated is tricky.  We only promise to write the levels published at the
+  // time the write began.
   @Override public AutoBuffer write_impl( AutoBuffer ab ) {
-    if( _map == null ) return ab.put1(1); // Killed map marker
-    ab.put1(0);                           // Not killed
-    ab.put4(maxId());
-    for( ValueString key : _map.keySet() )
-      ab.put2((char)key.get_length()).putA1(key.get_buf(),key.get_length()).put4(_map.get(key));
-    return ab.put2((char)65535); // End of map marker
+    int n = _n;
+    int[] offs = _offs;
+    byte[] arena = _arena;
+    ab.put1(maxEnumExceeded ? 1 : 0).putA4(Arrays.copyOf(offs, n+1));
+    return ab.putA1(arena, offs[n]);
   }
-  
+
   @Override public Enum read_impl( AutoBuffer ab ) {
-    assert _map == null || _map.size()==0;
-    _map = null;
-    if( ab.get1() == 1 ) return this; // Killed?
-    _maxId = ab.get4();
-    _map = new NonBlockingHashMap<>();
-    int len;
-    while( (len = ab.get2()) != 65535 ) // Read until end-of-map marker
-      _map.put(new ValueString(ab.getA1(len)),ab.get4());
+    maxEnumExceeded = ab.get1() == 1;
+    int[] offs = ab.getA4();
+    int n = offs.length-1;
+    byte[] arena = ab.getA1(offs[n]);
+    Table t = new Table(Math.max(16, Integer.highestOneBit(4*n+3)));
+    for( int id=1; id<=n; id++ )
+      put(t, hash(arena, offs[id-1], offs[id]-offs[id-1]), id);
+    _offs = offs;  _arena = arena;  _table = t;  _n = n;
     return this;
   }
   @Override public AutoBuffer writeJSON_impl( AutoBuffer ab ) { throw H2O.unimpl(); }
@@ -0,0 +1,643 @@
+package water.parser;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.zip.*;
+import water.*;
+import water.fvec.*;
+import water.util.ArrayUtils;
+
+/** Random access into gzip'ed and zip'ed files, so they parse in parallel
+ *  like any uncompressed file, without first decompressing them into the K/V
+ *  store.
+ *
+ *  <p>An {@link Index} splits the decompressed bytes into chunks of about
+ *  {@link Vec#CHUNK_SZ}.  For the start of each chunk it records the bit
+ *  offset of a deflate block in the compressed file, and the 32K of output
+ *  before it, which that and later blocks may copy from.  Each chunk is then
+ *  inflated, and parsed, on its own.  java.util.zip can only start at a byte
+ *  offset, with a preset dictionary; a chunk starting mid-byte is decoded by
+ *  a small bit-accurate inflater up to the first block which starts on a byte
+ *  boundary (e.g. after a stored block, as every sync flush writes), and by
+ *  java.util.zip from there.  Checkpoints are taken on byte boundaries where
+ *  the stream has them.
+ *
+ *  <p>Block-gzip files (BGZF, as written by bgzip and many Hadoop tools) are
+ *  runs of independent gzip members of at most 64K, each with its compressed
+ *  size in the header and its uncompressed size in the trailer.  A parallel
+ *  scan of the compressed chunks finds the members, which are grouped into
+ *  chunks; each chunk starts a member, with an empty window.
+ *
+ *  <p>Any other gzip or zip stream is indexed by one pass decoding it from its
+ *  start, with a small inflater which tracks bit offsets.  That pass only
+ *  keeps a 32K window per chunk, spread around the cloud.
+ */
+final class Inflate {
+  private Inflate() {}
+
+  // Max BGZF member size; scans look this far into the next chunk
+  static final int MAX_MEMBER = 1<<16;
+  // Deflate window
+  static final int WSIZE = 1<<15, WMASK = WSIZE-1;
+  // Compressed bytes handed to an Inflater at a time
+  static final int SLICE = 1<<16;
+
+  /** Decompressed chunks of a compressed file, with where to start inflating
+   *  each of them. */
+  static final class Index extends Iced {
+    final Key _src;             // The compressed file
+    final long _len;            // Its length
+    final boolean _gzip;        // gzip members follow one another; else a single zip entry
+    final long _espc[];         // Decompressed start of each chunk, and the total
+    final long _bits[];         // Bit offset of each chunk's first deflate block
+    final Key _wins[];          // Up to 32K of output before each chunk, or null if none
+    Index( Key src, long len, boolean gzip, long espc[], long bits[], Key wins[] ) {
+      _src = src;  _len = len;  _gzip = gzip;  _espc = espc;  _bits = bits;  _wins = wins;
+    }
+    int nChunks() { return _bits.length; }
+    /** Compressed bytes of chunk cidx, roughly; for progress */
+    long compressedBytes( int cidx ) {
+      long lo = cidx == 0 ? 0 : _bits[cidx]>>>3;
+      long hi = cidx+1 < _bits.length ? _bits[cidx+1]>>>3 : _len;
+      return hi-lo;
+    }
+    /** The bytes of chunk cidx, inflated on demand */
+    ChunkIn dataIn( int cidx ) { return new ChunkIn(this, cidx); }
+    /** Remove the saved windows */
+    Futures remove( Futures fs ) {
+      for( Key k : _wins ) if( k != null ) DKV.remove(k, fs);
+      return fs;
+    }
+  }
+
+  /** Index the gzip'ed or zip'ed files among fkeys, each on its home node;
+   *  null entries for files which are not compressed, or which must be
+   *  streamed. */
+  static Index[] index( Key fkeys[], Key job_key ) {
+    Index res[] = new IndexFiles(job_key).doAll(fkeys)._res;
+    return res == null ? new Index[fkeys.length] : res;
+  }
+
+  private static class IndexFiles extends MRTask<IndexFiles> {
+    final Key _job_key;
+    Index _res[];
+    IndexFiles( Key job_key ) { _job_key = job_key; }
+
+    @Override public void map( Key key ) {
+      ByteVec vec = ParseDataset2.getByteVec(key);
+      ZipUtil.Compression cpr = ZipUtil.guessCompressionMethod(vec.getFirstBytes());
+      Index idx;
+      try { idx = index(vec, cpr, _job_key); }
+      catch( IOException ioe ) { throw new RuntimeException(ioe); }
+      _res = new Index[_keys.length];
+      _res[ArrayUtils.find(_keys,key)] = idx;
+    }
+    @Override public void reduce( IndexFiles inf ) {
+      if( _res == null ) _res = inf._res;
+      else if( inf._res != null )
+        for( int i=0; i<_res.length; i++ )
+          if( _res[i] == null ) _res[i] = inf._res[i];
+    }
+  }
+
+  /** The Index of vec, or null if it is not compressed, or is compressed in a
+   *  way which can only be streamed (stored or encrypted zip entries), or
+   *  decompresses to nothing. */
+  static Index index( ByteVec vec, ZipUtil.Compression cpr, Key job_key ) throws IOException {
+    return index(vec, cpr, job_key, Vec.CHUNK_SZ);
+  }
+  // Chunks of about chunkSize decompressed bytes; tests index with small ones
+  static Index index( ByteVec vec, ZipUtil.Compression cpr, Key job_key, int chunkSize ) throws IOException {
+    switch( cpr ) {
+    case GZIP: {
+      byte[] bs = vec.getFirstBytes();
+      Index idx = memberLength(bs, 0, bs.length) > 0 ? indexMembers(vec, job_key, chunkSize) : null;
+      return idx != null ? idx : scan(vec, true, 0, job_key, chunkSize);
+    }
+    case ZIP: {
+      // Local header of the *FIRST* entry: deflated, not encrypted, not a directory
+      byte[] bs = vec.getFirstBytes();
+      if( bs.length < 30 || u16(bs, 8) != 8 || (u16(bs, 6)&1) != 0 ) return null;
+      int nlen = u16(bs, 26), xlen = u16(bs, 28);
+      if( nlen == 0 || 30+nlen > bs.length || bs[30+nlen-1] == '/' ) return null;
+      return scan(vec, false, 30+nlen+xlen, job_key, chunkSize);
+    }
+    default: return null;
+    }
+  }
+
+  private static int u16( byte bs[], int i ) { return (bs[i]&0xFF) | (bs[i+1]&0xFF)<<8; }
+  private static long u32( byte bs[], int i ) { return u16(bs, i) | (long)u16(bs, i+2)<<16; }
+
+  // Longest gzip header looked for: room for a file name and comment
+  static final int MAX_HEADER = 1<<16;
+
+  /** Length of the gzip header of a deflated member at bs[i], or -1 if there
+   *  is no complete one there. */
+  static int headerLength( byte bs[], int i, int len ) {
+    if( i+10 > len || bs[i] != 0x1f || bs[i+1] != (byte)0x8b || bs[i+2] != 8 ) return -1;
+    int flg = bs[i+3], p = i+10;
+    if( (flg&4) != 0 ) p = p+2 > len ? len+1 : p+2+u16(bs, p); // FEXTRA
+    if( (flg&8) != 0 ) { while( p < len && bs[p] != 0 ) p++; p++; } // FNAME
+    if( (flg&16) != 0 ) { while( p < len && bs[p] != 0 ) p++; p++; } // FCOMMENT
+    if( (flg&2) != 0 ) p += 2;  // FHCRC
+    return p <= len ? p-i : -1;
+  }
+  /** Length of the gzip header at offset p of vec, or -1 if there is none */
+  static int headerLength( ByteVec vec, long p ) {
+    long len = vec.length();
+    if( p < 0 || p >= len ) return -1;
+    byte bs[] = vec.getBytes(p, Math.min(len, p+1024)); // Headers are short but for rare names
+    int hlen = headerLength(bs, 0, bs.length);
+    if( hlen >= 0 || p+bs.length == len || bs.length < 2 || bs[0] != 0x1f || bs[1] != (byte)0x8b ) return hlen;
+    bs = vec.getBytes(p, Math.min(len, p+MAX_HEADER));
+    return headerLength(bs, 0, bs.length);
+  }
+
+  // ------------------------------------------------------------------------
+  // Inflate one chunk of an Index, and the start of the next: a chunk's parser
+  // finishes its last line in the next chunk, up to that chunk's first line
+  // end.
+  static final class ChunkIn implements Parser.DataIn {
+    final Index _idx;
+    final int _cidx;
+    final ByteVec _vec;
+    final Inflater _inf = new Inflater(true);
+    Scan _scan;                 // Decodes until a block starts on a byte boundary, then null
+    long _given;                // Bytes of _scan output handed out
+    long _pos;                  // Next compressed byte to feed the Inflater
+    long _memberStart;          // Compressed start of the Inflater's input
+    boolean _done;              // Hit the end of the compressed data
+    byte _bits0[], _bits1[];
+
+    ChunkIn( Index idx, int cidx ) {
+      _idx = idx;  _cidx = cidx;
+      _vec = ParseDataset2.getByteVec(idx._src);
+      long bit = idx._bits[cidx];
+      Key wk = idx._wins[cidx];
+      byte win[] = wk == null ? null : DKV.get(wk).memOrLoad();
+      if( (bit&7) == 0 ) {
+        _memberStart = _pos = bit>>>3;
+        if( win != null ) _inf.setDictionary(win);
+      } else {
+        _scan = new Scan(_vec, null);
+        try { _scan.seekBit(bit); }
+        catch( IOException ioe ) { throw new RuntimeException(ioe); }
+        if( win != null ) _scan.preset(win);
+        _given = _scan._out;
+      }
+    }
+
+    @Override public byte[] getChunkData( int cidx ) {
+      try {
+        if( cidx == _cidx ) {
+          if( _bits0 == null ) {
+            int len = (int)(_idx._espc[cidx+1]-_idx._espc[cidx]);
+            _bits0 = MemoryManager.malloc1(len);
+            if( inflate(_bits0, 0, len) != len )
+              throw new EOFException("Compressed data of "+_idx._src+" ended early");
+          }
+          return _bits0;
+        }
+        if( cidx != _cidx+1 || cidx >= _idx.nChunks() ) return null;
+        if( _bits1 == null ) {
+          assert _bits0 != null;
+          int len = (int)(_idx._espc[cidx+1]-_idx._espc[cidx]);
+          byte bs[] = MemoryManager.malloc1(Math.min(len, SLICE));
+          int n = 0, eol = -1;
+          while( n < len && eol < 0 ) {
+            if( n == bs.length ) bs = Arrays.copyOf(bs, Math.min(len, bs.length<<1));
+            int m = inflate(bs, n, bs.length-n);
+            if( m == 0 ) break;
+            for( int i=n; i<n+m && eol < 0; i++ ) if( bs[i] == '\n' || bs[i] == '\r' ) eol = i;
+            n += m;
+          }
+          if( eol >= 0 ) n = eol+1;   // Through the line end
+          _bits1 = n == bs.length ? bs : n == 0 ? null : Arrays.copyOf(bs, n);
+        }
+        return _bits1;
+      } catch( IOException | DataFormatException e ) {
+        throw new RuntimeException(e);
+      }
+    }
+    @Override public int  getChunkDataStart( int cidx ) { return -1; }
+    @Override public void setChunkDataStart( int cidx, int offset ) { }
+    /** Release the Inflater */
+    void close() { _inf.end(); }
+
+    // Inflate up to len bytes; fewer only at the end of the compressed data
+    private int inflate( byte bs[], int off, int len ) throws IOException, DataFormatException {
+      int n = 0;
+      while( n < len && !_done ) {
+        if( _scan != null ) { n += scan(bs, off+n, len-n); continue; }
+        if( _inf.finished() ) { nextMember(_memberStart+_inf.getBytesRead()+8); continue; }
+        if( _inf.needsInput() ) feed();
+        n += _inf.inflate(bs, off+n, len-n);
+      }
+      return n;
+    }
+
+    // Hand out the Scan's output from its window, decoding up to nearly a
+    // window more when it runs out.  The Inflater takes over at the first
+    // block starting on a byte boundary, or at the next gzip member.
+    private int scan( byte bs[], int off, int len ) throws IOException {
+      Scan s = _scan;
+      if( _given == s._out ) {
+        if( s._mode == 0 && s._last ) { // End of the deflate stream
+          _scan = null;
+          nextMember(((s.pos()+7)>>>3)+8);
+          return 0;
+        }
+        if( s._mode == 0 && (s.pos()&7) == 0 ) {
+          byte win[] = s.window();
+          if( win != null ) _inf.setDictionary(win);
+          _memberStart = _pos = s.pos()>>>3;
+          _scan = null;
+          return 0;
+        }
+        s.inflate(s._out+WSIZE-258);
+      }
+      int n = (int)Math.min(len, s._out-_given);
+      int o = (int)(_given&WMASK), n0 = Math.min(n, WSIZE-o);
+      System.arraycopy(s._win, o, bs, off, n0);
+      System.arraycopy(s._win, 0, bs, off+n0, n-n0);
+      _given += n;
+      return n;
+    }
+
+    // Feed the next slice of compressed bytes
+    private void feed() throws IOException {
+      long len = _vec.length();
+      if( _pos >= len ) throw new EOFException("Unexpected end of compressed data in "+_idx._src);
+      long hi = Math.min(len, _pos+SLICE);
+      _inf.setInput(_vec.getBytes(_pos, hi));
+      _pos = hi;
+    }
+
+    // The deflate stream ended; start on the gzip member at hdr, if any
+    private void nextMember( long hdr ) throws IOException {
+      if( !_idx._gzip ) { _done = true; return; }
+      int hlen = headerLength(_vec, hdr);
+      if( hlen < 0 ) { _done = true; return; } // End of file, or trailing garbage as GZIPInputStream ignores
+      _inf.reset();
+      _memberStart = _pos = hdr+hlen;
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  // Index a gzip or zip stream by decoding it from its start.  A checkpoint
+  // is taken at the first deflate block to start at least chunkSize
+  // decompressed bytes after the previous one, and on a byte boundary if one
+  // comes within another eighth of a chunk.
+  private static Index scan( ByteVec vec, boolean gzip, long start, Key job_key, int chunkSize ) throws IOException {
+    Scan s = new Scan(vec, job_key);
+    Futures fs = new Futures();
+    long espc[] = new long[8], bits[] = new long[8];
+    Key wins[] = new Key[8];
+    int n = 0;
+    try {
+      long p = start;
+      while( true ) {
+        if( gzip ) {
+          int hlen = headerLength(vec, p);
+          if( hlen < 0 ) {
+            if( p == 0 ) throw new IOException("Not in gzip format");
+            break;              // Trailing garbage, as GZIPInputStream ignores
+          }
+          p += hlen;
+        }
+        s.seek(p);
+        long memberOut = s._out;
+        boolean last;
+        do {
+          long ahead = n == 0 ? 0 : s._out-espc[n-1];
+          if( n == 0 || ahead >= chunkSize && ((s.pos()&7) == 0 || ahead >= chunkSize+(chunkSize>>3)) ) {
+            if( n+2 > espc.length ) {
+              espc = Arrays.copyOf(espc, espc.length<<1);  bits = Arrays.copyOf(bits, bits.length<<1);
+              wins = Arrays.copyOf(wins, wins.length<<1);
+            }
+            espc[n] = s._out;
+            bits[n] = s.pos();
+            byte w[] = s.window();
+            if( w != null ) {
+              wins[n] = Key.make();
+              DKV.put(wins[n], new Value(wins[n], w.length, w, TypeMap.PRIM_B, Value.ICE), fs);
+            }
+            n++;
+          }
+          last = s.block();
+        } while( !last );
+        if( s.pos() > vec.length()*8 ) throw new EOFException("Unexpected end of compressed data in "+vec._key);
+        if( !gzip ) break;
+        long end = (s.pos()+7)>>>3; // Trailer starts at the next byte
+        if( end+8 > vec.length() ) throw new EOFException("Unexpected end of compressed data in "+vec._key);
+        if( u32(vec.getBytes(end, end+8), 4) != ((s._out-memberOut)&0xFFFFFFFFL) )
+          throw new IOException("Corrupt gzip trailer in "+vec._key);
+        p = end+8;
+        if( p >= vec.length() ) break;
+      }
+      // Drop checkpoints with nothing after them (e.g. empty trailing members)
+      while( n > 0 && espc[n-1] == s._out ) {
+        if( wins[--n] != null ) DKV.remove(wins[n], fs);
+      }
+    } catch( IOException | RuntimeException e ) {
+      for( int i=0; i<n; i++ ) if( wins[i] != null ) DKV.remove(wins[i], fs);
+      fs.blockForPending();
+      throw e;
+    }
+    fs.blockForPending();
+    if( n == 0 ) return null;   // Nothing to parse
+    espc[n] = s._out;
+    return new Index(vec._key, vec.length(), gzip, Arrays.copyOf(espc, n+1), Arrays.copyOf(bits, n),
+                     Arrays.copyOf(wins, n));
+  }
+
+  // Canonical Huffman code: codes up to FAST bits long decode with one table
+  // lookup; longer ones a bit at a time, from the count of codes per length
+  private static final int FAST = 9;
+  private static final class Huff {
+    final int _count[] = new int[16]; // Codes per length
+    final short _sym[];               // Symbols ordered by code
+    final int _fast[] = new int[1<<FAST]; // Bit-reversed code -> symbol<<4|length, or 0
+    Huff( int nsyms ) { _sym = new short[nsyms]; }
+    void build( byte lens[], int off, int n ) throws IOException {
+      Arrays.fill(_count, 0);
+      for( int i=0; i<n; i++ ) _count[lens[off+i]]++;
+      _count[0] = 0;
+      int offs[] = new int[16];
+      for( int l=1; l<15; l++ ) offs[l+1] = offs[l]+_count[l];
+      for( int i=0; i<n; i++ )
+        if( lens[off+i] != 0 ) _sym[offs[lens[off+i]]++] = (short)i;
+      Arrays.fill(_fast, 0);
+      for( int l=1, code=0, k=0; l<=15; l++, code<<=1 ) {
+        if( code+_count[l] > 1<<l ) throw new IOException("Invalid deflate code lengths");
+        for( int j=0; j<_count[l]; j++, k++, code++ )
+          if( l <= FAST )
+            for( int r=Integer.reverse(code)>>>(32-l); r<1<<FAST; r+=1<<l )
+              _fast[r] = _sym[k]<<4 | l;
+      }
+    }
+  }
+
+  private static final short LBASE[] = {3,4,5,6,7,8,9,10,11,13,15,17,19,23,27,31,35,43,51,59,67,83,99,115,131,163,195,227,258};
+  private static final byte  LEXT [] = {0,0,0,0,0,0,0,0,1,1,1,1,2,2,2,2,3,3,3,3,4,4,4,4,5,5,5,5,0};
+  private static final short DBASE[] = {1,2,3,4,5,7,9,13,17,25,33,49,65,97,129,193,257,385,513,769,1025,1537,2049,3073,4097,6145,8193,12289,16385,24577};
+  private static final byte  DEXT [] = {0,0,0,0,1,1,2,2,3,3,4,4,5,5,6,6,7,7,8,8,9,9,10,10,11,11,12,12,13,13};
+  private static final byte  ORDER[] = {16,17,18,0,8,7,9,6,10,5,11,4,12,3,13,2,14,1,15};
+
+  // Decodes a deflate stream, keeping just the last 32K of output and the bit
+  // offset: for the Index, and for chunks which start mid-byte
+  static final class Scan {
+    final ByteVec _vec;
+    final Key _job_key;
+    final long _len;
+    byte _buf[];                // Current compressed chunk
+    int _off, _end;
+    int _cidx = -1;
+    long _fed;                  // File offset of the next byte into _bitbuf
+    long _bitbuf;
+    int _bitcnt;
+    final byte _win[] = new byte[WSIZE];
+    long _out;                  // Bytes decompressed
+    int _mode;                  // 0: at a block header, 1: in a stored block, 2: in a coded block
+    boolean _last;              // The current, or just finished, block is the stream's last
+    int _left;                  // Bytes left in a stored block
+    Huff _clit, _cdist;         // Codes of the current coded block
+    final Huff _lit = new Huff(288), _dist = new Huff(30), _lens = new Huff(19);
+    final byte _codeLens[] = new byte[288+32];
+    static final Huff FIXED_LIT = new Huff(288), FIXED_DIST = new Huff(30);
+    static {
+      byte lens[] = new byte[288];
+      Arrays.fill(lens,   0, 144, (byte)8);
+      Arrays.fill(lens, 144, 256, (byte)9);
+      Arrays.fill(lens, 256, 280, (byte)7);
+      Arrays.fill(lens, 280, 288, (byte)8);
+      byte dlens[] = new byte[30];
+      Arrays.fill(dlens, (byte)5);
+      try { FIXED_LIT.build(lens, 0, 288);  FIXED_DIST.build(dlens, 0, 30); }
+      catch( IOException ioe ) { throw new ExceptionInInitializerError(ioe); }
+    }
+
+    Scan( ByteVec vec, Key job_key ) { _vec = vec;  _job_key = job_key;  _len = vec.length(); }
+
+    /** Bit offset of the next bit to decode */
+    long pos() { return _fed*8-_bitcnt; }
+    /** Continue decoding at a byte offset */
+    void seek( long p ) { _fed = p;  _bitbuf = 0;  _bitcnt = 0;  _off = _end = 0;  _mode = 0; }
+    /** Continue decoding at a bit offset */
+    void seekBit( long bit ) throws IOException { seek(bit>>>3);  bits((int)(bit&7)); }
+    /** Start with up to 32K of earlier output, for back-references */
+    void preset( byte w[] ) { System.arraycopy(w, 0, _win, 0, w.length);  _out = w.length; }
+
+    /** The up to 32K bytes of output so far, or null if none */
+    byte[] window() {
+      int n = (int)Math.min(_out, WSIZE);
+      if( n == 0 ) return null;
+      byte w[] = new byte[n];
+      int o = (int)((_out-n)&WMASK), n0 = Math.min(n, WSIZE-o);
+      System.arraycopy(_win, o, w, 0, n0);
+      System.arraycopy(_win, 0, w, n0, n-n0);
+      return w;
+    }
+
+    // Top up the bit buffer, with zeros past the end of the file; decoding
+    // that far (a truncated stream) is an error
+    private void fill() throws IOException {
+      while( _bitcnt <= 56 ) {
+        if( _fed >= _len+8 ) throw new EOFException("Unexpected end of compressed data in "+_vec._key);
+        if( _off == _end && _fed < _len ) {
+          Chunk c = _vec.chunkForRow(_fed);
+          _buf = c.getBytes();
+          _off = (int)(_fed-c.start());
+          _end = c._len;
+          if( c.cidx() != _cidx ) { _cidx = c.cidx();  Job.update(c._len>>1, _job_key); } // Half the work
+        }
+        long b = _off < _end ? _buf[_off++]&0xFF : 0;
+        _bitbuf |= b<<_bitcnt;
+        _bitcnt += 8;
+        _fed++;
+      }
+    }
+    private int bits( int n ) throws IOException {
+      if( _bitcnt < n ) fill();
+      int v = (int)(_bitbuf & ((1L<<n)-1));
+      _bitbuf >>>= n;
+      _bitcnt -= n;
+      return v;
+    }
+    private int decode( Huff h ) throws IOException {
+      if( _bitcnt < 15 ) fill();
+      int e = h._fast[(int)_bitbuf & ((1<<FAST)-1)];
+      if( e != 0 ) { _bitbuf >>>= e&15;  _bitcnt -= e&15;  return e>>>4; }
+      for( int l=1, code=0, first=0, index=0; l<=15; l++ ) {
+        code |= (int)_bitbuf&1;
+        _bitbuf >>>= 1;  _bitcnt--;
+        int count = h._count[l];
+        if( code-count < first ) return h._sym[index+code-first];
+        index += count;
+        first = (first+count)<<1;
+        code <<= 1;
+      }
+      throw new IOException("Invalid deflate code");
+    }
+
+    /** Decode one deflate block; true if it was the stream's last */
+    boolean block() throws IOException {
+      inflate(Long.MAX_VALUE);
+      return _last;
+    }
+    /** Decode to the end of the current block, or until at least limit bytes
+     *  are out (at most 257 more); true at the end of the block */
+    boolean inflate( long limit ) throws IOException {
+      if( _mode == 0 ) {
+        _last = bits(1) == 1;
+        switch( bits(2) ) {
+        case 0:
+          bits(_bitcnt&7);      // To a byte boundary
+          _left = bits(16);
+          if( (_left^0xFFFF) != bits(16) ) throw new IOException("Invalid stored block length");
+          _mode = 1;  break;
+        case 1: _clit = FIXED_LIT;  _cdist = FIXED_DIST;  _mode = 2;  break;
+        case 2: dynamic();  _clit = _lit;  _cdist = _dist;  _mode = 2;  break;
+        default: throw new IOException("Invalid deflate block type");
+        }
+      }
+      boolean end = _mode == 1 ? stored(limit) : codes(_clit, _cdist, limit);
+      if( end ) _mode = 0;
+      return end;
+    }
+    private boolean stored( long limit ) throws IOException {
+      for( ; _left > 0 && _out < limit; _left-- ) _win[(int)(_out++)&WMASK] = (byte)bits(8);
+      return _left == 0;
+    }
+    private void dynamic() throws IOException {
+      int nlen = bits(5)+257, ndist = bits(5)+1, ncode = bits(4)+4;
+      if( nlen > 286 || ndist > 30 ) throw new IOException("Invalid deflate code counts");
+      byte lens[] = _codeLens;
+      Arrays.fill(lens, 0, 19, (byte)0);
+      for( int i=0; i<ncode; i++ ) lens[ORDER[i]] = (byte)bits(3);
+      _lens.build(lens, 0, 19);
+      for( int i=0; i<nlen+ndist; ) {
+        int sym = decode(_lens);
+        if( sym < 16 ) { lens[i++] = (byte)sym;  continue; }
+        byte v = 0;
+        int rep;
+        if( sym == 16 ) {
+          if( i == 0 ) throw new IOException("Invalid deflate code lengths");
+          v = lens[i-1];
+          rep = 3+bits(2);
+        } else rep = sym == 17 ? 3+bits(3) : 11+bits(7);
+        if( i+rep > nlen+ndist ) throw new IOException("Invalid deflate code lengths");
+        while( rep-- > 0 ) lens[i++] = v;
+      }
+      if( lens[256] == 0 ) throw new IOException("Deflate block has no end code");
+      _lit.build(lens, 0, nlen);
+      _dist.build(lens, nlen, ndist);
+    }
+    private boolean codes( Huff lit, Huff dist, long limit ) throws IOException {
+      final byte win[] = _win;
+      long out = _out;
+      while( out < limit ) {
+        int sym = decode(lit);
+        if( sym < 256 ) { win[(int)(out++)&WMASK] = (byte)sym;  continue; }
+        if( sym == 256 ) { _out = out;  return true; }
+        if( (sym -= 257) >= 29 ) throw new IOException("Invalid deflate length code");
+        int len = LBASE[sym]+bits(LEXT[sym]);
+        int ds = decode(dist);
+        if( ds >= 30 ) throw new IOException("Invalid deflate distance code");
+        int d = DBASE[ds]+bits(DEXT[ds]);
+        if( d > out ) throw new IOException("Deflate distance too far back");
+        for( ; len > 0; len--, out++ ) win[(int)out&WMASK] = win[(int)(out-d)&WMASK];
+      }
+      _out = out;
+      return false;
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  // Index BGZF members in parallel; null if vec is not all BGZF members
+
+  /** Length of the BGZF member starting at bs[i], or -1 if there is no member
+   *  header there: a gzip header with the 'BC' extra subfield holding the
+   *  member length - 1. */
+  static int memberLength( byte bs[], int i, int len ) {
+    if( i+18 > len || bs[i] != 0x1f || bs[i+1] != (byte)0x8b || bs[i+2] != 8 || (bs[i+3]&4) == 0 )
+      return -1;
+    int xend = Math.min(len, i+12+u16(bs, i+10));
+    for( int x=i+12; x+6 <= xend; x += 4+u16(bs, x+2) )
+      if( bs[x] == 'B' && bs[x+1] == 'C' && u16(bs, x+2) == 2 )
+        return u16(bs, x+4)+1;
+    return -1;
+  }
+
+  private static Index indexMembers( ByteVec vec, Key job_key, int chunkSize ) {
+    long members[][] = new ScanMembers(vec.nChunks(), job_key).doAll(vec)._members;
+    // Chain the members from the start of the file, skipping anything that
+    // just looks like a header, and group them into chunks starting at
+    // least chunkSize decompressed bytes apart
+    long espc[] = new long[8], bits[] = new long[8];
+    int n = 0;
+    long pos = 0, out = 0;
+    for( long ms[] : members ) {
+      for( int i=0; i<ms.length; i+=4 ) {
+        if( ms[i] < pos ) continue;
+        if( ms[i] > pos ) return null; // No member at pos
+        if( ms[i+2] > 0 && (n == 0 || out-espc[n-1] >= chunkSize) ) {
+          if( n+2 > espc.length ) {
+            espc = Arrays.copyOf(espc, espc.length<<1);  bits = Arrays.copyOf(bits, bits.length<<1);
+          }
+          espc[n] = out;
+          bits[n++] = (pos+ms[i+3])*8;
+        }
+        pos += ms[i+1];
+        out += ms[i+2];
+      }
+    }
+    if( pos != vec.length() || n == 0 ) return null; // Not BGZF, or all empty
+    espc[n] = out;
+    return new Index(vec._key, vec.length(), true, Arrays.copyOf(espc, n+1), Arrays.copyOf(bits, n),
+                     new Key[n]);
+  }
+
+  // Members starting in each chunk: (offset, compressed length, decompressed
+  // length, header length) quads, in order
+  private static class ScanMembers extends MRTask<ScanMembers> {
+    final Key _job_key;
+    long _members[][];
+    ScanMembers( int nchunks, Key job_key ) { _members = new long[nchunks][];  _job_key = job_key; }
+
+    @Override public void map( Chunk in ) {
+      byte bs[] = in.getBytes();
+      int len = in._len;
+      // Headers and trailers may run into the next chunk
+      Vec vec = in.vec();
+      if( in.cidx()+1 < vec.nChunks() ) {
+        byte next[] = vec.chunkForChunkIdx(in.cidx()+1).getBytes();
+        int nlen = Math.min(next.length, MAX_MEMBER);
+        bs = Arrays.copyOf(bs, len+nlen);
+        System.arraycopy(next, 0, bs, len, nlen);
+      }
+      long ms[] = new long[16];
+      int n = 0;
+      for( int i=0; i<len; i++ ) {
+        if( bs[i] != 0x1f ) continue;
+        int mlen = memberLength(bs, i, bs.length);
+        if( mlen < 18 || i+mlen > bs.length ) continue;
+        int hlen = headerLength(bs, i, i+mlen);
+        if( hlen < 0 || hlen+8 > mlen ) continue;
+        if( n+4 > ms.length ) ms = Arrays.copyOf(ms, ms.length<<1);
+        ms[n++] = in.start()+i;
+        ms[n++] = mlen;
+        ms[n++] = u32(bs, i+mlen-4); // ISIZE
+        ms[n++] = hlen;
+      }
+      _members = new long[_members.length][];
+      _members[in.cidx()] = Arrays.copyOf(ms, n);
+      Job.update(len>>1, _job_key); // Half the work; the parse does the rest
+    }
+    @Override public void reduce( ScanMembers sm ) {
+      for( int i=0; i<_members.length; i++ )
+        if( _members[i] == null ) _members[i] = sm._members[i];
+    }
+  }
+}
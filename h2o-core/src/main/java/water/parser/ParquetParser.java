@@ -0,0 +1,552 @@
+package water.parser;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import water.MemoryManager;
+import water.fvec.ByteVec;
+import water.fvec.NewChunk;
+import water.util.UnsafeUtils;
+
+/** Reader for Parquet files: columnar, so there is no text to tokenize; the
+ *  column chunks of a row group decode straight into the NewChunks of one
+ *  output chunk.  Row groups parse in parallel, each on the home node of its
+ *  output chunk, and only the projected columns' chunks are ever read.
+ *
+ *  <p>Supports flat records: the top-level primitive columns of the schema
+ *  (nested and repeated fields are left out), PLAIN and dictionary encodings,
+ *  data pages v1 and v2, and UNCOMPRESSED, SNAPPY and GZIP codecs.  Strings
+ *  become enums, dates and timestamps become times in msec, decimals become
+ *  scaled numbers and 16-byte UUIDs become UUIDs.
+ */
+final class ParquetParser {
+  private static final int MAGIC = 0x31524150; // "PAR1", little-endian
+
+  // Physical types
+  private static final int BOOLEAN=0, INT32=1, INT64=2, INT96=3, FLOAT=4, DOUBLE=5, BYTE_ARRAY=6, FIXED_LEN_BYTE_ARRAY=7;
+  // Value conversions, from the logical (or older converted) types
+  private static final byte NUM=0, UINT32=1, DECIMAL=2, DATE=3, MILLIS=4, MICROS=5, NANOS=6, STR=7, UUID=8;
+  // Page types, encodings and codecs
+  private static final int DATA_PAGE=0, DICTIONARY_PAGE=2, DATA_PAGE_V2=3;
+  private static final int PLAIN=0, PLAIN_DICTIONARY=2, RLE=3, RLE_DICTIONARY=8;
+  private static final int UNCOMPRESSED=0, SNAPPY=1, GZIP=2;
+
+  // A top-level primitive column
+  private static final class Column {
+    final String _name;
+    final int _leaf;            // Index amongst all leaves, i.e. the column chunks
+    final int _type, _typeLen, _scale;
+    final boolean _optional;
+    final byte _conv;
+    Column( String name, int leaf, int type, int typeLen, boolean optional, byte conv, int scale ) {
+      _name = name; _leaf = leaf; _type = type; _typeLen = typeLen; _optional = optional; _conv = conv; _scale = scale;
+    }
+  }
+
+  private final Column[] _cols;
+  private final long[] _rgRows;         // Rows per row group
+  private final Object[][][] _rgChunks; // ColumnMetaData per row group, per leaf
+
+  ParquetParser( byte[] footer ) {
+    Object[] md = new Thrift(footer, 0).struct();
+    Object[] schema = list(md, 2);
+    if( schema == null || schema.length == 0 ) throw new IllegalArgumentException("Parquet footer has no schema");
+    ArrayList<Column> cols = new ArrayList<>();
+    int nleaves[] = new int[1];
+    int i = 1;
+    for( int k=0; k<lng((Object[])schema[0], 5, 0); k++ )
+      i = walk(schema, i, true, cols, nleaves);
+    _cols = cols.toArray(new Column[cols.size()]);
+    Object[] rgs = list(md, 4);
+    if( rgs == null ) rgs = new Object[0];
+    _rgRows = new long[rgs.length];
+    _rgChunks = new Object[rgs.length][][];
+    for( int g=0; g<rgs.length; g++ ) {
+      Object[] rg = (Object[])rgs[g];
+      _rgRows[g] = lng(rg, 3, 0);
+      Object[] ccs = list(rg, 1);
+      if( ccs == null || ccs.length != nleaves[0] ) throw new IllegalArgumentException("Parquet row group "+g+" does not match the schema");
+      _rgChunks[g] = new Object[ccs.length][];
+      for( int c=0; c<ccs.length; c++ )
+        _rgChunks[g][c] = (Object[])((Object[])ccs[c])[3]; // Null if in another file
+    }
+  }
+
+  // Walk the schema tree depth-first from element i; top-level primitives
+  // become columns.  Returns the next element.
+  private static int walk( Object[] schema, int i, boolean top, ArrayList<Column> cols, int[] nleaves ) {
+    Object[] e = (Object[])schema[i++];
+    if( e[1] == null ) {        // A group
+      for( int k=0; k<lng(e, 5, 0); k++ )
+        i = walk(schema, i, false, cols, nleaves);
+      return i;
+    }
+    int leaf = nleaves[0]++;
+    int rep = (int)lng(e, 3, 0);
+    if( top && rep != 2/*REPEATED*/ ) {
+      int type = (int)lng(e, 1, 0);
+      int scale[] = new int[1];
+      byte conv = conv(e, type, scale);
+      if( conv >= 0 ) cols.add(new Column(str(e, 4), leaf, type, (int)lng(e, 2, 0), rep == 1, conv, scale[0]));
+    }
+    return i;
+  }
+
+  // How to convert a column's values, or -1 if not supported
+  private static byte conv( Object[] e, int type, int[] scale ) {
+    byte conv = -1;
+    Object[] lt = (Object[])e[10];
+    if( lt != null ) {
+      if( lt[1] != null || lt[4] != null || lt[12] != null ) conv = STR; // STRING, ENUM, JSON
+      else if( lt[5] != null ) { conv = DECIMAL; scale[0] = (int)lng((Object[])lt[5], 1, 0); }
+      else if( lt[6] != null ) conv = DATE;
+      else if( lt[8] != null ) {
+        Object[] unit = (Object[])((Object[])lt[8])[2];
+        conv = unit[1] != null ? MILLIS : unit[2] != null ? MICROS : NANOS;
+      } else if( lt[10] != null ) {
+        Object[] it = (Object[])lt[10];
+        if( lng(it, 1, 0) == 32 && it[2] == Boolean.FALSE ) conv = UINT32;
+      } else if( lt[14] != null ) conv = UUID;
+    }
+    if( conv == -1 && e[6] != null ) {
+      switch( (int)lng(e, 6, 0) ) {
+      case 0: case 4: case 19: conv = STR; break;  // UTF8, ENUM, JSON
+      case 5: conv = DECIMAL; scale[0] = (int)lng(e, 7, 0); break;
+      case 6: conv = DATE; break;
+      case 9: conv = MILLIS; break;
+      case 10: conv = MICROS; break;
+      case 13: conv = UINT32; break;
+      }
+    }
+    if( conv == UUID && (type != FIXED_LEN_BYTE_ARRAY || lng(e, 2, 0) != 16) ) return -1;
+    if( type == INT96 ) return MILLIS; // Legacy timestamps, decoded to msec
+    if( conv == -1 ) conv = type == BYTE_ARRAY || type == FIXED_LEN_BYTE_ARRAY ? STR : NUM;
+    if( (conv == STR) != (type == BYTE_ARRAY || type == FIXED_LEN_BYTE_ARRAY) && conv != DECIMAL && conv != UUID ) return -1;
+    return conv;
+  }
+
+  /** Is this a Parquet file: magic at both ends */
+  static boolean isParquet( ByteVec vec ) {
+    long len = vec.length();
+    if( len < 12 ) return false;
+    byte[] head = vec.getFirstBytes();
+    return head.length >= 4 && UnsafeUtils.get4(head, 0) == MAGIC && UnsafeUtils.get4(vec.getBytes(len-4, len), 0) == MAGIC;
+  }
+
+  /** The raw footer (the Thrift-encoded file metadata) */
+  static byte[] footer( ByteVec vec ) {
+    long len = vec.length();
+    int flen = UnsafeUtils.get4(vec.getBytes(len-8, len-4), 0);
+    if( flen <= 0 || flen > len-12 ) throw new IllegalArgumentException("Bad Parquet footer length "+flen);
+    return vec.getBytes(len-8-flen, len-8);
+  }
+
+  /** Output chunks for the file: one per row group of a Parquet file, else
+   *  one per input chunk */
+  static int outputChunks( ByteVec vec ) {
+    return isParquet(vec) ? new ParquetParser(footer(vec))._rgRows.length : vec.nChunks();
+  }
+
+  /** Setup for the file, reading the given columns or all columns if null */
+  static ParseSetup guessSetup( ByteVec vec, String[] columns ) {
+    ParquetParser pq;
+    int[] cols;
+    try {
+      if( !isParquet(vec) ) throw new IllegalArgumentException("Not a Parquet file");
+      pq = new ParquetParser(footer(vec));
+      cols = pq.columns(columns);
+    } catch( RuntimeException e ) { // Malformed metadata fails in many ways
+      String err = e instanceof IllegalArgumentException ? e.getMessage() : "Bad Parquet footer: "+e;
+      return new ParseSetup(false, 0, 0, new String[]{err}, ParserType.PARQUET, ParseSetup.AUTO_SEP, 0, false, columns, null, null, -1, null);
+    }
+    String[] names = new String[cols.length];
+    byte[] ctypes = new byte[cols.length];
+    for( int c=0; c<cols.length; c++ ) {
+      Column col = pq._cols[cols[c]];
+      names[c] = col._name;
+      ctypes[c] = col._conv == STR ? ParseDataset2.FVecDataOut.ECOL : ParseDataset2.FVecDataOut.NCOL;
+    }
+    return new ParseSetup(cols.length > 0, 0, 0, cols.length > 0 ? null : new String[]{"No supported columns"}, ParserType.PARQUET, ParseSetup.AUTO_SEP, cols.length, false, names, null, new String[0][], -1/*never a header*/, ctypes);
+  }
+
+  /** Indices of the named columns, or all columns if null */
+  int[] columns( String[] names ) {
+    if( names == null ) {
+      int[] cols = new int[_cols.length];
+      for( int c=0; c<cols.length; c++ ) cols[c] = c;
+      return cols;
+    }
+    int[] cols = new int[names.length];
+    for( int c=0; c<names.length; c++ ) {
+      cols[c] = -1;
+      for( int i=0; i<_cols.length; i++ )
+        if( _cols[i]._name.equals(names[c]) ) { cols[c] = i; break; }
+      if( cols[c] == -1 ) throw new IllegalArgumentException("No supported Parquet column named "+names[c]);
+    }
+    return cols;
+  }
+
+  /** Decode the given columns of row group g into dout, column by column.
+   *  @return the (compressed) bytes read */
+  long parseRowGroup( ByteVec vec, int g, int[] cols, ParseDataset2.FVecDataOut dout ) {
+    long bytes = 0;
+    ValueString vs = new ValueString();
+    for( int c=0; c<cols.length; c++ ) {
+      Column col = _cols[cols[c]];
+      Object[] md = _rgChunks[g][col._leaf];
+      if( md == null ) throw new IllegalArgumentException("Parquet column "+col._name+" is stored in another file");
+      long start = lng(md, 9, 0), dict = lng(md, 11, 0);
+      if( dict > 0 && dict < start ) start = dict;
+      long size = lng(md, 7, 0);
+      byte[] buf = vec.getBytes(start, start+size);
+      parseColumn(col, (int)lng(md, 4, 0), buf, _rgRows[g], dout, c, vs);
+      bytes += size;
+    }
+    return bytes;
+  }
+
+  // Decode the pages of a column chunk
+  private static void parseColumn( Column col, int codec, byte[] buf, long nrows, ParseDataset2.FVecDataOut dout, int c, ValueString vs ) {
+    Thrift t = new Thrift(buf, 0);
+    Values dict = null;
+    long rows = 0;
+    while( rows < nrows && t._pos < buf.length ) {
+      Object[] ph = t.struct();
+      int usize = (int)lng(ph, 2, 0), csize = (int)lng(ph, 3, 0);
+      int off = t._pos;
+      if( off+csize > buf.length ) throw new IllegalArgumentException("Truncated Parquet page in column "+col._name);
+      t._pos += csize;
+      switch( (int)lng(ph, 1, -1) ) {
+      case DICTIONARY_PAGE: {
+        Object[] dh = (Object[])ph[7];
+        byte[] p = decompress(codec, buf, off, csize, usize);
+        dict = plain(col, p, 0, p.length, (int)lng(dh, 1, 0));
+        break;
+      }
+      case DATA_PAGE: {
+        Object[] dh = (Object[])ph[5];
+        int n = (int)lng(dh, 1, 0);
+        byte[] p = decompress(codec, buf, off, csize, usize);
+        int pos = 0;
+        int[] defs = null;
+        if( col._optional ) {
+          if( lng(dh, 3, RLE) != RLE ) throw new IllegalArgumentException("Unsupported Parquet definition level encoding in column "+col._name);
+          int len = UnsafeUtils.get4(p, 0);
+          defs = rle(p, 4, 4+len, 1, n);
+          pos = 4+len;
+        }
+        values(col, (int)lng(dh, 2, 0), p, pos, p.length, defs, n, dict, dout, c, vs);
+        rows += n;
+        break;
+      }
+      case DATA_PAGE_V2: {
+        Object[] dh = (Object[])ph[8];
+        int n = (int)lng(dh, 1, 0);
+        int dlen = (int)lng(dh, 5, 0), rlen = (int)lng(dh, 6, 0);
+        int[] defs = col._optional ? rle(buf, off+rlen, off+rlen+dlen, 1, n) : null;
+        int voff = off+rlen+dlen, vlen = csize-rlen-dlen;
+        byte[] p = dh[7] == Boolean.FALSE ? Arrays.copyOfRange(buf, voff, voff+vlen) : decompress(codec, buf, voff, vlen, usize-rlen-dlen);
+        values(col, (int)lng(dh, 4, 0), p, 0, p.length, defs, n, dict, dout, c, vs);
+        rows += n;
+        break;
+      }
+      default:                  // Index pages and the like: skip
+      }
+    }
+    if( rows != nrows ) throw new IllegalArgumentException("Parquet column "+col._name+" has "+rows+" rows, expected "+nrows);
+  }
+
+  // Emit n rows: NAs where the definition level is 0, else the next value
+  private static void values( Column col, int enc, byte[] p, int pos, int end, int[] defs, int n, Values dict, ParseDataset2.FVecDataOut dout, int c, ValueString vs ) {
+    int nvals = n;
+    if( defs != null ) for( int d : defs ) if( d == 0 ) nvals--;
+    Values vals;
+    int[] idx = null;
+    switch( enc ) {
+    case PLAIN: vals = plain(col, p, pos, end, nvals); break;
+    case PLAIN_DICTIONARY:
+    case RLE_DICTIONARY:
+      if( dict == null ) throw new IllegalArgumentException("Parquet column "+col._name+" has no dictionary page");
+      vals = dict;
+      idx = nvals == 0 ? new int[0] : rle(p, pos+1, end, p[pos], nvals);
+      break;
+    case RLE:
+      if( col._type != BOOLEAN ) throw new IllegalArgumentException("Unsupported Parquet encoding RLE in column "+col._name);
+      vals = new Values();
+      vals._ls = new long[nvals];
+      int[] bs = rle(p, pos+4, end, 1, nvals);
+      for( int i=0; i<nvals; i++ ) vals._ls[i] = bs[i];
+      break;
+    default: throw new IllegalArgumentException("Unsupported Parquet encoding "+enc+" in column "+col._name);
+    }
+    NewChunk nc = dout._nvs[c];
+    for( int i=0, j=0; i<n; i++ ) {
+      if( defs != null && defs[i] == 0 ) { nc.addNA(); continue; }
+      int k = idx == null ? j++ : idx[j++];
+      if( k >= vals._n ) throw new IllegalArgumentException("Bad Parquet dictionary index in column "+col._name);
+      if( vals._ls != null ) putLong(col, nc, vals._ls[k]);
+      else if( vals._ds != null ) nc.addNum(vals._ds[k]);
+      else putBytes(col, dout, c, vals._bs, vals._offs[k], vals._lens[k], vs);
+    }
+  }
+
+  private static void putLong( Column col, NewChunk nc, long l ) {
+    switch( col._conv ) {
+    case NUM:     nc.addNum(l, 0);  break;
+    case UINT32:  nc.addNum(l & 0xFFFFFFFFL, 0);  break;
+    case DECIMAL: nc.addNum(l, -col._scale);  break;
+    case DATE:    time(nc, l*86400000L);  break;
+    case MILLIS:  time(nc, l);  break;
+    case MICROS:  time(nc, floorDiv(l, 1000));  break;
+    case NANOS:   time(nc, floorDiv(l, 1000000));  break;
+    default: throw new IllegalArgumentException("Bad Parquet conversion for column "+col._name);
+    }
+  }
+  private static void time( NewChunk nc, long msec ) {
+    nc.addNum(msec, 0);
+    nc._timCnt[0]++;            // Count it as a time, as for a parsed date
+  }
+  private static long floorDiv( long x, long y ) {
+    long q = x/y;
+    return (x%y != 0 && (x < 0) != (y < 0)) ? q-1 : q;
+  }
+
+  private static void putBytes( Column col, ParseDataset2.FVecDataOut dout, int c, byte[] bs, int off, int len, ValueString vs ) {
+    switch( col._conv ) {
+    case STR: dout.addStrCol(c, vs.set(bs, off, len));  break;
+    case UUID: dout._nvs[c].addUUID(bigEndian(bs, off, 8), bigEndian(bs, off+8, 8));  break;
+    case DECIMAL:             // Big-endian two's complement unscaled value
+      if( len <= 8 ) dout._nvs[c].addNum(bigEndian(bs, off, len), -col._scale);
+      else {
+        BigInteger bi = new BigInteger(Arrays.copyOfRange(bs, off, off+len));
+        if( bi.bitLength() < 64 ) dout._nvs[c].addNum(bi.longValue(), -col._scale);
+        else dout._nvs[c].addNum(new BigDecimal(bi, col._scale).doubleValue());
+      }
+      break;
+    default: throw new IllegalArgumentException("Bad Parquet conversion for column "+col._name);
+    }
+  }
+  // Sign-extended big-endian integer of len bytes
+  private static long bigEndian( byte[] bs, int off, int len ) {
+    long l = len == 0 ? 0 : bs[off];
+    for( int i=1; i<len; i++ ) l = (l<<8) | (bs[off+i]&0xFF);
+    return l;
+  }
+
+  // Decoded values of a page or dictionary: integral (incl. booleans and
+  // INT96 timestamps, in msec), floating, or byte strings into a buffer
+  private static final class Values {
+    int _n;
+    long[] _ls;
+    double[] _ds;
+    byte[] _bs;
+    int[] _offs, _lens;
+  }
+
+  // PLAIN encoded values
+  private static Values plain( Column col, byte[] p, int pos, int end, int n ) {
+    Values v = new Values();
+    v._n = n;
+    int w = col._type == INT32 || col._type == FLOAT ? 4 : col._type == INT64 || col._type == DOUBLE ? 8 : col._type == INT96 ? 12 : 0;
+    if( col._type == FIXED_LEN_BYTE_ARRAY ) w = col._typeLen;
+    if( col._type == BOOLEAN ? pos+(n+7)/8 > end : (long)pos+(long)w*n > end )
+      throw new IllegalArgumentException("Truncated Parquet page in column "+col._name);
+    switch( col._type ) {
+    case BOOLEAN:
+      v._ls = new long[n];
+      for( int i=0; i<n; i++ ) v._ls[i] = (p[pos+(i>>3)]>>(i&7))&1;
+      break;
+    case INT32:
+      v._ls = new long[n];
+      for( int i=0; i<n; i++ ) v._ls[i] = UnsafeUtils.get4(p, pos+4*i);
+      break;
+    case INT64:
+      v._ls = new long[n];
+      for( int i=0; i<n; i++ ) v._ls[i] = UnsafeUtils.get8(p, pos+8*i);
+      break;
+    case INT96:                 // Nanos of the day, then the Julian day
+      v._ls = new long[n];
+      for( int i=0; i<n; i++ )
+        v._ls[i] = (UnsafeUtils.get4(p, pos+12*i+8) - 2440588L)*86400000L + floorDiv(UnsafeUtils.get8(p, pos+12*i), 1000000);
+      break;
+    case FLOAT:
+      v._ds = new double[n];
+      for( int i=0; i<n; i++ ) v._ds[i] = UnsafeUtils.get4f(p, pos+4*i);
+      break;
+    case DOUBLE:
+      v._ds = new double[n];
+      for( int i=0; i<n; i++ ) v._ds[i] = UnsafeUtils.get8d(p, pos+8*i);
+      break;
+    case BYTE_ARRAY:
+      v._bs = p;  v._offs = new int[n];  v._lens = new int[n];
+      for( int i=0; i<n; i++ ) {
+        int len = pos+4 <= end ? UnsafeUtils.get4(p, pos) : -1;
+        if( len < 0 || pos+4+len > end ) throw new IllegalArgumentException("Truncated Parquet page in column "+col._name);
+        v._offs[i] = pos+4;  v._lens[i] = len;
+        pos += 4+len;
+      }
+      break;
+    case FIXED_LEN_BYTE_ARRAY:
+      v._bs = p;  v._offs = new int[n];  v._lens = new int[n];
+      for( int i=0; i<n; i++ ) { v._offs[i] = pos+w*i;  v._lens[i] = w; }
+      break;
+    default: throw new IllegalArgumentException("Unsupported Parquet type "+col._type+" in column "+col._name);
+    }
+    return v;
+  }
+
+  // n values of the RLE/bit-packed hybrid encoding, of width bits, from p[pos,end)
+  static int[] rle( byte[] p, int pos, int end, int width, int n ) {
+    int[] vs = new int[n];
+    int bytes = (width+7)/8;
+    Thrift t = new Thrift(p, pos);
+    int i = 0;
+    while( i < n && t._pos < end ) {
+      int h = (int)t.varint();
+      if( (h&1) == 0 ) {        // A run of one value
+        int v = 0;
+        for( int b=0; b<bytes; b++ ) v |= (p[t._pos++]&0xFF) << (8*b);
+        for( int k=h>>>1; k>0 && i<n; k-- ) vs[i++] = v;
+      } else {                  // Groups of 8 bit-packed values
+        long acc = 0, mask = (1L<<width)-1;
+        int bits = 0;
+        for( int k=(h>>>1)*8; k>0; k-- ) {
+          while( bits < width ) { acc |= (long)(p[t._pos++]&0xFF) << bits; bits += 8; }
+          if( i < n ) vs[i++] = (int)(acc & mask);
+          acc >>>= width;  bits -= width;
+        }
+      }
+    }
+    if( i < n ) throw new IllegalArgumentException("Truncated Parquet RLE data");
+    return vs;
+  }
+
+  // Page bytes, decompressed
+  private static byte[] decompress( int codec, byte[] buf, int off, int len, int usize ) {
+    switch( codec ) {
+    case UNCOMPRESSED: return Arrays.copyOfRange(buf, off, off+len);
+    case SNAPPY:       return snappy(buf, off, off+len, usize);
+    case GZIP: {
+      byte[] bs = MemoryManager.malloc1(usize);
+      try( InputStream is = new GZIPInputStream(new ByteArrayInputStream(buf, off, len)) ) {
+        int n = 0;
+        for( int r; n < usize && (r = is.read(bs, n, usize-n)) != -1; ) n += r;
+        if( n != usize || is.read() != -1 ) throw new IllegalArgumentException("Parquet page does not match its recorded size");
+      } catch( IOException ioe ) {
+        throw new RuntimeException(ioe);
+      }
+      return bs;
+    }
+    default: throw new IllegalArgumentException("Unsupported Parquet compression codec "+codec);
+    }
+  }
+
+  // A raw (unframed) Snappy block
+  static byte[] snappy( byte[] p, int pos, int end, int usize ) {
+    Thrift t = new Thrift(p, pos);
+    if( t.varint() != usize ) throw new IllegalArgumentException("Snappy block does not match its recorded size");
+    byte[] bs = MemoryManager.malloc1(usize);
+    int o = 0;
+    while( t._pos < end ) {
+      int tag = p[t._pos++]&0xFF, len, off;
+      switch( tag&3 ) {
+      case 0:                   // Literal
+        len = tag>>>2;
+        if( len >= 60 ) {       // Length in the next 1-4 bytes
+          int nb = len-59;
+          len = 0;
+          for( int b=0; b<nb; b++ ) len |= (p[t._pos++]&0xFF) << (8*b);
+        }
+        len++;
+        System.arraycopy(p, t._pos, bs, o, len);
+        t._pos += len;  o += len;
+        continue;
+      case 1:  len = 4+((tag>>>2)&7);  off = ((tag>>>5)<<8) | (p[t._pos++]&0xFF);  break;
+      case 2:  len = (tag>>>2)+1;  off = (p[t._pos]&0xFF) | (p[t._pos+1]&0xFF)<<8;  t._pos += 2;  break;
+      default: len = (tag>>>2)+1;  off = UnsafeUtils.get4(p, t._pos);  t._pos += 4;  break;
+      }
+      if( off <= 0 || off > o ) throw new IllegalArgumentException("Bad Snappy copy offset "+off);
+      for( int i=0; i<len; i++, o++ ) bs[o] = bs[o-off]; // May overlap
+    }
+    if( o != usize ) throw new IllegalArgumentException("Snappy block does not match its recorded size");
+    return bs;
+  }
+
+  // Fields of a decoded struct
+  private static long lng( Object[] s, int fid, long dflt ) { return s[fid] == null ? dflt : (Long)s[fid]; }
+  private static Object[] list( Object[] s, int fid ) { return (Object[])s[fid]; }
+  private static String str( Object[] s, int fid ) {
+    try { return new String((byte[])s[fid], "UTF-8"); }
+    catch( UnsupportedEncodingException e ) { throw new RuntimeException(e); }
+  }
+
+  // Thrift compact protocol, decoded generically: structs as arrays indexed
+  // by field id, lists as Object[], integers as Long, binaries as byte[],
+  // booleans as Boolean.  Maps and unknown field ids are skipped.
+  private static final class Thrift {
+    private static final int MAX_FID = 16;
+    final byte[] _buf;
+    int _pos;
+    Thrift( byte[] buf, int pos ) { _buf = buf; _pos = pos; }
+
+    long varint() {
+      long x = 0;
+      for( int s=0; ; s+=7 ) {
+        int b = _buf[_pos++];
+        x |= (long)(b&0x7F) << s;
+        if( (b&0x80) == 0 ) return x;
+      }
+    }
+    long zigzag() { long x = varint(); return (x>>>1) ^ -(x&1); }
+
+    Object[] struct() {
+      Object[] s = new Object[MAX_FID];
+      int fid = 0;
+      while( true ) {
+        int b = _buf[_pos++]&0xFF;
+        if( b == 0 ) return s;  // Stop
+        int type = b&0x0F;
+        fid = (b>>>4) == 0 ? (int)zigzag() : fid+(b>>>4);
+        Object v = type == 1 ? Boolean.TRUE : type == 2 ? Boolean.FALSE : value(type);
+        if( fid >= 0 && fid < MAX_FID ) s[fid] = v;
+      }
+    }
+
+    // A value of the type; booleans as in containers, a byte each
+    private Object value( int type ) {
+      switch( type ) {
+      case 1: case 2: return _buf[_pos++] == 1;
+      case 3: return (long)_buf[_pos++];
+      case 4: case 5: case 6: return zigzag();
+      case 7: { double d = UnsafeUtils.get8d(_buf, _pos);  _pos += 8;  return d; }
+      case 8: {
+        int n = (int)varint();
+        byte[] bs = Arrays.copyOfRange(_buf, _pos, _pos+n);
+        _pos += n;
+        return bs;
+      }
+      case 9: case 10: {        // List or set
+        int h = _buf[_pos++]&0xFF;
+        int n = h>>>4;
+        if( n == 15 ) n = (int)varint();
+        Object[] l = new Object[n];
+        for( int i=0; i<n; i++ ) l[i] = value(h&0x0F);
+        return l;
+      }
+      case 11: {                // Map: skipped
+        int n = (int)varint();
+        if( n > 0 ) {
+          int kv = _buf[_pos++]&0xFF;
+          for( int i=0; i<n; i++ ) { value(kv>>>4); value(kv&0x0F); }
+        }
+        return null;
+      }
+      case 12: return struct();
+      }
+      throw new IllegalArgumentException("Bad Thrift type "+type+" in Parquet metadata");
+    }
+  }
+}
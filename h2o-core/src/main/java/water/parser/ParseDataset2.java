@@ -56,8 +56,7 @@ public final class ParseDataset2 extends Job<Frame> {
   }
 
   private static ParseSetup setup(Key k, boolean singleQuote, int checkHeader) {
-    byte[] bits = ZipUtil.getFirstUnzippedBytes(getByteVec(k));
-    ParseSetup globalSetup = ParseSetup.guessSetup(bits, singleQuote, checkHeader);
+    ParseSetup globalSetup = ParseSetup.guessSetup(getByteVec(k), singleQuote, checkHeader);
     if( globalSetup._ncols <= 0 ) throw new UnsupportedOperationException(globalSetup.toString());
     return globalSetup;
   }
@@ -67,6 +66,20 @@ public final class ParseDataset2 extends Job<Frame> {
     Iced ice = DKV.get(key).get();
     return (ByteVec)(ice instanceof ByteVec ? ice : ((Frame)ice).vecs()[0]);
   }
+  // Done with an input file.  For Big Data, must delete data as eagerly as
+  // possible; otherwise just unlock it.
+  static void releaseInput(Key key, Key job_key, boolean delete_on_done) {
+    Value val = DKV.get(key);
+    if( val == null ) return;
+    Iced ice = val.get();
+    if( ice instanceof ByteVec ) {
+      if( delete_on_done ) ((ByteVec)ice).remove();
+    } else {
+      Frame fr = (Frame)ice;
+      if( delete_on_done ) fr.delete(job_key,new Futures()).blockForPending();
+      else if( fr._key != null ) fr.unlock(job_key);
+    }
+  }
   static String [] genericColumnNames(int ncols){
     String [] res = new String[ncols];
     for(int i = 0; i < res.length; ++i) res[i] = "C" + String.valueOf(i+1);
@@ -136,12 +149,27 @@ public final class ParseDataset2 extends Job<Frame> {
   // --------------------------------------------------------------------------
   // Top-level parser driver
   private static void parse_impl(ParseDataset2 job, Key[] fkeys, ParseSetup setup, boolean delete_on_done) {
-    assert setup._ncols > 0;
     if( fkeys.length == 0) { job.cancel();  return;  }
+    // Parquet columns and their types come from the first file's footer; the
+    // given column names, if any, are the projection
+    if( setup._pType == ParserType.PARQUET ) {
+      setup = ParquetParser.guessSetup(getByteVec(fkeys[0]), setup._columnNames);
+      if( !setup._isValid ) throw new IllegalArgumentException(setup.toString());
+    }
+    assert setup._ncols > 0;
 
     VectorGroup vg = getByteVec(fkeys[0]).group();
-    MultiFileParseTask mfpt = job._mfpt = new MultiFileParseTask(vg,setup,job._key,fkeys,delete_on_done);
-    mfpt.doAll(fkeys);
+    // Index any gzip'ed or zip'ed files up front, so their chunks inflate and
+    // parse in parallel like the rest
+    Inflate.Index zidx[] = setup._pType._parallelParseSupported ? Inflate.index(fkeys,job._key) : new Inflate.Index[fkeys.length];
+    MultiFileParseTask mfpt = job._mfpt = new MultiFileParseTask(vg,setup,job._key,fkeys,zidx,delete_on_done);
+    try {
+      mfpt.doAll(fkeys);
+    } finally {                 // Saved inflate windows are only for the parse
+      Futures fs = new Futures();
+      for( Inflate.Index zi : zidx ) if( zi != null ) zi.remove(fs);
+      fs.blockForPending();
+    }
     EnumUpdateTask eut = null;
     // Calculate enum domain
     int n = 0;
@@ -151,31 +179,36 @@ public final class ParseDataset2 extends Job<Frame> {
         ecols[n++] = i;
     ecols =  Arrays.copyOf(ecols, n);
     if( ecols.length > 0 ) {
-      EnumFetchTask eft = new EnumFetchTask(H2O.SELF.index(), mfpt._eKey, ecols).doAllNodes();
-      Enum[] enums = eft._gEnums;
+      EnumFetchTask eft = new EnumFetchTask(mfpt._eKey, ecols).doAllNodes();
+      int nnodes = H2O.CLOUD.size();
       ValueString[][] ds = new ValueString[ecols.length][];
-      EnumMapping [] emaps = new EnumMapping[H2O.CLOUD.size()];
-      int k = 0;
-      for(int i = 0; i < ecols.length; ++i)
-        mfpt._dout._vecs[ecols[i]].setDomain(ValueString.toString(ds[k++] = enums[ecols[i]].computeColumnDomain()));
-      for(int nodeId = 0; nodeId < H2O.CLOUD.size(); ++nodeId) {
-        if(eft._lEnums[nodeId] == null)continue;
-        int[][] emap = new int[ecols.length][];
-        for (int i = 0; i < ecols.length; ++i) {
-          final Enum e = eft._lEnums[nodeId][ecols[i]];
+      int[][][] emap = new int[nnodes][ecols.length][];
+      for(int i = 0; i < ecols.length; ++i) {
+        // Number every node's levels in one Enum, recording the number of
+        // each node-local id, then sort the levels into the domain
+        Enum all = new Enum();
+        for(int nodeId = 0; nodeId < nnodes; ++nodeId) {
+          final Enum e = eft._lEnums[nodeId] == null ? null : eft._lEnums[nodeId][ecols[i]];
           if(e == null) continue;
-          emap[i] = MemoryManager.malloc4(e.maxId() + 1);
-          Arrays.fill(emap[i], -1);
-          for (int j = 0; j < ds[i].length; ++j) {
-            ValueString vs = ds[i][j];
-            if (e.containsKey(vs)) {
-              assert e.getTokenId(vs) <= e.maxId() : "maxIdx = " + e.maxId() + ", got " + e.getTokenId(vs);
-              emap[i][e.getTokenId(vs)] = j;
-            }
-          }
+          ValueString[] levels = e.levels();
+          int[] m = emap[nodeId][i] = MemoryManager.malloc4(levels.length + 1);
+          m[0] = -1;
+          for (int id = 1; id <= levels.length; ++id)
+            m[id] = all.addKey(levels[id-1]);
+        }
+        mfpt._dout._vecs[ecols[i]].setDomain(ValueString.toString(ds[i] = all.computeColumnDomain()));
+        int[] pos = MemoryManager.malloc4(all.maxId() + 1);
+        for (int j = 0; j < ds[i].length; ++j)
+          pos[all.getTokenId(ds[i][j])] = j;
+        for(int nodeId = 0; nodeId < nnodes; ++nodeId) {
+          int[] m = emap[nodeId][i];
+          if(m != null)
+            for (int id = 1; id < m.length; ++id) m[id] = pos[m[id]];
         }
-        emaps[nodeId] = new EnumMapping(emap);
       }
+      EnumMapping [] emaps = new EnumMapping[nnodes];
+      for(int nodeId = 0; nodeId < nnodes; ++nodeId)
+        if(eft._lEnums[nodeId] != null) emaps[nodeId] = new EnumMapping(emap[nodeId]);
       eut = new EnumUpdateTask(ds, emaps, mfpt._chunk2Enum, ecols);
     }
     Frame fr = new Frame(job.dest(),setup._columnNames != null?setup._columnNames:genericColumnNames(mfpt._dout._nCols),mfpt._dout.closeVecs());
@@ -243,46 +276,27 @@ public final class ParseDataset2 extends Job<Frame> {
   }
 
   // --------------------------------------------------------------------------
+  // Each node's Enums for the enum columns.  Each node's levels are shipped
+  // just once, in node-local id order; the caller unifies them.
   private static class EnumFetchTask extends MRTask<EnumFetchTask> {
     private final Key _k;
     private final int[] _ecols;
-    private final int _homeNode; // node where the computation started, enum from this node MUST be cloned!
-    private Enum[] _gEnums;      // global enums per column
     public Enum[][] _lEnums;    // local enums per node per column
-    private EnumFetchTask(int homeNode, Key k, int[] ecols){_homeNode = homeNode; _k = k;_ecols = ecols;}
+    private EnumFetchTask(Key k, int[] ecols){_k = k;_ecols = ecols;}
     @Override public void setupLocal() {
       _lEnums = new Enum[H2O.CLOUD.size()][];
-      if( !MultiFileParseTask._enums.containsKey(_k) ) return;
-      _lEnums[H2O.SELF.index()] = _gEnums = MultiFileParseTask._enums.get(_k);
-      // Null out any empty Enum structs; no need to ship these around.
-      for( int i=0; i<_gEnums.length; i++ )
-        if( _gEnums[i].size()==0 ) _gEnums[i] = null;
-
-      // if we are the original node (i.e. there will be no sending over wire),
-      // we have to clone the enums not to share the same object (causes
-      // problems when computing column domain and renumbering maps).
-//      if( H2O.SELF.index() == _homeNode ) {
-      // fixme: looks like need to clone even if not on home node in h2o-dev
-        _gEnums = _gEnums.clone();
-        for(int i = 0; i < _gEnums.length; ++i)
-          if( _gEnums[i] != null ) _gEnums[i] = _gEnums[i].deepCopy();
-//      }
-      MultiFileParseTask._enums.remove(_k);
+      Enum[] enums = MultiFileParseTask._enums.remove(_k);
+      if( enums == null ) return;
+      // Only the enum columns; and no empty Enum structs, no need to ship these around.
+      Enum[] es = _lEnums[H2O.SELF.index()] = new Enum[enums.length];
+      for( int i : _ecols )
+        if( enums[i].size() > 0 ) es[i] = enums[i];
     }
 
     @Override public void reduce(EnumFetchTask etk) {
-      if(_gEnums == null) {
-        _gEnums = etk._gEnums;
-        _lEnums = etk._lEnums;
-      } else if (etk._gEnums != null) {
-        for( int i : _ecols ) {
-          if( _gEnums[i] == null ) _gEnums[i] = etk._gEnums[i];
-          else if( etk._gEnums[i] != null ) _gEnums[i].merge(etk._gEnums[i]);
-        }
-        for( int i = 0; i < _lEnums.length; ++i )
-          if( _lEnums[i] == null ) _lEnums[i] = etk._lEnums[i];
-          else assert etk._lEnums[i] == null;
-      }
+      for( int i = 0; i < _lEnums.length; ++i )
+        if( _lEnums[i] == null ) _lEnums[i] = etk._lEnums[i];
+        else assert etk._lEnums[i] == null;
     }
   }
 
@@ -361,13 +375,15 @@ public final class ParseDataset2 extends Job<Frame> {
     private final Key _job_key;
     // A mapping of Key+ByteVec to rolling total Chunk counts.
     private final int[]  _fileChunkOffsets;
+    // Inflate index of each compressed file, or null
+    private final Inflate.Index[] _zidx;
 
     // OUTPUT fields:
     FVecDataOut _dout;
     String[] _errors;
 
-    MultiFileParseTask(VectorGroup vg,  ParseSetup setup, Key job_key, Key[] fkeys, boolean delete_on_done ) {
-      _vg = vg; _setup = setup; 
+    MultiFileParseTask(VectorGroup vg,  ParseSetup setup, Key job_key, Key[] fkeys, Inflate.Index[] zidx, boolean delete_on_done ) {
+      _vg = vg; _setup = setup; _zidx = zidx;
       _vecIdStart = _vg.reserveKeys(_setup._pType == ParserType.SVMLight ? 100000000 : setup._ncols);
       _delete_on_done = delete_on_done;
       _job_key = job_key;
@@ -377,7 +393,9 @@ public final class ParseDataset2 extends Job<Frame> {
       int len = 0;
       for( int i = 0; i < fkeys.length; ++i ) {
         _fileChunkOffsets[i] = len;
-        len += getByteVec(fkeys[i]).nChunks();
+        ByteVec vec = getByteVec(fkeys[i]);
+        len += _setup._pType == ParserType.PARQUET ? ParquetParser.outputChunks(vec)
+          : zidx[i] != null ? zidx[i].nChunks() : vec.nChunks();
       }
 
       // Mapping from Chunk# to cluster-node-number
@@ -395,40 +413,66 @@ public final class ParseDataset2 extends Job<Frame> {
       return _enums.get(eKey); // Re-get incase lost insertion race
     }
 
-    // Flag all chunk enums as being on local (self)
-    private void chunksAreLocal( Vec vec, int chunkStartIdx, Key key ) {
-      for(int i = 0; i < vec.nChunks(); ++i)  
-        _chunk2Enum[chunkStartIdx + i] = H2O.SELF.index();
-      // For Big Data, must delete data as eagerly as possible.
-      Iced ice = DKV.get(key).get();
-      if( ice==vec ) {
-        if( _delete_on_done ) vec.remove();
-      } else {
-        Frame fr = (Frame)ice;
-        if( _delete_on_done ) fr.delete(_job_key,new Futures()).blockForPending();
-        else if( fr._key != null ) fr.unlock(_job_key);
+    // Output chunks of the i'th file
+    private int fileChunks( int i ) {
+      return (i+1 < _fileChunkOffsets.length ? _fileChunkOffsets[i+1] : _chunk2Enum.length) - _fileChunkOffsets[i];
+    }
+
+    // Output chunk keys of the i'th file, with each chunk's enums on its home
+    private Key[] homedChunks( int fidx ) {
+      Key cks[] = new Key[fileChunks(fidx)];
+      for( int i = 0; i < cks.length; ++i ) {
+        cks[i] = Vec.chunkKey(_vg.vecKey(_vecIdStart), _fileChunkOffsets[fidx] + i);
+        _chunk2Enum[_fileChunkOffsets[fidx] + i] = cks[i].home_node().index();
       }
+      return cks;
+    }
+
+    // Flag all chunk enums as being on local (self)
+    private void chunksAreLocal( int fidx, Key key ) {
+      for( int i = 0; i < fileChunks(fidx); ++i )
+        _chunk2Enum[_fileChunkOffsets[fidx] + i] = H2O.SELF.index();
+      releaseInput(key,_job_key,_delete_on_done);
     }
 
     // Called once per file
     @Override public void map( Key key ) {
       // Get parser setup info for this chunk
       ByteVec vec = getByteVec(key);
-      final int chunkStartIdx = _fileChunkOffsets[ArrayUtils.find(_keys,key)];
+      final int fidx = ArrayUtils.find(_keys,key);
+      final int chunkStartIdx = _fileChunkOffsets[fidx];
       byte[] zips = vec.getFirstBytes();
       ZipUtil.Compression cpr = ZipUtil.guessCompressionMethod(zips);
       byte[] bits = ZipUtil.unzipBytes(zips,cpr);
-      ParseSetup localSetup = _setup.guessSetup(bits,0/*guess header in each file*/);
+      ParseSetup localSetup = _setup._pType == ParserType.PARQUET
+        ? ParquetParser.guessSetup(vec,_setup._columnNames)
+        : _setup.guessSetup(bits,0/*guess header in each file*/);
       if( !localSetup._isValid ) {
         _errors = localSetup._errors;
-        chunksAreLocal(vec,chunkStartIdx,key);
+        chunksAreLocal(fidx,key);
         return;
       }
       // Parse the file
       try {
+        if( _zidx[fidx] != null ) {
+          // Indexed gzip or zip; each output chunk inflated and parsed on its home node
+          ZParse zp = new ZParse(_vg, localSetup, _vecIdStart, chunkStartIdx, this, key, _zidx[fidx]);
+          addToPendingCount(1);
+          zp.setCompleter(this);
+          zp.dfork(homedChunks(fidx),false);
+          return;
+        }
         switch( cpr ) {
         case NONE:
-          if( localSetup._pType._parallelParseSupported ) {
+          if( localSetup._pType == ParserType.PARQUET ) {
+            // One output chunk per row group, each parsed on its home node
+            Key cks[] = homedChunks(fidx);
+            if( cks.length == 0 ) { chunksAreLocal(fidx,key); break; }
+            PParse pp = new PParse(_vg, localSetup, _vecIdStart, chunkStartIdx, this, key, ParquetParser.footer(vec));
+            addToPendingCount(1);
+            pp.setCompleter(this);
+            pp.dfork(cks,false);
+          } else if( localSetup._pType._parallelParseSupported ) {
             DParse dp = new DParse(_vg, localSetup, _vecIdStart, chunkStartIdx,this,key);
             addToPendingCount(1);
             dp.setCompleter(this);
@@ -438,7 +482,7 @@ public final class ParseDataset2 extends Job<Frame> {
           } else {
             InputStream bvs = vec.openStream(_job_key);
             _dout = streamParse(bvs, localSetup, _vecIdStart, chunkStartIdx, bvs);
-            chunksAreLocal(vec,chunkStartIdx,key);
+            chunksAreLocal(fidx,key);
           }
           break;
         case ZIP: {
@@ -450,7 +494,7 @@ public final class ParseDataset2 extends Job<Frame> {
           if( ze != null && !ze.isDirectory() ) 
             _dout = streamParse(zis,localSetup, _vecIdStart, chunkStartIdx, bvs);
           else zis.close();       // Confused: which zipped file to decompress
-          chunksAreLocal(vec,chunkStartIdx,key);
+          chunksAreLocal(fidx,key);
           break;
         }
         case GZIP: {
@@ -458,7 +502,7 @@ public final class ParseDataset2 extends Job<Frame> {
           // Zipped file; no parallel decompression;
           _dout = streamParse(new GZIPInputStream(bvs),localSetup,_vecIdStart, chunkStartIdx,bvs);
           // set this node as the one which processed all the chunks
-          chunksAreLocal(vec,chunkStartIdx,key);
+          chunksAreLocal(fidx,key);
           break;
         }
         }
@@ -501,6 +545,30 @@ public final class ParseDataset2 extends Job<Frame> {
       return dout;
     }
 
+    // Parse input chunk cidx, finishing its last line in chunk cidx+1
+    private static FVecDataOut parseChunk( VectorGroup vg, ParseSetup setup, int vecIdStart, int startChunkIdx, Enum[] enums, int cidx, Parser.DataIn din ) {
+      FVecDataOut dout;
+      Parser p;
+      switch(setup._pType) {
+      case CSV:
+        p = new CsvParser(setup);
+        dout = new FVecDataOut(vg,startChunkIdx + cidx,setup._ncols,vecIdStart,enums, null);
+        break;
+      case ARFF:
+        p = new CsvParser(setup);
+        dout = new FVecDataOut(vg,startChunkIdx + cidx,setup._ncols,vecIdStart,enums, setup._ctypes); //TODO: use _domains instead of enums
+        break;
+      case SVMLight:
+        p = new SVMLightParser(setup);
+        dout = new SVMLightFVecDataOut(vg, startChunkIdx + cidx, enums);
+        break;
+      default:
+        throw H2O.unimpl();
+      }
+      p.parallelParse(cidx,din,dout);
+      return dout;
+    }
+
     // ------------------------------------------------------------------------
     private static class DParse extends MRTask<DParse> {
       private final ParseSetup _setup;
@@ -530,28 +598,9 @@ public final class ParseDataset2 extends Job<Frame> {
         _visited = new NonBlockingSetInt();
       }
       @Override public void map( Chunk in ) {
-        Enum [] enums = enums(_eKey,_setup._ncols);
         // Break out the input & output vectors before the parse loop
         FVecDataIn din = new FVecDataIn(in);
-        FVecDataOut dout;
-        Parser p;
-        switch(_setup._pType) {
-        case CSV:
-          p = new CsvParser(_setup);
-          dout = new FVecDataOut(_vg,_startChunkIdx + in.cidx(),_setup._ncols,_vecIdStart,enums, null);
-          break;
-        case ARFF:
-          p = new CsvParser(_setup);
-          dout = new FVecDataOut(_vg,_startChunkIdx + in.cidx(),_setup._ncols,_vecIdStart,enums, _setup._ctypes); //TODO: use _setup._domains instead of enums
-          break;
-        case SVMLight:
-          p = new SVMLightParser(_setup);
-          dout = new SVMLightFVecDataOut(_vg, _startChunkIdx + in.cidx(), enums);
-          break;
-        default:
-          throw H2O.unimpl();
-        }
-        p.parallelParse(in.cidx(),din,dout);
+        FVecDataOut dout = parseChunk(_vg,_setup,_vecIdStart,_startChunkIdx,enums(_eKey,_setup._ncols),in.cidx(),din);
         (_dout = dout).close(_fs);
         Job.update(in._len,_job_key); // Record bytes parsed
 
@@ -572,17 +621,111 @@ public final class ParseDataset2 extends Job<Frame> {
         super.postGlobal();
         _outerMFPT._dout = _dout;
         _dout = null;           // Reclaim GC eagerly
-        // For Big Data, must delete data as eagerly as possible.
-        Value val = DKV.get(_srckey);
-        if( val == null ) return;
-        Iced ice = val.get();
-        if( ice instanceof ByteVec ) {
-          if( _outerMFPT._delete_on_done ) ((ByteVec)ice).remove();
-        } else {
-          Frame fr = (Frame)ice;
-          if( _outerMFPT._delete_on_done ) fr.delete(_outerMFPT._job_key,new Futures()).blockForPending();
-          else if( fr._key != null ) fr.unlock(_outerMFPT._job_key);
+        releaseInput(_srckey,_outerMFPT._job_key,_outerMFPT._delete_on_done);
+      }
+    }
+
+    // ------------------------------------------------------------------------
+    // Parquet: each output chunk is a row group, decoded column by column
+    // straight into NewChunks on the chunk's home node.
+    private static class PParse extends MRTask<PParse> {
+      private final ParseSetup _setup;
+      private final int _vecIdStart;
+      private final int _startChunkIdx; // for multifile parse, offset of the first chunk in the final dataset
+      private final VectorGroup _vg;
+      private final Key _eKey;  // Parse-local-Enums key
+      private final Key _job_key;
+      private final Key _srckey; // Source file, read on every node
+      private final byte[] _footer;
+      private FVecDataOut _dout;
+      private transient final MultiFileParseTask _outerMFPT;
+      private transient ParquetParser _pq;
+      private transient int[] _cols;
+
+      PParse(VectorGroup vg, ParseSetup setup, int vecIdstart, int startChunkIdx, MultiFileParseTask mfpt, Key srckey, byte[] footer) {
+        super(mfpt);
+        _vg = vg;
+        _setup = setup;
+        _vecIdStart = vecIdstart;
+        _startChunkIdx = startChunkIdx;
+        _outerMFPT = mfpt;
+        _eKey = mfpt._eKey;
+        _job_key = mfpt._job_key;
+        _srckey = srckey;
+        _footer = footer;
+      }
+      @Override public void setupLocal() {
+        super.setupLocal();
+        _pq = new ParquetParser(_footer);
+        _cols = _pq.columns(_setup._columnNames);
+      }
+      @Override public void map( Key key ) {
+        int g = Vec.chunkIdx(key) - _startChunkIdx; // Row group
+        FVecDataOut dout = new FVecDataOut(_vg,_startChunkIdx + g,_setup._ncols,_vecIdStart,enums(_eKey,_setup._ncols),_setup._ctypes.clone());
+        long bytes = _pq.parseRowGroup(getByteVec(_srckey), g, _cols, dout);
+        (_dout = dout).close(_fs);
+        Job.update(bytes,_job_key); // Record bytes parsed
+      }
+      @Override public void reduce(PParse pp) {
+        if( _dout == null ) _dout = pp._dout;
+        else _dout.reduce(pp._dout);
+      }
+      @Override public void postGlobal() {
+        super.postGlobal();
+        _outerMFPT._dout = _dout;
+        _dout = null;           // Reclaim GC eagerly
+        releaseInput(_srckey,_outerMFPT._job_key,_outerMFPT._delete_on_done);
+      }
+    }
+
+    // ------------------------------------------------------------------------
+    // Indexed gzip or zip: each output chunk is inflated from its checkpoint
+    // and parsed on the chunk's home node.  The index pass recorded half the
+    // compressed bytes of progress; the parse records the other half.
+    private static class ZParse extends MRTask<ZParse> {
+      private final ParseSetup _setup;
+      private final int _vecIdStart;
+      private final int _startChunkIdx; // for multifile parse, offset of the first chunk in the final dataset
+      private final VectorGroup _vg;
+      private final Key _eKey;  // Parse-local-Enums key
+      private final Key _job_key;
+      private final Key _srckey; // Compressed file, read on every node
+      private final Inflate.Index _zidx;
+      private FVecDataOut _dout;
+      private transient final MultiFileParseTask _outerMFPT;
+
+      ZParse(VectorGroup vg, ParseSetup setup, int vecIdstart, int startChunkIdx, MultiFileParseTask mfpt, Key srckey, Inflate.Index zidx) {
+        super(mfpt);
+        _vg = vg;
+        _setup = setup;
+        _vecIdStart = vecIdstart;
+        _startChunkIdx = startChunkIdx;
+        _outerMFPT = mfpt;
+        _eKey = mfpt._eKey;
+        _job_key = mfpt._job_key;
+        _srckey = srckey;
+        _zidx = zidx;
+      }
+      @Override public void map( Key key ) {
+        int g = Vec.chunkIdx(key) - _startChunkIdx; // Decompressed chunk
+        Inflate.ChunkIn din = _zidx.dataIn(g);
+        try {
+          FVecDataOut dout = parseChunk(_vg,_setup,_vecIdStart,_startChunkIdx,enums(_eKey,_setup._ncols),g,din);
+          (_dout = dout).close(_fs);
+        } finally {
+          din.close();
         }
+        Job.update(_zidx.compressedBytes(g)>>1,_job_key); // Record bytes parsed
+      }
+      @Override public void reduce(ZParse zp) {
+        if( _dout == null ) _dout = zp._dout;
+        else _dout.reduce(zp._dout);
+      }
+      @Override public void postGlobal() {
+        super.postGlobal();
+        _outerMFPT._dout = _dout;
+        _dout = null;           // Reclaim GC eagerly
+        releaseInput(_srckey,_outerMFPT._job_key,_outerMFPT._delete_on_done);
       }
     }
 
@@ -764,13 +907,8 @@ public final class ParseDataset2 extends Job<Frame> {
     }
 
     private void enumCol2StrCol(int colIdx) {
-      //build local value2key map for enums
-      Enum enums = _enums[colIdx].deepCopy();
-      ValueString emap[] = new ValueString[enums.maxId()];
-      ValueString keys[] = enums._map.keySet().toArray(new ValueString[enums.size()]);
-      for (ValueString str:keys)
-        // adjust for enum ids using 1-based indexing
-        emap[enums._map.get(str)-1] = str;
+      // Levels by id, adjusted for enum ids using 1-based indexing
+      ValueString emap[] = _enums[colIdx].levels();
 
       //swap in string NewChunk in place of enum NewChunk
       _nvs[colIdx] = _nvs[colIdx].convertEnum2Str(emap);
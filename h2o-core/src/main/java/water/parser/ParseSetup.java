@@ -4,6 +4,7 @@ import water.DKV;
 import water.H2O;
 import water.Iced;
 import water.Key;
+import water.fvec.ByteVec;
 
 import java.util.HashSet;
 
@@ -21,7 +22,7 @@ public final class ParseSetup extends Iced {
   boolean _singleQuotes;
 
   String _hexName;            // Cleaned up result Key suggested name
-  ParserType _pType;          // CSV, XLS, XSLX, SVMLight, Auto, ARFF
+  ParserType _pType;          // CSV, XLS, XSLX, SVMLight, Auto, ARFF, PARQUET
   byte _sep;                  // Field separator, usually comma ',' or TAB or space ' '
   int _ncols;                 // Columns to parse
   String[] _columnNames;
@@ -117,6 +118,13 @@ public final class ParseSetup extends Iced {
     return guessSetup(bits, ParserType.AUTO, AUTO_SEP, -1, singleQuotes, checkHeader, null, null);
   }
 
+  // Guess the setup of a whole file: a Parquet file from its footer, anything
+  // else from its first (unzipped) bytes.
+  public static ParseSetup guessSetup( ByteVec vec, boolean singleQuotes, int checkHeader ) {
+    if( ParquetParser.isParquet(vec) ) return ParquetParser.guessSetup(vec, null);
+    return guessSetup(ZipUtil.getFirstUnzippedBytes(vec), singleQuotes, checkHeader);
+  }
+
   private static final ParserType guessTypeOrder[] = {ParserType.ARFF, ParserType.XLS,ParserType.XLSX,ParserType.SVMLight,ParserType.CSV};
   public static ParseSetup guessSetup( byte[] bits, ParserType pType, byte sep, int ncols, boolean singleQuotes, int checkHeader, String[] columnNames, String[][] domains ) {
     switch( pType ) {
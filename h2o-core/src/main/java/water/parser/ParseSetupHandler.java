@@ -14,8 +14,7 @@ public class ParseSetupHandler extends Handler<ParseSetup,ParseSetupV2> {
   // back to the handler!
   public ParseSetupV2 guessSetup(int version, ParseSetup p ) {
     if( DKV.get(p._srcs[0]) == null ) throw new IllegalArgumentException("Key not loaded: "+p._srcs[0]);
-    byte[] bits = ZipUtil.getFirstUnzippedBytes(ParseDataset2.getByteVec(p._srcs[0]));
-    ParseSetup ps = ParseSetup.guessSetup(bits, p._singleQuotes, p._checkHeader);
+    ParseSetup ps = ParseSetup.guessSetup(ParseDataset2.getByteVec(p._srcs[0]), p._singleQuotes, p._checkHeader);
     // Update in-place
     assert ps._checkHeader != 0; // Need to fill in the guess
     p._checkHeader = ps._checkHeader;
@@ -23,7 +23,7 @@ public class ParseSetupV2 extends Schema<ParseSetup,ParseSetupV2> {
   @API(help="Suggested name", direction=API.Direction.OUTPUT)
   public String hexName;
 
-  @API(help="Parser Type", direction=API.Direction.OUTPUT, values = {"AUTO", "ARFF", "XLS", "XLSX", "CSV", "SVMLight"})
+  @API(help="Parser Type", direction=API.Direction.OUTPUT, values = {"AUTO", "ARFF", "XLS", "XLSX", "CSV", "SVMLight", "PARQUET"})
   public ParserType pType;
 
   @API(help="Field separator", direction=API.Direction.OUTPUT)
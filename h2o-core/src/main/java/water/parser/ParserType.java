@@ -3,7 +3,7 @@ package water.parser;
 /** Which parse flavor is being used, and does it support parallel parsing.
  */
 public enum ParserType {
-  AUTO(false), ARFF(true), XLS(false), XLSX(false), CSV(true), SVMLight(true);
+  AUTO(false), ARFF(true), XLS(false), XLSX(false), CSV(true), SVMLight(true), PARQUET(false);
   final boolean _parallelParseSupported;
   private ParserType( boolean par ) { _parallelParseSupported = par; }
   String toString( int ncols, byte separator ) {
@@ -51,7 +51,9 @@ abstract class ZipUtil {
       // Now read from the compressed stream
       int off = 0;
       while( off < bs.length ) {
-        int len = is.read(bs, off, bs.length - off);
+        int len;
+        try { len = is.read(bs, off, bs.length - off); }
+        catch( EOFException eof ) { break; } // Just the first bytes of a longer stream
         if( len < 0 )
           break;
         off += len;
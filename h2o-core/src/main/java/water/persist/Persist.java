@@ -2,6 +2,7 @@ package water.persist;
 
 import java.io.*;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import water.*;
@@ -56,6 +57,11 @@ public abstract class Persist {
   /** Load a previously stored Value */
   abstract public byte[] load(Value v) throws IOException;
 
+  /** Memory-map the bytes of a previously stored Value, without copying them
+   *  onto the heap.  Returns null if this backend or this stored form does not
+   *  support mapping; callers then fall back to {@link #load}. */
+  public ByteBuffer map(Value v) throws IOException { return null; }
+
   /** Reclaim space from a previously stored Value */
   abstract public void delete(Value v);
 
@@ -81,6 +87,23 @@ public abstract class Persist {
     return ikey;
   }
 
+  /** A new file at path, replacing any existing one, to write to.  Paths of
+   *  hdfs:// or s3n:// go through HDFS; anything else is a local file. */
+  public static OutputStream create( String path ) throws IOException {
+    if( path.startsWith("hdfs://") || path.startsWith("s3n://") )
+      return PersistHdfs.create(new org.apache.hadoop.fs.Path(path));
+    File f = new File(path);
+    f.getParentFile().mkdirs();
+    return new BufferedOutputStream(new FileOutputStream(f), 1<<16);
+  }
+
+  /** The file at path, to read from; the counterpart of {@link #create}. */
+  public static InputStream open( String path ) throws IOException {
+    if( path.startsWith("hdfs://") || path.startsWith("s3n://") )
+      return PersistHdfs.open(new org.apache.hadoop.fs.Path(path));
+    return new BufferedInputStream(new FileInputStream(path), 1<<16);
+  }
+
   //the filename can be either byte encoded if it starts with % followed by
   // a number, or is a normal key name with special characters encoded in
   // special ways.
@@ -2,6 +2,9 @@ package water.persist;
 
 import java.io.*;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 
 import water.*;
 import water.fvec.NFSFileVec;
@@ -30,20 +33,29 @@ final class PersistFS extends Persist {
 
   @Override public byte[] load(Value v) throws IOException {
     File f = getFile(v);
-    if( f.length() < v._max ) { // Should be fully on disk...
+    if( f.length() < SpillCodec.HEADER_LEN ) { // Should be fully on disk...
       // or it's a racey delete of a spilled value
       assert !v.isPersisted() : f.length() + " " + v._max + " " + v._key;
       return null; // No value
     }
     try (FileInputStream s = new FileInputStream(f)) {
         AutoBuffer ab = new AutoBuffer(s.getChannel(), true, Value.ICE);
-        byte[] b = ab.getA1(v._max);
+        SpillCodec codec = SpillCodec.forTag(ab.get4());
+        int raw = ab.get4(), enc = ab.get4();
+        ab.get4();              // Reserved; pads the payload to 8-byte alignment
+        assert raw == v._max : "ice file length " + raw + " != " + v._max + " " + v._key;
+        if( f.length() < SpillCodec.HEADER_LEN + enc ) { // Partially written file
+          ab.close();
+          assert !v.isPersisted() : f.length() + " " + v._max + " " + v._key;
+          return null;
+        }
+        byte[] b = ab.getA1(enc);
         ab.close();
-        return b;
+        return SpillCodec.decodeFile(codec, b, raw);
       }
   }
 
-  // Store Value v to disk.
+  // Store Value v to disk, encoded with the codec picked for its type.
   @Override public void store(Value v) {
     assert !v.isPersisted();
     new File(_dir, getIceDirectory(v._key)).mkdirs();
@@ -57,13 +69,30 @@ final class PersistFS extends Persist {
     try {
       byte[] m = v.memOrLoad(); // we are not single threaded anymore
       assert m != null && m.length == v._max : " " + v._key + " " + m; // Assert not saving partial files
-      new AutoBuffer(s.getChannel(), false, Value.ICE).putA1(m, m.length).close();
+      SpillCodec.writeFile(new AutoBuffer(s.getChannel(), false, Value.ICE), SpillCodec.select(v), m).close();
       v.setdsk();             // Set as write-complete to disk
     } finally {
       if( s!=null ) try { s.close(); } catch( IOException ie ) { }
     }
   }
 
+  // Map a raw (uncompressed) ice file copy-on-write: the payload is read in
+  // place, and any writes stay private to this JVM.
+  @Override public ByteBuffer map(Value v) throws IOException {
+    File f = getFile(v);
+    if( f.length() < SpillCodec.HEADER_LEN + v._max ) return null; // Compressed or racey delete
+    try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+        FileChannel fc = raf.getChannel();
+        ByteBuffer hdr = ByteBuffer.allocate(SpillCodec.HEADER_LEN).order(ByteOrder.nativeOrder());
+        while( hdr.hasRemaining() && fc.read(hdr, hdr.position()) > 0 ) ;
+        if( hdr.hasRemaining() || hdr.getInt(0) != SpillCodec.NONE.tag() || hdr.getInt(4) != v._max )
+          return null;
+        ByteBuffer bb = fc.map(FileChannel.MapMode.PRIVATE, SpillCodec.HEADER_LEN, v._max).order(ByteOrder.nativeOrder());
+        SpillCodec.mapped(v._max);
+        return bb;
+      }
+  }
+
   @Override public void delete(Value v) {
     assert !v.isPersisted();   // Upper layers already cleared out
     File f = getFile(v);
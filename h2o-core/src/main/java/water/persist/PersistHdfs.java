@@ -132,6 +132,18 @@ public final class PersistHdfs extends Persist {
     v.setdsk(); // Set as write-complete to disk
   }
 
+  /** A new file at path, replacing any existing one, to write to */
+  public static OutputStream create( Path path ) throws IOException {
+    FileSystem fs = FileSystem.get(path.toUri(), CONF);
+    fs.mkdirs(path.getParent());
+    return fs.create(path, true);
+  }
+
+  /** The file at path, to read from */
+  public static InputStream open( Path path ) throws IOException {
+    return FileSystem.get(path.toUri(), CONF).open(path);
+  }
+
   public static void store(final Path path, final byte[] data) {
     run(new Callable() {
       @Override public Object call() throws Exception {
@@ -0,0 +1,224 @@
+package water.persist;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import water.AutoBuffer;
+import water.H2O;
+import water.MemoryManager;
+import water.Value;
+import water.fvec.C4FChunk;
+import water.fvec.C8DChunk;
+import water.util.PrettyPrint;
+import water.util.UnsafeUtils;
+
+/** Block codecs for user-mode swap (ice) files.
+ *  <p>
+ *  Every ice file written by {@link PersistFS} starts with a small header:
+ *  the codec tag, the raw (decoded) length and the encoded length.  The
+ *  payload follows.  The codec is chosen per-Value by {@link #select},
+ *  and a Value whose bytes do not shrink is always stored with {@link #NONE}.
+ *  <p>
+ *  Encode/decode times and byte counts are accumulated globally and reported
+ *  by the {@link water.Cleaner} via {@link #stats()}.
+ */
+public abstract class SpillCodec {
+  /** Bytes in the ice file header: tag, raw length, encoded length and a
+   *  reserved word keeping the payload 8-byte aligned for mapped reads */
+  public static final int HEADER_LEN = 4+4+4+4;
+
+  /** Tag written as the first word of the ice file */
+  public abstract int tag();
+  /** Name used on the command line ({@code -spill_codec}) */
+  public abstract String name();
+
+  /** Encode raw bytes.  Returns null if the encoded form is not smaller than
+   *  the raw form, in which case the caller stores raw bytes. */
+  abstract byte[] encode( byte[] raw );
+  /** Decode {@code len} bytes from {@code src} into a new array of exactly
+   *  {@code rawLen} bytes. */
+  abstract byte[] decode( byte[] src, int len, int rawLen );
+
+  /** Raw bytes; no compression */
+  public static final SpillCodec NONE = new SpillCodec() {
+    @Override public int tag() { return 0; }
+    @Override public String name() { return "none"; }
+    @Override byte[] encode( byte[] raw ) { return null; }
+    @Override byte[] decode( byte[] src, int len, int rawLen ) {
+      assert len == rawLen && src.length == rawLen;
+      return src;
+    }
+  };
+  /** Fast LZ4-style block compression */
+  public static final SpillCodec LZ4 = new LZ4();
+
+  private static final SpillCodec[] CODECS = new SpillCodec[]{NONE,LZ4};
+
+  /** Codec for a given header tag */
+  static SpillCodec forTag( int tag ) {
+    if( tag < 0 || tag >= CODECS.length )
+      throw new IllegalArgumentException("Unknown ice file codec tag "+tag);
+    return CODECS[tag];
+  }
+
+  /** Codec for a given command-line name; null names default to {@link #LZ4} */
+  public static SpillCodec forName( String name ) {
+    if( name == null ) return LZ4;
+    for( SpillCodec c : CODECS )
+      if( c.name().equalsIgnoreCase(name) ) return c;
+    throw new IllegalArgumentException("Unknown spill codec '"+name+"', expected one of none, lz4");
+  }
+
+  private static SpillCodec DEFAULT;
+  private static SpillCodec defaultCodec() {
+    SpillCodec c = DEFAULT;
+    return c == null ? (DEFAULT = forName(H2O.ARGS.spill_codec)) : c;
+  }
+
+  // Values smaller than this are not worth the encode attempt
+  private static final int MIN_ENCODE_LEN = 256;
+
+  /** Pick a codec for a Value.  Small Values and floating-point Chunks
+   *  (which rarely have repeated byte runs) are spilled raw; so are Chunks
+   *  which can be reloaded by mapping the ice file ({@code -ice_mmap}).
+   *  Everything else uses the configured default codec. */
+  static SpillCodec select( Value v ) {
+    if( v._max < MIN_ENCODE_LEN ) return NONE;
+    if( H2O.ARGS.ice_mmap && v.isMappableChunk() ) return NONE;
+    if( v.isSubclassOf(C8DChunk.class) || v.isSubclassOf(C4FChunk.class) ) return NONE;
+    return defaultCodec();
+  }
+
+  // ---
+  // Spill statistics, reported by the Cleaner
+  private static final AtomicLong _encRaw  = new AtomicLong(); // Raw bytes spilled
+  private static final AtomicLong _encDisk = new AtomicLong(); // Bytes written to disk, including headers
+  private static final AtomicLong _encNanos= new AtomicLong(); // Time spent encoding
+  private static final AtomicLong _decRaw  = new AtomicLong(); // Raw bytes reloaded
+  private static final AtomicLong _decNanos= new AtomicLong(); // Time spent decoding
+  private static final AtomicLong _mapRaw  = new AtomicLong(); // Raw bytes reloaded by mapping
+
+  /** Record a reload done by memory-mapping a raw ice file */
+  static void mapped( long bytes ) { _mapRaw.addAndGet(bytes); }
+
+  /** Encode a Value's bytes and write them with the ice file header. */
+  static AutoBuffer writeFile( AutoBuffer ab, SpillCodec codec, byte[] raw ) {
+    long t0 = System.nanoTime();
+    byte[] enc = codec.encode(raw);
+    if( enc == null ) { codec = NONE; enc = raw; }
+    _encNanos.addAndGet(System.nanoTime()-t0);
+    _encRaw .addAndGet(raw.length);
+    _encDisk.addAndGet(HEADER_LEN+enc.length);
+    return ab.put4(codec.tag()).put4(raw.length).put4(enc.length).put4(0).putA1(enc,enc.length);
+  }
+
+  /** Decode an encoded payload read from an ice file. */
+  static byte[] decodeFile( SpillCodec codec, byte[] enc, int rawLen ) {
+    long t0 = System.nanoTime();
+    byte[] raw = codec.decode(enc,enc.length,rawLen);
+    _decNanos.addAndGet(System.nanoTime()-t0);
+    _decRaw  .addAndGet(rawLen);
+    return raw;
+  }
+
+  /** Summary of spill compression ratio and codec time, for logging */
+  public static String stats() {
+    long raw = _encRaw.get(), disk = _encDisk.get();
+    String ratio = disk == 0 ? "-" : String.format("%.2f",(double)raw/disk);
+    return "spill_codec="+defaultCodec().name()+" ratio="+ratio+
+      " enc="+(raw>>20)+"M/"+PrettyPrint.msecs(_encNanos.get()/1000000,true)+
+      " dec="+(_decRaw.get()>>20)+"M/"+PrettyPrint.msecs(_decNanos.get()/1000000,true)+
+      " mapped="+(_mapRaw.get()>>20)+"M";
+  }
+
+  // --------------------------------------------------------------------------
+  /** LZ4 block format: sequences of a token (4 bits literal length, 4 bits
+   *  match length), literals, a 2-byte little-endian match offset and length
+   *  extension bytes.  Greedy single-probe hash matching, favoring encode
+   *  speed over ratio. */
+  private static final class LZ4 extends SpillCodec {
+    private static final int MIN_MATCH = 4;
+    private static final int HASH_LOG = 12;
+    private static final int LAST_LITERALS = 5;  // Last bytes are always literals
+    private static final int MF_LIMIT = 12;      // No match may start within this of the end
+    private static final int MAX_DIST = 65535;
+    private static final int SKIP_TRIGGER = 6;   // Speed up scanning incompressible data
+
+    @Override public int tag() { return 1; }
+    @Override public String name() { return "lz4"; }
+
+    @Override byte[] encode( byte[] src ) {
+      final int len = src.length;
+      if( len < MF_LIMIT+1 ) return null;
+      byte[] dst = new byte[len + len/255 + 16]; // Worst-case LZ4 bound
+      int[] tab = new int[1<<HASH_LOG];          // Position+1 of last sighting of a hash
+      final int mflimit = len - MF_LIMIT;
+      final int mlimit  = len - LAST_LITERALS;
+      int sp = 0, dp = 0, anchor = 0;
+      while( sp < mflimit ) {
+        int seq = UnsafeUtils.get4(src,sp);
+        int h = (seq * -1640531535) >>> (32-HASH_LOG);
+        int ref = tab[h]-1;
+        tab[h] = sp+1;
+        if( ref < 0 || sp-ref > MAX_DIST || UnsafeUtils.get4(src,ref) != seq ) {
+          sp += 1 + ((sp-anchor) >>> SKIP_TRIGGER);
+          continue;
+        }
+        // Extend the match forward
+        int ml = MIN_MATCH;
+        while( sp+ml < mlimit && src[ref+ml] == src[sp+ml] ) ml++;
+        int tok = dp;
+        dp = putSeq(src,anchor,sp-anchor,dst,dp);
+        dst[dp++] = (byte)(sp-ref);
+        dst[dp++] = (byte)((sp-ref)>>>8);
+        int mx = ml-MIN_MATCH;
+        dst[tok] |= (byte)Math.min(mx,15);
+        if( mx >= 15 ) dp = putExt(dst,dp,mx-15);
+        sp += ml;
+        anchor = sp;
+        if( dp >= len ) return null; // Not shrinking
+      }
+      // Trailing literals
+      dp = putSeq(src,anchor,len-anchor,dst,dp);
+      return dp >= len ? null : Arrays.copyOf(dst,dp);
+    }
+
+    // Write a token plus literal run; returns the new dst offset.  The match
+    // length nibble of the token is left zero, for the caller to fill in.
+    private static int putSeq( byte[] src, int off, int lit, byte[] dst, int dp ) {
+      dst[dp++] = (byte)(Math.min(lit,15)<<4);
+      if( lit >= 15 ) dp = putExt(dst,dp,lit-15);
+      System.arraycopy(src,off,dst,dp,lit);
+      return dp+lit;
+    }
+    private static int putExt( byte[] dst, int dp, int x ) {
+      while( x >= 255 ) { dst[dp++] = (byte)255; x -= 255; }
+      dst[dp++] = (byte)x;
+      return dp;
+    }
+
+    @Override byte[] decode( byte[] src, int len, int rawLen ) {
+      byte[] dst = MemoryManager.malloc1(rawLen);
+      int sp = 0, dp = 0;
+      while( true ) {
+        int token = src[sp++]&0xFF;
+        int lit = token>>>4;
+        if( lit == 15 ) { int b; do { b = src[sp++]&0xFF; lit += b; } while( b == 255 ); }
+        System.arraycopy(src,sp,dst,dp,lit);
+        sp += lit;  dp += lit;
+        if( sp >= len ) break;  // Trailing literals end the block
+        int off = (src[sp]&0xFF) | ((src[sp+1]&0xFF)<<8);
+        sp += 2;
+        int ml = token&15;
+        if( ml == 15 ) { int b; do { b = src[sp++]&0xFF; ml += b; } while( b == 255 ); }
+        ml += MIN_MATCH;
+        int ref = dp-off;
+        if( off >= ml ) System.arraycopy(dst,ref,dst,dp,ml);
+        else for( int i=0; i<ml; i++ ) dst[dp+i] = dst[ref+i]; // Overlapping run
+        dp += ml;
+      }
+      if( dp != rawLen ) throw new IllegalStateException("Corrupt lz4 ice file: decoded "+dp+" bytes, expected "+rawLen);
+      return dst;
+    }
+  }
+}
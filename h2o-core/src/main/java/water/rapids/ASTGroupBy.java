@@ -0,0 +1,316 @@
+package water.rapids;
+
+import water.Iced;
+import water.Key;
+import water.MRTask;
+import water.fvec.*;
+
+import java.util.Arrays;
+
+/**
+ * Grouped aggregation: one row per distinct combination of the key columns.
+ *
+ *   (GB ary {keycols} {agg;col;agg;col;...})
+ *
+ * Key columns (0-based) must be enum or integer; NA is a group of its own.
+ * Aggregates are sum, mean, count, min, max, var and nunique, each applied to
+ * a column; NAs in the aggregated column are skipped, and count is the number
+ * of rows in the group.  All aggregates are computed in a single MRTask pass.
+ * The key columns are packed into a single long per row, and each task keeps
+ * an open-addressed table of packed keys to group ids, with the per-group
+ * statistics in flat primitive arrays; the tables are merged by the MRTask
+ * tree reduce.
+ */
+public class ASTGroupBy extends ASTUniPrefixOp {
+  static final String AGGS[] = new String[]{"sum","mean","count","min","max","var","nunique"};
+  static final int SUM=0, MEAN=1, COUNT=2, MIN=3, MAX=4, VAR=5, NUNIQUE=6;
+
+  int[] _gcols;                 // Key columns
+  int[] _aggs;                  // Aggregate kinds
+  int[] _acols;                 // Column for each aggregate
+  static final String VARS[] = new String[]{ "", "ary", "groups", "aggs"};
+  public ASTGroupBy( ) { super(VARS); }
+  @Override String opStr(){ return "GB";}
+  @Override ASTOp make() {return new ASTGroupBy();}
+  @Override ASTGroupBy parse_impl(Exec E) {
+    AST ary = E.parse();
+    String[] gcols = E.skipWS().peek() == '{'
+            ? E.xpeek('{').parseString('}').split(";")
+            : new String[]{Double.toString(((ASTNum)E.parse()).dbl())};
+    String[] aggs = E.skipWS().xpeek('{').parseString('}').split(";");
+    if( (aggs.length&1) != 0 ) throw new IllegalArgumentException("GB: aggregates must be pairs of {agg;col}");
+    ASTGroupBy res = (ASTGroupBy)clone();
+    res._gcols = new int[gcols.length];
+    for( int i=0; i<gcols.length; i++ ) res._gcols[i] = (int)(double)Double.valueOf(gcols[i]);
+    res._aggs = new int[aggs.length>>1];
+    res._acols= new int[aggs.length>>1];
+    for( int i=0; i<res._aggs.length; i++ ) {
+      String agg = aggs[2*i].replace("\"", "").replace("\'", "").trim();
+      res._aggs [i] = Arrays.asList(AGGS).indexOf(agg);
+      if( res._aggs[i] == -1 ) throw new IllegalArgumentException("GB: unknown aggregate '"+agg+"', expected one of "+Arrays.toString(AGGS));
+      res._acols[i] = (int)(double)Double.valueOf(aggs[2*i+1]);
+    }
+    res._asts = new AST[]{ary};
+    return res;
+  }
+
+  @Override void apply(Env env) {
+    Frame fr = env.pop0Ary();
+    int ncols = fr.numCols();
+    for( int c : _gcols ) {
+      if( c < 0 || c >= ncols ) throw new IllegalArgumentException("GB: group column "+c+" out of range");
+      if( !fr.vecs()[c].isInt() ) throw new IllegalArgumentException("GB: group columns must be enum or integer; column "+c+" is not");
+    }
+    for( int i=0; i<_aggs.length; i++ ) {
+      int c = _acols[i];
+      if( c < 0 || c >= ncols ) throw new IllegalArgumentException("GB: aggregate column "+c+" out of range");
+      if( _aggs[i] != COUNT && _aggs[i] != NUNIQUE && fr.vecs()[c].isEnum() )
+        throw new IllegalArgumentException("GB: cannot compute "+AGGS[_aggs[i]]+" of enum column "+c);
+    }
+
+    // Mixed-radix packing of the key columns; digit 0 is NA
+    long[] mins = new long[_gcols.length], mults = new long[_gcols.length], radix = new long[_gcols.length];
+    long mult = 1;
+    for( int i=_gcols.length-1; i>=0; i-- ) { // Last column varies fastest
+      Vec v = fr.vecs()[_gcols[i]];
+      mins [i] = v.naCnt() == v.length() ? 0 : (long)v.min();
+      radix[i] = (v.naCnt() == v.length() ? 0 : (long)v.max()-mins[i]+1)+1;
+      mults[i] = mult;
+      if( mult > Long.MAX_VALUE/radix[i] )
+        throw new IllegalArgumentException("GB: the group columns have too many combinations to pack into 64 bits");
+      mult *= radix[i];
+    }
+
+    // Columns needing moments, and columns needing distinct-value sets
+    int[] vmap = new int[ncols], umap = new int[ncols];
+    Arrays.fill(vmap,-1);  Arrays.fill(umap,-1);
+    int nv=0, nu=0;
+    for( int i=0; i<_aggs.length; i++ ) {
+      if( _aggs[i] == COUNT ) continue;
+      int[] map = _aggs[i] == NUNIQUE ? umap : vmap;
+      if( map[_acols[i]] == -1 ) map[_acols[i]] = _aggs[i] == NUNIQUE ? nu++ : nv++;
+    }
+    int[] vcols = new int[nv], ucols = new int[nu];
+    for( int c=0; c<ncols; c++ ) {
+      if( vmap[c] != -1 ) vcols[vmap[c]] = c;
+      if( umap[c] != -1 ) ucols[umap[c]] = c;
+    }
+
+    GBTask gb = new GBTask(_gcols,mins,mults,vcols,ucols).doAll(fr);
+    if( gb._grps == null ) gb.init(); // No rows
+    final int ngrp = gb._grps._n;
+
+    // Groups in key order
+    long[] keys = Arrays.copyOf(gb._grps._k1,ngrp);
+    Arrays.sort(keys);
+    int[] gids = new int[ngrp];
+    for( int r=0; r<ngrp; r++ ) gids[r] = gb._grps.find(keys[r],0);
+
+    // Distinct counts per group
+    int[][] nuniq = new int[nu][ngrp];
+    for( int j=0; j<nu; j++ ) {
+      Table t = gb._uniq[j];
+      for( int i=0; i<t._n; i++ ) nuniq[j][gb._grps.find(t._k1[i],0)]++;
+    }
+
+    // Build the result: key columns, then one column per aggregate
+    int nout = _gcols.length+_aggs.length;
+    Key vkeys[] = Vec.VectorGroup.VG_LEN1.addVecs(nout);
+    Vec[] vecs = new Vec[nout];
+    String[] names = new String[nout];
+    for( int i=0; i<_gcols.length; i++ ) {
+      Vec src = fr.vecs()[_gcols[i]];
+      AppendableVec av = new AppendableVec(vkeys[i]);
+      av.setDomain(src.domain() == null ? null : src.domain().clone());
+      NewChunk nc = new NewChunk(av,0);
+      for( int r=0; r<ngrp; r++ ) {
+        long d = (keys[r]/mults[i])%radix[i];
+        if( d == 0 ) nc.addNA(); else nc.addNum(d-1+mins[i],0);
+      }
+      nc.close(0,null);
+      vecs [i] = av.close(null);
+      names[i] = fr.names()[_gcols[i]];
+    }
+    for( int a=0; a<_aggs.length; a++ ) {
+      int agg = _aggs[a], c = _acols[a];
+      AppendableVec av = new AppendableVec(vkeys[_gcols.length+a]);
+      NewChunk nc = new NewChunk(av,0);
+      for( int r=0; r<ngrp; r++ ) {
+        int g = gids[r];
+        if( agg == COUNT   ) { nc.addNum(gb._cnt[g],0); continue; }
+        if( agg == NUNIQUE ) { nc.addNum(nuniq[umap[c]][g],0); continue; }
+        int j = vmap[c];
+        long n = gb._nobs[j][g];
+        double d;
+        switch( agg ) {
+        case SUM : d = gb._sum[j][g];  break;
+        case MEAN: d = n == 0 ? Double.NaN : gb._mean[j][g]; break;
+        case MIN : d = n == 0 ? Double.NaN : gb._min [j][g]; break;
+        case MAX : d = n == 0 ? Double.NaN : gb._max [j][g]; break;
+        case VAR : d = n <  2 ? Double.NaN : gb._m2[j][g]/(n-1); break;
+        default: throw water.H2O.fail();
+        }
+        nc.addNum(d);
+      }
+      nc.close(0,null);
+      vecs [_gcols.length+a] = av.close(null);
+      names[_gcols.length+a] = agg == COUNT ? "count" : AGGS[agg]+"_"+fr.names()[c];
+    }
+    Frame fr2 = new Frame(names, vecs);
+    env.cleanup(fr);
+    env.push(new ValFrame(fr2));
+  }
+
+  // Open-addressed table of (long,long) pairs, assigning dense ids in
+  // insertion order.
+  static final class Table extends Iced {
+    long[] _k1, _k2;            // Pairs, by dense id
+    int[] _slots;               // Hash slot -> dense id+1, or 0 if empty
+    int _n;                     // Number of pairs
+    Table() { _k1 = new long[16]; _k2 = new long[16]; _slots = new int[32]; }
+
+    private static int hash( long k1, long k2 ) {
+      long h = k1*0x9E3779B97F4A7C15L + k2;
+      h ^= h>>>29;  h *= 0xBF58476D1CE4E5B9L;
+      return (int)(h^(h>>>32));
+    }
+    /** Dense id of the pair, or -1 if absent */
+    int find( long k1, long k2 ) {
+      int mask = _slots.length-1;
+      for( int s = hash(k1,k2)&mask; ; s = (s+1)&mask ) {
+        int id = _slots[s]-1;
+        if( id == -1 ) return -1;
+        if( _k1[id] == k1 && _k2[id] == k2 ) return id;
+      }
+    }
+    /** Dense id of the pair, inserting it if absent */
+    int add( long k1, long k2 ) {
+      int mask = _slots.length-1;
+      int s = hash(k1,k2)&mask;
+      for( ; ; s = (s+1)&mask ) {
+        int id = _slots[s]-1;
+        if( id == -1 ) break;
+        if( _k1[id] == k1 && _k2[id] == k2 ) return id;
+      }
+      int id = _n++;
+      if( id == _k1.length ) { _k1 = Arrays.copyOf(_k1,id<<1); _k2 = Arrays.copyOf(_k2,id<<1); }
+      _k1[id] = k1;  _k2[id] = k2;
+      _slots[s] = id+1;
+      if( _n<<1 > _slots.length ) rehash(); // Keep at most half full
+      return id;
+    }
+    private void rehash() {
+      int[] slots = new int[_slots.length<<1];
+      int mask = slots.length-1;
+      for( int id=0; id<_n; id++ ) {
+        int s = hash(_k1[id],_k2[id])&mask;
+        while( slots[s] != 0 ) s = (s+1)&mask;
+        slots[s] = id+1;
+      }
+      _slots = slots;
+    }
+  }
+
+  private static class GBTask extends MRTask<GBTask> {
+    final int[] _gcols, _vcols, _ucols;
+    final long[] _mins, _mults;
+    // Group table: packed key -> group id, and per-group statistics
+    Table _grps;
+    long[] _cnt;                // Rows per group
+    long[][] _nobs;             // Non-NA rows per moment column & group
+    double[][] _sum, _mean, _m2, _min, _max;
+    // Distinct (packed key, value bits) pairs per nunique column
+    Table[] _uniq;
+
+    GBTask( int[] gcols, long[] mins, long[] mults, int[] vcols, int[] ucols ) {
+      _gcols = gcols; _mins = mins; _mults = mults; _vcols = vcols; _ucols = ucols;
+    }
+
+    private void init() {
+      _grps = new Table();
+      _cnt = new long[0];
+      int nv = _vcols.length;
+      _nobs = new long[nv][0];
+      _sum = new double[nv][0]; _mean = new double[nv][0]; _m2 = new double[nv][0];
+      _min = new double[nv][0]; _max  = new double[nv][0];
+      _uniq = new Table[_ucols.length];
+      for( int j=0; j<_uniq.length; j++ ) _uniq[j] = new Table();
+    }
+
+    // Group id of a packed key, growing the statistics arrays for new groups
+    private int group( long key ) {
+      int g = _grps.add(key,0);
+      if( g == _cnt.length ) {
+        int len = Math.max(16,g<<1);
+        _cnt = Arrays.copyOf(_cnt,len);
+        for( int j=0; j<_vcols.length; j++ ) {
+          int old = _min[j].length;
+          _nobs[j] = Arrays.copyOf(_nobs[j],len);
+          _sum [j] = Arrays.copyOf(_sum [j],len);
+          _mean[j] = Arrays.copyOf(_mean[j],len);
+          _m2  [j] = Arrays.copyOf(_m2  [j],len);
+          _min [j] = Arrays.copyOf(_min [j],len);
+          _max [j] = Arrays.copyOf(_max [j],len);
+          Arrays.fill(_min[j],old,len,Double.POSITIVE_INFINITY);
+          Arrays.fill(_max[j],old,len,Double.NEGATIVE_INFINITY);
+        }
+      }
+      return g;
+    }
+
+    @Override public void map( Chunk[] cs ) {
+      init();
+      final int len = cs[0]._len;
+      for( int r=0; r<len; r++ ) {
+        long key = 0;
+        for( int i=0; i<_gcols.length; i++ ) {
+          Chunk c = cs[_gcols[i]];
+          if( !c.isNA0(r) ) key += (c.at80(r)-_mins[i]+1)*_mults[i];
+        }
+        int g = group(key);
+        _cnt[g]++;
+        for( int j=0; j<_vcols.length; j++ ) {
+          Chunk c = cs[_vcols[j]];
+          if( c.isNA0(r) ) continue;
+          double x = c.at0(r);
+          long n = ++_nobs[j][g];
+          double d = x-_mean[j][g];
+          _mean[j][g] += d/n;
+          _m2  [j][g] += d*(x-_mean[j][g]);
+          _sum [j][g] += x;
+          if( x < _min[j][g] ) _min[j][g] = x;
+          if( x > _max[j][g] ) _max[j][g] = x;
+        }
+        for( int j=0; j<_ucols.length; j++ ) {
+          Chunk c = cs[_ucols[j]];
+          if( !c.isNA0(r) ) _uniq[j].add(key,Double.doubleToLongBits(c.at0(r)+0.0)); // +0.0 folds -0.0
+        }
+      }
+    }
+
+    @Override public void reduce( GBTask t ) {
+      if( t._grps == null ) return;  // Nothing mapped there
+      if( _grps == null ) init();
+      for( int tg=0; tg<t._grps._n; tg++ ) {
+        int g = group(t._grps._k1[tg]);
+        _cnt[g] += t._cnt[tg];
+        for( int j=0; j<_vcols.length; j++ ) {
+          long nb = t._nobs[j][tg];
+          if( nb == 0 ) continue;
+          long na = _nobs[j][g], n = na+nb;
+          double d = t._mean[j][tg]-_mean[j][g];
+          _mean[j][g] += d*nb/n;
+          _m2  [j][g] += t._m2[j][tg] + d*d*na*nb/n;
+          _nobs[j][g] = n;
+          _sum [j][g] += t._sum[j][tg];
+          _min [j][g] = Math.min(_min[j][g],t._min[j][tg]);
+          _max [j][g] = Math.max(_max[j][g],t._max[j][tg]);
+        }
+      }
+      for( int j=0; j<_ucols.length; j++ ) {
+        Table u = t._uniq[j];
+        for( int i=0; i<u._n; i++ ) _uniq[j].add(u._k1[i],u._k2[i]);
+      }
+    }
+  }
+}
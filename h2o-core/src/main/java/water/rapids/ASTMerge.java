@@ -0,0 +1,406 @@
+package water.rapids;
+
+import water.*;
+import water.fvec.*;
+
+import java.util.Arrays;
+
+/**
+ * R's `merge`: inner or left equi-join of two Frames on key columns.
+ *
+ *   (merge x y {by.x} {by.y} all.x)
+ *
+ * Key columns (0-based) must be enum or integer; enum keys are matched by
+ * level name, and NA keys never match.  The result holds all columns of x,
+ * then the non-key columns of y, with one row per matching pair (and, for
+ * a left join, one NA-padded row for each unmatched row of x).
+ *
+ * If the frame to be indexed is small (y for a left join, the smaller of the
+ * two for an inner join) it is collected and shipped to every node with the
+ * probing MRTask, which builds a node-local hash index in setupLocal and
+ * streams the other frame's Chunks against it, writing the output Chunks
+ * aligned with the streamed frame.  Otherwise both frames are
+ * radix-partitioned by key hash: each Chunk scatters its rows into
+ * partition buffers homed on the partition's owning node (plain DKV puts,
+ * riding the RPC/AutoBuffer transport), and every node then joins its own
+ * partitions, writing one output Chunk per partition.  Partition p is owned
+ * by the home node of output Chunk p, so the output Chunks are written
+ * locally.
+ */
+public class ASTMerge extends ASTUniPrefixOp {
+  /** Largest frame, in bytes of raw doubles, to broadcast to every node */
+  static long BROADCAST_LIMIT = Runtime.getRuntime().maxMemory()>>4;
+  static final long NA_KEY = Long.MIN_VALUE; // A key which never matches
+
+  int[] _bx, _by;               // Key columns of x and y
+  boolean _allx;                // Left join?
+  static final String VARS[] = new String[]{ "", "x", "y", "by.x", "by.y", "all.x"};
+  public ASTMerge( ) { super(VARS); }
+  @Override String opStr(){ return "merge";}
+  @Override ASTOp make() {return new ASTMerge();}
+  @Override ASTMerge parse_impl(Exec E) {
+    AST x = E.parse();
+    AST y = E.skipWS().parse();
+    int[] bx = parseCols(E), by = parseCols(E);
+    AST a = E.skipWS().parse();
+    if( a instanceof ASTId ) a = E._env.lookup((ASTId)a);
+    ASTMerge res = (ASTMerge)clone();
+    res._bx = bx;  res._by = by;
+    res._allx = ((ASTNum)a).dbl() == 1;
+    res._asts = new AST[]{x,y};
+    return res;
+  }
+  private static int[] parseCols( Exec E ) {
+    String[] s = E.skipWS().peek() == '{'
+            ? E.xpeek('{').parseString('}').split(";")
+            : new String[]{Double.toString(((ASTNum)E.parse()).dbl())};
+    int[] cols = new int[s.length];
+    for( int i=0; i<s.length; i++ ) cols[i] = (int)(double)Double.valueOf(s[i]);
+    return cols;
+  }
+
+  @Override void apply(Env env) {
+    Frame y = env.pop0Ary();
+    Frame x = env.pop0Ary();
+    Frame res = merge(x,y,_bx,_by,_allx);
+    env.cleanup(x,y);
+    env.push(new ValFrame(res));
+  }
+
+  /** Join {@code x} and {@code y} on the given key columns; a left join if
+   *  {@code allx}, else an inner join. */
+  static Frame merge( Frame x, Frame y, int[] bx, int[] by, boolean allx ) {
+    if( bx.length != by.length || bx.length == 0 )
+      throw new IllegalArgumentException("merge: by.x and by.y must name the same, non-zero, number of columns");
+    for( Vec v : x.vecs() ) if( v.isString() || v.isUUID() ) throw new IllegalArgumentException("merge: string and UUID columns are not supported");
+    for( Vec v : y.vecs() ) if( v.isString() || v.isUUID() ) throw new IllegalArgumentException("merge: string and UUID columns are not supported");
+    // Map y's enum keys into x's levels; -1 for levels missing from x
+    int[][] emap = new int[by.length][];
+    for( int k=0; k<bx.length; k++ ) {
+      if( bx[k] < 0 || bx[k] >= x.numCols() || by[k] < 0 || by[k] >= y.numCols() )
+        throw new IllegalArgumentException("merge: key column out of range");
+      Vec vx = x.vecs()[bx[k]], vy = y.vecs()[by[k]];
+      if( !vx.isInt() || !vy.isInt() )
+        throw new IllegalArgumentException("merge: key columns must be enum or integer");
+      if( vx.isEnum() != vy.isEnum() )
+        throw new IllegalArgumentException("merge: cannot join enum column "+x.names()[bx[k]]+" with integer column "+y.names()[by[k]]);
+      if( vx.isEnum() ) {
+        String[] dx = vx.domain(), dy = vy.domain();
+        emap[k] = new int[dy.length];
+        for( int i=0; i<dy.length; i++ ) emap[k][i] = Arrays.asList(dx).indexOf(dy[i]);
+      }
+    }
+
+    // Output columns: all of x, then the non-key columns of y
+    int[] ycols = new int[y.numCols()-by.length];
+    for( int c=0, j=0; c<y.numCols(); c++ ) {
+      boolean key = false;
+      for( int b : by ) key |= b == c;
+      if( !key ) ycols[j++] = c;
+    }
+    int nout = x.numCols()+ycols.length;
+    String[] names = new String[nout];
+    String[][] domains = new String[nout][];
+    for( int c=0; c<x.numCols(); c++ ) { names[c] = x.names()[c]; domains[c] = x.vecs()[c].domain(); }
+    for( int j=0; j<ycols.length; j++ ) {
+      names  [x.numCols()+j] = y.names()[ycols[j]];
+      domains[x.numCols()+j] = y.vecs()[ycols[j]].domain();
+    }
+
+    long xbytes = x.numRows()*x.numCols()*8, ybytes = y.numRows()*y.numCols()*8;
+    int[] ident = new int[x.numCols()];
+    for( int c=0; c<ident.length; c++ ) ident[c] = c;
+    // Index y, stream x
+    if( ybytes <= BROADCAST_LIMIT && (allx || ybytes <= xbytes) ) {
+      RowBuf yb = new CollectTask(y.numCols()).doAll(y)._rows;
+      byte[] osrc = new byte[nout];
+      int[]  ocol = new int [nout];
+      for( int c=0; c<x.numCols(); c++ ) { osrc[c] = STREAM; ocol[c] = c; }
+      for( int j=0; j<ycols.length; j++ ) { osrc[x.numCols()+j] = INDEX; ocol[x.numCols()+j] = ycols[j]; }
+      return new ProbeTask(yb,by,emap,bx,new int[bx.length][],osrc,ocol,allx).doAll(nout,x).outputFrame(names,domains);
+    }
+    // Index x, stream y (inner join only)
+    if( !allx && xbytes <= BROADCAST_LIMIT ) {
+      RowBuf xb = new CollectTask(x.numCols()).doAll(x)._rows;
+      byte[] osrc = new byte[nout];
+      int[]  ocol = new int [nout];
+      for( int c=0; c<x.numCols(); c++ ) { osrc[c] = INDEX; ocol[c] = c; }
+      for( int j=0; j<ycols.length; j++ ) { osrc[x.numCols()+j] = STREAM; ocol[x.numCols()+j] = ycols[j]; }
+      return new ProbeTask(xb,bx,new int[bx.length][],by,emap,osrc,ocol,false).doAll(nout,y).outputFrame(names,domains);
+    }
+    // Shuffle both frames by key hash
+    int nparts = Math.max(x.anyVec().nChunks(),y.anyVec().nChunks());
+    String tag = Key.make().toString();
+    Key[] keys = Vec.VectorGroup.VG_LEN1.addVecs(nout);
+    int xchunks = x.anyVec().nChunks(), ychunks = y.anyVec().nChunks();
+    boolean done = false;
+    try {
+      new ScatterTask(tag,"x",keys[0],bx,new int[bx.length][],nparts,allx).doAll(x);
+      new ScatterTask(tag,"y",keys[0],by,emap,nparts,false).doAll(y);
+      JoinPartitionsTask jpt = new JoinPartitionsTask(tag,keys,domains,nparts,xchunks,ychunks,
+                                                      bx,by,emap,ycols,allx).doAllNodes();
+      Futures fs = new Futures();
+      Vec[] vecs = new Vec[nout];
+      for( int i=0; i<nout; i++ ) vecs[i] = jpt._avs[i].close(fs);
+      fs.blockForPending();
+      done = true;
+      return new Frame(names,vecs);
+    } finally {
+      // The join removes the partitions it gathers; on failure, drop the rest
+      if( !done ) new RemovePartsTask(tag,keys[0],nparts,new String[]{"x","y"},new int[]{xchunks,ychunks}).doAllNodes();
+    }
+  }
+
+  // ---
+  // Rows of a Frame as column-major doubles, NaN for NA.
+  static final class RowBuf extends Iced {
+    double[][] _cols;
+    int _n;
+    RowBuf( int ncols ) { _cols = new double[ncols][4]; }
+    void add( double[] row ) {
+      if( _n == _cols[0].length )
+        for( int c=0; c<_cols.length; c++ ) _cols[c] = Arrays.copyOf(_cols[c],_n<<1);
+      for( int c=0; c<_cols.length; c++ ) _cols[c][_n] = row[c];
+      _n++;
+    }
+    void addAll( RowBuf b ) {
+      if( _n+b._n > _cols[0].length )
+        for( int c=0; c<_cols.length; c++ ) _cols[c] = Arrays.copyOf(_cols[c],Math.max(_n<<1,_n+b._n));
+      for( int c=0; c<_cols.length; c++ ) System.arraycopy(b._cols[c],0,_cols[c],_n,b._n);
+      _n += b._n;
+    }
+    void row( int r, double[] row ) { for( int c=0; c<_cols.length; c++ ) row[c] = _cols[c][r]; }
+  }
+
+  // Join key of a row, in x's key space; false if the row can never match
+  static boolean key( double[] row, int[] kcols, int[][] emap, long[] key ) {
+    for( int k=0; k<kcols.length; k++ ) {
+      double d = row[kcols[k]];
+      if( Double.isNaN(d) ) return false;
+      long l = (long)d;
+      if( emap[k] != null && (l = l < emap[k].length ? emap[k][(int)l] : -1) < 0 ) return false;
+      key[k] = l;
+    }
+    return true;
+  }
+  static int hash( long[] key ) {
+    long h = 0;
+    for( long k : key ) h = (h+k)*0x9E3779B97F4A7C15L;
+    h ^= h>>>29;  h *= 0xBF58476D1CE4E5B9L;
+    return (int)(h^(h>>>32));
+  }
+
+  // Chained hash index over the rows of a RowBuf; duplicate keys are chained
+  // in row order.
+  static final class JoinIndex {
+    final RowBuf _b;
+    final int[] _kcols;
+    final int[][] _emap;
+    final int[] _head, _next;   // Row+1 of the first row in a slot, and of the next row in the chain
+    JoinIndex( RowBuf b, int[] kcols, int[][] emap ) {
+      _b = b; _kcols = kcols; _emap = emap;
+      int cap = Integer.highestOneBit(Math.max(2,b._n)<<1);
+      _head = new int[cap];
+      _next = new int[b._n];
+      double[] row = new double[b._cols.length];
+      long[] key = new long[kcols.length];
+      for( int r=b._n-1; r>=0; r-- ) { // Backwards, so chains run in row order
+        b.row(r,row);
+        if( !key(row,kcols,emap,key) ) continue;
+        int s = hash(key)&(cap-1);
+        _next[r] = _head[s];
+        _head[s] = r+1;
+      }
+    }
+    /** First row (plus one) which might match; 0 if none */
+    int first( long[] key ) { return _head[hash(key)&(_head.length-1)]; }
+    /** Next row (plus one) in the chain */
+    int next( int r1 ) { return _next[r1-1]; }
+    /** True if row r's key equals {@code key} */
+    boolean matches( int r, long[] key, long[] tmp, double[] row ) {
+      _b.row(r,row);
+      return key(row,_kcols,_emap,tmp) && Arrays.equals(key,tmp);
+    }
+  }
+
+  static final byte STREAM=0, INDEX=1; // Source of an output column
+
+  // Probe one streamed row against the index, appending the joined rows.
+  static void probe( JoinIndex idx, double[] srow, int[] skeys, int[][] semap, boolean outer,
+                     byte[] osrc, int[] ocol, NewChunk[] ncs, long[] key, long[] tmp, double[] irow ) {
+    boolean found = false;
+    if( key(srow,skeys,semap,key) )
+      for( int r1 = idx.first(key); r1 != 0; r1 = idx.next(r1) )
+        if( idx.matches(r1-1,key,tmp,irow) ) {
+          for( int j=0; j<ncs.length; j++ ) ncs[j].addNum(osrc[j] == STREAM ? srow[ocol[j]] : irow[ocol[j]]);
+          found = true;
+        }
+    if( !found && outer )
+      for( int j=0; j<ncs.length; j++ ) ncs[j].addNum(osrc[j] == STREAM ? srow[ocol[j]] : Double.NaN);
+  }
+
+  // Collect all rows of a Frame
+  private static class CollectTask extends MRTask<CollectTask> {
+    final int _ncols;
+    RowBuf _rows;
+    CollectTask( int ncols ) { _ncols = ncols; }
+    @Override public void map( Chunk[] cs ) {
+      _rows = new RowBuf(_ncols);
+      double[] row = new double[_ncols];
+      for( int r=0; r<cs[0]._len; r++ ) {
+        for( int c=0; c<_ncols; c++ ) row[c] = cs[c].at0(r);
+        _rows.add(row);
+      }
+    }
+    @Override public void reduce( CollectTask t ) {
+      if( _rows == null ) _rows = t._rows;
+      else if( t._rows != null ) _rows.addAll(t._rows);
+    }
+  }
+
+  // Broadcast join: the index rows ride along with the task to every node
+  private static class ProbeTask extends MRTask<ProbeTask> {
+    final RowBuf _irows;
+    final int[] _ikeys, _skeys, _ocol;
+    final int[][] _iemap, _semap;
+    final byte[] _osrc;
+    final boolean _outer;
+    transient JoinIndex _idx;   // Node-local, shared by all map calls
+    ProbeTask( RowBuf irows, int[] ikeys, int[][] iemap, int[] skeys, int[][] semap, byte[] osrc, int[] ocol, boolean outer ) {
+      _irows = irows; _ikeys = ikeys; _iemap = iemap; _skeys = skeys; _semap = semap; _osrc = osrc; _ocol = ocol; _outer = outer;
+    }
+    @Override protected void setupLocal() { _idx = new JoinIndex(_irows,_ikeys,_iemap); }
+    @Override public void map( Chunk[] cs, NewChunk[] ncs ) {
+      double[] srow = new double[cs.length], irow = new double[_irows._cols.length];
+      long[] key = new long[_skeys.length], tmp = new long[_skeys.length];
+      for( int r=0; r<cs[0]._len; r++ ) {
+        for( int c=0; c<cs.length; c++ ) srow[c] = cs[c].at0(r);
+        probe(_idx,srow,_skeys,_semap,_outer,_osrc,_ocol,ncs,key,tmp,irow);
+      }
+    }
+  }
+
+  // Partition p is owned by the home of output Chunk p (vkey is any output
+  // Vec), and its buffers are homed there
+  static H2ONode owner( Key vkey, int p ) { return Vec.chunkKey(vkey,p).home_node(); }
+  static Key partKey( String tag, String side, Key vkey, int p, int cidx ) {
+    return Key.make(tag+"_"+side+"_"+p+"_"+cidx,(byte)1,Key.HIDDEN_USER_KEY,true,owner(vkey,p));
+  }
+
+  // Remove any partition buffers left behind by a failed shuffle; side s has
+  // buffers from nchunks[s] Chunks
+  static class RemovePartsTask extends MRTask<RemovePartsTask> {
+    final String _tag;
+    final Key _vkey;
+    final int _nparts;
+    final String[] _sides;
+    final int[] _nchunks;
+    RemovePartsTask( String tag, Key vkey, int nparts, String[] sides, int[] nchunks ) {
+      _tag = tag; _vkey = vkey; _nparts = nparts; _sides = sides; _nchunks = nchunks;
+    }
+    @Override protected void setupLocal() {
+      for( int p=0; p<_nparts; p++ ) {
+        if( owner(_vkey,p) != H2O.SELF ) continue;
+        for( int s=0; s<_sides.length; s++ )
+          for( int cidx=0; cidx<_nchunks[s]; cidx++ ) {
+            Key k = partKey(_tag,_sides[s],_vkey,p,cidx);
+            if( H2O.get(k) != null ) DKV.remove(k,_fs);
+          }
+      }
+    }
+  }
+
+  // Shuffle phase: scatter the rows of each Chunk into per-partition buffers
+  private static class ScatterTask extends MRTask<ScatterTask> {
+    final String _tag, _side;
+    final Key _vkey;            // An output Vec, whose Chunk homes own the partitions
+    final int[] _kcols;
+    final int[][] _emap;
+    final int _nparts;
+    final boolean _keepNA;      // Keep rows which cannot match (for a left join)
+    ScatterTask( String tag, String side, Key vkey, int[] kcols, int[][] emap, int nparts, boolean keepNA ) {
+      _tag = tag; _side = side; _vkey = vkey; _kcols = kcols; _emap = emap; _nparts = nparts; _keepNA = keepNA;
+    }
+    @Override public void map( Chunk[] cs ) {
+      RowBuf[] parts = new RowBuf[_nparts];
+      double[] row = new double[cs.length];
+      long[] key = new long[_kcols.length];
+      for( int r=0; r<cs[0]._len; r++ ) {
+        for( int c=0; c<cs.length; c++ ) row[c] = cs[c].at0(r);
+        int p;
+        if( key(row,_kcols,_emap,key) ) p = (hash(key)&0x7FFFFFFF)%_nparts;
+        else if( _keepNA ) p = 0;
+        else continue;
+        if( parts[p] == null ) parts[p] = new RowBuf(cs.length);
+        parts[p].add(row);
+      }
+      int cidx = cs[0].cidx();
+      for( int p=0; p<_nparts; p++ )
+        if( parts[p] != null ) DKV.put(partKey(_tag,_side,_vkey,p,cidx),parts[p],_fs);
+    }
+  }
+
+  // Shuffle phase: every node joins the partitions it owns
+  private static class JoinPartitionsTask extends MRTask<JoinPartitionsTask> {
+    final String _tag;
+    final Key[] _keys;
+    final String[][] _domains;
+    final int _nparts, _xchunks, _ychunks;
+    final int[] _bx, _by, _ycols;
+    final int[][] _emap;
+    final boolean _allx;
+    AppendableVec[] _avs;       // Output
+    JoinPartitionsTask( String tag, Key[] keys, String[][] domains, int nparts, int xchunks, int ychunks,
+                        int[] bx, int[] by, int[][] emap, int[] ycols, boolean allx ) {
+      _tag = tag; _keys = keys; _domains = domains; _nparts = nparts; _xchunks = xchunks; _ychunks = ychunks;
+      _bx = bx; _by = by; _emap = emap; _ycols = ycols; _allx = allx;
+    }
+    private RowBuf gather( String side, int p, int nchunks ) {
+      RowBuf b = null;
+      for( int cidx=0; cidx<nchunks; cidx++ ) {
+        Key k = partKey(_tag,side,_keys[0],p,cidx);
+        Value val = DKV.get(k);
+        if( val == null ) continue;
+        RowBuf part = val.get();
+        if( b == null ) b = part; else b.addAll(part);
+        DKV.remove(k,_fs);
+      }
+      return b;
+    }
+    @Override protected void setupLocal() {
+      _avs = new AppendableVec[_keys.length];
+      for( int i=0; i<_avs.length; i++ ) {
+        _avs[i] = new AppendableVec(_keys[i]);
+        _avs[i].setDomain(_domains[i]);
+      }
+      int nx = _domains.length-_ycols.length;
+      byte[] osrc = new byte[_domains.length];
+      int[]  ocol = new int [_domains.length];
+      for( int c=0; c<nx; c++ ) { osrc[c] = STREAM; ocol[c] = c; }
+      for( int j=0; j<_ycols.length; j++ ) { osrc[nx+j] = INDEX; ocol[nx+j] = _ycols[j]; }
+      for( int p=0; p<_nparts; p++ ) {
+        if( owner(_keys[0],p) != H2O.SELF ) continue;
+        RowBuf xb = gather("x",p,_xchunks);
+        RowBuf yb = gather("y",p,_ychunks);
+        NewChunk[] ncs = new NewChunk[_avs.length];
+        for( int i=0; i<ncs.length; i++ ) ncs[i] = new NewChunk(_avs[i],p);
+        if( xb != null && (yb != null || _allx) ) {
+          if( yb == null ) yb = new RowBuf(_by.length+_ycols.length);
+          JoinIndex idx = new JoinIndex(yb,_by,_emap);
+          double[] srow = new double[nx], irow = new double[yb._cols.length];
+          long[] key = new long[_bx.length], tmp = new long[_bx.length];
+          for( int r=0; r<xb._n; r++ ) {
+            xb.row(r,srow);
+            probe(idx,srow,_bx,new int[_bx.length][],_allx,osrc,ocol,ncs,key,tmp,irow);
+          }
+        }
+        for( NewChunk nc : ncs ) nc.close(p,_fs); // Write every partition, even if empty
+      }
+    }
+    @Override public void reduce( JoinPartitionsTask t ) {
+      if( _avs == null ) { _avs = t._avs; return; }
+      if( t._avs != null )
+        for( int i=0; i<_avs.length; i++ ) _avs[i].reduce(t._avs[i]);
+    }
+  }
+}
@@ -6,6 +6,7 @@ import water.*;
 import water.Quantiles;
 import water.fvec.*;
 import water.util.ArrayUtils;
+import water.util.Log;
 import water.util.MathUtils;
 
 import java.math.BigDecimal;
@@ -134,6 +135,9 @@ public abstract class ASTOp extends AST {
     putPrefix(new ASTQtile ());  //TODO
     putPrefix(new ASTCbind ());
     putPrefix(new ASTTable ());
+    putPrefix(new ASTGroupBy());
+    putPrefix(new ASTMerge  ());
+    putPrefix(new ASTSort   ());
 //    putPrefix(new ASTReduce());
 //    putPrefix(new ASTIfElse());
     putPrefix(new ASTApply());
@@ -1482,10 +1486,11 @@ class ASTQtile extends ASTUniPrefixOp {
   protected static boolean _names= true;  // _names = true, create a  vec of names as %1, %2, ...; _names = false -> no vec.
   protected static int     _type = 7;
   protected static double[] _probs = null;  // if probs is null, pop the _probs frame etc.
+  boolean _approx;  // One pass over a QuantileSketch, instead of exact multi-pass binning
 
   @Override String opStr() { return "quantile"; }
 
-  ASTQtile( ) { super(new String[]{"quantile","x","probs", "na.rm", "names", "type"});}
+  ASTQtile( ) { super(new String[]{"quantile","x","probs", "na.rm", "names", "type", "approx"});}
   @Override ASTQtile make() { return new ASTQtile(); }
   @Override ASTQtile parse_impl(Exec E) {
     // Get the ary
@@ -1512,8 +1517,15 @@ class ASTQtile extends ASTUniPrefixOp {
     _names = ((ASTNum)b).dbl() == 1;
     //Get the type
     _type = (int)((ASTNum)E.skipWS().parse()).dbl();
+    // Optional approx flag: present if the type was ended by a space rather than a ')'
+    boolean approx = false;
+    if( E._ast[E._x-1] == ' ' && E.hasNext() && E.peek() != ')' ) {
+      AST c = E._env.lookup((ASTId)E.skipWS().parse());
+      approx = ((ASTNum)c).dbl() == 1;
+    }
     // Finish the rest
     ASTQtile res = (ASTQtile) clone();
+    res._approx = approx;
     res._asts = seq == null ? new AST[]{ary} : new AST[]{ary, seq}; // in reverse order so they appear correctly on the stack.
     return res;
   }
@@ -1550,33 +1562,40 @@ class ASTQtile extends ASTUniPrefixOp {
     p_names.setDomain(names);
 
 
-    final int MAX_ITERATIONS = 16;
-    final int MAX_QBINS = 1000; // less uses less memory, can take more passes
-    final boolean MULTIPASS = true; // approx in 1 pass if false
-    // Type 7 matches R default
-    final int INTERPOLATION = _type; // 7 uses linear if quantile not exact on row. 2 uses mean.
-
-    // a little obtuse because reusing first pass object, if p has multiple thresholds
-    // since it's always the same (always had same valStart/End seed = vec min/max
-    // some MULTIPASS conditionals needed if we were going to make this work for approx or exact
-    final Quantiles[] qbins1 = new Quantiles.BinTask2(MAX_QBINS, xv.min(), xv.max()).doAll(xv)._qbins;
-    for( int i=0; i<p.length; i++ ) {
-      double quantile = p[i];
-      // need to pass a different threshold now for each finishUp!
-      qbins1[0].finishUp(xv, new double[]{quantile}, INTERPOLATION, MULTIPASS);
-      if( qbins1[0]._done ) {
-        res.set(i,qbins1[0]._pctile[0]);
-      } else {
-        // the 2-N map/reduces are here (with new start/ends. MULTIPASS is implied
-        Quantiles[] qbinsM = new Quantiles.BinTask2(MAX_QBINS, qbins1[0]._newValStart, qbins1[0]._newValEnd).doAll(xv)._qbins;
-        for( int iteration = 2; iteration <= MAX_ITERATIONS; iteration++ ) {
-          qbinsM[0].finishUp(xv, new double[]{quantile}, INTERPOLATION, MULTIPASS);
-          if( qbinsM[0]._done ) {
-            res.set(i,qbinsM[0]._pctile[0]);
-            break;
-          }
+    if( _approx ) {
+      QuantileSketch qs = QuantileSketch.sketch(xv,QuantileSketch.DEFAULT_K);
+      double[] q = qs.quantiles(p);
+      for( int i=0; i<p.length; i++ ) res.set(i,q[i]);
+      Log.info("Approximate quantiles of "+qs.count()+" rows, rank error within "+qs.rankError()+" (99% confidence)");
+    } else {
+      final int MAX_ITERATIONS = 16;
+      final int MAX_QBINS = 1000; // less uses less memory, can take more passes
+      final boolean MULTIPASS = true; // approx in 1 pass if false
+      // Type 7 matches R default
+      final int INTERPOLATION = _type; // 7 uses linear if quantile not exact on row. 2 uses mean.
+
+      // a little obtuse because reusing first pass object, if p has multiple thresholds
+      // since it's always the same (always had same valStart/End seed = vec min/max
+      // some MULTIPASS conditionals needed if we were going to make this work for approx or exact
+      final Quantiles[] qbins1 = new Quantiles.BinTask2(MAX_QBINS, xv.min(), xv.max()).doAll(xv)._qbins;
+      for( int i=0; i<p.length; i++ ) {
+        double quantile = p[i];
+        // need to pass a different threshold now for each finishUp!
+        qbins1[0].finishUp(xv, new double[]{quantile}, INTERPOLATION, MULTIPASS);
+        if( qbins1[0]._done ) {
+          res.set(i,qbins1[0]._pctile[0]);
+        } else {
           // the 2-N map/reduces are here (with new start/ends. MULTIPASS is implied
-          qbinsM = new Quantiles.BinTask2(MAX_QBINS, qbinsM[0]._newValStart, qbinsM[0]._newValEnd).doAll(xv)._qbins;
+          Quantiles[] qbinsM = new Quantiles.BinTask2(MAX_QBINS, qbins1[0]._newValStart, qbins1[0]._newValEnd).doAll(xv)._qbins;
+          for( int iteration = 2; iteration <= MAX_ITERATIONS; iteration++ ) {
+            qbinsM[0].finishUp(xv, new double[]{quantile}, INTERPOLATION, MULTIPASS);
+            if( qbinsM[0]._done ) {
+              res.set(i,qbinsM[0]._pctile[0]);
+              break;
+            }
+            // the 2-N map/reduces are here (with new start/ends. MULTIPASS is implied
+            qbinsM = new Quantiles.BinTask2(MAX_QBINS, qbinsM[0]._newValStart, qbinsM[0]._newValEnd).doAll(xv)._qbins;
+          }
         }
       }
     }
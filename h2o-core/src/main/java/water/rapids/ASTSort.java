@@ -0,0 +1,238 @@
+package water.rapids;
+
+import water.*;
+import water.fvec.*;
+import water.util.ArrayUtils;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Stable ascending sort of a Frame by one or more columns, NAs last.
+ *
+ *   (sort ary {cols})
+ *
+ * A distributed sample sort: an MRTask samples evenly spaced rows of every
+ * Chunk and picks splitters, each Chunk then scatters its rows into the
+ * bucket of the first splitter above it (bucket buffers are homed on the
+ * bucket's owning node, exactly as in {@link ASTMerge}'s shuffle), and every
+ * node radix-sorts the buckets it owns, writing one output Chunk per bucket.
+ * The row number breaks ties in the splitters, so runs of equal keys (e.g.
+ * an enum column) are still spread over many buckets and the sort stays
+ * stable.
+ */
+public class ASTSort extends ASTUniPrefixOp {
+  static final int SAMPLES_PER_CHUNK = 32;
+  int[] _cols;
+  public ASTSort() { super(new String[]{"sort", "ary", "cols"}); }
+  @Override String opStr(){ return "sort";}
+  @Override ASTOp make() {return new ASTSort();}
+  @Override ASTSort parse_impl(Exec E) {
+    AST ary = E.parse();
+    String[] s = E.skipWS().peek() == '{'
+            ? E.xpeek('{').parseString('}').split(";")
+            : new String[]{Double.toString(((ASTNum)E.parse()).dbl())};
+    ASTSort res = (ASTSort)clone();
+    res._cols = new int[s.length];
+    for( int i=0; i<s.length; i++ ) res._cols[i] = (int)(double)Double.valueOf(s[i]);
+    res._asts = new AST[]{ary};
+    return res;
+  }
+  @Override void apply(Env env) {
+    Frame fr = env.pop0Ary();
+    Frame res = sort(fr,_cols);
+    env.cleanup(fr);
+    env.push(new ValFrame(res));
+  }
+
+  /** Sort the rows of {@code fr} by the given columns into a new Frame. */
+  public static Frame sort( Frame fr, int[] cols ) {
+    if( cols.length == 0 ) throw new IllegalArgumentException("sort: no columns to sort by");
+    for( int c : cols )
+      if( c < 0 || c >= fr.numCols() ) throw new IllegalArgumentException("sort: column "+c+" out of range");
+    for( Vec v : fr.vecs() )
+      if( v.isString() || v.isUUID() ) throw new IllegalArgumentException("sort: string and UUID columns are not supported");
+    long[][] samples = new SampleTask(cols).doAll(fr)._samples;
+    int nparts = samples == null ? 1 : Math.max(1,Math.min(fr.anyVec().nChunks(),samples.length));
+    long[][] spl = splitters(samples,nparts);
+    String tag = Key.make().toString();
+    Key[] keys = Vec.VectorGroup.VG_LEN1.addVecs(fr.numCols());
+    int nchunks = fr.anyVec().nChunks();
+    boolean done = false;
+    try {
+      new ScatterTask(tag,keys[0],cols,spl).doAll(fr);
+      String[][] domains = fr.domains();
+      SortBucketsTask sbt = new SortBucketsTask(tag,keys,domains,cols,nparts,nchunks).doAllNodes();
+      Futures fs = new Futures();
+      Vec[] vecs = new Vec[keys.length];
+      for( int i=0; i<vecs.length; i++ ) vecs[i] = sbt._avs[i].close(fs);
+      fs.blockForPending();
+      done = true;
+      return new Frame(fr.names().clone(),vecs);
+    } finally {
+      // The sort removes the buckets it gathers; on failure, drop the rest
+      if( !done ) new ASTMerge.RemovePartsTask(tag,keys[0],nparts,new String[]{"s"},new int[]{nchunks}).doAllNodes();
+    }
+  }
+
+  // A double as a long in the same (unsigned) order, NaN above everything
+  static long enc( double d ) {
+    if( Double.isNaN(d) ) return -1L;
+    long b = Double.doubleToLongBits(d == 0 ? 0.0 : d);
+    return b < 0 ? ~b : b ^ Long.MIN_VALUE;
+  }
+  // Sort key of a row: the encoded key columns, then the row number
+  static void key( double[] row, int[] cols, long rowNum, long[] key ) {
+    for( int k=0; k<cols.length; k++ ) key[k] = enc(row[cols[k]]);
+    key[cols.length] = rowNum;
+  }
+  static int compare( long[] a, long[] b ) {
+    for( int k=0; k<a.length; k++ ) {
+      int c = Long.compare(a[k]^Long.MIN_VALUE,b[k]^Long.MIN_VALUE); // Unsigned; Java 7 has no compareUnsigned
+      if( c != 0 ) return c;
+    }
+    return 0;
+  }
+  static long[][] splitters( long[][] samples, int nparts ) {
+    if( nparts == 1 ) return new long[0][];
+    Arrays.sort(samples,new Comparator<long[]>() {
+        @Override public int compare( long[] a, long[] b ) { return ASTSort.compare(a,b); }
+      });
+    long[][] spl = new long[nparts-1][];
+    for( int i=1; i<nparts; i++ ) spl[i-1] = samples[(int)((long)i*samples.length/nparts)];
+    return spl;
+  }
+  // Bucket of a row: the number of splitters at or below its key
+  static int bucket( long[][] spl, long[] key ) {
+    int lo = 0, hi = spl.length;
+    while( lo < hi ) {
+      int mid = (lo+hi)>>>1;
+      if( compare(spl[mid],key) <= 0 ) lo = mid+1; else hi = mid;
+    }
+    return lo;
+  }
+
+  /** Stable LSD radix sort of the rows of {@code b} by the given columns;
+   *  returns the row order.  Byte positions which are the same in every row
+   *  (e.g. the high bytes of small integers) are skipped. */
+  static int[] order( ASTMerge.RowBuf b, int[] cols ) {
+    int n = b._n;
+    int[] idx = new int[n], idx2 = new int[n];
+    for( int i=0; i<n; i++ ) idx[i] = i;
+    long[] k = new long[n], k2 = new long[n];
+    int[] cnt = new int[257];
+    for( int c=cols.length-1; c>=0; c-- ) {
+      double[] col = b._cols[cols[c]];
+      for( int i=0; i<n; i++ ) k[i] = enc(col[idx[i]]);
+      for( int shift=0; shift<64; shift+=8 ) {
+        Arrays.fill(cnt,0);
+        for( int i=0; i<n; i++ ) cnt[(int)((k[i]>>>shift)&0xFF)+1]++;
+        boolean skip = false;
+        for( int d=1; d<=256; d++ ) skip |= cnt[d] == n;
+        if( skip ) continue;
+        for( int d=1; d<=256; d++ ) cnt[d] += cnt[d-1];
+        for( int i=0; i<n; i++ ) {
+          int d = cnt[(int)((k[i]>>>shift)&0xFF)]++;
+          k2[d] = k[i]; idx2[d] = idx[i];
+        }
+        long[] kt = k; k = k2; k2 = kt;
+        int[] it = idx; idx = idx2; idx2 = it;
+      }
+    }
+    return idx;
+  }
+
+  // Evenly spaced sample keys from every Chunk
+  private static class SampleTask extends MRTask<SampleTask> {
+    final int[] _cols;
+    long[][] _samples;
+    SampleTask( int[] cols ) { _cols = cols; }
+    @Override public void map( Chunk[] cs ) {
+      int len = cs[0]._len, ns = Math.min(len,SAMPLES_PER_CHUNK);
+      _samples = new long[ns][_cols.length+1];
+      double[] row = new double[cs.length];
+      for( int i=0; i<ns; i++ ) {
+        int r = (int)((long)i*len/ns);
+        for( int k : _cols ) row[k] = cs[k].at0(r);
+        key(row,_cols,cs[0].start()+r,_samples[i]);
+      }
+    }
+    @Override public void reduce( SampleTask t ) {
+      if( _samples == null ) _samples = t._samples;
+      else if( t._samples != null ) _samples = ArrayUtils.append(_samples,t._samples);
+    }
+  }
+
+  // Scatter the rows of each Chunk into per-bucket buffers
+  private static class ScatterTask extends MRTask<ScatterTask> {
+    final String _tag;
+    final Key _vkey;            // An output Vec, whose Chunk homes own the buckets
+    final int[] _cols;
+    final long[][] _spl;
+    ScatterTask( String tag, Key vkey, int[] cols, long[][] spl ) { _tag = tag; _vkey = vkey; _cols = cols; _spl = spl; }
+    @Override public void map( Chunk[] cs ) {
+      ASTMerge.RowBuf[] bufs = new ASTMerge.RowBuf[_spl.length+1];
+      double[] row = new double[cs.length];
+      long[] key = new long[_cols.length+1];
+      long start = cs[0].start();
+      for( int r=0; r<cs[0]._len; r++ ) {
+        for( int c=0; c<cs.length; c++ ) row[c] = cs[c].at0(r);
+        key(row,_cols,start+r,key);
+        int p = bucket(_spl,key);
+        if( bufs[p] == null ) bufs[p] = new ASTMerge.RowBuf(cs.length);
+        bufs[p].add(row);
+      }
+      int cidx = cs[0].cidx();
+      for( int p=0; p<bufs.length; p++ )
+        if( bufs[p] != null ) DKV.put(ASTMerge.partKey(_tag,"s",_vkey,p,cidx),bufs[p],_fs);
+    }
+  }
+
+  // Every node sorts the buckets it owns into output Chunks
+  private static class SortBucketsTask extends MRTask<SortBucketsTask> {
+    final String _tag;
+    final Key[] _keys;
+    final String[][] _domains;
+    final int[] _cols;
+    final int _nparts, _nchunks;
+    AppendableVec[] _avs;       // Output
+    SortBucketsTask( String tag, Key[] keys, String[][] domains, int[] cols, int nparts, int nchunks ) {
+      _tag = tag; _keys = keys; _domains = domains; _cols = cols; _nparts = nparts; _nchunks = nchunks;
+    }
+    @Override protected void setupLocal() {
+      _avs = new AppendableVec[_keys.length];
+      for( int i=0; i<_avs.length; i++ ) {
+        _avs[i] = new AppendableVec(_keys[i]);
+        _avs[i].setDomain(_domains[i]);
+      }
+      for( int p=0; p<_nparts; p++ ) {
+        if( ASTMerge.owner(_keys[0],p) != H2O.SELF ) continue;
+        // Gather in Chunk order, so equal keys keep their row order
+        ASTMerge.RowBuf b = null;
+        for( int cidx=0; cidx<_nchunks; cidx++ ) {
+          Key k = ASTMerge.partKey(_tag,"s",_keys[0],p,cidx);
+          Value val = DKV.get(k);
+          if( val == null ) continue;
+          ASTMerge.RowBuf part = val.get();
+          if( b == null ) b = part; else b.addAll(part);
+          DKV.remove(k,_fs);
+        }
+        NewChunk[] ncs = new NewChunk[_avs.length];
+        for( int i=0; i<ncs.length; i++ ) ncs[i] = new NewChunk(_avs[i],p);
+        if( b != null ) {
+          int[] idx = order(b,_cols);
+          for( int i=0; i<ncs.length; i++ ) {
+            double[] col = b._cols[i];
+            for( int r : idx ) ncs[i].addNum(col[r]);
+          }
+        }
+        for( NewChunk nc : ncs ) nc.close(p,_fs); // Write every bucket, even if empty
+      }
+    }
+    @Override public void reduce( SortBucketsTask t ) {
+      if( _avs == null ) { _avs = t._avs; return; }
+      if( t._avs != null )
+        for( int i=0; i<_avs.length; i++ ) _avs[i].reduce(t._avs[i]);
+    }
+  }
+}
@@ -94,6 +94,7 @@ public abstract class DocGen<T extends DocGen> {
     public HTML putAA8  (String name, long   [][] lss) { return lss==null?f(name,"null"):f0(name).array(lss).f1(); }
     public HTML putAA4f (String name, float  [][] fss) { return fss==null?f(name,"null"):f0(name).array(fss).f1(); }
     public HTML putAA8d (String name, double [][] dss) { return dss==null?f(name,"null"):f0(name).array(dss).f1(); }
+    public HTML putAA1  (String name, byte   [][] bss) { throw H2O.unimpl(); }
     public HTML putAA   (String name, Freezable[][]fss){ throw H2O.unimpl(); }
 
     public HTML putAAA8 (String name, long   [][][]lsss) { throw H2O.unimpl(); }
@@ -0,0 +1,91 @@
+package water.util;
+
+/** Helpers for generating Java source code (POJOs) from models.
+ *
+ *  <p>Generated code has to compile within the JVM's class file limits:
+ *  64K of bytecode per method and 64K constants per class.  It should also
+ *  stay under HotSpot's 8000-byte huge-method limit, above which methods are
+ *  never JIT-compiled.  Large constants are split across methods and classes
+ *  accordingly.
+ */
+public class JCodeGen {
+  // Strings stored per generated method (about 8 bytecodes each), and per
+  // generated class (2 constant pool entries each)
+  static final int STRINGS_PER_METHOD = 500;
+  static final int STRINGS_PER_CLASS  = 10000;
+
+  /** A valid Java identifier made from s */
+  public static String toJavaId( String s ) {
+    StringBuilder sb = new StringBuilder(s.length()+1);
+    for( char c : s.toCharArray() ) sb.append(Character.isJavaIdentifierPart(c) ? c : '_');
+    if( sb.length() == 0 || !Character.isJavaIdentifierStart(sb.charAt(0)) ) sb.insert(0,'_');
+    return sb.toString();
+  }
+
+  /** A comment-safe copy of s, for the end of a // or inside a block comment */
+  public static String toJavaComment( String s ) {
+    return s.replace("*/","* /").replace('\n',' ').replace('\r',' ');
+  }
+
+  public static SB toStaticVar( SB sb, String name, int value, String comment ) {
+    if( comment != null ) sb.i().p("// ").p(comment).nl();
+    return sb.i().p("public static final int ").p(name).p(" = ").p(value).p(';').nl();
+  }
+
+  /** Top-level class named className holding values as {@code
+   *  className.VALUES}.  The array is filled by methods of at most
+   *  STRINGS_PER_METHOD strings, in classes of at most STRINGS_PER_CLASS. */
+  public static SB toClass( SB sb, String className, String[] values ) {
+    int nparts = Math.max(1, (values.length+STRINGS_PER_CLASS-1)/STRINGS_PER_CLASS);
+    sb.nl().p("class ").p(className).p(" {").nl().ii(1);
+    sb.i().p("static final String[] VALUES = new String[").p(values.length).p("];").nl();
+    sb.i().p("static {").nl();
+    sb.i(1).p("fill(VALUES);").nl();
+    for( int p=1; p<nparts; p++ ) sb.i(1).p(className).p('_').p(p).p(".fill(VALUES);").nl();
+    sb.i().p("}").nl();
+    fill(sb, values, 0, Math.min(values.length,STRINGS_PER_CLASS));
+    sb.di(1).p("}").nl();
+    for( int p=1; p<nparts; p++ ) {
+      sb.nl().p("class ").p(className).p('_').p(p).p(" {").nl().ii(1);
+      fill(sb, values, p*STRINGS_PER_CLASS, Math.min(values.length,(p+1)*STRINGS_PER_CLASS));
+      sb.di(1).p("}").nl();
+    }
+    return sb;
+  }
+
+  // static void fill(String[] a), storing values lo (inclusive) to hi
+  private static void fill( SB sb, String[] values, int lo, int hi ) {
+    sb.i().p("static void fill(String[] a) {").nl();
+    for( int m=0; lo+m*STRINGS_PER_METHOD < hi; m++ ) sb.i(1).p("fill").p(m).p("(a);").nl();
+    sb.i().p("}").nl();
+    for( int m=0; lo+m*STRINGS_PER_METHOD < hi; m++ ) {
+      sb.i().p("private static void fill").p(m).p("(String[] a) {").nl();
+      for( int i=lo+m*STRINGS_PER_METHOD; i<Math.min(hi,lo+(m+1)*STRINGS_PER_METHOD); i++ )
+        sb.i(1).p("a[").p(i).p("] = ").ps(values[i]).p(';').nl();
+      sb.i().p("}").nl();
+    }
+  }
+
+  /** Emit {@code static int getPrediction(float[] preds, double[] data)},
+   *  the same label choice, including tie-breaking, as
+   *  {@link ModelUtils#getPrediction(float[], double[])}. */
+  public static SB toGetPrediction( SB sb ) {
+    sb.i().p("// The predicted label: the most probable class, ties broken by a hash of the row").nl();
+    sb.i().p("static int getPrediction( float[] preds, double[] data ) {").nl().ii(1);
+    sb.i().p("int best=1, tieCnt=0;").nl();
+    sb.i().p("for( int c=2; c<preds.length; c++) {").nl();
+    sb.i(1).p("if( preds[best] < preds[c] ) { best = c; tieCnt=0; }").nl();
+    sb.i(1).p("else if( preds[best] == preds[c] ) tieCnt++;").nl();
+    sb.i().p("}").nl();
+    sb.i().p("if( tieCnt==0 ) return best-1;").nl();
+    sb.i().p("float res = preds[best];").nl();
+    sb.i().p("long hash = 0;").nl();
+    sb.i().p("for( double d : data ) hash ^= Double.doubleToRawLongBits(d) >> 6;").nl();
+    sb.i().p("int idx = (int)hash%(tieCnt+1);").nl();
+    sb.i().p("for( best=1; best<preds.length; best++)").nl();
+    sb.i(1).p("if( res == preds[best] && --idx < 0 ) return best-1;").nl();
+    sb.i().p("throw new IllegalStateException();").nl();
+    sb.di(1).i().p("}").nl();
+    return sb;
+  }
+}
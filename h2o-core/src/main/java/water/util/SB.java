@@ -89,10 +89,10 @@ public final class SB {
   @Override public String toString() { return _sb.toString(); }
 
   /** Java-string illegal characters which need to be escaped */
-  public static final Pattern[] ILLEGAL_CHARACTERS = new Pattern[] { Pattern.compile("\\",Pattern.LITERAL), Pattern.compile("\"",Pattern.LITERAL) };
-  public static final String[]  REPLACEMENTS       = new String [] { "\\\\\\\\", "\\\\\"" };
+  public static final Pattern[] ILLEGAL_CHARACTERS = new Pattern[] { Pattern.compile("\\",Pattern.LITERAL), Pattern.compile("\"",Pattern.LITERAL), Pattern.compile("\n",Pattern.LITERAL), Pattern.compile("\r",Pattern.LITERAL) };
+  public static final String[]  REPLACEMENTS       = new String [] { "\\\\\\\\", "\\\\\"", "\\\\n", "\\\\r" };
 
-  /** Escape all " and \ characters to provide a proper Java-like string
+  /** Escape all ", \ and line-break characters to provide a proper Java-like string
    * Does not escape unicode characters.
    */
   public static String escapeJava(String s) {
@@ -1,5 +1,7 @@
 package water.util;
 
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import sun.misc.Unsafe;
 import water.nbhm.UtilUnsafe;
 
@@ -17,4 +19,34 @@ public class UnsafeUtils {
   public static int set4f(byte[] buf, int off, float f ) {_unsafe.putFloat (buf, _Bbase+off, f); return 4;}
   public static int set8 (byte[] buf, int off, long x  ) {_unsafe.putLong  (buf, _Bbase+off, x); return 8;}
   public static int set8d(byte[] buf, int off, double x) {_unsafe.putDouble(buf, _Bbase+off, x); return 8;}
+
+  // Base-object plus offset flavors.  With a byte[] base and an offset
+  // starting at BYTE_BASE these read the array; with a null base the offset is
+  // an absolute address, e.g. of a direct or memory-mapped ByteBuffer.
+  /** Offset of element zero in a byte[] */
+  public static final long BYTE_BASE = _Bbase;
+  public static int    get1 ( Object base, long off ) { return _unsafe.getByte  (base, off); }
+  public static int    get2 ( Object base, long off ) { return _unsafe.getShort (base, off); }
+  public static int    get4 ( Object base, long off ) { return _unsafe.getInt   (base, off); }
+  public static long   get8 ( Object base, long off ) { return _unsafe.getLong  (base, off); }
+  public static float  get4f( Object base, long off ) { return _unsafe.getFloat (base, off); }
+  public static double get8d( Object base, long off ) { return _unsafe.getDouble(base, off); }
+
+  public static int set1 (Object base, long off, byte x  ) {_unsafe.putByte  (base, off, x); return 1;}
+  public static int set2 (Object base, long off, short x ) {_unsafe.putShort (base, off, x); return 2;}
+  public static int set4 (Object base, long off, int x   ) {_unsafe.putInt   (base, off, x); return 4;}
+  public static int set4f(Object base, long off, float f ) {_unsafe.putFloat (base, off, f); return 4;}
+  public static int set8 (Object base, long off, long x  ) {_unsafe.putLong  (base, off, x); return 8;}
+  public static int set8d(Object base, long off, double x) {_unsafe.putDouble(base, off, x); return 8;}
+
+  private static final long _Baddr;
+  static {
+    try { _Baddr = _unsafe.objectFieldOffset(Buffer.class.getDeclaredField("address")); }
+    catch( NoSuchFieldException nsfe ) { throw new RuntimeException(nsfe); }
+  }
+  /** Absolute address of element zero of a direct (or memory-mapped) ByteBuffer */
+  public static long address( ByteBuffer buf ) {
+    assert buf.isDirect();
+    return _unsafe.getLong(buf, _Baddr);
+  }
 }
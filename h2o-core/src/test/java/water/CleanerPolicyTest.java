@@ -0,0 +1,27 @@
+package water;
+
+import org.junit.*;
+
+public class CleanerPolicyTest extends TestUtil {
+
+  @Test public void testPolicyNames() {
+    Assert.assertSame(Cleaner.LRU , Cleaner.policy(null));
+    Assert.assertSame(Cleaner.LRU , Cleaner.policy("LRU"));
+    Assert.assertSame(Cleaner.COST, Cleaner.policy("cost"));
+    try { Cleaner.policy("mru"); Assert.fail(); } catch( IllegalArgumentException ignore ) { }
+  }
+
+  @Test public void testCostOrdering() {
+    Value cold = new Value(Key.make(), new byte[100]);
+    Value hot  = new Value(Key.make(), new byte[100]);
+    hot._lastAccessedTime = cold._lastAccessedTime;
+    hot._accessCount = 64;
+    // LRU sees only the access time
+    Assert.assertEquals(Cleaner.LRU.age(cold), Cleaner.LRU.age(hot));
+    Assert.assertEquals(cold._lastAccessedTime, Cleaner.LRU.age(cold));
+    // Unwritten Values cost an ice write to free, so look younger
+    Assert.assertTrue(Cleaner.COST.age(cold) > Cleaner.LRU.age(cold));
+    // Frequently used Values look younger still
+    Assert.assertTrue(Cleaner.COST.age(hot) > Cleaner.COST.age(cold));
+  }
+}
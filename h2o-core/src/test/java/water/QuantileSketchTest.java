@@ -0,0 +1,100 @@
+package water;
+
+import org.junit.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import water.fvec.Frame;
+import water.fvec.Vec;
+import water.rapids.Env;
+import water.rapids.Exec;
+
+public class QuantileSketchTest extends TestUtil {
+  @BeforeClass public static void setup() { stall_till_cloudsize(1); }
+
+  // R's type 7 quantile of sorted data
+  private static double type7( double[] sorted, double p ) {
+    double h = (sorted.length-1)*p;
+    int lo = (int)Math.floor(h), hi = (int)Math.ceil(h);
+    return sorted[lo] + (h-lo)*(sorted[hi]-sorted[lo]);
+  }
+
+  @Test public void testExactWhenSmall() {
+    QuantileSketch qs = new QuantileSketch(64, 0);
+    double[] d = new double[50];
+    Random rng = new Random(1);
+    for( int i=0; i<d.length; i++ ) qs.add(d[i] = rng.nextGaussian());
+    qs.add(Double.NaN);
+    Arrays.sort(d);
+    Assert.assertTrue(qs.isExact());
+    Assert.assertEquals(50, qs.count());
+    for( double p : new double[]{0, 0.01, 0.25, 0.5, 0.9, 1} )
+      Assert.assertEquals(type7(d, p), qs.quantile(p), 1e-12);
+    Assert.assertTrue(Double.isNaN(new QuantileSketch().quantile(0.5)));
+  }
+
+  @Test public void testRankErrorBound() {
+    // Merge many small sketches, as a map/reduce would, and check the ranks
+    int n = 1000000;
+    double[] d = new double[n];
+    Random rng = new Random(2);
+    QuantileSketch qs = null;
+    for( int c=0; c<100; c++ ) {
+      QuantileSketch part = new QuantileSketch(256, c);
+      for( int i=c*(n/100); i<(c+1)*(n/100); i++ ) part.add(d[i] = Math.exp(rng.nextGaussian()));
+      qs = qs == null ? part : qs.merge(part);
+    }
+    Arrays.sort(d);
+    Assert.assertEquals(n, qs.count());
+    Assert.assertFalse(qs.isExact());
+    double err = qs.rankError();
+    Assert.assertTrue("bound "+err, err > 0 && err < 0.05);
+    for( double p : Vec.PERCENTILES ) {
+      double q = qs.quantile(p);
+      double rank = (double)Math.abs(Arrays.binarySearch(d, q))/n;
+      Assert.assertEquals("p="+p, p, rank, err);
+    }
+  }
+
+  @Test public void testRapidsApprox() {
+    Frame fr = null, res = null;
+    try {
+      double[] d = new double[150];
+      double[][] rows = new double[d.length][];
+      Random rng = new Random(3);
+      for( int i=0; i<d.length; i++ ) rows[i] = ard(d[i] = rng.nextGaussian());
+      fr = frame(Key.make("q.hex"), ar("x"), rows);
+      Env env = Exec.exec("(quantile $q.hex {0.25;0.5;0.75} $FALSE $TRUE #7 $TRUE)");
+      res = env.pop0Ary();
+      // 150 rows fit in the sketch, so the approximate mode is exact here
+      Arrays.sort(d);
+      Assert.assertEquals(type7(d, 0.25), res.vecs()[1].at(0), 1e-12);
+      Assert.assertEquals(type7(d, 0.5 ), res.vecs()[1].at(1), 1e-12);
+      Assert.assertEquals(type7(d, 0.75), res.vecs()[1].at(2), 1e-12);
+    } finally {
+      if( fr  != null ) fr .delete();
+      if( res != null ) res.delete();
+    }
+  }
+
+  @Test public void testRollupPctiles() {
+    boolean old = H2O.ARGS.sketch_pctiles;
+    Vec v = null;
+    try {
+      H2O.ARGS.sketch_pctiles = true;
+      double[] d = new double[10000];
+      for( int i=0; i<d.length; i++ ) d[i] = i;
+      v = Vec.makeVec(d, Vec.newKey());
+      // Values are their own ranks, so the error bound applies directly
+      double[] pct = v.pctiles();
+      double err = v.pctilesRankError();
+      Assert.assertTrue("bound "+err, err > 0 && err < 0.05);
+      for( int i=0; i<Vec.PERCENTILES.length; i++ )
+        Assert.assertEquals(type7(d, Vec.PERCENTILES[i]), pct[i], err*d.length);
+    } finally {
+      H2O.ARGS.sketch_pctiles = old;
+      if( v != null ) v.remove();
+    }
+  }
+}
@@ -196,6 +196,55 @@ public class TestUtil extends Iced {
   public static Frame frame(double[]... rows) { return frame(null,rows); }
   public static Frame frame(String[] names, double[]... rows) { return frame(Key.make(),names,rows); }
 
+  /** Create a new frame from column data, split into Chunks of at most
+   *  chkLen rows, and put it into the DKV.
+   *  @param name    name of the frame's Key
+   *  @param names   names of frame columns
+   *  @param domains domain of each column, or null for a numeric column
+   *  @param chkLen  rows per Chunk
+   *  @param cols    data given in the form of columns
+   *  @return new frame of the given columns */
+  public static Frame chunked( String name, String[] names, String[][] domains, int chkLen, double[]... cols ) {
+    Futures fs = new Futures();
+    Vec[] vecs = new Vec[cols.length];
+    Key keys[] = Vec.VectorGroup.VG_LEN1.addVecs(vecs.length);
+    for( int c=0; c<vecs.length; c++ ) {
+      AppendableVec av = new AppendableVec(keys[c]);
+      av.setDomain(domains[c]);
+      for( int cidx=0; cidx*chkLen < cols[c].length; cidx++ ) {
+        NewChunk nc = new NewChunk(av, cidx);
+        for( int r=cidx*chkLen; r<Math.min(cols[c].length,(cidx+1)*chkLen); r++ ) nc.addNum(cols[c][r]);
+        nc.close(cidx, fs);
+      }
+      vecs[c] = av.close(fs);
+    }
+    fs.blockForPending();
+    Frame fr = new Frame(Key.make(name), names, vecs);
+    DKV.put(fr);
+    return fr;
+  }
+
+  /** Create a new ByteVec holding raw bytes, as an uploaded file would, and
+   *  put it into the DKV.
+   *  @param bs        the bytes
+   *  @param chunkSize bytes per Chunk
+   *  @return Key of the new ByteVec */
+  public static Key byteVec( byte bs[], int chunkSize ) {
+    Futures fs = new Futures();
+    int nchunks = (bs.length+chunkSize-1)/chunkSize;
+    long espc[] = new long[nchunks+1];
+    for( int i=0; i<nchunks; i++ ) espc[i+1] = Math.min(bs.length, espc[i]+chunkSize);
+    Key k = Vec.newKey();
+    ByteVec bv = new ByteVec(k, espc);
+    DKV.put(k, bv, fs);
+    for( int i=0; i<nchunks; i++ ) {
+      Key ck = bv.chunkKey(i);
+      DKV.put(ck, new Value(ck, new C1NChunk(Arrays.copyOfRange(bs, (int)espc[i], (int)espc[i+1]))), fs);
+    }
+    fs.blockForPending();
+    return k;
+  }
+
   // Shortcuts for initializing constant arrays
   public static String[]   ar (String ...a)   { return a; }
   public static long  []   ar (long   ...a)   { return a; }
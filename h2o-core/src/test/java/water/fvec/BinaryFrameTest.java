@@ -0,0 +1,101 @@
+package water.fvec;
+
+import org.junit.*;
+import water.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class BinaryFrameTest extends TestUtil {
+  @BeforeClass public static void stall() { stall_till_cloudsize(1); }
+
+  private static void delete( File dir ) {
+    File fs[] = dir.listFiles();
+    if( fs != null ) for( File f : fs ) f.delete();
+    dir.delete();
+  }
+
+  // Loaded chunks are the saved chunks, byte for byte, with the rollups.
+  // Chunks of wrapped Vecs are saved as the values they present.
+  private static void checkLoaded( Frame fr, Frame fr2 ) {
+    assertArrayEquals(fr.names(), fr2.names());
+    assertEquals(fr.numRows(), fr2.numRows());
+    assertTrue(isBitIdentical(fr, fr2));
+    Vec vecs[] = fr.vecs(), vecs2[] = fr2.vecs();
+    for( int c=0; c<vecs.length; c++ ) {
+      assertNotNull(DKV.get(vecs2[c].rollupStatsKey())); // Not recomputed
+      assertArrayEquals(vecs[c].domain(), vecs2[c].domain());
+      assertEquals(vecs[c].isEnum(), vecs2[c].isEnum());
+      assertEquals(vecs[c].nChunks(), vecs2[c].nChunks());
+      assertEquals(vecs[c].mean(), vecs2[c].mean(), 0);
+      assertEquals(vecs[c].naCnt(), vecs2[c].naCnt());
+      assertEquals(vecs[c].checksum(), vecs2[c].checksum());
+      if( vecs[c] instanceof WrappedVec ) continue; // Saved as plain chunks
+      for( int i=0; i<vecs[c].nChunks(); i++ ) {
+        Chunk ck = vecs[c].chunkForChunkIdx(i), ck2 = vecs2[c].chunkForChunkIdx(i);
+        assertEquals(ck.getClass(), ck2.getClass());
+        assertArrayEquals(ck.getBytes(), ck2.getBytes());
+        assertEquals(ck._start, ck2._start);
+      }
+    }
+  }
+
+  @Test public void testSaveLoad() throws IOException {
+    Frame fr = null, fr2 = null;
+    File dir = Files.createTempDirectory("frame").toFile();
+    try {
+      fr = parse_test_file("smalldata/logreg/prostate.csv");
+      fr.add("e", fr.vec("RACE").toEnum());
+      BinaryFrame.save(fr, dir.getPath());
+      assertTrue(new File(dir, "frame.bin").exists());
+      assertTrue(new File(dir, "chunk-00000.bin").exists());
+      fr2 = BinaryFrame.load(Key.make("prostate2"), dir.getPath());
+      assertEquals(fr2, DKV.get(fr2._key).get());
+      checkLoaded(fr, fr2);
+    } finally {
+      if( fr != null ) fr.delete();
+      if( fr2 != null ) fr2.delete();
+      delete(dir);
+    }
+  }
+
+  // Many chunks, loaded in parallel
+  @Test public void testManyChunks() throws IOException {
+    Frame fr = null, rebalanced = null, fr2 = null;
+    File dir = Files.createTempDirectory("frame").toFile();
+    try {
+      fr = parse_test_file("smalldata/iris/iris_wheader.csv");
+      Key k = Key.make("iris_rebalanced");
+      RebalanceDataSet rb = new RebalanceDataSet(fr, k, 23);
+      H2O.submitTask(rb);
+      rb.join();
+      rebalanced = DKV.get(k).get();
+      BinaryFrame.save(rebalanced, dir.getPath()+"/");
+      assertEquals(24, dir.listFiles().length);
+      fr2 = BinaryFrame.load(Key.make("iris2"), dir.getPath());
+      assertEquals(23, fr2.anyVec().nChunks());
+      checkLoaded(rebalanced, fr2);
+    } finally {
+      if( fr != null ) fr.delete();
+      if( rebalanced != null ) rebalanced.delete();
+      if( fr2 != null ) fr2.delete();
+      delete(dir);
+    }
+  }
+
+  @Test public void testNotAFrame() throws IOException {
+    File dir = Files.createTempDirectory("frame").toFile();
+    try {
+      Files.write(new File(dir, "frame.bin").toPath(), new byte[]{1,2,3,4,5,6,7,8});
+      try {
+        BinaryFrame.load(Key.make(), dir.getPath());
+        fail();
+      } catch( IllegalArgumentException expected ) { }
+    } finally {
+      delete(dir);
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package water.fvec;
+
+import org.junit.*;
+import water.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CSVExportTest extends TestUtil {
+  @BeforeClass public static void stall() { stall_till_cloudsize(1); }
+
+  private static String read( InputStream is ) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    byte b[] = new byte[1000];   // Smaller than a chunk's text
+    for( int n; (n = is.read(b)) != -1; ) bos.write(b, 0, n);
+    assertEquals(-1, is.read());
+    assertEquals(0, is.available());
+    return new String(bos.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  // Each line is the matching row: numbers read back exactly, levels quoted
+  private static void checkRows( Frame fr, String csv, boolean headers ) {
+    String lines[] = csv.split("\n", -1);
+    assertEquals("", lines[lines.length-1]);
+    int off = headers ? 1 : 0;
+    assertEquals(fr.numRows()+off+1, lines.length);
+    if( headers ) assertEquals("\""+fr._names[0]+"\"", lines[0].split(",")[0]);
+    Vec vecs[] = fr.vecs();
+    for( int r=0; r<fr.numRows(); r++ ) {
+      String fields[] = lines[r+off].split(",", -1);
+      assertEquals(vecs.length, fields.length);
+      for( int c=0; c<vecs.length; c++ ) {
+        if( vecs[c].isNA(r) ) assertEquals("", fields[c]);
+        else if( vecs[c].isEnum() ) assertEquals("\""+vecs[c].factor(vecs[c].at8(r)).replace("\"","\"\"")+"\"", fields[c]);
+        else if( vecs[c].isInt() ) assertEquals(Long.toString(vecs[c].at8(r)), fields[c]);
+        else assertEquals(Double.doubleToLongBits(vecs[c].at(r)), Double.doubleToLongBits(Double.parseDouble(fields[c])));
+      }
+    }
+  }
+
+  @Test public void testStream() throws IOException {
+    Frame fr = null;
+    try {
+      fr = frame(ar("x","y"), ard(1.5, 3), ard(Double.NaN, -7), ard(-0.0, 0), ard(1e300, Double.NaN), ard(-0.001, 12));
+      fr.add("e", vec(ar("a\"b","c;d"), 0, 1, 1, 0, 0));
+      String csv = read(fr.toCSV(true, false));
+      checkRows(fr, csv, true);
+      assertTrue(csv.startsWith("\"x\",\"y\",\"e\"\n1.5,3,\"a\"\"b\"\n,-7,\"c;d\"\n-0.0,0,"));
+      assertTrue(read(fr.toCSV(false, true)).startsWith("0x1.8p0,3,"));
+    } finally {
+      if( fr != null ) fr.delete();
+    }
+  }
+
+  // Many chunks, so many formatting windows, read back in order
+  @Test public void testChunkOrder() throws IOException {
+    Frame fr = null, rebalanced = null;
+    try {
+      fr = parse_test_file("smalldata/iris/iris_wheader.csv");
+      Key k = Key.make("iris_rebalanced");
+      RebalanceDataSet rb = new RebalanceDataSet(fr, k, 37);
+      H2O.submitTask(rb);
+      rb.join();
+      rebalanced = DKV.get(k).get();
+      assertEquals(37, rebalanced.anyVec().nChunks());
+      String csv = read(rebalanced.toCSV(false, false));
+      checkRows(rebalanced, csv, false);
+      assertEquals(read(fr.toCSV(false, false)), csv);
+    } finally {
+      if( fr != null ) fr.delete();
+      if( rebalanced != null ) rebalanced.delete();
+    }
+  }
+
+  @Test public void testExportParts() throws IOException {
+    Frame fr = null;
+    File dir = Files.createTempDirectory("csv").toFile();
+    try {
+      fr = parse_test_file("smalldata/logreg/prostate.csv");
+      String paths[] = CSVExport.exportParts(fr, dir.getPath(), true, false);
+      assertEquals(1, paths.length);  // One node
+      File part = new File(paths[0]);
+      assertEquals(new File(dir, "part-00000.csv"), part);
+      String csv = new String(Files.readAllBytes(part.toPath()), StandardCharsets.UTF_8);
+      assertEquals(read(fr.toCSV(true, false)), csv);
+      checkRows(fr, csv, true);
+    } finally {
+      if( fr != null ) fr.delete();
+      File fs[] = dir.listFiles();
+      if( fs != null ) for( File f : fs ) f.delete();
+      dir.delete();
+    }
+  }
+
+  // Doubles are written in the shortest decimal reading back exactly
+  @Test public void testPutDouble() {
+    Random rng = new Random(0xCAFE);
+    for( int i=0; i<100000; i++ ) {
+      double d;
+      switch( i%4 ) {
+      case 0:  d = rng.nextInt(100000)/100.0; break;                    // Like most data
+      case 1:  d = rng.nextInt(10000000)/Math.pow(10,rng.nextInt(10)); break;
+      case 2:  d = (rng.nextDouble()-0.5)*Math.pow(10,rng.nextInt(20)-10); break;
+      default: d = Double.longBitsToDouble(rng.nextLong()); break;
+      }
+      String s = new String(new CSVExport.Buf(4).putDouble(d).toArray(), StandardCharsets.UTF_8);
+      if( Double.isNaN(d) ) assertEquals("NaN", s);
+      else assertEquals(s, Double.doubleToLongBits(d), Double.doubleToLongBits(Double.parseDouble(s)));
+      if( i%4 < 2 ) assertEquals(Double.toString(d), s);
+    }
+    assertEquals("-12.25", new String(new CSVExport.Buf(4).putDouble(-12.25).toArray(), StandardCharsets.UTF_8));
+    assertEquals("0.001", new String(new CSVExport.Buf(4).putDouble(0.001).toArray(), StandardCharsets.UTF_8));
+    assertEquals("-9223372036854775808", new String(new CSVExport.Buf(4).putLong(Long.MIN_VALUE).toArray(), StandardCharsets.UTF_8));
+  }
+}
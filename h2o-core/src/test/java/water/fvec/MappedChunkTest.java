@@ -0,0 +1,66 @@
+package water.fvec;
+
+import org.junit.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import water.TestUtil;
+
+public class MappedChunkTest extends TestUtil {
+
+  // Write the Chunk payload to a file, and map it back the way PersistFS does
+  private static Chunk map( Chunk cc ) throws IOException {
+    File f = File.createTempFile("mapped", ".chk");
+    f.deleteOnExit();
+    try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+      raf.write(cc.getBytes());
+      ByteBuffer bb = raf.getChannel().map(FileChannel.MapMode.PRIVATE, 0, cc.getBytes().length).order(ByteOrder.nativeOrder());
+      return ((Chunk)cc.clone()).readMapped(bb);
+    }
+  }
+
+  private static void check( double[] vals, Class<? extends Chunk> clz ) throws IOException {
+    NewChunk nc = new NewChunk(null, 0);
+    for( double v : vals ) nc.addNum(v);
+    nc.addNA();
+    Chunk cc = nc.compress();
+    Assert.assertTrue(clz.isInstance(cc));
+    Assert.assertTrue(cc.isMappable());
+
+    Chunk mc = map(cc);
+    Assert.assertNull(mc._mem);
+    Assert.assertEquals(cc._len, mc._len);
+    for( int i = 0; i < vals.length; ++i ) Assert.assertEquals(vals[i], mc.at0(i), Math.ulp(vals[i]));
+    Assert.assertTrue(mc.isNA0(vals.length));
+    Assert.assertTrue(Arrays.equals(cc.getBytes(), mc.getBytes()));
+
+    // Inflate from the mapping
+    NewChunk nc2 = mc.inflate_impl(new NewChunk(null, 0));
+    nc2.values(0, nc2._len);
+    for( int i = 0; i < vals.length; ++i ) Assert.assertEquals(vals[i], nc2.at0(i), Math.ulp(vals[i]));
+    Assert.assertTrue(nc2.isNA0(vals.length));
+
+    // In-place writes go to the private mapping
+    Assert.assertTrue(mc.set_impl(0, 0L) || mc.set_impl(0, 0.0));
+    Assert.assertEquals(0, mc.at0(0), 0);
+    Assert.assertEquals(vals[0], cc.at0(0), Math.ulp(vals[0]));
+  }
+
+  @Test public void testC1()  throws IOException { check(new double[]{1, 0, 3, 254, 17}, C1Chunk.class); }
+  @Test public void testC2()  throws IOException { check(new double[]{-32767, 0, 32767, 5}, C2Chunk.class); }
+  @Test public void testC4()  throws IOException { check(new double[]{-2147483647, 0, 2147483647, 5}, C4Chunk.class); }
+  @Test public void testC8D() throws IOException { check(new double[]{Math.PI, -3.1415926e-118, 0, 23423423.234234234, Double.MAX_VALUE}, C8DChunk.class); }
+
+  @Test public void testNotMappable() {
+    NewChunk nc = new NewChunk(null, 0);
+    for( int i = 0; i < 100; i++ ) nc.addNum(1000+i%7, 0);
+    Chunk cc = nc.compress();
+    Assert.assertFalse(cc instanceof C1Chunk);
+    Assert.assertFalse(cc.isMappable());
+  }
+}
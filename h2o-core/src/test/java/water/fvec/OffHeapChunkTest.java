@@ -0,0 +1,66 @@
+package water.fvec;
+
+import org.junit.*;
+
+import java.util.Arrays;
+import water.MemoryManager;
+import water.TestUtil;
+
+public class OffHeapChunkTest extends TestUtil {
+
+  private static void check( double[] vals, Class<? extends Chunk> clz ) {
+    NewChunk nc = new NewChunk(null, 0);
+    for( double v : vals ) nc.addNum(v);
+    check(nc, vals, clz);
+  }
+
+  // Decimal values, as mantissa and exponent
+  private static void check( long[] man, int[] exp, Class<? extends Chunk> clz ) {
+    NewChunk nc = new NewChunk(null, 0);
+    double[] vals = new double[man.length];
+    for( int i = 0; i < man.length; ++i ) { nc.addNum(man[i], exp[i]); vals[i] = man[i]*Math.pow(10, exp[i]); }
+    check(nc, vals, clz);
+  }
+
+  private static void check( NewChunk nc, double[] vals, Class<? extends Chunk> clz ) {
+    nc.addNA();
+    Chunk cc = nc.compress();
+    Assert.assertTrue(clz.isInstance(cc));
+    byte[] bits = cc.getBytes().clone();
+
+    long used = MemoryManager.offHeapUsed();
+    Assert.assertTrue(cc.moveOffHeap());
+    Assert.assertTrue(cc.isOffHeap());
+    Assert.assertNull(cc._mem);
+    Assert.assertEquals(used+bits.length, MemoryManager.offHeapUsed());
+    Assert.assertTrue(Arrays.equals(bits, cc.getBytes()));
+    for( int i = 0; i < vals.length; ++i ) Assert.assertEquals(vals[i], cc.at0(i), 1e-10);
+    Assert.assertTrue(cc.isNA0(vals.length));
+
+    // Writes into a clone share the payload, and do not double the accounting
+    Chunk c2 = (Chunk)cc.clone();
+    Assert.assertTrue(c2.sharesOffHeap(cc));
+    Assert.assertTrue(c2.setNA_impl(0));
+    Assert.assertTrue(cc.isNA0(0));
+
+    // Accounting is released exactly once
+    cc.releaseOffHeap();
+    c2.releaseOffHeap();
+    Assert.assertEquals(used, MemoryManager.offHeapUsed());
+    Assert.assertTrue(cc.isNA0(vals.length)); // Still readable by in-flight readers
+  }
+
+  @Test public void testC1()  { check(new double[]{1, 0, 3, 254, 17}, C1Chunk.class); }
+  @Test public void testC4()  { check(new double[]{-2147483647, 0, 2147483647, 5}, C4Chunk.class); }
+  @Test public void testC8D() { check(new double[]{Math.PI, -3.1415926e-118, 0, 23423423.234234234}, C8DChunk.class); }
+  @Test public void testC1S() { check(new long[]{0, 2, 3, 254}, new int[]{1, -1, -1, -2}, C1SChunk.class); }
+  @Test public void testC2S() { check(new long[]{-32767, 34, 0, 32767}, new int[]{-3, -2, 1, -3}, C2SChunk.class); }
+
+  @Test public void testNotOffHeapable() {
+    NewChunk nc = new NewChunk(null, 0);
+    for( int i = 0; i < 100; i++ ) nc.addNum(i%2);
+    Chunk cc = nc.compress();
+    Assert.assertFalse(cc.moveOffHeap());
+    Assert.assertFalse(cc.isOffHeap());
+  }
+}
@@ -0,0 +1,83 @@
+package water.parser;
+
+import org.junit.*;
+import water.AutoBuffer;
+import water.TestUtil;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class EnumTest extends TestUtil {
+  @BeforeClass public static void stall() { stall_till_cloudsize(1); }
+
+  private static final int NKEYS = 20000;
+
+  private static ValueString key( ValueString vs, byte buf[], int k ) {
+    String s = "level-"+k;       // Keys at an offset into a shared buffer, as in the parser
+    for( int i=0; i<s.length(); i++ ) buf[3+i] = (byte)s.charAt(i);
+    return vs.set(buf, 3, s.length());
+  }
+
+  // Threads racing to add the same keys all get the same ids
+  @Test public void testConcurrentAdd() throws InterruptedException {
+    final Enum e = new Enum();
+    final int ids[][] = new int[4][NKEYS];
+    final boolean stable[] = {true};  // A key's id never changes
+    Thread ts[] = new Thread[ids.length];
+    for( int t=0; t<ts.length; t++ ) {
+      final int tid = t;
+      ts[t] = new Thread() {
+        @Override public void run() {
+          Random rng = new Random(tid);
+          ValueString vs = new ValueString();
+          byte buf[] = new byte[32];
+          for( int i=0; i<10*NKEYS; i++ ) {
+            int k = rng.nextInt(NKEYS);
+            int id = e.addKey(key(vs, buf, k));
+            if( ids[tid][k] != 0 && ids[tid][k] != id ) stable[0] = false;
+            ids[tid][k] = id;
+          }
+          for( int k=0; k<NKEYS; k++ ) ids[tid][k] = e.addKey(key(vs, buf, k));
+        }
+      };
+      ts[t].start();
+    }
+    for( Thread t : ts ) t.join();
+    assertTrue(stable[0]);
+    assertEquals(NKEYS, e.size());
+    assertFalse(e.isMapFull());
+    ValueString levels[] = e.levels();
+    boolean seen[] = new boolean[NKEYS+1];
+    for( int k=0; k<NKEYS; k++ ) {
+      int id = ids[0][k];
+      for( int t=1; t<ids.length; t++ ) assertEquals(id, ids[t][k]);
+      assertFalse(seen[id]);
+      seen[id] = true;
+      assertEquals("level-"+k, levels[id-1].toString());
+      assertEquals(id, e.getTokenId(new ValueString("level-"+k)));
+    }
+    assertEquals(0, e.getTokenId(new ValueString("level-"+NKEYS)));
+    assertFalse(e.containsKey(new ValueString("")));
+  }
+
+  @Test public void testDomainAndSerialization() {
+    Enum e = new Enum();
+    String ks[] = {"b", "a", "", "c d", "ab"};
+    for( int i=0; i<ks.length; i++ ) assertEquals(i+1, e.addKey(new ValueString(ks[i])));
+    assertEquals(2, e.addKey(new ValueString("a")));
+    Enum e2 = new AutoBuffer().put(e).flipForReading().get();
+    assertEquals(ks.length, e2.maxId());
+    for( int i=0; i<ks.length; i++ ) assertEquals(i+1, e2.getTokenId(new ValueString(ks[i])));
+    assertEquals(ks.length+1, e2.addKey(new ValueString("z")));
+    assertArrayEquals(new String[]{"", "a", "ab", "b", "c d", "z"}, ValueString.toString(e2.computeColumnDomain()));
+  }
+
+  @Test public void testMaxEnumSize() {
+    Enum e = new Enum();
+    ValueString vs = new ValueString();
+    byte buf[] = new byte[32];
+    for( int k=0; k<=Enum.MAX_ENUM_SIZE; k++ ) e.addKey(key(vs, buf, k));
+    assertTrue(e.isMapFull());
+  }
+}
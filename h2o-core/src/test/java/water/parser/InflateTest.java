@@ -0,0 +1,180 @@
+package water.parser;
+
+import org.junit.*;
+import water.*;
+import water.fvec.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.*;
+
+import static org.junit.Assert.*;
+
+public class InflateTest extends TestUtil {
+  @BeforeClass public static void stall() { stall_till_cloudsize(1); }
+
+  // Several decompressed chunks' worth of CSV
+  private static byte[] csv() {
+    StringBuilder sb = new StringBuilder("id,level,x\n");
+    for( int i=0; i<500000; i++ )
+      sb.append(i).append(",L").append(i%7).append(',').append(i*0.25).append('\n');
+    return sb.toString().getBytes();
+  }
+
+  // BGZF: gzip members of up to 64K, with the member size in a 'BC' extra
+  // field, and an empty member at the end
+  private static byte[] bgzf( byte bs[] ) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    for( int off=0; off<bs.length; off+=0xFF00 )
+      member(bos, bs, off, Math.min(0xFF00, bs.length-off));
+    member(bos, bs, 0, 0);
+    return bos.toByteArray();
+  }
+  private static void member( ByteArrayOutputStream bos, byte bs[], int off, int len ) throws IOException {
+    Deflater def = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    def.setInput(bs, off, len);
+    def.finish();
+    byte z[] = new byte[0x10000];
+    int zlen = def.deflate(z);
+    assertTrue(def.finished());
+    def.end();
+    CRC32 crc = new CRC32();
+    crc.update(bs, off, len);
+    int blen = 18+zlen+8;
+    bos.write(new byte[]{0x1f,(byte)0x8b,8,4, 0,0,0,0, 0,(byte)0xff, 6,0, 'B','C',2,0, (byte)(blen-1),(byte)((blen-1)>>8)});
+    bos.write(z, 0, zlen);
+    for( long x : new long[]{crc.getValue(), len} )
+      bos.write(new byte[]{(byte)x,(byte)(x>>8),(byte)(x>>16),(byte)(x>>24)});
+  }
+
+  private static byte[] gzip( byte bs[], int members ) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    int step = bs.length/members+1;
+    for( int off=0; off<bs.length; off+=step )
+      try( GZIPOutputStream gz = new GZIPOutputStream(new NoClose(bos)) ) {
+        gz.write(bs, off, Math.min(step, bs.length-off));
+      }
+    return bos.toByteArray();
+  }
+  private static class NoClose extends java.io.FilterOutputStream {
+    NoClose( java.io.OutputStream os ) { super(os); }
+    @Override public void close() throws IOException { flush(); }
+  }
+
+  // Deflated in 32K segments, each ended by a sync flush (an empty stored
+  // block) and every third one stored, as parallel gzip tools write
+  private static byte[] syncFlushed( byte bs[] ) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    bos.write(new byte[]{0x1f,(byte)0x8b,8,0, 0,0,0,0, 0,(byte)0xff});
+    Deflater def = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    byte z[] = new byte[0x10000];
+    for( int off=0, seg=0; off<bs.length; off+=0x8000, seg++ ) {
+      def.setLevel(seg%3 == 2 ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+      def.setInput(bs, off, Math.min(0x8000, bs.length-off));
+      for( int n; (n = def.deflate(z, 0, z.length, Deflater.SYNC_FLUSH)) > 0; )
+        bos.write(z, 0, n);
+    }
+    def.finish();
+    while( !def.finished() ) bos.write(z, 0, def.deflate(z));
+    def.end();
+    CRC32 crc = new CRC32();
+    crc.update(bs, 0, bs.length);
+    for( long x : new long[]{crc.getValue(), bs.length} )
+      bos.write(new byte[]{(byte)x,(byte)(x>>8),(byte)(x>>16),(byte)(x>>24)});
+    return bos.toByteArray();
+  }
+
+  // Incompressible runs, without line ends, which zlib writes as stored blocks
+  private static byte[] noisy( byte bs[] ) {
+    byte ns[] = bs.clone();
+    java.util.Random r = new java.util.Random(42);
+    for( int i=0; i+20000<ns.length; i+=1000000 )
+      for( int j=i; j<i+20000; j++ ) ns[j] = (byte)(14+r.nextInt(242));
+    return ns;
+  }
+
+  private static byte[] zip( byte bs[] ) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try( ZipOutputStream zos = new ZipOutputStream(bos) ) {
+      zos.putNextEntry(new ZipEntry("a.csv"));
+      zos.write(bs);
+      zos.closeEntry();
+    }
+    return bos.toByteArray();
+  }
+
+  // All chunks of an Index, each inflated on its own
+  private static byte[] bytes( Inflate.Index idx, byte csv[] ) {
+    byte bs[] = new byte[(int)idx._espc[idx.nChunks()]];
+    for( int i=0; i<idx.nChunks(); i++ ) {
+      Inflate.ChunkIn din = idx.dataIn(i);
+      try {
+        byte c[] = din.getChunkData(i);
+        System.arraycopy(c, 0, bs, (int)idx._espc[i], c.length);
+        // The start of the next chunk, through its first line end
+        byte n[] = din.getChunkData(i+1);
+        if( i+1 == idx.nChunks() ) assertNull(n);
+        else {
+          assertArrayEquals(Arrays.copyOfRange(csv, (int)idx._espc[i+1], (int)idx._espc[i+1]+n.length), n);
+          assertEquals('\n', n[n.length-1]);
+        }
+      } finally {
+        din.close();
+      }
+    }
+    return bs;
+  }
+
+  @Test public void testInflate() throws IOException {
+    byte csv[] = csv(), noisy[] = noisy(csv);
+    byte raw[][] = { csv, csv, csv, csv, csv, noisy };
+    byte zs[][] = { bgzf(csv), gzip(csv, 1), gzip(csv, 3), zip(csv), syncFlushed(csv), gzip(noisy, 1) };
+    for( int i=0; i<zs.length; i++ ) {
+      // Odd chunk sizes, so member headers and trailers straddle chunks
+      Key k = byteVec(zs[i], 100003);
+      ZipUtil.Compression cpr = i == 3 ? ZipUtil.Compression.ZIP : ZipUtil.Compression.GZIP;
+      Inflate.Index idx = null;
+      try {
+        assertEquals(i == 0, Inflate.memberLength(zs[i], 0, zs[i].length) > 0);
+        idx = Inflate.index(DKV.get(k).<ByteVec>get(), cpr, null);
+        assertTrue(idx.nChunks() > 1);
+        assertArrayEquals(raw[i], bytes(idx, raw[i]));
+        idx.remove(new Futures()).blockForPending();
+        // Small chunks: outside BGZF, some start mid-byte, and run into
+        // stored blocks
+        idx = Inflate.index(DKV.get(k).<ByteVec>get(), cpr, null, 50000);
+        int mid = 0;
+        for( long b : idx._bits ) if( (b&7) != 0 ) mid++;
+        assertEquals(i == 0, mid == 0);
+        assertArrayEquals(raw[i], bytes(idx, raw[i]));
+      } finally {
+        Keyed.remove(k);
+        if( idx != null ) idx.remove(new Futures()).blockForPending();
+      }
+    }
+  }
+
+  @Test public void testParse() throws IOException {
+    byte csv[] = csv();
+    Frame fr0 = null, fr1 = null, fr2 = null;
+    Key k = null;
+    try {
+      fr0 = ParseDataset2.parse(Key.make(), byteVec(csv, Vec.CHUNK_SZ));
+      fr1 = ParseDataset2.parse(Key.make(), byteVec(bgzf(csv), 100003));
+      assertEquals(500000, fr1.numRows());
+      assertTrue(fr1.vec("level").isEnum());
+      assertTrue(isBitIdentical(fr0, fr1));
+      // Inputs are kept when asked for
+      k = byteVec(gzip(csv, 1), 100003);
+      fr2 = ParseDataset2.parse(Key.make(), new Key[]{k}, false, ParseSetup.guessSetup(Arrays.copyOf(csv, 1000), false, 0));
+      assertNotNull(DKV.get(k));
+      assertTrue(isBitIdentical(fr0, fr2));
+    } finally {
+      if( fr0 != null ) fr0.delete();
+      if( fr1 != null ) fr1.delete();
+      if( fr2 != null ) fr2.delete();
+      if( k != null ) Keyed.remove(k);
+    }
+  }
+}
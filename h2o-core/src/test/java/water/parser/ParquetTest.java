@@ -0,0 +1,410 @@
+package water.parser;
+
+import org.junit.*;
+import water.*;
+import water.fvec.*;
+import water.util.UnsafeUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class ParquetTest extends TestUtil {
+  @BeforeClass public static void stall() { stall_till_cloudsize(1); }
+
+  // Physical types, and codecs
+  private static final int BOOLEAN=0, INT32=1, INT64=2, FLOAT=4, DOUBLE=5, BYTE_ARRAY=6, FLBA=7;
+  private static final int UNCOMPRESSED=0, SNAPPY=1, GZIP=2, ZSTD=6;
+  private static final int ROWS = 1000, RGROWS = 400;
+
+  // Thrift compact protocol writer
+  private static final class Thrift {
+    final ByteArrayOutputStream _os = new ByteArrayOutputStream();
+    final ArrayDeque<Integer> _stack = new ArrayDeque<>();
+    int _last;
+    Thrift varint( long x ) {
+      while( (x & ~0x7FL) != 0 ) { _os.write((int)((x&0x7F)|0x80)); x >>>= 7; }
+      _os.write((int)x);
+      return this;
+    }
+    Thrift field( int fid, int type ) {
+      if( fid > _last && fid-_last <= 15 ) _os.write(((fid-_last)<<4)|type);
+      else { _os.write(type); varint((fid<<1)^(fid>>31)); }
+      _last = fid;
+      return this;
+    }
+    Thrift i32( int fid, long x ) { return field(fid, 5).varint((x<<1)^(x>>63)); }
+    Thrift i64( int fid, long x ) { return field(fid, 6).varint((x<<1)^(x>>63)); }
+    Thrift bool( int fid, boolean b ) { return field(fid, b ? 1 : 2); }
+    Thrift bin( int fid, byte[] bs ) { field(fid, 8).varint(bs.length); _os.write(bs, 0, bs.length); return this; }
+    Thrift str( int fid, String s ) { return bin(fid, s.getBytes()); }
+    Thrift list( int fid, int type, int n ) {
+      field(fid, 9);
+      if( n < 15 ) _os.write((n<<4)|type);
+      else { _os.write(0xF0|type); varint(n); }
+      return this;
+    }
+    Thrift begin( int fid ) { field(fid, 12); return elem(); }
+    Thrift elem() { _stack.push(_last); _last = 0; return this; } // A struct in a list
+    Thrift end() { _os.write(0); _last = _stack.isEmpty() ? 0 : _stack.pop(); return this; }
+    byte[] bytes() { return _os.toByteArray(); }
+  }
+
+  // A column to write: the values by row (null for NA), a Long, Double,
+  // String or byte[] per physical type
+  private static final class Col {
+    final String _name;
+    final int _type, _typeLen, _conv, _scale;
+    final boolean _optional, _dict;
+    int _codec = -1;            // Overrides the file codec
+    boolean _micros;            // Logical type TIMESTAMP(MICROS)
+    boolean _uuid;              // Logical type UUID
+    final Object[] _vals = new Object[ROWS];
+    Col( String name, int type, int typeLen, int conv, int scale, boolean optional, boolean dict ) {
+      _name = name; _type = type; _typeLen = typeLen; _conv = conv; _scale = scale; _optional = optional; _dict = dict;
+    }
+  }
+
+  private static byte[] plain( Col col, List<Object> vs ) {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    byte b8[] = new byte[8];
+    if( col._type == BOOLEAN ) {
+      byte bits[] = new byte[(vs.size()+7)/8];
+      for( int i=0; i<vs.size(); i++ ) if( (Long)vs.get(i) != 0 ) bits[i>>3] |= 1<<(i&7);
+      return bits;
+    }
+    for( Object v : vs ) {
+      switch( col._type ) {
+      case INT32:  UnsafeUtils.set4(b8, 0, (int)(long)(Long)v);  os.write(b8, 0, 4);  break;
+      case INT64:  UnsafeUtils.set8(b8, 0, (Long)v);  os.write(b8, 0, 8);  break;
+      case FLOAT:  UnsafeUtils.set4f(b8, 0, (float)(double)(Double)v);  os.write(b8, 0, 4);  break;
+      case DOUBLE: UnsafeUtils.set8d(b8, 0, (Double)v);  os.write(b8, 0, 8);  break;
+      case BYTE_ARRAY: {
+        byte bs[] = ((String)v).getBytes();
+        UnsafeUtils.set4(b8, 0, bs.length);
+        os.write(b8, 0, 4);  os.write(bs, 0, bs.length);
+        break;
+      }
+      case FLBA: os.write((byte[])v, 0, col._typeLen);  break;
+      }
+    }
+    return os.toByteArray();
+  }
+
+  // RLE/bit-packed hybrid: runs of repeated values, or all bit-packed
+  private static byte[] hybrid( int[] vs, int width, boolean packed ) {
+    Thrift t = new Thrift();
+    if( packed ) {
+      int ngroups = (vs.length+7)/8;
+      t.varint((ngroups<<1)|1);
+      long acc = 0;  int bits = 0;
+      for( int i=0; i<ngroups*8; i++ ) {
+        acc |= (long)(i < vs.length ? vs[i] : 0) << bits;
+        bits += width;
+        while( bits >= 8 ) { t._os.write((int)(acc&0xFF)); acc >>>= 8; bits -= 8; }
+      }
+    } else {
+      for( int i=0; i<vs.length; ) {
+        int j = i;
+        while( j < vs.length && vs[j] == vs[i] ) j++;
+        t.varint((j-i)<<1);
+        for( int b=0; b<(width+7)/8; b++ ) t._os.write(vs[i]>>(8*b));
+        i = j;
+      }
+    }
+    return t.bytes();
+  }
+
+  // Snappy: 1-offset copies for runs of a repeated byte, literals otherwise
+  private static byte[] snappy( byte[] bs ) {
+    Thrift t = new Thrift().varint(bs.length);
+    ByteArrayOutputStream os = t._os;
+    int lit = 0;
+    for( int i=0; i<=bs.length; ) {
+      int run = 0;
+      while( i > 0 && i+run < bs.length && run < 64 && bs[i+run] == bs[i-1] ) run++;
+      if( run >= 4 || i == bs.length ) {
+        for( int l=lit; l<i; ) {            // Flush the pending literal
+          int n = Math.min(i-l, 1000);
+          if( n <= 60 ) os.write((n-1)<<2);
+          else { os.write(61<<2); os.write((n-1)&0xFF); os.write((n-1)>>8); }
+          os.write(bs, l, n);
+          l += n;
+        }
+        if( i == bs.length ) break;
+        os.write(((run-1)<<2)|2);  os.write(1);  os.write(0);
+        i += run;  lit = i;
+      } else i++;
+    }
+    return t.bytes();
+  }
+
+  private static byte[] compress( int codec, byte[] bs ) throws IOException {
+    switch( codec ) {
+    case SNAPPY: return snappy(bs);
+    case GZIP: {
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      try( GZIPOutputStream gz = new GZIPOutputStream(os) ) { gz.write(bs); }
+      return os.toByteArray();
+    }
+    case ZSTD: return new byte[]{1,2,3};
+    default: return bs;
+    }
+  }
+
+  private static byte[] concat( byte[]... bss ) {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    for( byte[] bs : bss ) os.write(bs, 0, bs.length);
+    return os.toByteArray();
+  }
+
+  // A Parquet file of the columns, in row groups of RGROWS, with two data
+  // pages per column chunk: a v1 page then a v2 page.  A nested group (which
+  // the reader skips) sits after the first column.
+  private static byte[] parquet( Col cols[], int codec ) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    os.write("PAR1".getBytes());
+    int nrgs = (ROWS+RGROWS-1)/RGROWS;
+    long meta[][][] = new long[nrgs][cols.length][]; // codec, data page, dict page, size
+    for( int g=0; g<nrgs; g++ ) {
+      int lo = g*RGROWS, hi = Math.min(ROWS, lo+RGROWS);
+      for( int c=0; c<cols.length; c++ ) {
+        Col col = cols[c];
+        int cc = col._codec == -1 ? codec : col._codec;
+        long start = os.size(), dictOff = 0;
+        // Dictionary of the row group's values
+        List<Object> dict = new ArrayList<>();
+        if( col._dict ) {
+          for( int r=lo; r<hi; r++ ) if( col._vals[r] != null && !dict.contains(col._vals[r]) ) dict.add(col._vals[r]);
+          byte p[] = plain(col, dict), z[] = compress(cc, p);
+          dictOff = os.size();
+          Thrift t = new Thrift().i32(1, 2).i32(2, p.length).i32(3, z.length).begin(7).i32(1, dict.size()).i32(2, 0).end();
+          os.write(t.end().bytes());
+          os.write(z);
+        }
+        long dataOff = os.size();
+        int mid = (lo+hi)/2;
+        for( int page=0; page<2; page++ ) {
+          int plo = page == 0 ? lo : mid, phi = page == 0 ? mid : hi;
+          int defs[] = new int[phi-plo];
+          List<Object> vs = new ArrayList<>();
+          for( int r=plo; r<phi; r++ )
+            if( col._vals[r] != null ) { defs[r-plo] = 1; vs.add(col._vals[r]); }
+          byte vals[];
+          if( col._dict ) {
+            int idx[] = new int[vs.size()];
+            for( int i=0; i<idx.length; i++ ) idx[i] = dict.indexOf(vs.get(i));
+            int width = 32-Integer.numberOfLeadingZeros(Math.max(1, dict.size()-1));
+            vals = concat(new byte[]{(byte)width}, hybrid(idx, width, true));
+          } else vals = plain(col, vs);
+          if( page == 0 ) {     // v1: levels and values compressed together
+            byte p[] = vals;
+            if( col._optional ) {
+              byte d[] = hybrid(defs, 1, false), len[] = new byte[4];
+              UnsafeUtils.set4(len, 0, d.length);
+              p = concat(len, d, vals);
+            }
+            byte z[] = compress(cc, p);
+            Thrift t = new Thrift().i32(1, 0).i32(2, p.length).i32(3, z.length);
+            t.begin(5).i32(1, phi-plo).i32(2, col._dict ? 8 : 0).i32(3, 3).i32(4, 3).end();
+            os.write(t.end().bytes());
+            os.write(z);
+          } else {              // v2: levels uncompressed, ahead of the values
+            byte d[] = col._optional ? hybrid(defs, 1, true) : new byte[0];
+            byte z[] = compress(cc, vals);
+            Thrift t = new Thrift().i32(1, 3).i32(2, d.length+vals.length).i32(3, d.length+z.length);
+            t.begin(8).i32(1, phi-plo).i32(2, phi-plo-vs.size()).i32(3, phi-plo).i32(4, col._dict ? 8 : 0).i32(5, d.length).i32(6, 0).end();
+            os.write(t.end().bytes());
+            os.write(d);
+            os.write(z);
+          }
+        }
+        meta[g][c] = new long[]{cc, dataOff, dictOff, os.size()-start};
+      }
+    }
+    // Footer
+    Thrift t = new Thrift().i32(1, 1);
+    t.list(2, 12, cols.length+3);
+    t.elem().str(4, "schema").i32(5, cols.length+1).end();
+    for( int c=0; c<cols.length; c++ ) {
+      Col col = cols[c];
+      t.elem().i32(1, col._type);
+      if( col._type == FLBA ) t.i32(2, col._typeLen);
+      t.i32(3, col._optional ? 1 : 0).str(4, col._name);
+      if( col._conv >= 0 ) t.i32(6, col._conv);
+      if( col._scale > 0 ) t.i32(7, col._scale).i32(8, 9);
+      if( col._micros ) t.begin(10).begin(8).bool(1, true).begin(2).begin(2).end().end().end().end();
+      if( col._uuid ) t.begin(10).begin(14).end().end();
+      t.end();
+      if( c == 0 ) {            // A nested group of one leaf
+        t.elem().i32(3, 1).str(4, "nested").i32(5, 1).end();
+        t.elem().i32(1, INT32).i32(3, 1).str(4, "x").end();
+      }
+    }
+    t.i64(3, ROWS);
+    t.list(4, 12, nrgs);
+    for( int g=0; g<nrgs; g++ ) {
+      t.elem().list(1, 12, cols.length+1);
+      for( int c=0; c<cols.length; c++ ) {
+        long m[] = meta[g][c];
+        chunk(t, cols[c]._type, cols[c]._name, m[0], Math.min(RGROWS, ROWS-g*RGROWS), m[1], m[2], m[3]);
+        if( c == 0 ) chunk(t, INT32, "x", ZSTD, 0, 4, 0, 3); // Never read
+      }
+      t.i64(2, 0).i64(3, Math.min(RGROWS, ROWS-g*RGROWS)).end();
+    }
+    byte footer[] = t.end().bytes(), len[] = new byte[4];
+    UnsafeUtils.set4(len, 0, footer.length);
+    os.write(footer);
+    os.write(len);
+    os.write("PAR1".getBytes());
+    return os.toByteArray();
+  }
+  private static void chunk( Thrift t, int type, String name, long codec, long nvals, long dataOff, long dictOff, long size ) {
+    t.elem().i64(2, dataOff).begin(3).i32(1, type).list(2, 5, 1).varint(0).list(3, 8, 1).varint(name.length());
+    t._os.write(name.getBytes(), 0, name.length());
+    t.i32(4, codec).i64(5, nvals).i64(6, size).i64(7, size).i64(9, dataOff);
+    if( dictOff > 0 ) t.i64(11, dictOff);
+    t.end().end();
+  }
+
+  private static Col[] columns() {
+    Col id  = new Col("id",   INT64,      0, -1, 0, false, false);
+    Col i32 = new Col("i32",  INT32,      0, -1, 0, true,  false);
+    Col d   = new Col("d",    DOUBLE,     0, -1, 0, false, false);
+    Col f   = new Col("f",    FLOAT,      0, -1, 0, false, false);
+    Col b   = new Col("b",    BOOLEAN,    0, -1, 0, false, false);
+    Col s   = new Col("s",    BYTE_ARRAY, 0,  0, 0, true,  true ); // UTF8, dictionary
+    Col s2  = new Col("s2",   BYTE_ARRAY, 0,  0, 0, false, false);
+    Col i64 = new Col("i64",  INT64,      0, -1, 0, true,  true ); // Dictionary of numbers
+    Col dt  = new Col("date", INT32,      0,  6, 0, false, false); // DATE
+    Col ts  = new Col("ts",   INT64,      0, -1, 0, true,  false);
+    Col dec = new Col("dec",  INT32,      0,  5, 2, false, false); // DECIMAL(9,2)
+    Col u   = new Col("u",    FLBA,      16, -1, 0, false, false);
+    ts._micros = true;
+    u._uuid = true;
+    for( int i=0; i<ROWS; i++ ) {
+      id._vals[i] = (long)i;
+      i32._vals[i] = i%7 == 0 ? null : (Object)(long)(i*3-500);
+      d._vals[i] = i*0.25;
+      f._vals[i] = i*0.5;
+      b._vals[i] = i%3 == 0 ? 1L : 0L;
+      s._vals[i] = i%11 == 0 ? null : "L"+(i%5);
+      s2._vals[i] = "v"+(i%4);
+      i64._vals[i] = i%13 == 0 ? null : (Object)((1L<<40)*(i%3));
+      dt._vals[i] = 16000L+i;
+      ts._vals[i] = i%17 == 0 ? null : (Object)(1400000000000000L+i*1000000L+999);
+      dec._vals[i] = (long)i-300;
+      byte ub[] = new byte[16];
+      UnsafeUtils.set8(ub, 0, Long.reverseBytes(i));   // Big-endian halves
+      UnsafeUtils.set8(ub, 8, Long.reverseBytes(-i-1));
+      u._vals[i] = ub;
+    }
+    return new Col[]{id, i32, d, f, b, s, s2, i64, dt, ts, dec, u};
+  }
+
+  private static void checkColumn( Frame fr, Col col ) {
+    Vec v = fr.vec(col._name);
+    assertNotNull(col._name, v);
+    for( int r=0; r<ROWS; r++ ) {
+      Object x = col._vals[r];
+      String msg = col._name+" row "+r;
+      assertEquals(msg, x == null, v.isNA(r));
+      if( x == null ) continue;
+      switch( col._name ) {
+      case "s": case "s2": assertEquals(msg, x, v.domain()[(int)v.at8(r)]);  break;
+      case "date": assertEquals(msg, (Long)x*86400000L, v.at8(r));  break;
+      case "ts":   assertEquals(msg, (Long)x/1000, v.at8(r));  break;
+      case "dec":  assertEquals(msg, (Long)x/100.0, v.at(r), 1e-12);  break;
+      case "u":
+        assertEquals(msg, r, v.at16l(r));
+        assertEquals(msg, -r-1, v.at16h(r));
+        break;
+      default:
+        if( x instanceof Double ) assertEquals(msg, (Double)x, v.at(r), 0);
+        else assertEquals(msg, (long)(Long)x, v.at8(r));
+      }
+    }
+  }
+
+  @Test public void testParse() throws IOException {
+    Col cols[] = columns();
+    for( int codec : new int[]{UNCOMPRESSED, SNAPPY, GZIP} ) {
+      Frame fr = null;
+      try {
+        // Odd chunk size, so row groups and pages straddle chunks
+        Key k = byteVec(parquet(cols, codec), 9973);
+        ParseSetup ps = ParseSetup.guessSetup(DKV.get(k).<ByteVec>get(), false, 0);
+        assertTrue(ps._isValid);
+        assertEquals(ParserType.PARQUET, ps._pType);
+        fr = ParseDataset2.parse(Key.make(), k);
+        assertArrayEquals(new String[]{"id","i32","d","f","b","s","s2","i64","date","ts","dec","u"}, fr.names());
+        assertEquals(ROWS, fr.numRows());
+        assertEquals(3, fr.anyVec().nChunks()); // A chunk per row group
+        assertTrue(fr.vec("s").isEnum());
+        assertArrayEquals(new String[]{"L0","L1","L2","L3","L4"}, fr.vec("s").domain());
+        assertTrue(fr.vec("s2").isEnum());
+        assertTrue(fr.vec("date").isTime());
+        assertTrue(fr.vec("ts").isTime());
+        assertTrue(fr.vec("u").isUUID());
+        for( Col col : cols ) checkColumn(fr, col);
+      } finally {
+        if( fr != null ) fr.delete();
+      }
+    }
+  }
+
+  // Only the projected columns are read: the poisoned column's chunks have an
+  // unsupported codec and garbage pages
+  @Test public void testProjection() throws IOException {
+    Col cols[] = columns();
+    Col poison = cols[2];
+    poison._codec = ZSTD;
+    Frame fr = null;
+    Key k = byteVec(parquet(cols, SNAPPY), 4001);
+    try {
+      ParseSetup ps = ParseSetup.guessSetup(DKV.get(k).<ByteVec>get(), false, 0);
+      ps._columnNames = new String[]{"s", "id", "ts"};
+      fr = ParseDataset2.parse(Key.make(), new Key[]{k}, false, ps);
+      assertArrayEquals(new String[]{"s", "id", "ts"}, fr.names());
+      assertEquals(ROWS, fr.numRows());
+      checkColumn(fr, cols[5]);
+      checkColumn(fr, cols[0]);
+      checkColumn(fr, cols[9]);
+      fr.delete();
+      fr = null;
+      try {
+        fr = ParseDataset2.parse(Key.make(), k); // All columns, so also the poison
+        fail();
+      } catch( RuntimeException expected ) { }
+    } finally {
+      if( fr != null ) fr.delete();
+      Keyed.remove(k);
+    }
+  }
+
+  @Test public void testBadProjection() throws IOException {
+    Key k = byteVec(parquet(columns(), UNCOMPRESSED), Vec.CHUNK_SZ);
+    try {
+      ParseSetup ps = ParquetParser.guessSetup(DKV.get(k).<ByteVec>get(), new String[]{"id", "nope"});
+      assertFalse(ps._isValid);
+      assertEquals("No supported Parquet column named nope", ps._errors[0]);
+      // Nested fields are not columns
+      assertFalse(ParquetParser.guessSetup(DKV.get(k).<ByteVec>get(), new String[]{"x"})._isValid);
+    } finally {
+      Keyed.remove(k);
+    }
+  }
+
+  @Test public void testSnappy() {
+    Random rng = new Random(1234);
+    for( int len : new int[]{0, 1, 59, 60, 61, 300, 5000} ) {
+      byte bs[] = new byte[len];
+      for( int i=0; i<len; i++ ) bs[i] = (byte)(rng.nextInt(8) < 5 ? 7 : rng.nextInt()); // Many runs
+      byte z[] = snappy(bs);
+      assertArrayEquals(bs, ParquetParser.snappy(z, 0, z.length, len));
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package water.persist;
+
+import org.junit.*;
+
+import java.util.Random;
+import water.AutoBuffer;
+import water.TestUtil;
+import water.util.UnsafeUtils;
+
+public class SpillCodecTest extends TestUtil {
+
+  private static byte[] roundTrip( SpillCodec codec, byte[] raw ) {
+    byte[] file = SpillCodec.writeFile(new AutoBuffer(), codec, raw).buf();
+    AutoBuffer ab = new AutoBuffer(file);
+    SpillCodec c = SpillCodec.forTag(ab.get4());
+    int rawLen = ab.get4(), enc = ab.get4();
+    ab.get4();
+    Assert.assertEquals(raw.length, rawLen);
+    Assert.assertEquals(file.length, SpillCodec.HEADER_LEN + enc);
+    return SpillCodec.decodeFile(c, ab.getA1(enc), rawLen);
+  }
+
+  @Test public void testRandomBytes() {
+    Random r = new Random(1234);
+    for( int len : new int[]{0, 1, 12, 13, 100, 4096, 100000} ) {
+      byte[] raw = new byte[len];
+      r.nextBytes(raw);
+      Assert.assertArrayEquals(raw, roundTrip(SpillCodec.LZ4, raw));
+      Assert.assertArrayEquals(raw, roundTrip(SpillCodec.NONE, raw));
+    }
+  }
+
+  @Test public void testRepetitiveBytes() {
+    // Long runs, short overlapping matches and far matches
+    byte[] raw = new byte[200000];
+    for( int i=0; i<raw.length; i++ )
+      raw[i] = (byte)(i < 50000 ? 7 : (i < 120000 ? i%3 : (i%1000)/10));
+    byte[] enc = SpillCodec.LZ4.encode(raw);
+    Assert.assertNotNull(enc);
+    Assert.assertTrue(enc.length < raw.length/10);
+    Assert.assertArrayEquals(raw, SpillCodec.LZ4.decode(enc, enc.length, raw.length));
+    Assert.assertArrayEquals(raw, roundTrip(SpillCodec.LZ4, raw));
+  }
+
+  @Test public void testSmallIntBytes() {
+    // Typical of a 4-byte integer column holding small values
+    byte[] raw = new byte[40000];
+    for( int i=0; i<raw.length; i+=4 ) UnsafeUtils.set4(raw, i, (i/4)%17);
+    byte[] enc = SpillCodec.LZ4.encode(raw);
+    Assert.assertNotNull(enc);
+    Assert.assertTrue(enc.length < raw.length/4);
+    Assert.assertArrayEquals(raw, roundTrip(SpillCodec.LZ4, raw));
+  }
+
+  @Test public void testForName() {
+    Assert.assertSame(SpillCodec.LZ4 , SpillCodec.forName(null));
+    Assert.assertSame(SpillCodec.NONE, SpillCodec.forName("none"));
+    Assert.assertSame(SpillCodec.LZ4 , SpillCodec.forName("LZ4"));
+  }
+}
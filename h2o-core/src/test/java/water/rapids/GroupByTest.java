@@ -0,0 +1,67 @@
+package water.rapids;
+
+import org.junit.*;
+
+import water.TestUtil;
+import water.fvec.Frame;
+
+public class GroupByTest extends TestUtil {
+  @BeforeClass public static void setup() { stall_till_cloudsize(1); }
+
+  @Test public void testGroupBy() {
+    Frame fr = null, res = null;
+    try {
+      // Key columns: an enum and an integer (with an NA); one value column
+      fr = chunked("gb.hex", ar("k1","k2","x"), new String[][]{ar("a","b"), null, null}, 3,
+                   ard(0, 1, 0, 1, 0, 1, 0),
+                   ard(5, 5, 5, 5, 7, 7, Double.NaN),
+                   ard(1, 2, 3, 4, 5, 6, 10));
+      Env env = Exec.exec("(GB $gb.hex {0;1} {\"count\";0;\"sum\";2;\"mean\";2;\"min\";2;\"max\";2;\"var\";2;\"nunique\";2})");
+      res = env.pop0Ary();
+      Assert.assertArrayEquals(ar("k1","k2","count","sum_x","mean_x","min_x","max_x","var_x","nunique_x"), res.names());
+      Assert.assertArrayEquals(ar("a","b"), res.vecs()[0].domain());
+      // Groups in key order, NA first: (a,NA) (a,5) (a,7) (b,5) (b,7)
+      Assert.assertEquals(5, res.numRows());
+      double[][] exp = new double[][]{
+        {0, Double.NaN, 1, 10, 10, 10, 10, Double.NaN, 1},
+        {0, 5,          2,  4,  2,  1,  3, 2,          2},
+        {0, 7,          1,  5,  5,  5,  5, Double.NaN, 1},
+        {1, 5,          2,  6,  3,  2,  4, 2,          2},
+        {1, 7,          1,  6,  6,  6,  6, Double.NaN, 1}};
+      for( int r=0; r<exp.length; r++ )
+        for( int c=0; c<exp[r].length; c++ )
+          Assert.assertEquals("row "+r+" col "+c, exp[r][c], res.vecs()[c].at(r), 1e-12);
+    } finally {
+      if( fr  != null ) fr .delete();
+      if( res != null ) res.delete();
+    }
+  }
+
+  @Test public void testManyChunks() {
+    Frame fr = null, res = null;
+    try {
+      // Row i in group i%13, value i: spread over many chunks to exercise the reduce
+      int n = 200000;
+      double[] g = new double[n], x = new double[n];
+      for( int i=0; i<n; i++ ) { g[i] = i%13; x[i] = i; }
+      fr = chunked("gb2.hex", ar("g","x"), new String[2][], 10000, g, x);
+      Env env = Exec.exec("(GB $gb2.hex #0 {\"count\";0;\"sum\";1;\"var\";1;\"nunique\";1})");
+      res = env.pop0Ary();
+      Assert.assertEquals(13, res.numRows());
+      for( int k=0; k<13; k++ ) {
+        long cnt = 0;  double sum = 0, ssq = 0;
+        for( int i=k; i<n; i+=13 ) { cnt++; sum += i; }
+        double mean = sum/cnt;
+        for( int i=k; i<n; i+=13 ) ssq += (i-mean)*(i-mean);
+        Assert.assertEquals(k, res.vecs()[0].at(k), 0);
+        Assert.assertEquals(cnt, res.vecs()[1].at8(k));
+        Assert.assertEquals(sum, res.vecs()[2].at(k), 0);
+        Assert.assertEquals(ssq/(cnt-1), res.vecs()[3].at(k), 1e-6*ssq/(cnt-1));
+        Assert.assertEquals(cnt, res.vecs()[4].at8(k));
+      }
+    } finally {
+      if( fr  != null ) fr .delete();
+      if( res != null ) res.delete();
+    }
+  }
+}
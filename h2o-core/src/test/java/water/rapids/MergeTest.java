@@ -0,0 +1,117 @@
+package water.rapids;
+
+import org.junit.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import water.TestUtil;
+import water.fvec.Frame;
+import water.fvec.Vec;
+
+public class MergeTest extends TestUtil {
+  @BeforeClass public static void setup() { stall_till_cloudsize(1); }
+
+  // Rows of a Frame as sorted strings, since the shuffle does not keep row order
+  private static List<String> rows( Frame fr ) {
+    List<String> rows = new ArrayList<>();
+    for( long r=0; r<fr.numRows(); r++ ) {
+      StringBuilder sb = new StringBuilder();
+      for( Vec v : fr.vecs() )
+        sb.append(v.isNA(r) ? "NA" : v.isEnum() ? v.factor(v.at8(r)) : Double.toString(v.at(r))).append(',');
+      rows.add(sb.toString());
+    }
+    Collections.sort(rows);
+    return rows;
+  }
+  private static List<String> sorted( String... rows ) {
+    List<String> l = new ArrayList<>(Arrays.asList(rows));
+    Collections.sort(l);
+    return l;
+  }
+
+  private static void merge( String expr, boolean shuffle, List<String> exp, String... names ) {
+    long limit = ASTMerge.BROADCAST_LIMIT;
+    Frame res = null;
+    try {
+      if( shuffle ) ASTMerge.BROADCAST_LIMIT = -1;
+      Env env = Exec.exec(expr);
+      res = env.pop0Ary();
+      Assert.assertArrayEquals(names, res.names());
+      Assert.assertEquals(exp, rows(res));
+    } finally {
+      ASTMerge.BROADCAST_LIMIT = limit;
+      if( res != null ) res.delete();
+    }
+  }
+
+  @Test public void testEnumKeys() {
+    Frame x = null, y = null;
+    try {
+      // y has levels in a different order, one level missing from x, and a duplicate key
+      x = chunked("mx.hex", ar("k","a"), new String[][]{ar("a","b","c"), null}, 2,
+                  ard(0, 1, 2, 1, Double.NaN),
+                  ard(1, 2, 3, 4, 5));
+      y = chunked("my.hex", ar("b","k"), new String[][]{null, ar("d","c","b")}, 2,
+                  ard(10, 20, 30, 40),
+                  ard(0, 1, 2, 2));
+      List<String> inner = sorted("b,2.0,30.0,", "b,2.0,40.0,", "b,4.0,30.0,", "b,4.0,40.0,", "c,3.0,20.0,");
+      List<String> left = new ArrayList<>(inner);
+      left.add("a,1.0,NA,");  left.add("NA,5.0,NA,");
+      Collections.sort(left);
+      for( boolean shuffle : new boolean[]{false,true} ) {
+        merge("(merge $mx.hex $my.hex {0} {1} #0)", shuffle, inner, "k", "a", "b");
+        merge("(merge $mx.hex $my.hex {0} {1} $TRUE)", shuffle, left, "k", "a", "b");
+      }
+    } finally {
+      if( x != null ) x.delete();
+      if( y != null ) y.delete();
+    }
+  }
+
+  @Test public void testIntKeys() {
+    Frame x = null, y = null;
+    try {
+      // Two key columns; row i of x matches row i/2 of y when i is even
+      int n = 5000;
+      double[] xk1 = new double[n], xk2 = new double[n], xv = new double[n];
+      double[] yk1 = new double[n/2], yk2 = new double[n/2], yv = new double[n/2];
+      List<String> exp = new ArrayList<>();
+      for( int i=0; i<n; i++ ) {
+        xk1[i] = i%7; xk2[i] = i; xv[i] = -i;
+        if( (i&1)==0 ) {
+          yk1[i/2] = i%7; yk2[i/2] = i; yv[i/2] = i*10;
+          exp.add(xk1[i]+","+xk2[i]+","+xv[i]+","+yv[i/2]+",");
+        }
+      }
+      Collections.sort(exp);
+      x = chunked("mx2.hex", ar("k1","k2","v"), new String[3][], 333, xk1, xk2, xv);
+      y = chunked("my2.hex", ar("k1","k2","w"), new String[3][], 250, yk1, yk2, yv);
+      for( boolean shuffle : new boolean[]{false,true} ) {
+        merge("(merge $mx2.hex $my2.hex {0;1} {0;1} #0)", shuffle, exp, "k1", "k2", "v", "w");
+        // The other way round; the broadcast inner join indexes the smaller frame, now on the left
+        List<String> exp2 = new ArrayList<>();
+        for( int i=0; i<n; i+=2 ) exp2.add(yk1[i/2]+","+yk2[i/2]+","+yv[i/2]+","+xv[i]+",");
+        Collections.sort(exp2);
+        merge("(merge $my2.hex $mx2.hex {0;1} {0;1} #0)", shuffle, exp2, "k1", "k2", "w", "v");
+      }
+    } finally {
+      if( x != null ) x.delete();
+      if( y != null ) y.delete();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class) public void testMismatchedKeys() {
+    Frame x = null, y = null;
+    try {
+      x = chunked("mx3.hex", ar("k"), new String[][]{ar("a","b")}, 2, ard(0, 1));
+      y = chunked("my3.hex", ar("k"), new String[1][], 2, ard(0, 1));
+      ASTMerge.merge(x, y, new int[]{0}, new int[]{0}, false);
+    } finally {
+      if( x != null ) x.delete();
+      if( y != null ) y.delete();
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package water.rapids;
+
+import org.junit.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import water.MRTask;
+import water.TestUtil;
+import water.fvec.Chunk;
+import water.fvec.Frame;
+import water.fvec.Vec;
+import water.util.Log;
+
+public class SortTest extends TestUtil {
+  @BeforeClass public static void setup() { stall_till_cloudsize(1); }
+
+  @Test public void testDoubles() {
+    Frame fr = null, res = null;
+    try {
+      // Keys with duplicates, negative zero, infinities and NAs; the row number rides along
+      int n = 20000;
+      Random rng = new Random(42);
+      double[] k = new double[n], row = new double[n];
+      double[] special = {Double.NaN, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, -0.0, 0.0};
+      for( int i=0; i<n; i++ ) {
+        k[i] = i%50 < 5 ? special[i%5] : rng.nextInt(100)-50+(i%3==0 ? rng.nextDouble() : 0);
+        row[i] = i;
+      }
+      fr = chunked("sort.hex", ar("k","row"), new String[2][], 777, k, row);
+      Env env = Exec.exec("(sort $sort.hex #0)");
+      res = env.pop0Ary();
+      Assert.assertEquals(n, res.numRows());
+      Assert.assertArrayEquals(ar("k","row"), res.names());
+      // Expected: a stable sort, NAs last
+      Integer[] exp = new Integer[n];
+      for( int i=0; i<n; i++ ) exp[i] = i;
+      final double[] kk = k;
+      Arrays.sort(exp, new java.util.Comparator<Integer>() {
+          @Override public int compare( Integer a, Integer b ) {
+            double x = kk[a], y = kk[b];
+            if( Double.isNaN(x) || Double.isNaN(y) ) return Double.isNaN(x) ? (Double.isNaN(y) ? 0 : 1) : -1;
+            return Double.compare(x == 0 ? 0.0 : x, y == 0 ? 0.0 : y);
+          }
+        });
+      for( int i=0; i<n; i++ ) {
+        Assert.assertEquals("row "+i, (double)exp[i], res.vecs()[1].at(i), 0);
+        Assert.assertEquals("row "+i, k[exp[i]], res.vecs()[0].at(i), 0);
+      }
+    } finally {
+      if( fr  != null ) fr .delete();
+      if( res != null ) res.delete();
+    }
+  }
+
+  @Test public void testEnumThenInt() {
+    Frame fr = null, res = null;
+    try {
+      // Few enum levels spread over many chunks, then a descending integer
+      int n = 10000;
+      double[] e = new double[n], v = new double[n];
+      for( int i=0; i<n; i++ ) { e[i] = i%3; v[i] = n-i; }
+      fr = chunked("sort2.hex", ar("e","v"), new String[][]{ar("x","y","z"), null}, 500, e, v);
+      Env env = Exec.exec("(sort $sort2.hex {0;1})");
+      res = env.pop0Ary();
+      Assert.assertArrayEquals(ar("x","y","z"), res.vecs()[0].domain());
+      Assert.assertEquals(n, res.numRows());
+      for( int i=1; i<n; i++ ) {
+        long e0 = res.vecs()[0].at8(i-1), e1 = res.vecs()[0].at8(i);
+        Assert.assertTrue(e0 < e1 || (e0 == e1 && res.vecs()[1].at8(i-1) < res.vecs()[1].at8(i)));
+      }
+    } finally {
+      if( fr  != null ) fr .delete();
+      if( res != null ) res.delete();
+    }
+  }
+
+  // Sort -Dsort.bench.rows (default 10M) random doubles, and as many enums
+  // from 1000 levels; run with 1e8 and 1e9 rows on a cluster.
+  @Test @Ignore public void benchSort() {
+    long n = Long.getLong("sort.bench.rows", 10000000L);
+    String[] domain = new String[1000];
+    for( int i=0; i<domain.length; i++ ) domain[i] = "L"+i;
+    Vec d = Vec.makeZero(n);
+    Frame fr = new Frame(ar("d","e"), new Vec[]{d, d.makeZero(domain)});
+    new MRTask() {
+      @Override public void map( Chunk[] cs ) {
+        Random rng = new Random(cs[0].start());
+        for( int r=0; r<cs[0]._len; r++ ) {
+          cs[0].set0(r, rng.nextGaussian());
+          cs[1].set0(r, rng.nextInt(1000));
+        }
+      }
+    }.doAll(fr);
+    try {
+      for( int c=0; c<2; c++ ) {
+        long start = System.currentTimeMillis();
+        Frame res = ASTSort.sort(fr, new int[]{c});
+        Log.info("Sorted "+n+" rows of "+(c == 0 ? "doubles" : "enums")+" in "+(System.currentTimeMillis()-start)+" ms");
+        res.delete();
+      }
+    } finally {
+      fr.delete();
+    }
+  }
+}